@@ -36,7 +36,10 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.data.TransactionManager;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.rwi.IndexCell;
+import net.yacy.kelondro.rwi.ReferenceContainerBlockIndex;
+import net.yacy.kelondro.rwi.ShardedReferenceContainerCache;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.kelondro.util.MemoryControl;
@@ -340,6 +343,17 @@ public class PerformanceQueues_p {
         // table cache settings
         prop.putNum("wordCacheSize", indexSegment.RWIBufferCount());
         prop.putNum("wordCacheSizeKBytes", rwi == null ? 0 : rwi.getBufferSizeBytes() / 1024L);
+        final IODispatcher merger = indexSegment.merger();
+        prop.putNum("mergeCount", merger == null ? 0 : merger.getMergeCount());
+        prop.putNum("mergeMBytes", merger == null ? 0 : merger.getMergeBytes() / 1024L / 1024L);
+        prop.put("mergeThroughput", merger == null ? "0" : String.format("%.1f", merger.getMergeThroughput()));
+        prop.putNum("blockSelectCount", ReferenceContainerBlockIndex.selectCount.get());
+        prop.putNum("blockReadCount", ReferenceContainerBlockIndex.blockCount.get());
+        prop.putNum("blockSkipCount", ReferenceContainerBlockIndex.skipCount.get());
+        prop.putNum("ramLockCount", ShardedReferenceContainerCache.lockCount.sum());
+        prop.putNum("ramContentionCount", ShardedReferenceContainerCache.contentionCount.sum());
+        prop.putNum("ramContentionTime", ShardedReferenceContainerCache.contentionTime.sum() / 1000000L); // milliseconds
+        prop.putNum("ramDetachCount", ShardedReferenceContainerCache.detachCount.sum());
         prop.putNum("maxURLinCache", rwi == null ? 0 : rwi.getBufferMaxReferences());
         prop.putNum("maxAgeOfCache", rwi == null ? 0 : rwi.getBufferMaxAge() / 1000 / 60); // minutes
         prop.putNum("minAgeOfCache", rwi == null ? 0 : rwi.getBufferMinAge() / 1000 / 60); // minutes
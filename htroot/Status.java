@@ -338,7 +338,7 @@ public class Status
 
         // Queue information
         final int loaderJobCount = sb.crawlQueues.activeWorkerEntries().size();
-        final int loaderMaxCount = sb.getConfigInt(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 10);
+        final int loaderMaxCount = sb.crawlQueues.loaderMax();
         final int loaderPercent = (loaderMaxCount == 0) ? 0 : loaderJobCount * 100 / loaderMaxCount;
         prop.putNum("loaderQueueSize", loaderJobCount);
         prop.putNum("loaderQueueMax", loaderMaxCount);
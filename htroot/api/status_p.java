@@ -26,10 +26,12 @@
 // Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 import java.io.IOException;
+import java.util.Locale;
 
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.util.Memory;
 import net.yacy.crawler.CrawlSwitchboard;
+import net.yacy.crawler.URLSeenFilter;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.io.ByteCount;
@@ -91,10 +93,13 @@ public class status_p {
         prop.putNum("citationSegmentCount", segment.citationSegmentCount());
         prop.putNum("rwipublictextSize", segment.RWICount());
         prop.putNum("rwipublictextSegmentCount", segment.RWISegmentCount());
+        prop.put("rwipublictextProbesPerLookup", String.format(Locale.ROOT, "%.2f", segment.RWIProbesPerLookup()));
+        prop.put("rwipublictextFilterFalsePositiveRate", String.format(Locale.ROOT, "%.4f", segment.RWIFilterFalsePositiveRate()));
 
         // loader queue
         prop.putNum("loaderSize", sb.crawlQueues.activeWorkerEntries().size());
-        prop.putNum("loaderMax", sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 10));
+        prop.putNum("loaderMax", sb.crawlQueues.loaderMax());
+        prop.put("loaderPPS", String.format(Locale.ROOT, "%.1f", sb.crawlQueues.loadedPagesPerSecond()));
 
         //local crawl queue
         prop.putNum("localCrawlSize", sb.getThread(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL).getJobCount());
@@ -112,6 +117,13 @@ public class status_p {
         prop.putNum("noloadCrawlSize", sb.crawlQueues.noloadCrawlJobSize());
         prop.put("noloadCrawlState", STATE_RUNNING);
 
+        // url-seen filter of the crawl stacker
+        final URLSeenFilter urlSeen = sb.crawlStacker == null ? null : sb.crawlStacker.urlSeenFilter();
+        prop.putNum("urlSeenFilterSize", urlSeen == null ? 0 : urlSeen.size());
+        prop.putNum("urlSeenFilterLookups", urlSeen == null ? 0 : urlSeen.lookups());
+        prop.put("urlSeenFilterHitRate", String.format(Locale.ROOT, "%.4f", urlSeen == null ? 0.0d : urlSeen.hitRate()));
+        prop.put("urlSeenFilterFalsePositiveRate", String.format(Locale.ROOT, "%.6f", urlSeen == null ? 0.0d : urlSeen.expectedFpp()));
+
         // generate crawl profile table
         int count = 0;
         final int domlistlength = (post == null) ? 160 : post.getInt("domlistlength", 160);
@@ -170,6 +170,7 @@ function handleStatus(){
 	var loaderqueue_max = getValue(getFirstChild(loaderqueue, "max"));
 	document.getElementById("loaderqueuesize").firstChild.nodeValue=loaderqueue_size;
 	document.getElementById("loaderqueuemax").firstChild.nodeValue=loaderqueue_max;
+	document.getElementById("loaderpps").firstChild.nodeValue=getValue(getFirstChild(loaderqueue, "pps"));
 	
 	var localcrawlerqueue = getFirstChild(statusTag, "localcrawlerqueue");
 	var localcrawlerqueue_size = getValue(getFirstChild(localcrawlerqueue, "size"));
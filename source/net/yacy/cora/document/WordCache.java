@@ -330,6 +330,20 @@ public class WordCache {
         return commonWords.size();
     }
     
+    /**
+     * a copy of the learned common words
+     * @return the common words in lower case
+     */
+    public static Set<String> getCommonWords() {
+        final Set<String> words = new HashSet<String>();
+        try {
+            for (final StringBuilder sb: commonWords) words.add(sb.toString().toLowerCase());
+        } catch (final ConcurrentModificationException e) {
+            // return what we have so far
+        }
+        return words;
+    }
+
     public static void clearCommonWords() {
         commonWords.clear();
     }
@@ -75,6 +75,7 @@ public abstract class AbstractSolrConnector implements SolrConnector {
     public final static String CATCHALL_TERM = "[* TO *]";
     public final static String CATCHALL_DTERM = ":" + CATCHALL_TERM;
     public final static String CATCHALL_QUERY = "*:*";
+    private final static int MAX_IDS_PER_QUERY = 1000; // the default maxBooleanClauses of Solr is 1024
     public final static SolrQuery catchallQuery = new SolrQuery();
     static {
         catchallQuery.setQuery(CATCHALL_QUERY);
@@ -495,7 +496,53 @@ public abstract class AbstractSolrConnector implements SolrConnector {
         LoadTimeURL md = getLoadTimeURL(doc);
         return md;
     }
-    
+
+    @Override
+    public Map<String, LoadTimeURL> getLoadTimeURLs(final Collection<String> ids) throws IOException {
+        final Map<String, LoadTimeURL> result = new HashMap<String, LoadTimeURL>();
+        if (ids.isEmpty()) return result;
+        // one boolean query for each chunk of ids
+        final List<String> chunk = new ArrayList<String>(Math.min(ids.size(), MAX_IDS_PER_QUERY));
+        for (final String id: ids) {
+            chunk.add(id);
+            if (chunk.size() >= MAX_IDS_PER_QUERY) {
+                getLoadTimeURLs(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) getLoadTimeURLs(chunk, result);
+        return result;
+    }
+
+    private void getLoadTimeURLs(final List<String> ids, final Map<String, LoadTimeURL> result) throws IOException {
+        // construct a raw query: id:("a" OR "b" ...)
+        final StringBuilder q = new StringBuilder(ids.size() * (Word.commonHashLength + 6) + 40);
+        q.append("{!cache=false}").append(CollectionSchema.id.getSolrFieldName()).append(":(");
+        boolean first = true;
+        for (final String id: ids) {
+            if (!first) q.append(" OR ");
+            q.append('"').append(id).append('"');
+            first = false;
+        }
+        q.append(')');
+        final SolrQuery params = new SolrQuery();
+        params.setQuery(q.toString());
+        params.setRows(ids.size());
+        params.setStart(0);
+        params.setFacet(false);
+        params.clearSorts();
+        params.setFields(CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
+        params.setIncludeScore(false);
+
+        // query the server
+        final SolrDocumentList sdl = getDocumentListByParams(params);
+        if (sdl == null) return;
+        for (final SolrDocument doc: sdl) {
+            final LoadTimeURL md = getLoadTimeURL(doc);
+            if (md != null) result.put((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()), md);
+        }
+    }
+
     /**
      * get the number of results when this query is done.
      * This should only be called if the actual result is never used, and only the count is interesting
@@ -22,6 +22,7 @@ package net.yacy.cora.federate.solr.connector;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -424,6 +425,20 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
         return new LoadTimeURL(md0.url, date);
     }
 
+    @Override
+    public Map<String, LoadTimeURL> getLoadTimeURLs(final Collection<String> ids) throws IOException {
+        if (this.solr0 != null && this.solr1 == null) return this.solr0.getLoadTimeURLs(ids);
+        if (this.solr0 == null && this.solr1 != null) return this.solr1.getLoadTimeURLs(ids);
+        if (this.solr0 == null && this.solr1 == null) return new HashMap<String, LoadTimeURL>();
+        final Map<String, LoadTimeURL> md0 = this.solr0.getLoadTimeURLs(ids);
+        final Map<String, LoadTimeURL> md1 = this.solr1.getLoadTimeURLs(ids);
+        for (final Map.Entry<String, LoadTimeURL> e: md1.entrySet()) {
+            final LoadTimeURL m = md0.get(e.getKey());
+            if (m == null || m.date < e.getValue().date) md0.put(e.getKey(), e.getValue());
+        }
+        return md0;
+    }
+
     @Override
     public BlockingQueue<String> concurrentIDsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
         if (this.solr0 != null && this.solr1 == null) return this.solr0.concurrentIDsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency);
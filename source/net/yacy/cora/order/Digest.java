@@ -41,7 +41,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.storage.TinyLFUCache;
 import net.yacy.cora.util.Memory;
 
 public class Digest {
@@ -51,10 +51,17 @@ public class Digest {
     private static final int md5CacheSize = Math.max(1000, Math.min(1000000, (int) (Memory.available() / 50000L)));
     private static ARC<String, byte[]> md5Cache = null;
     static {
+        initCache();
+    }
+
+    /**
+     * create the md5 cache; this is done again if the cache implementation is changed
+     */
+    public static void initCache() {
         try {
-            md5Cache = new ConcurrentARC<String, byte[]>(md5CacheSize, Math.max(8, 2 * Runtime.getRuntime().availableProcessors()));
+            md5Cache = TinyLFUCache.newCache(md5CacheSize, Math.max(8, 2 * Runtime.getRuntime().availableProcessors()), md5CacheSize * 256L);
         } catch (final OutOfMemoryError e) {
-            md5Cache = new ConcurrentARC<String, byte[]>(1000, Math.max(2, Runtime.getRuntime().availableProcessors()));
+            md5Cache = TinyLFUCache.newCache(1000, Math.max(2, Runtime.getRuntime().availableProcessors()), 1000 * 256L);
         }
     }
 
@@ -59,8 +59,8 @@ import net.yacy.cora.protocol.tld.GenericTLD;
 import net.yacy.cora.protocol.tld.InternationalizedCountryCodeTLD;
 import net.yacy.cora.protocol.tld.SponsoredTLD;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.KeyList;
+import net.yacy.cora.storage.TinyLFUCache;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.util.MemoryControl;
@@ -93,9 +93,9 @@ public class Domains {
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
-    // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    // a dns cache; the caches are volatile because initCaches() replaces them
+    private static volatile ARC<String, InetAddress> NAME_CACHE_HIT = TinyLFUCache.newCache(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL, MAX_NAME_CACHE_HIT_SIZE * 256L);
+    private static volatile ARC<String, String> NAME_CACHE_MISS = TinyLFUCache.newCache(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL, MAX_NAME_CACHE_MISS_SIZE * 192L);
     private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
@@ -746,6 +746,14 @@ public class Domains {
         }
     }
 
+    /**
+     * create the dns caches; this is done again if the cache implementation is changed
+     */
+    public static void initCaches() {
+        NAME_CACHE_HIT = TinyLFUCache.newCache(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL, MAX_NAME_CACHE_HIT_SIZE * 256L);
+        NAME_CACHE_MISS = TinyLFUCache.newCache(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL, MAX_NAME_CACHE_MISS_SIZE * 192L);
+    }
+
     /**
      * the isLocal check can be switched off to gain a better crawling speed.
      * however, if the check is switched off, then ALL urls are considered as local
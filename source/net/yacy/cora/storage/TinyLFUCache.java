@@ -0,0 +1,552 @@
+/**
+ *  TinyLFUCache
+ *  a size-bounded cache with a segmented LRU and a TinyLFU admission filter
+ *  First released 17.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.storage;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache which is bounded by the weight of its entries, i.e. their estimated size in bytes, and not by their number.
+ * New entries are stored in a small window (1% of the weight) which is ordered by the last access. Entries which
+ * leave the window enter the main space, which is a segmented LRU: a probation segment for entries which were not
+ * accessed in the main space and a protected segment (80% of the main space) for entries which were accessed again.
+ * If the main space is full, an entry from the window is only admitted if it was accessed more often than the entry
+ * which would be evicted for it (TinyLFU). The access frequencies are estimated with a count-min sketch which
+ * forgets old accesses, so also entries which are not in the cache have a history.
+ * For details see https://arxiv.org/abs/1512.00727
+ *
+ * Reads do not block: the entries are in a ConcurrentHashMap and the order of the segments is only updated if
+ * no other thread is writing; otherwise the access is only counted. The keys must implement hashCode() and
+ * equals(), byte[] keys are not supported.
+ */
+public final class TinyLFUCache<K, V> extends AbstractMap<K, V> implements Map<K, V>, Iterable<Map.Entry<K, V>>, ARC<K, V> {
+
+    /**
+     * if true, the caches which are created with newCache() are TinyLFU caches, otherwise they are ConcurrentARC caches
+     */
+    public static boolean enabled = false;
+
+    /**
+     * create a cache which is a TinyLFUCache if enabled is true and a ConcurrentARC otherwise
+     * @param cacheSize the number of entries of a ConcurrentARC
+     * @param partitions the number of partitions of a ConcurrentARC
+     * @param maxWeight the estimated size of all entries in bytes of a TinyLFUCache
+     * @return the cache
+     */
+    public static <K, V> ARC<K, V> newCache(final int cacheSize, final int partitions, final long maxWeight) {
+        if (enabled) return new TinyLFUCache<K, V>(maxWeight);
+        return new ConcurrentARC<K, V>(cacheSize, partitions);
+    }
+
+    public interface Weigher<K, V> {
+        /**
+         * @return the estimated size of an entry in bytes
+         */
+        public int weigh(K key, V value);
+    }
+
+    /**
+     * estimate the size of an entry from the sizes of strings and arrays
+     */
+    public static final Weigher<Object, Object> defaultWeigher = new Weigher<Object, Object>() {
+        @Override
+        public int weigh(final Object key, final Object value) {
+            return 64 + size(key) + size(value); // 64 bytes for the node and the entry of the map
+        }
+    };
+
+    private static int size(final Object o) {
+        if (o instanceof String) return 40 + 2 * ((String) o).length();
+        if (o instanceof byte[]) return 16 + ((byte[]) o).length;
+        if (o instanceof CharSequence) return 40 + 2 * ((CharSequence) o).length();
+        if (o instanceof char[]) return 16 + 2 * ((char[]) o).length;
+        if (o instanceof long[]) return 16 + 8 * ((long[]) o).length;
+        if (o instanceof int[]) return 16 + 4 * ((int[]) o).length;
+        return 32;
+    }
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private int weight;
+        private int segment;
+        private boolean live;
+        private Node<K, V> prev, next;
+
+        private Node(final K key, final V value, final int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.live = true;
+            this.prev = this;
+            this.next = this;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final ReentrantLock lock; // guards the segments and their weights
+    private final Weigher<? super K, ? super V> weigher;
+    private final FrequencySketch sketch;
+    private final long maxWeight, windowMax, protectedMax;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Node<K, V>[] segments = new Node[3]; // the head of each segment, the first node is the most recently used
+    private final long[] weights = new long[3];
+    private final LongAdder hits, misses, evictions, rejections;
+
+    /**
+     * create a cache which estimates the size of the entries with the default weigher
+     * @param maxWeight the maximum size of all entries in bytes
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLFUCache(final long maxWeight) {
+        this(maxWeight, (Weigher<? super K, ? super V>) defaultWeigher);
+    }
+
+    /**
+     * @param maxWeight the maximum weight of all entries
+     * @param weigher the weight of an entry
+     */
+    public TinyLFUCache(final long maxWeight, final Weigher<? super K, ? super V> weigher) {
+        this.maxWeight = Math.max(1, maxWeight);
+        this.windowMax = Math.max(1, this.maxWeight / 100);
+        this.protectedMax = (this.maxWeight - this.windowMax) * 8 / 10;
+        this.weigher = weigher;
+        this.map = new ConcurrentHashMap<K, Node<K, V>>();
+        this.lock = new ReentrantLock();
+        this.sketch = new FrequencySketch(this.maxWeight / 256);
+        for (int i = 0; i < this.segments.length; i++) this.segments[i] = new Node<K, V>(null, null, 0);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.rejections = new LongAdder();
+    }
+
+    private static int spread(final Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void addFirst(final int segment, final Node<K, V> n) {
+        final Node<K, V> head = this.segments[segment];
+        n.segment = segment;
+        n.prev = head;
+        n.next = head.next;
+        head.next.prev = n;
+        head.next = n;
+        this.weights[segment] += n.weight;
+    }
+
+    private void unlink(final Node<K, V> n) {
+        n.prev.next = n.next;
+        n.next.prev = n.prev;
+        n.prev = n;
+        n.next = n;
+        this.weights[n.segment] -= n.weight;
+    }
+
+    /**
+     * @return the least recently used node of a segment or null if the segment is empty
+     */
+    private Node<K, V> last(final int segment) {
+        final Node<K, V> head = this.segments[segment];
+        return head.prev == head ? null : head.prev;
+    }
+
+    /**
+     * update the order of the segments after an access of a node
+     */
+    private void onAccess(final Node<K, V> n) {
+        if (n.segment == PROBATION) {
+            unlink(n);
+            addFirst(PROTECTED, n);
+            // demote the least recently used protected nodes
+            Node<K, V> p;
+            while (this.weights[PROTECTED] > this.protectedMax && (p = last(PROTECTED)) != null && p != n) {
+                unlink(p);
+                addFirst(PROBATION, p);
+            }
+        } else {
+            final int segment = n.segment;
+            unlink(n);
+            addFirst(segment, n);
+        }
+    }
+
+    private void evict(final Node<K, V> n) {
+        unlink(n);
+        n.live = false;
+        this.map.remove(n.key, n);
+        this.evictions.increment();
+    }
+
+    /**
+     * move nodes from the window to the main space and evict nodes until the cache fits into its weight
+     */
+    private void evict() {
+        final long mainMax = this.maxWeight - this.windowMax;
+        Node<K, V> candidate;
+        while (this.weights[WINDOW] > this.windowMax && (candidate = last(WINDOW)) != null) {
+            unlink(candidate);
+            addFirst(PROBATION, candidate);
+            // the candidate competes with the victims of the main space
+            while (this.weights[PROBATION] + this.weights[PROTECTED] > mainMax) {
+                Node<K, V> victim = last(PROBATION);
+                if (victim == null) victim = last(PROTECTED);
+                if (victim == null || victim == candidate) {
+                    evict(candidate);
+                    break;
+                }
+                if (this.sketch.frequency(spread(candidate.key)) > this.sketch.frequency(spread(victim.key))) {
+                    evict(victim);
+                } else {
+                    evict(candidate);
+                    this.rejections.increment();
+                    break;
+                }
+            }
+        }
+        // an update may have increased the weight of a node
+        while (weight0() > this.maxWeight) {
+            Node<K, V> victim = last(PROBATION);
+            if (victim == null) victim = last(PROTECTED);
+            if (victim == null) victim = last(WINDOW);
+            if (victim == null) break;
+            evict(victim);
+        }
+    }
+
+    private long weight0() {
+        return this.weights[WINDOW] + this.weights[PROBATION] + this.weights[PROTECTED];
+    }
+
+    /**
+     * get a value from the cache.
+     * @param s
+     * @return the value
+     */
+    @Override
+    public final V get(final Object s) {
+        this.sketch.increment(spread(s));
+        final Node<K, V> n = this.map.get(s);
+        if (n == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        if (this.lock.tryLock()) try {
+            if (n.live) onAccess(n);
+        } finally {
+            this.lock.unlock();
+        }
+        return n.value;
+    }
+
+    /**
+     * put a value to the cache.
+     * @param s
+     * @param v
+     * @return the previous value
+     */
+    @Override
+    public final V put(final K s, final V v) {
+        return put(s, v, false);
+    }
+
+    /**
+     * put a value to the cache if there was not an entry before
+     * return a previous content value
+     * @param s
+     * @param v
+     * @return the value before inserting the new value
+     */
+    @Override
+    public final V putIfAbsent(final K s, final V v) {
+        return put(s, v, true);
+    }
+
+    @Override
+    public final void insert(final K s, final V v) {
+        put(s, v, false);
+    }
+
+    @Override
+    public final void insertIfAbsent(final K s, final V v) {
+        put(s, v, true);
+    }
+
+    private V put(final K s, final V v, final boolean onlyIfAbsent) {
+        final int w = this.weigher.weigh(s, v);
+        this.sketch.increment(spread(s));
+        this.lock.lock();
+        try {
+            Node<K, V> n = this.map.get(s);
+            if (n != null) {
+                final V old = n.value;
+                if (onlyIfAbsent) return old;
+                n.value = v;
+                this.weights[n.segment] += w - n.weight;
+                n.weight = w;
+                onAccess(n);
+                evict();
+                return old;
+            }
+            if (w > this.maxWeight) return null; // does not fit
+            n = new Node<K, V>(s, v, w);
+            this.map.put(s, n);
+            addFirst(WINDOW, n);
+            evict();
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * check if the map contains the key
+     * @param s
+     * @return true if the map contains the key
+     */
+    @Override
+    public final boolean containsKey(final Object s) {
+        return this.map.containsKey(s);
+    }
+
+    /**
+     * check if the map contains the value
+     * @param value
+     * @return the keys that have the given value
+     */
+    @Override
+    public Collection<K> getKeys(final V value) {
+        final ArrayList<K> keys = new ArrayList<K>();
+        for (final Node<K, V> n: this.map.values()) {
+            if (value.equals(n.value)) keys.add(n.key);
+        }
+        return keys;
+    }
+
+    /**
+     * remove an entry from the cache
+     * @param s
+     * @return the old value
+     */
+    @Override
+    public final V remove(final Object s) {
+        this.lock.lock();
+        try {
+            final Node<K, V> n = this.map.remove(s);
+            if (n == null) return null;
+            unlink(n);
+            n.live = false;
+            return n.value;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * clear the cache
+     */
+    @Override
+    public final void clear() {
+        this.lock.lock();
+        try {
+            for (final Node<K, V> n: this.map.values()) n.live = false;
+            this.map.clear();
+            for (int i = 0; i < this.segments.length; i++) {
+                final Node<K, V> head = this.segments[i];
+                head.prev = head;
+                head.next = head;
+                this.weights[i] = 0;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * get the number of entries of the cache.
+     * @return the number of entries in the cache
+     */
+    @Override
+    public final int size() {
+        return this.map.size();
+    }
+
+    /**
+     * @return the sum of the weights of all entries
+     */
+    public long weight() {
+        this.lock.lock();
+        try {
+            return weight0();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long maxWeight() {
+        return this.maxWeight;
+    }
+
+    /**
+     * @return the number of get() calls which returned a value
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of get() calls which did not find a value
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of entries which were removed to free space for other entries
+     */
+    public long evictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return the number of new entries which were not admitted into the main space because they were accessed less often than the entries in it
+     */
+    public long rejections() {
+        return this.rejections.sum();
+    }
+
+    public double hitRate() {
+        final long h = hits(), r = h + misses();
+        return r == 0 ? 0.0d : ((double) h) / r;
+    }
+
+    /**
+     * iterator implements the Iterable interface
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return entrySet().iterator();
+    }
+
+    /**
+     * Return a Set view of the mappings contained in this map.
+     * The set is a copy of the entries of the cache.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        final Set<Map.Entry<K, V>> m = new HashSet<Map.Entry<K, V>>();
+        for (final Node<K, V> n: this.map.values()) {
+            final V v = n.value;
+            if (v != null) m.add(new AbstractMap.SimpleImmutableEntry<K, V>(n.key, v));
+        }
+        return m;
+    }
+
+    /**
+     * a hash code for this cache
+     * @return a hash code
+     */
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return "TinyLFUCache: " + size() + " entries, " + weight() + "/" + this.maxWeight + " bytes, hits " + hits() + ", misses " + misses() + ", evictions " + evictions() + ", rejections " + rejections();
+    }
+
+    /**
+     * a count-min sketch with four 4-bit counters for each key. The counters of all keys are halved after
+     * a number of increments, so the frequencies of older accesses decay.
+     * The counters are not updated atomically; concurrent increments may be lost, which only makes the
+     * estimation less precise.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] seeds = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int increments;
+
+        private FrequencySketch(final long expectedEntries) {
+            int length = 64;
+            while (length < expectedEntries && length < (1 << 18)) length <<= 1;
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sampleSize = 10 * 16 * length / 4; // each key uses 4 of the 16 counters of a long
+            this.increments = 0;
+        }
+
+        private long hash(final int h, final int i) {
+            long x = (h + seeds[i]) * seeds[i];
+            x += x >>> 32;
+            return x;
+        }
+
+        private void increment(final int h) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                final long x = hash(h, i);
+                final int index = (int) (x >>> 32) & this.mask;
+                final int shift = ((int) x & 15) << 2;
+                final long word = this.table[index];
+                if (((word >>> shift) & 15L) < 15L) {
+                    this.table[index] = word + (1L << shift);
+                    added = true;
+                }
+            }
+            if (added && ++this.increments >= this.sampleSize) reset();
+        }
+
+        private int frequency(final int h) {
+            int f = 15;
+            for (int i = 0; i < 4; i++) {
+                final long x = hash(h, i);
+                final int index = (int) (x >>> 32) & this.mask;
+                final int shift = ((int) x & 15) << 2;
+                f = Math.min(f, (int) ((this.table[index] >>> shift) & 15L));
+            }
+            return f;
+        }
+
+        private void reset() {
+            this.increments = 0;
+            for (int i = 0; i < this.table.length; i++) this.table[i] = (this.table[i] >>> 1) & 0x7777777777777777L;
+        }
+    }
+}
@@ -127,10 +127,11 @@ public interface Balancer {
     /**
      * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
-     * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
-     * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
+     * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method either
+     * pauses the necessary time until the url is released and returned as CrawlEntry object, or it returns null
+     * without waiting if the balancer schedules its hosts by their access time. In case that a profile
      * for the computed Entry does not exist, null is returned
-     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * @param delay true if the requester demands that the access delays are respected
      * @param profile
      * @return a url in a CrawlEntry object
      * @throws IOException
@@ -138,6 +139,26 @@ public interface Balancer {
      */
     public Request pop(final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException;
 
+    /**
+     * get the next entry of a host which can be loaded now without waiting: the host has less than maxLoadingPerHost
+     * loads running (as counted by Latency.loading) and the minimum delta time since the last access to the host is over.
+     * This method never waits; it is used by a loader which keeps many loads running at the same time.
+     * @param maxLoadingPerHost the maximum number of running loads for a single host
+     * @param cs
+     * @param robots
+     * @return a url in a CrawlEntry object or null if no host is ready at this time
+     * @throws IOException
+     */
+    public Request popReady(final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException;
+
+    /**
+     * guess the time until a host of this queue may be accessed. A crawl job can use this to decide if it waits
+     * for the next host or if it can idle.
+     * @return the time in milliseconds, 0 if a host may be accessed now or if pop waits for the hosts itself,
+     *   Long.MAX_VALUE if no host is scheduled
+     */
+    public long readyIn();
+
     /**
      * iterate through all requests in the queue
      * @return
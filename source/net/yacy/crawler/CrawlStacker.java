@@ -27,12 +27,20 @@ package net.yacy.crawler;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.contentcontrol.ContentControlFilterUpdateThread;
@@ -54,6 +62,7 @@ import net.yacy.crawler.data.NoticedURL;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.document.TextParser;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.kelondro.workflow.WorkflowTask;
 import net.yacy.peers.SeedDB;
@@ -80,6 +89,12 @@ public final class CrawlStacker implements WorkflowTask<Request>{
     private final SeedDB            peers;
     private final boolean           acceptLocalURLs, acceptGlobalURLs;
     private final FilterEngine      domainList;
+    private final URLSeenFilter     urlSeen;
+    private final ThreadPoolExecutor batchExecutor; // stacks the links of a document as one batch
+    private final AtomicInteger     batchEntries; // the number of entries in batches and crawl starts which are not stacked yet
+
+    private static final int BATCH_QUEUE_SIZE = 100; // the number of batches which may wait for a thread of the batch executor
+    private static final int BATCH_LOOKUP_SIZE = 500; // the maximum number of urls in one index lookup of a batch
 
     // this is the process that checks url for double-occurrences and for allowance/disallowance by robots.txt
 
@@ -91,7 +106,8 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             final SeedDB peers,
             final boolean acceptLocalURLs,
             final boolean acceptGlobalURLs,
-            final FilterEngine domainList) {
+            final FilterEngine domainList,
+            final URLSeenFilter urlSeen) {
         this.robots = robots;
         this.nextQueue = cq;
         this.crawler = cs;
@@ -100,35 +116,82 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         this.acceptLocalURLs = acceptLocalURLs;
         this.acceptGlobalURLs = acceptGlobalURLs;
         this.domainList = domainList;
+        this.urlSeen = urlSeen;
         this.requestQueue = new WorkflowProcessor<Request>("CrawlStacker", "This process checks new urls before they are enqueued into the balancer (proper, double-check, correct domain, filter)", new String[]{"Balancer"}, this, 10000, null, WorkflowProcessor.availableCPU);
+        // if all threads are busy and the queue is full, the caller stacks the batch itself: this slows down the parser instead of piling up batches
+        this.batchEntries = new AtomicInteger(0);
+        this.batchExecutor = new ThreadPoolExecutor(
+                WorkflowProcessor.availableCPU,
+                WorkflowProcessor.availableCPU, 1000,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(BATCH_QUEUE_SIZE),
+                new NamePrefixThreadFactory("CrawlStacker.batch"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchExecutor.allowCoreThreadTimeOut(true);
         CrawlStacker.log.info("STACKCRAWL thread initialized.");
     }
 
     public int size() {
-        return this.requestQueue.getQueueSize();
+        return this.requestQueue.getQueueSize() + this.batchEntries.get();
     }
     
     public boolean isEmpty() {
         if (!this.requestQueue.queueIsEmpty()) return false;
+        if (this.batchEntries.get() > 0) return false;
         return true;
     }
 
     public void clear() {
         this.requestQueue.clear();
+        final List<Runnable> waiting = new ArrayList<Runnable>();
+        this.batchExecutor.getQueue().drainTo(waiting);
+        for (final Runnable r: waiting) {
+            if (r instanceof BatchTask) this.batchEntries.addAndGet(-((BatchTask) r).entries.size());
+        }
     }
 
     public void announceClose() {
         CrawlStacker.log.info("Flushing remaining " + size() + " crawl stacker job entries.");
+        this.batchExecutor.shutdown();
         this.requestQueue.shutdown();
     }
 
     public synchronized void close() {
         CrawlStacker.log.info("Shutdown. waiting for remaining " + size() + " crawl stacker job entries. please wait.");
+        this.batchExecutor.shutdown();
+        try {
+            this.batchExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {}
         this.requestQueue.shutdown();
 
         CrawlStacker.log.info("Shutdown. Closing stackCrawl queue.");
 
         clear();
+        if (this.urlSeen != null) this.urlSeen.close();
+    }
+
+    /**
+     * @return the filter of the urls which have been stacked before or null if the filter is switched off
+     */
+    public URLSeenFilter urlSeenFilter() {
+        return this.urlSeen;
+    }
+
+    /**
+     * the key of an url in the url-seen filter: an url is only seen again within the same crawl, so a new crawl
+     * start may stack the url again
+     * @param profile
+     * @param urlhash
+     * @return the key or null if the url is not checked with the filter
+     */
+    private byte[] urlSeenKey(final CrawlProfile profile, final byte[] urlhash) {
+        // the default profiles are used for all proxy, remote and snippet loads; their urls may be loaded again
+        if (this.urlSeen == null || CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) return null;
+        final byte[] handle = UTF8.getBytes(profile.handle());
+        final byte[] key = new byte[handle.length + urlhash.length];
+        System.arraycopy(handle, 0, key, 0, handle.length);
+        System.arraycopy(urlhash, 0, key, handle.length, urlhash.length);
+        return key;
     }
 
     @Override
@@ -157,18 +220,73 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         if (CrawlStacker.log.isFinest()) CrawlStacker.log.finest("ENQUEUE " + entry.url() + ", referer=" + entry.referrerhash() + ", initiator=" + ((entry.initiator() == null) ? "" : ASCII.String(entry.initiator())) + ", name=" + entry.name() + ", appdate=" + entry.appdate() + ", depth=" + entry.depth());
         this.requestQueue.enQueue(entry);
     }
-    
+
+    /**
+     * Enqueue the entries of a batch, i.e. the links of a document. The batch is stacked as one unit
+     * by a thread of the batch executor, see {@link #stackBatch(List)}.
+     * @param entries the entries to stack
+     */
+    public void enqueueBatch(final List<Request> entries) {
+        if (entries.isEmpty()) return;
+        this.batchEntries.addAndGet(entries.size());
+        final BatchTask task = new BatchTask(entries);
+        if (this.batchExecutor.isShutdown()) {
+            task.run(); // the executor would discard the batch
+        } else {
+            this.batchExecutor.execute(task);
+        }
+    }
+
+    private final class BatchTask implements Runnable {
+        private final List<Request> entries;
+
+        private BatchTask(final List<Request> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public void run() {
+            try {
+                stackBatch(this.entries);
+            } catch (final Throwable e) {
+                // the batches run in the parser threads if the queue is full; no error must terminate them
+                CrawlStacker.log.warn("Error while processing a stackCrawl batch of " + this.entries.size() + " entries: " + e.toString(), e);
+            } finally {
+                CrawlStacker.this.batchEntries.addAndGet(-this.entries.size());
+            }
+        }
+    }
+
+    /**
+     * Enqueue crawl start entries in a new thread. The start urls are counted by size() until they are
+     * stacked; they do not wait in the batch executor, so a crawl start is never run by the calling
+     * servlet because the batch queue is full. After announceClose() the entries are stacked by the caller.
+     */
     public void enqueueEntriesAsynchronous(
             final byte[] initiator,
             final String profileHandle,
             final List<AnchorURL> hyperlinks,
             final int timezoneOffset) {
-        new Thread("enqueueEntriesAsynchronous") {
+        this.batchEntries.addAndGet(hyperlinks.size());
+        final Runnable task = new Runnable() {
             @Override
             public void run() {
-                enqueueEntries(initiator, profileHandle, hyperlinks, true, timezoneOffset);
+                try {
+                    enqueueEntries(initiator, profileHandle, hyperlinks, true, timezoneOffset);
+                } catch (final IllegalCrawlProfileException e) {
+                    // the crawl was terminated, the remaining entries are not stacked
+                } catch (final Throwable e) {
+                    CrawlStacker.log.warn("Error while stacking " + hyperlinks.size() + " crawl start entries: " + e.toString(), e);
+                } finally {
+                    CrawlStacker.this.batchEntries.addAndGet(-hyperlinks.size());
+                }
             }
-        }.start();
+        };
+        if (this.batchExecutor.isShutdown()) {
+            task.run(); // like in enqueueBatch, the entries are not lost during a shutdown
+        } else {
+            new Thread(task, "enqueueEntriesAsynchronous").start();
+        }
     }
     
     /**
@@ -209,6 +327,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             }
             this.nextQueue.errorURL.removeHosts(hosthashes);
         }
+        final List<Request> batch = new ArrayList<Request>(hyperlinks.size());
         for (final AnchorURL url: hyperlinks) {
             if (url == null) continue;
 
@@ -235,7 +354,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
                 enqueueEntriesFTP(initiator, profile, url, replace, timezoneOffset);
             } else {
                 // put entry on crawl stack
-                enqueueEntry(new Request(
+                batch.add(new Request(
                         initiator,
                         url,
                         null,
@@ -247,6 +366,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
                         ));
             }
         }
+        enqueueBatch(batch);
     }
     
     /**
@@ -350,11 +470,191 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             return error;
         }
 
+        // urls which have been stacked before with this profile are rejected without the lookups of the following checks
+        final byte[] seenKey = urlSeenKey(profile, entry.url().hash());
+        if (seenKey != null && this.urlSeen.mightContain(seenKey)) {
+            return CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": url-seen filter";
+        }
+
         error = checkAcceptanceChangeable(entry.url(), profile, entry.depth());
         if (error != null) return error;
         error = checkAcceptanceInitially(entry.url(), profile);
         if (error != null) return error;
 
+        return push(entry, profile, seenKey);
+    }
+
+    /**
+     * the checks and queue operations which are used to stack a batch. They are separated from the
+     * batch algorithm in {@link CrawlStacker#stackBatch(List, BatchChecks)} to test it without the crawl queues and the index.
+     */
+    interface BatchChecks {
+        /** @return the profile or null if the profile is not active */
+        public CrawlProfile profile(String handle);
+        /** @return the key of the url in the url-seen filter or null if the url is not checked with the filter */
+        public byte[] seenKey(CrawlProfile profile, byte[] urlhash);
+        public boolean seen(byte[] seenKey);
+        /** the checks which do not need the index: the changeable attributes and the crawl queues */
+        public String checkQueues(Request entry, CrawlProfile profile);
+        /** one lookup of the load times of many urls in the index */
+        public Map<String, LoadTimeURL> loadTimes(List<String> ids) throws IOException;
+        /** the check of an url with the result of the lookup of all urls */
+        public String checkIndex(DigestURL url, CrawlProfile profile, LoadTimeURL oldEntry);
+        /** the check of an url with its own index lookup */
+        public String checkIndex(DigestURL url, CrawlProfile profile);
+        public String push(Request entry, CrawlProfile profile, byte[] seenKey);
+        /** store a rejected url into the error URL db */
+        public void reject(Request entry, CrawlProfile profile, String reason);
+    }
+
+    private final BatchChecks batchChecks = new BatchChecks() {
+        @Override
+        public CrawlProfile profile(final String handle) {
+            return CrawlStacker.this.crawler.get(UTF8.getBytes(handle));
+        }
+        @Override
+        public byte[] seenKey(final CrawlProfile profile, final byte[] urlhash) {
+            return urlSeenKey(profile, urlhash);
+        }
+        @Override
+        public boolean seen(final byte[] seenKey) {
+            return CrawlStacker.this.urlSeen.mightContain(seenKey);
+        }
+        @Override
+        public String checkQueues(final Request entry, final CrawlProfile profile) {
+            final String error = checkAcceptanceChangeable(entry.url(), profile, entry.depth());
+            if (error != null) return error;
+            final HarvestProcess dbocc = CrawlStacker.this.nextQueue.exists(entry.url().hash());
+            return dbocc == null ? null : CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": " + dbocc.name();
+        }
+        @Override
+        public Map<String, LoadTimeURL> loadTimes(final List<String> ids) throws IOException {
+            return CrawlStacker.this.indexSegment.fulltext().getDefaultConnector().getLoadTimeURLs(ids);
+        }
+        @Override
+        public String checkIndex(final DigestURL url, final CrawlProfile profile, final LoadTimeURL oldEntry) {
+            return checkAcceptanceInitially(url, profile, oldEntry);
+        }
+        @Override
+        public String checkIndex(final DigestURL url, final CrawlProfile profile) {
+            return checkAcceptanceInitially(url, profile);
+        }
+        @Override
+        public String push(final Request entry, final CrawlProfile profile, final byte[] seenKey) {
+            return CrawlStacker.this.push(entry, profile, seenKey);
+        }
+        @Override
+        public void reject(final Request entry, final CrawlProfile profile, final String reason) {
+            CrawlStacker.this.nextQueue.errorURL.push(entry.url(), entry.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, reason, -1);
+        }
+    };
+
+    /**
+     * stacks a batch of crawl items as one unit: the checks which do not need the index are done for each item,
+     * the double-check in the index is done with one lookup for all items of the batch and the accepted items are
+     * pushed to the balancer grouped by host. Rejected items are stored into the error URL db like in {@link #process(Request)}.
+     * @param entries the crawl items, i.e. the links of a document
+     */
+    public void stackBatch(final List<Request> entries) {
+        stackBatch(entries, this.batchChecks);
+    }
+
+    static void stackBatch(final List<Request> entries, final BatchChecks checks) {
+        final Map<String, CrawlProfile> profiles = new HashMap<String, CrawlProfile>();
+        final Set<String> stacked = new HashSet<String>();
+        for (int i = 0; i < entries.size(); i += BATCH_LOOKUP_SIZE) {
+            stackBatch(entries.subList(i, Math.min(entries.size(), i + BATCH_LOOKUP_SIZE)), checks, profiles, stacked);
+        }
+    }
+
+    private static void stackBatch(final List<Request> entries, final BatchChecks checks, final Map<String, CrawlProfile> profiles, final Set<String> stacked) {
+        final int n = entries.size();
+
+        // compute the hashes of all urls at once; they are used for the filter, the queues and the index lookup
+        final byte[][] hashes = new byte[n][];
+        final String[] ids = new String[n];
+        final String[] hosthashes = new String[n];
+        for (int i = 0; i < n; i++) {
+            final DigestURL url = entries.get(i).url();
+            hashes[i] = url.hash();
+            ids[i] = ASCII.String(hashes[i]);
+            hosthashes[i] = url.hosthash();
+        }
+
+        // the checks which do not need the index
+        final CrawlProfile[] profile = new CrawlProfile[n];
+        final byte[][] seenKeys = new byte[n][];
+        final String[] error = new String[n];
+        final List<String> lookup = new ArrayList<String>(n);
+        for (int i = 0; i < n; i++) {
+            final Request entry = entries.get(i);
+            final String handle = entry.profileHandle();
+            if (!profiles.containsKey(handle)) {
+                final CrawlProfile p = checks.profile(handle);
+                if (p == null) CrawlStacker.log.info("LOST STACKER PROFILE HANDLE '" + handle + "' for a batch of " + n + " urls"); // this is NOT an error but a normal effect when terminating a crawl queue
+                profiles.put(handle, p);
+            }
+            profile[i] = profiles.get(handle);
+            if (profile[i] == null) {
+                error[i] = "LOST STACKER PROFILE HANDLE '" + handle + "' for URL " + entry.url().toNormalform(true);
+                continue;
+            }
+            if (!stacked.add(ids[i])) {
+                error[i] = CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": batch";
+                continue;
+            }
+            seenKeys[i] = checks.seenKey(profile[i], hashes[i]);
+            if (seenKeys[i] != null && checks.seen(seenKeys[i])) {
+                error[i] = CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": url-seen filter";
+                continue;
+            }
+            error[i] = checks.checkQueues(entry, profile[i]);
+            if (error[i] != null) continue;
+            lookup.add(ids[i]);
+        }
+
+        // one double-check in the index for all remaining urls
+        Map<String, LoadTimeURL> oldEntries = new HashMap<String, LoadTimeURL>();
+        if (!lookup.isEmpty()) try {
+            oldEntries = checks.loadTimes(lookup);
+        } catch (final IOException | RuntimeException | LinkageError e) {
+            // the urls are checked one by one; checkAcceptanceInitially rejects an url if its check fails
+            CrawlStacker.log.warn("double-test of a batch of " + lookup.size() + " urls failed, the urls are tested one by one: " + e.toString());
+            oldEntries = null;
+        }
+        final List<Integer> accepted = new ArrayList<Integer>(lookup.size());
+        for (int i = 0; i < n; i++) {
+            if (error[i] != null) continue;
+            error[i] = oldEntries == null ? checks.checkIndex(entries.get(i).url(), profile[i]) : checks.checkIndex(entries.get(i).url(), profile[i], oldEntries.get(ids[i]));
+            if (error[i] == null) accepted.add(i);
+        }
+
+        // push the accepted urls grouped by host; the sort is stable and keeps the order of the links of each host
+        Collections.sort(accepted, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                return hosthashes[a].compareTo(hosthashes[b]);
+            }
+        });
+        for (final Integer i: accepted) error[i] = checks.push(entries.get(i), profile[i], seenKeys[i]);
+
+        // if an url was rejected we store it into the error URL db
+        for (int i = 0; i < n; i++) {
+            if (error[i] == null || error[i].startsWith(CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX)) continue;
+            checks.reject(entries.get(i), profile[i], error[i]);
+        }
+    }
+
+    /**
+     * push an accepted crawl item to the stack which is selected by the initiator and the profile
+     * @param entry
+     * @param profile the profile of the entry
+     * @param seenKey the key of the entry in the url-seen filter or null
+     * @return null if successful, a reason string if not successful
+     */
+    private String push(final Request entry, final CrawlProfile profile, final byte[] seenKey) {
+        String error;
+
         // store information
         final boolean local = Base64Order.enhancedCoder.equal(entry.initiator(), UTF8.getBytes(this.peers.mySeed().hash));
         final boolean proxy = (entry.initiator() == null || entry.initiator().length == 0 || ASCII.String(entry.initiator()).equals("------------")) && profile.handle().equals(this.crawler.defaultProxyProfile.handle());
@@ -382,6 +682,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         		if (warning != null && CrawlStacker.log.isFine()) {
         			CrawlStacker.log.fine("CrawlStacker.stackCrawl of URL " + entry.url().toNormalform(true) + " - not pushed to " + NoticedURL.StackType.NOLOAD + " stack : " + warning);
         		}
+        		if (seenKey != null) this.urlSeen.add(seenKey);
         		return null;
         	}
         	
@@ -406,6 +707,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             warning = this.nextQueue.noticeURL.push(NoticedURL.StackType.REMOTE, entry, profile, this.robots);
         }
         if (warning != null && CrawlStacker.log.isFine()) CrawlStacker.log.fine("CrawlStacker.stackCrawl of URL " + entry.url().toNormalform(true) + " - not pushed: " + warning);
+        if (seenKey != null) this.urlSeen.add(seenKey); // also if the url was a double occurrence in the balancer
 
         return null;
     }
@@ -434,6 +736,17 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             ConcurrentLog.logException(e);
             return "exception during double-test: " + e.getMessage();
         }
+        return checkAcceptanceInitially(url, profile, oldEntry);
+    }
+
+    /**
+     * the tests of checkAcceptanceInitially which follow the double-check: the domain counter and the re-crawl date
+     * @param url
+     * @param profile
+     * @param oldEntry the load time of the url in the index or null if the url is not in the index
+     * @return null if the url is accepted, an error string in case if the url is not accepted with an error description
+     */
+    private String checkAcceptanceInitially(final DigestURL url, final CrawlProfile profile, final LoadTimeURL oldEntry) {
 
         // deny urls that exceed allowed number of occurrences
         final int maxAllowedPagesPerDomain = profile.domMaxPages();
@@ -0,0 +1,505 @@
+/**
+ *  FrontierBalancer
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.data.Latency;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.search.Switchboard;
+
+/**
+ * A balancer which stores the crawl queues of all hosts in a single FrontierFile instead of one directory
+ * with one table for each depth for each host as the HostBalancer does. A broad crawl then needs one open file
+ * instead of one file for each host and depth, and the start-up reads that file once instead of scanning
+ * and opening all host directories.
+ * The hosts are scheduled by their next access time in the same way as in the HostBalancer.
+ */
+public class FrontierBalancer implements Balancer {
+
+    private final static ConcurrentLog log = new ConcurrentLog("FrontierBalancer");
+    private final static int MAX_REVALIDATIONS = 100; // the maximum number of re-scheduled hosts in one host selection
+
+    private final File frontierFile;
+    private final int onDemandLimit;
+    private final boolean exceed134217727;
+    private final FrontierFile frontier;
+    private final HostReadyQueue readyQueue; // the hosts of the frontier, ordered by the time when they may be accessed again
+    private final Map<String, Host> hosts;   // host name and port of the host hashes, filled when a host is used
+
+    private static final class Host {
+        private final String name;
+        private final int port;
+        private Host(final DigestURL url) {
+            this.name = url.getHost() == null ? "localhost" : url.getHost();
+            this.port = url.getPort();
+        }
+    }
+
+    /**
+     * Create a new instance and read the frontier file
+     * @param frontierFile the file of the queues; it is created if it does not exist
+     * @param onDemandLimit
+     * @param exceed134217727
+     */
+    public FrontierBalancer(
+            final File frontierFile,
+            final int onDemandLimit,
+            final boolean exceed134217727) {
+        this.frontierFile = frontierFile;
+        this.onDemandLimit = onDemandLimit;
+        this.exceed134217727 = exceed134217727;
+        this.readyQueue = new HostReadyQueue();
+        this.hosts = new ConcurrentHashMap<String, Host>();
+        this.frontier = open(frontierFile);
+        // the hosts have not been accessed since the start-up, all are ready
+        for (final String h: this.frontier.partitions()) this.readyQueue.put(h, 0);
+    }
+
+    private static FrontierFile open(final File frontierFile) {
+        try {
+            return new FrontierFile(frontierFile, Request.rowdef.objectsize, Word.commonHashLength, Base64Order.enhancedCoder);
+        } catch (final IOException e) {
+            // if the frontier cannot be read, that won't get better. Delete it.
+            log.warn("delete frontier due to init error for " + frontierFile.getName() + ": " + e.getLocalizedMessage());
+            FileUtils.deletedelete(frontierFile);
+            try {
+                return new FrontierFile(frontierFile, Request.rowdef.objectsize, Word.commonHashLength, Base64Order.enhancedCoder);
+            } catch (final IOException ee) {
+                throw new RuntimeException("cannot create frontier " + frontierFile.getAbsolutePath(), ee);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (HostBalancer.depthCache != null) {
+            HostBalancer.depthCache.clear();
+        }
+        this.frontier.close();
+        this.readyQueue.clear();
+        this.hosts.clear();
+    }
+
+    @Override
+    public void clear() {
+        if (HostBalancer.depthCache != null) {
+            HostBalancer.depthCache.clear();
+        }
+        synchronized (this) {
+            try {
+                this.frontier.clear();
+            } catch (final IOException e) {
+                log.warn("cannot clear frontier " + this.frontierFile.getName() + ": " + e.getMessage());
+            }
+            this.readyQueue.clear();
+            this.hosts.clear();
+        }
+    }
+
+    @Override
+    public Request get(final byte[] urlhash) throws IOException {
+        final byte[] row = this.frontier.get(urlhash);
+        return row == null ? null : new Request(Request.rowdef.newEntry(row));
+    }
+
+    @Override
+    public int removeAllByProfileHandle(final String profileHandle, final long timeout) throws IOException, SpaceExceededException {
+        // first find a list of url hashes that shall be deleted
+        final long terminate = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        final List<byte[]> urlHashes = new ArrayList<byte[]>();
+        final Iterator<byte[]> i = this.frontier.rows();
+        while (i.hasNext() && (System.currentTimeMillis() < terminate)) {
+            final Request crawlEntry = new Request(Request.rowdef.newEntry(i.next()));
+            if (crawlEntry.profileHandle().equals(profileHandle)) {
+                urlHashes.add(crawlEntry.url().hash());
+            }
+        }
+        int count = 0;
+        for (final byte[] urlhash: urlHashes) {
+            if (this.frontier.remove(urlhash) != null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * delete all urls which are stored for given host hashes
+     * @param hosthashes
+     * @return number of deleted urls
+     */
+    @Override
+    public int removeAllByHostHashes(final Set<String> hosthashes) {
+        int c = 0;
+        for (final String h: hosthashes) {
+            try {
+                c += this.frontier.removePartition(h);
+            } catch (final IOException e) {
+                log.warn("cannot remove host " + h + " from frontier " + this.frontierFile.getName() + ": " + e.getMessage());
+            }
+        }
+        // remove from cache
+        final Iterator<Map.Entry<byte[], Long>> i = HostBalancer.depthCache.iterator();
+        final ArrayList<String> deleteHashes = new ArrayList<String>();
+        while (i.hasNext()) {
+            final String h = ASCII.String(i.next().getKey());
+            if (hosthashes.contains(h.substring(6))) deleteHashes.add(h);
+        }
+        for (final String h: deleteHashes) HostBalancer.depthCache.remove(ASCII.getBytes(h));
+        return c;
+    }
+
+    @Override
+    public int remove(final HandleSet urlHashes) throws IOException {
+        int c = 0;
+        for (final byte[] urlhash: urlHashes) {
+            HostBalancer.depthCache.remove(urlhash);
+            if (this.frontier.remove(urlhash) != null) c++;
+        }
+        return c;
+    }
+
+    /**
+     * @return true when the URL is queued is this or any other balancer instance
+     *         (as {@link HostBalancer#depthCache} is shared between all instances)
+     */
+    @Override
+    public boolean has(final byte[] urlhashb) {
+        if (HostBalancer.depthCache.has(urlhashb)) return true;
+        return this.frontier.has(urlhashb);
+    }
+
+    @Override
+    public int size() {
+        return this.frontier.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.frontier.isEmpty();
+    }
+
+    @Override
+    public int getOnDemandLimit() {
+        return this.onDemandLimit;
+    }
+
+    @Override
+    public boolean getExceed134217727() {
+        return this.exceed134217727;
+    }
+
+    /**
+     * push a request to the queue of its host
+     * @param entry
+     * @param profile
+     * @param robots
+     * @return null if everything is ok or a string with an error message if the push is not allowed according to the crawl profile or robots
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    @Override
+    public String push(final Request entry, final CrawlProfile profile, final RobotsTxt robots) throws IOException, SpaceExceededException {
+        if (this.has(entry.url().hash())) return "double occurrence";
+        HostBalancer.depthCache.put(entry.url().hash(), entry.depth());
+        final String hosthash = entry.url().hosthash();
+        synchronized (this) {
+            final boolean newHost = this.frontier.size(hosthash) == 0;
+            if (!this.frontier.put(hosthash, entry.depth(), entry.toRow().bytes())) return "double occurrence in frontier";
+
+            // increase dom counter
+            if (profile != null) {
+                final int maxPages = profile.domMaxPages();
+                if (maxPages != Integer.MAX_VALUE && maxPages > 0) {
+                    profile.domInc(entry.url().getHost());
+                }
+            }
+            if (newHost) {
+                this.hosts.put(hosthash, new Host(entry.url()));
+                this.readyQueue.put(hosthash, profile == null ? readyTime(hosthash, null, robots, System.currentTimeMillis()) : System.currentTimeMillis() + Latency.getDomainSleepTimeGuessed(robots, profile, entry.url()));
+                // profile might be null when continue crawls after YaCy restart
+                robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
+     * and always above the given minimum delay time. The hosts are scheduled by the time when they may be accessed
+     * again; this method never sleeps: if no host may be accessed now, null is returned.
+     * @param delay true if the access delays of the hosts must be respected; if false, the entry of the host
+     *   with the earliest access time is returned even if that time has not come yet
+     * @return a url in a CrawlEntry object
+     * @throws IOException
+     */
+    @Override
+    public Request pop(final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        while (true) {
+            final String rhh = selectHost(delay, Integer.MAX_VALUE, cs, robots);
+            if (rhh == null) return null;
+            final Request request = popHost(rhh, delay, cs, robots);
+            if (request != null) return request;
+            // the queue had only entries which were rejected; try another host
+        }
+    }
+
+    @Override
+    public Request popReady(final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        while (true) {
+            final String rhh = selectHost(true, maxLoadingPerHost, cs, robots);
+            if (rhh == null) return null;
+            final Request request = popHost(rhh, true, cs, robots);
+            if (request != null) return request;
+        }
+    }
+
+    @Override
+    public synchronized long readyIn() {
+        final long t = this.readyQueue.peekTime();
+        return t == Long.MAX_VALUE ? t : Math.max(0, t - System.currentTimeMillis());
+    }
+
+    /**
+     * take the host with the earliest access time from the schedule, see HostBalancer.selectHost
+     * @param onlyReady if true, a host is only selected if it may be accessed now
+     * @param maxLoadingPerHost hosts with this number of running loads are not selected
+     * @param cs
+     * @param robots
+     * @return the hash of the selected host or null if no host can be selected now
+     */
+    private synchronized String selectHost(final boolean onlyReady, final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) {
+        int revalidations = 0;
+        while (!this.readyQueue.isEmpty()) {
+            final String h = this.readyQueue.peek();
+            if (this.frontier.size(h) == 0) {
+                this.readyQueue.remove(h);
+                this.hosts.remove(h);
+                continue;
+            }
+            if (onlyReady) {
+                final long now = System.currentTimeMillis();
+                if (this.readyQueue.peekTime() > now) return null; // the earliest host is not ready, so no host is ready
+                if (revalidations++ >= MAX_REVALIDATIONS) return null; // try again in the next round
+                final long readyTime = readyTime(h, cs, robots, now);
+                if (readyTime > now) {
+                    this.readyQueue.put(h, readyTime);
+                    continue;
+                }
+                if (Latency.loading(h) >= maxLoadingPerHost) {
+                    this.readyQueue.put(h, now + ClientIdentification.yacyInternetCrawlerAgent.minimumDelta);
+                    continue;
+                }
+            }
+            this.readyQueue.put(h, Long.MAX_VALUE);
+            return h;
+        }
+        return null;
+    }
+
+    /**
+     * take the next acceptable entry of a host which was selected with selectHost and schedule the host again
+     * @param rhh the host hash
+     * @param load true if the entry will be loaded; then the access time of the host is set now
+     * @return the entry or null if the host has no acceptable entry
+     * @throws IOException
+     */
+    private Request popHost(final String rhh, final boolean load, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        Request request = null;
+        try {
+            byte[] row;
+            while ((row = this.frontier.removeFirst(rhh)) != null) {
+                final Request crawlEntry = new Request(Request.rowdef.newEntry(row));
+
+                // check blacklist (again) because the user may have created blacklist entries after the queue has been filled
+                if (Switchboard.urlBlacklist.isListed(BlacklistType.CRAWLER, crawlEntry.url())) {
+                    if (log.isFine()) log.fine("URL '" + crawlEntry.url() + "' is in blacklist.");
+                    continue;
+                }
+
+                // at this point we must check if the crawlEntry has relevance because the crawl profile still exists
+                final CrawlProfile profileEntry = cs.get(UTF8.getBytes(crawlEntry.profileHandle()));
+                if (profileEntry == null) {
+                    if (log.isFine()) log.fine("no profile entry for handle " + crawlEntry.profileHandle());
+                    continue;
+                }
+                Latency.updateAfterSelection(crawlEntry.url(), Latency.getRobotsTime(robots, crawlEntry.url(), profileEntry.getAgent()));
+                request = crawlEntry;
+                break;
+            }
+            // set the access time now, so the host is scheduled after the coming load
+            if (request != null && load) Latency.updateBeforeLoad(request.url());
+        } finally {
+            synchronized (this) {
+                if (this.frontier.size(rhh) == 0) {
+                    this.readyQueue.remove(rhh);
+                    this.hosts.remove(rhh);
+                } else {
+                    this.readyQueue.put(rhh, readyTime(rhh, cs, robots, System.currentTimeMillis()));
+                }
+            }
+        }
+        return request;
+    }
+
+    /**
+     * compute the time when a host may be accessed again, see HostBalancer.readyTime: the time depends on the
+     * crawl profile of the next entry of the host.
+     * @param cs the crawl profiles; if null, the time is guessed with the agent of the internet crawler
+     */
+    private long readyTime(final String hosthash, final CrawlSwitchboard cs, final RobotsTxt robots, final long now) {
+        if (cs != null) try {
+            final byte[] row = this.frontier.first(hosthash);
+            if (row == null) return now;
+            final Request next = new Request(Request.rowdef.newEntry(row));
+            return now + Latency.getDomainSleepTimeGuessed(robots, cs.get(UTF8.getBytes(next.profileHandle())), next.url());
+        } catch (final IOException e) {
+            log.warn("cannot read host " + hosthash + " from frontier " + this.frontierFile.getName() + ": " + e.getMessage());
+        }
+        final Host host = host(hosthash);
+        if (host == null) return now;
+        return now + Latency.waitingRemainingGuessed(host.name, host.port, hosthash, robots, ClientIdentification.yacyInternetCrawlerAgent);
+    }
+
+    /**
+     * get the host name and port of a host hash; if the host is not known yet, they are taken from the first
+     * entry of its queue
+     * @param hosthash
+     * @return the host or null if the host has no entries
+     */
+    private Host host(final String hosthash) {
+        Host host = this.hosts.get(hosthash);
+        if (host != null) return host;
+        try {
+            final byte[] row = this.frontier.first(hosthash);
+            if (row == null) return null;
+            host = new Host(new Request(Request.rowdef.newEntry(row)).url());
+            this.hosts.put(hosthash, host);
+            return host;
+        } catch (final IOException e) {
+            log.warn("cannot read host " + hosthash + " from frontier " + this.frontierFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Iterator<Request> iterator() throws IOException {
+        return requests(this.frontier.rows());
+    }
+
+    private static Iterator<Request> requests(final Iterator<byte[]> rows) {
+        return new Iterator<Request>() {
+            private Request next = null;
+            @Override
+            public boolean hasNext() {
+                // rows which cannot be decoded are skipped
+                while (this.next == null && rows.hasNext()) {
+                    try {
+                        this.next = new Request(Request.rowdef.newEntry(rows.next()));
+                    } catch (final IOException e) {
+                        log.warn("skipped broken frontier row: " + e.getMessage());
+                    }
+                }
+                return this.next != null;
+            }
+            @Override
+            public Request next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                final Request request = this.next;
+                this.next = null;
+                return request;
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * get a list of domains that are currently maintained as domain stacks
+     * @return a map of clear text strings of host names + ports to an integer array: {the size of the domain stack, guessed delta waiting time}
+     */
+    @Override
+    public Map<String, Integer[]> getDomainStackHosts(final RobotsTxt robots) {
+        final Map<String, Integer[]> map = new TreeMap<String, Integer[]>(); // we use a tree map to get a stable ordering
+        for (final String h: this.frontier.partitions()) {
+            final Host host = host(h);
+            if (host == null) continue;
+            final int delta = Latency.waitingRemainingGuessed(host.name, host.port, h, robots, ClientIdentification.yacyInternetCrawlerAgent);
+            map.put(host.name + ":" + host.port, new Integer[]{this.frontier.size(h), delta});
+        }
+        return map;
+    }
+
+    /**
+     * get lists of crawl request entries for a specific host
+     * @param host
+     * @param maxcount
+     * @param maxtime
+     * @return a list of crawl loader requests
+     */
+    @Override
+    public List<Request> getDomainStackReferences(final String host, final int maxcount, final long maxtime) {
+        if (host == null) {
+            return Collections.emptyList();
+        }
+        try {
+            String hosthash = DigestURL.hosthash(host, host.startsWith("ftp.") ? 21 : 80);
+            if (this.frontier.size(hosthash) == 0) hosthash = DigestURL.hosthash(host, 443);
+            final ArrayList<Request> cel = new ArrayList<Request>(Math.min(maxcount, 100));
+            final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
+            final Iterator<Request> i = requests(this.frontier.rows(hosthash));
+            while (i.hasNext()) {
+                final Request r = i.next();
+                if (r != null) cel.add(r);
+                if (System.currentTimeMillis() > timeout || cel.size() >= maxcount) break;
+            }
+            return cel;
+        } catch (final MalformedURLException e) {
+            ConcurrentLog.logException(e);
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -0,0 +1,592 @@
+/**
+ *  FrontierFile
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.HashHandleMap;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A crawl frontier in a single log-structured file. All rows of all hosts are appended to the same file;
+ * a put record holds the partition (the host hash), the crawl depth and the row, a delete record holds the
+ * partition and the key of a removed row. The index of the live rows is kept in RAM: a handle map from the
+ * key to the file offset of the put record, and for each partition the offsets of its rows ordered by depth.
+ * Rows of a partition are returned from the lowest depth first and in the order of their insertion within
+ * a depth.
+ * Removed rows are not deleted from the per-depth offset lists; they are skipped when the offset does not
+ * match the offset of the key in the index any more. When the dead records use more space than the live
+ * records, the file is compacted: the live rows are written to a new file which replaces the old one.
+ * When the file is opened, the index is rebuilt with one sequential read of the file; an incomplete record
+ * at the end of the file, which is left when the process was killed, is cut off.
+ * The key of a row are its first keylength bytes.
+ */
+public final class FrontierFile {
+
+    private final static ConcurrentLog log = new ConcurrentLog("FrontierFile");
+
+    private static final int PUT = 'P';
+    private static final int DEL = 'D';
+    public  static final int partitionLength = 6; // the length of a host hash
+    private static final int writeBufferSize = 64 * 1024;
+    private static final long minCompactGarbage = 16L * 1024L * 1024L;
+
+    private final File file;
+    private final int rowsize, keylength, putsize, delsize;
+    private final ByteOrder order;
+    private RandomAccessFile raf;
+    private long flushed;      // the length of the file; the records behind this offset are in the write buffer
+    private final byte[] writeBuffer;
+    private int writePos;
+    private HandleMap index;   // the key of each live row and the offset of its put record
+    private Map<String, Partition> partitions;
+    private long garbage;      // the number of bytes of dead records
+    private int generation;    // incremented when the offsets change with a compaction or clear
+
+    private static final class Partition {
+        private final TreeMap<Integer, Offsets> depths = new TreeMap<Integer, Offsets>();
+        private int size = 0;
+        private void add(final int depth, final long offset) {
+            Offsets offsets = this.depths.get(depth);
+            if (offsets == null) {
+                offsets = new Offsets();
+                this.depths.put(depth, offsets);
+            }
+            offsets.add(offset);
+        }
+    }
+
+    /**
+     * a fifo of file offsets in a ring buffer
+     */
+    private static final class Offsets {
+        private long[] a = new long[4];
+        private int head = 0, count = 0;
+        private void add(final long offset) {
+            if (this.count == this.a.length) {
+                final long[] b = new long[this.a.length * 2];
+                for (int i = 0; i < this.count; i++) b[i] = this.a[(this.head + i) % this.a.length];
+                this.a = b;
+                this.head = 0;
+            }
+            this.a[(this.head + this.count++) % this.a.length] = offset;
+        }
+        private long poll() {
+            final long offset = this.a[this.head];
+            this.head = (this.head + 1) % this.a.length;
+            this.count--;
+            return offset;
+        }
+        private long peek() {
+            return this.a[this.head];
+        }
+        private long get(final int i) {
+            return this.a[(this.head + i) % this.a.length];
+        }
+    }
+
+    /**
+     * open a frontier file or create an empty one
+     * @param file
+     * @param rowsize the length of each row
+     * @param keylength the length of the key at the beginning of each row
+     * @param order the order of the keys
+     * @throws IOException
+     */
+    public FrontierFile(final File file, final int rowsize, final int keylength, final ByteOrder order) throws IOException {
+        this.file = file;
+        this.rowsize = rowsize;
+        this.keylength = keylength;
+        this.putsize = 1 + partitionLength + 4 + rowsize;
+        this.delsize = 1 + partitionLength + keylength;
+        this.order = order;
+        this.writeBuffer = new byte[Math.max(writeBufferSize, this.putsize)];
+        this.writePos = 0;
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        final long start = System.currentTimeMillis();
+        replay();
+        if (log.isInfo()) log.info("opened frontier " + file.getName() + " with " + this.index.size() + " urls of " + this.partitions.size() + " hosts in " + (System.currentTimeMillis() - start) + " milliseconds");
+        compactIfNeeded();
+    }
+
+    /**
+     * read the file and rebuild the index
+     * @throws IOException
+     */
+    private void replay() throws IOException {
+        this.index = new HashHandleMap(this.keylength, this.order, 6, 1024, "FrontierFile." + this.file.getName());
+        this.partitions = new HashMap<String, Partition>();
+        this.garbage = 0;
+        long pos = 0;
+        if (this.file.exists()) {
+            final long length = this.file.length();
+            final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 1024 * 1024));
+            final byte[] p = new byte[partitionLength];
+            final byte[] row = new byte[this.rowsize];
+            final byte[] key = new byte[this.keylength];
+            try {
+                while (pos < length) {
+                    final int type = is.read();
+                    if (type == PUT && pos + this.putsize <= length) {
+                        is.readFully(p);
+                        final int depth = is.readInt();
+                        is.readFully(row);
+                        final String partition = ASCII.String(p);
+                        Partition part = this.partitions.get(partition);
+                        if (part == null) {
+                            part = new Partition();
+                            this.partitions.put(partition, part);
+                        }
+                        final long old = this.index.put(Arrays.copyOf(row, this.keylength), pos);
+                        if (old >= 0) this.garbage += this.putsize; else part.size++;
+                        part.add(depth, pos);
+                        pos += this.putsize;
+                    } else if (type == DEL && pos + this.delsize <= length) {
+                        is.readFully(p);
+                        is.readFully(key);
+                        if (this.index.remove(key) >= 0) {
+                            final String partition = ASCII.String(p);
+                            final Partition part = this.partitions.get(partition);
+                            if (part != null && --part.size == 0) this.partitions.remove(partition);
+                            this.garbage += this.putsize;
+                        }
+                        this.garbage += this.delsize;
+                        pos += this.delsize;
+                    } else {
+                        break; // an incomplete or broken record
+                    }
+                }
+            } catch (final EOFException e) {
+                // the records up to pos are complete
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                is.close();
+            }
+            if (pos < length) log.warn("frontier " + this.file.getName() + " has a broken record at " + pos + "; cutting off " + (length - pos) + " bytes");
+        }
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.raf.setLength(pos);
+        this.flushed = pos;
+    }
+
+    /**
+     * add a row
+     * @param partition the host hash
+     * @param depth the crawl depth
+     * @param row
+     * @return true if the row was added, false if a row with the same key exists
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public synchronized boolean put(final String partition, final int depth, final byte[] row) throws IOException, SpaceExceededException {
+        assert row.length == this.rowsize;
+        assert partition.length() == partitionLength;
+        final byte[] key = Arrays.copyOf(row, this.keylength);
+        if (this.index.has(key)) return false;
+        if (this.writePos + this.putsize > this.writeBuffer.length) flush();
+        final long offset = this.flushed + this.writePos;
+        this.writeBuffer[this.writePos++] = PUT;
+        for (int i = 0; i < partitionLength; i++) this.writeBuffer[this.writePos++] = (byte) partition.charAt(i);
+        this.writeBuffer[this.writePos++] = (byte) (depth >>> 24);
+        this.writeBuffer[this.writePos++] = (byte) (depth >>> 16);
+        this.writeBuffer[this.writePos++] = (byte) (depth >>> 8);
+        this.writeBuffer[this.writePos++] = (byte) depth;
+        System.arraycopy(row, 0, this.writeBuffer, this.writePos, this.rowsize);
+        this.writePos += this.rowsize;
+        this.index.put(key, offset);
+        Partition part = this.partitions.get(partition);
+        if (part == null) {
+            part = new Partition();
+            this.partitions.put(partition, part);
+        }
+        part.add(depth, offset);
+        part.size++;
+        return true;
+    }
+
+    /**
+     * @param key
+     * @return the row with the given key or null if it does not exist
+     * @throws IOException
+     */
+    public synchronized byte[] get(final byte[] key) throws IOException {
+        final long offset = this.index.get(key);
+        if (offset < 0) return null;
+        return row(readRecord(offset));
+    }
+
+    public synchronized boolean has(final byte[] key) {
+        return this.index.has(key);
+    }
+
+    /**
+     * remove a row
+     * @param key
+     * @return the removed row or null if it did not exist
+     * @throws IOException
+     */
+    public synchronized byte[] remove(final byte[] key) throws IOException {
+        final long offset = this.index.get(key);
+        if (offset < 0) return null;
+        final byte[] record = readRecord(offset);
+        delete(ASCII.String(record, 1, partitionLength), key);
+        compactIfNeeded();
+        return row(record);
+    }
+
+    /**
+     * remove the first row of a partition: the first row of the lowest depth
+     * @param partition
+     * @return the row or null if the partition is empty
+     * @throws IOException
+     */
+    public synchronized byte[] removeFirst(final String partition) throws IOException {
+        final Partition part = this.partitions.get(partition);
+        if (part == null) return null;
+        while (!part.depths.isEmpty()) {
+            final Map.Entry<Integer, Offsets> entry = part.depths.firstEntry();
+            final Offsets offsets = entry.getValue();
+            while (offsets.count > 0) {
+                final long offset = offsets.poll();
+                final byte[] record = readRecord(offset);
+                final byte[] key = key(record);
+                if (this.index.get(key) != offset) continue; // a removed row
+                delete(partition, key);
+                if (offsets.count == 0) part.depths.remove(entry.getKey());
+                compactIfNeeded();
+                return row(record);
+            }
+            part.depths.remove(entry.getKey());
+        }
+        this.partitions.remove(partition);
+        return null;
+    }
+
+    /**
+     * get the first row of a partition without removing it
+     * @param partition
+     * @return the row or null if the partition is empty
+     * @throws IOException
+     */
+    public synchronized byte[] first(final String partition) throws IOException {
+        final Partition part = this.partitions.get(partition);
+        if (part == null) return null;
+        for (final Offsets offsets: part.depths.values()) {
+            while (offsets.count > 0) {
+                final byte[] record = readRecord(offsets.peek());
+                if (this.index.get(key(record)) == offsets.peek()) return row(record);
+                offsets.poll(); // a removed row
+            }
+        }
+        return null;
+    }
+
+    /**
+     * remove all rows of a partition
+     * @param partition
+     * @return the number of removed rows
+     * @throws IOException
+     */
+    public synchronized int removePartition(final String partition) throws IOException {
+        final Partition part = this.partitions.get(partition);
+        if (part == null) return 0;
+        int c = 0;
+        for (final long offset: offsets(part)) {
+            final byte[] key = key(readRecord(offset));
+            if (this.index.get(key) != offset) continue;
+            delete(partition, key);
+            c++;
+        }
+        this.partitions.remove(partition);
+        compactIfNeeded();
+        return c;
+    }
+
+    /**
+     * remove the key from the index and append a delete record
+     */
+    private void delete(final String partition, final byte[] key) throws IOException {
+        this.index.remove(key);
+        if (this.writePos + this.delsize > this.writeBuffer.length) flush();
+        this.writeBuffer[this.writePos++] = DEL;
+        for (int i = 0; i < partitionLength; i++) this.writeBuffer[this.writePos++] = (byte) partition.charAt(i);
+        System.arraycopy(key, 0, this.writeBuffer, this.writePos, this.keylength);
+        this.writePos += this.keylength;
+        this.garbage += this.putsize + this.delsize;
+        final Partition part = this.partitions.get(partition);
+        if (part != null && --part.size == 0) this.partitions.remove(partition);
+    }
+
+    /**
+     * compact the file if the dead records use more space than the live records. This must not be called
+     * while offsets of the current file are used.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (this.garbage > Math.max(minCompactGarbage, (long) this.index.size() * this.putsize)) compact();
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * @param partition
+     * @return the number of rows of the partition
+     */
+    public synchronized int size(final String partition) {
+        final Partition part = this.partitions.get(partition);
+        return part == null ? 0 : part.size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.index.isEmpty();
+    }
+
+    /**
+     * @return the names of all partitions which have rows
+     */
+    public synchronized List<String> partitions() {
+        return new ArrayList<String>(this.partitions.keySet());
+    }
+
+    /**
+     * @return the length of the file including the write buffer
+     */
+    public synchronized long length() {
+        return this.flushed + this.writePos;
+    }
+
+    /**
+     * iterate all rows. The iterator reads from a snapshot of the offsets and skips rows which are removed meanwhile.
+     * @return an iterator of the rows
+     */
+    public synchronized Iterator<byte[]> rows() {
+        final ArrayList<Long> snapshot = new ArrayList<Long>(this.index.size());
+        for (final Partition part: this.partitions.values()) snapshot.addAll(offsets(part));
+        return rows(snapshot);
+    }
+
+    /**
+     * iterate all rows of a partition in the order in which removeFirst would return them
+     * @param partition
+     * @return an iterator of the rows
+     */
+    public synchronized Iterator<byte[]> rows(final String partition) {
+        final Partition part = this.partitions.get(partition);
+        return rows(part == null ? new ArrayList<Long>(0) : offsets(part));
+    }
+
+    private Iterator<byte[]> rows(final List<Long> offsets) {
+        final Iterator<Long> i = offsets.iterator();
+        final int snapshotGeneration = this.generation;
+        return new Iterator<byte[]>() {
+            private byte[] next = advance();
+            private byte[] advance() {
+                synchronized (FrontierFile.this) {
+                    while (i.hasNext()) {
+                        final long offset = i.next().longValue();
+                        try {
+                            if (FrontierFile.this.generation != snapshotGeneration) return null; // the file was compacted or cleared
+                            final byte[] record = readRecord(offset);
+                            if (FrontierFile.this.index.get(key(record)) == offset) return row(record);
+                        } catch (final IOException e) {
+                            log.warn("cannot read frontier " + FrontierFile.this.file.getName() + ": " + e.getMessage());
+                            return null;
+                        }
+                    }
+                    return null;
+                }
+            }
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+            @Override
+            public byte[] next() {
+                if (this.next == null) throw new NoSuchElementException();
+                final byte[] row = this.next;
+                this.next = advance();
+                return row;
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static List<Long> offsets(final Partition part) {
+        final ArrayList<Long> list = new ArrayList<Long>(part.size);
+        for (final Offsets offsets: part.depths.values()) {
+            for (int i = 0; i < offsets.count; i++) list.add(offsets.get(i));
+        }
+        return list;
+    }
+
+    private byte[] readRecord(final long offset) throws IOException {
+        final byte[] record = new byte[this.putsize];
+        if (offset >= this.flushed) {
+            System.arraycopy(this.writeBuffer, (int) (offset - this.flushed), record, 0, this.putsize);
+        } else {
+            this.raf.seek(offset);
+            this.raf.readFully(record);
+        }
+        if (record[0] != PUT) throw new IOException("frontier " + this.file.getName() + " has no put record at " + offset);
+        return record;
+    }
+
+    private byte[] key(final byte[] record) {
+        return Arrays.copyOfRange(record, 1 + partitionLength + 4, 1 + partitionLength + 4 + this.keylength);
+    }
+
+    private byte[] row(final byte[] record) {
+        return Arrays.copyOfRange(record, 1 + partitionLength + 4, this.putsize);
+    }
+
+    /**
+     * write the write buffer to the file
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        if (this.writePos == 0) return;
+        this.raf.seek(this.flushed);
+        this.raf.write(this.writeBuffer, 0, this.writePos);
+        this.flushed += this.writePos;
+        this.writePos = 0;
+    }
+
+    /**
+     * write all live rows to a new file which replaces the current file. The order of the rows of each
+     * partition is kept.
+     * @throws IOException
+     */
+    public synchronized void compact() throws IOException {
+        final long start = System.currentTimeMillis();
+        final long before = length();
+        flush();
+        final File tmp = new File(this.file.getParentFile(), this.file.getName() + ".prt");
+        final HandleMap newIndex = new HashHandleMap(this.keylength, this.order, 6, this.index.size(), "FrontierFile." + this.file.getName());
+        final Map<String, Partition> newPartitions = new HashMap<String, Partition>();
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1024 * 1024));
+        long pos = 0;
+        try {
+            for (final Map.Entry<String, Partition> pe: this.partitions.entrySet()) {
+                final Partition part = new Partition();
+                for (final Map.Entry<Integer, Offsets> de: pe.getValue().depths.entrySet()) {
+                    final Offsets offsets = de.getValue();
+                    for (int i = 0; i < offsets.count; i++) {
+                        final long offset = offsets.get(i);
+                        final byte[] record = readRecord(offset);
+                        final byte[] key = key(record);
+                        if (this.index.get(key) != offset) continue;
+                        os.write(record);
+                        newIndex.put(key, pos);
+                        part.add(de.getKey(), pos);
+                        part.size++;
+                        pos += this.putsize;
+                    }
+                }
+                if (part.size > 0) newPartitions.put(pe.getKey(), part);
+            }
+        } catch (final SpaceExceededException e) {
+            os.close();
+            FileUtils.deletedelete(tmp);
+            throw new IOException(e.getMessage());
+        } finally {
+            os.close();
+        }
+        this.raf.close();
+        try {
+            Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            // the old file is not changed
+            this.raf = new RandomAccessFile(this.file, "rw");
+            FileUtils.deletedelete(tmp);
+            throw e;
+        }
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.generation++;
+        this.flushed = pos;
+        this.index.close();
+        this.index = newIndex;
+        this.partitions = newPartitions;
+        this.garbage = 0;
+        if (log.isInfo()) log.info("compacted frontier " + this.file.getName() + " from " + before + " to " + pos + " bytes in " + (System.currentTimeMillis() - start) + " milliseconds");
+    }
+
+    /**
+     * remove all rows
+     * @throws IOException
+     */
+    public synchronized void clear() throws IOException {
+        this.writePos = 0;
+        this.raf.setLength(0);
+        this.flushed = 0;
+        this.index.clear();
+        this.partitions.clear();
+        this.garbage = 0;
+        this.generation++;
+    }
+
+    /**
+     * write the buffer and close the file; an empty file is deleted
+     */
+    public synchronized void close() {
+        try {
+            flush();
+            this.raf.close();
+        } catch (final IOException e) {
+            log.warn("cannot close frontier " + this.file.getName() + ": " + e.getMessage());
+        }
+        if (this.index.isEmpty()) FileUtils.deletedelete(this.file);
+        this.index.close();
+        this.partitions.clear();
+    }
+
+}
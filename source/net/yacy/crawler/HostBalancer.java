@@ -27,7 +27,6 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +35,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ClientIdentification;
@@ -48,6 +48,7 @@ import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.HashHandleMap;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.util.FileUtils;
@@ -64,12 +65,35 @@ import net.yacy.kelondro.util.FileUtils;
 public class HostBalancer implements Balancer {
 
     private final static ConcurrentLog log = new ConcurrentLog("HostBalancer");
-    public final static HandleMap depthCache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache");
+    private final static int MAX_REVALIDATIONS = 100; // the maximum number of re-scheduled hosts in one host selection
+    /**
+     * the depth of the urls in the crawl queues of all balancers. It is a RowHandleMap unless it was switched
+     * to a HashHandleMap with {@link #hashDepthCache(boolean)}; the hash table needs no sort before a lookup,
+     * which helps when many crawler threads put and look up urls concurrently, but it uses more memory per url.
+     */
+    public static volatile HandleMap depthCache = newDepthCache(false);
+
+    private static HandleMap newDepthCache(final boolean hash) {
+        return hash ?
+                new HashHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache") :
+                new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache");
+    }
+
+    /**
+     * select the map of the depth cache; this must be done before crawl queues are opened because the cache is emptied
+     * @param hash if true, use a HashHandleMap, otherwise a RowHandleMap
+     */
+    public static synchronized void hashDepthCache(final boolean hash) {
+        if (hash == (depthCache instanceof HashHandleMap)) return;
+        final HandleMap old = depthCache;
+        depthCache = newDepthCache(hash);
+        old.close();
+    }
     
     private final File hostsPath;
     private final boolean exceed134217727;
     private final Map<String, HostQueue> queues;
-    private final Set<String> roundRobinHostHashes;
+    private final HostReadyQueue readyQueue; // the hosts of the queues, ordered by the time when they may be accessed again
     private final int onDemandLimit;
 
     /**
@@ -104,7 +128,7 @@ public class HostBalancer implements Balancer {
         // create a stack for newly entered entries
         if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
         this.queues = new ConcurrentHashMap<String, HostQueue>();
-        this.roundRobinHostHashes = new HashSet<String>();
+        this.readyQueue = new HostReadyQueue();
         init(asyncInit); // return without wait but starts a thread to fill the queues
     }
 
@@ -141,7 +165,10 @@ public class HostBalancer implements Balancer {
                     queue.close();
                     FileUtils.deletedelete(queuePath);
                 } else {
-                    queues.put(queue.getHostHash(), queue);
+                    synchronized (this) {
+                        queues.put(queue.getHostHash(), queue);
+                        this.readyQueue.putIfAbsent(queue.getHostHash(), readyTime(queue, null, null, System.currentTimeMillis()));
+                    }
                 }
             } catch (MalformedURLException | RuntimeException e) {
                 log.warn("delete queue due to init error for " + hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
@@ -158,6 +185,7 @@ public class HostBalancer implements Balancer {
         }
         for (HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        this.readyQueue.clear();
     }
 
     @Override
@@ -166,7 +194,10 @@ public class HostBalancer implements Balancer {
             depthCache.clear();
         }
         for (HostQueue queue: this.queues.values()) queue.clear();
-        this.queues.clear();
+        synchronized (this) {
+            this.queues.clear();
+            this.readyQueue.clear();
+        }
     }
 
     @Override
@@ -289,6 +320,7 @@ public class HostBalancer implements Balancer {
             if (queue == null) {
                 queue = new HostQueue(this.hostsPath, entry.url(), this.queues.size() > this.onDemandLimit, this.exceed134217727);
                 this.queues.put(hosthash, queue);
+                this.readyQueue.put(hosthash, profile == null ? readyTime(queue, null, robots, System.currentTimeMillis()) : System.currentTimeMillis() + Latency.getDomainSleepTimeGuessed(robots, profile, entry.url()));
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
             }
@@ -299,10 +331,11 @@ public class HostBalancer implements Balancer {
     /**
      * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
-     * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
-     * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
-     * for the computed Entry does not exist, null is returned
-     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * crawl-delay time which is always respected. The hosts are scheduled by the time when they may be accessed
+     * again, so the host is selected in O(log n) and this method never sleeps: if no host may be accessed now,
+     * null is returned. In case that a profile for the computed Entry does not exist, null is returned
+     * @param delay true if the access delays of the hosts must be respected; if false, the entry of the host
+     *   with the earliest access time is returned even if that time has not come yet
      * @param profile
      * @return a url in a CrawlEntry object
      * @throws IOException
@@ -311,176 +344,10 @@ public class HostBalancer implements Balancer {
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
         tryagain: while (true) try {
-            HostQueue rhq = null;
-            String rhh = null;
-        
-            synchronized (this) {
-                if (this.roundRobinHostHashes.size() == 0) {
-                    // refresh the round-robin cache
-                    this.roundRobinHostHashes.addAll(this.queues.keySet());
-                    // quickly get rid of small stacks to reduce number of files:
-                    // remove all stacks with more than 10 entries
-                    // this shall kick out small stacks to prevent that too many files are opened for very wide crawls
-                    boolean smallStacksExist = false;
-                    boolean singletonStacksExist = false;
-                    smallsearch: for (String s: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(s);
-                        if (hq != null) {
-                            int size = hq.size();
-                            if (size ==  1) {singletonStacksExist = true; break smallsearch;}
-                            if (size <= 10) {smallStacksExist = true; break smallsearch;}
-                        }
-                    }
-                    if (singletonStacksExist || smallStacksExist) {
-                        Iterator<String> i = this.roundRobinHostHashes.iterator();
-                        smallstacks: while (i.hasNext()) {
-                            if (this.roundRobinHostHashes.size() <= 10) break smallstacks; // don't shrink the hosts until nothing is left
-                            String s = i.next();
-                            HostQueue hq = this.queues.get(s);
-                            if (hq == null) {i.remove(); continue smallstacks;}
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                            if (delta < 0) continue; // keep all non-waiting stacks; they are useful to speed up things
-                            // to protect all small stacks which have a fast throughput, remove all with long waiting time
-                            if (delta >= 1000) {i.remove(); continue smallstacks;}
-                            int size = hq.size();
-                            if (singletonStacksExist) {
-                                if (size != 1) {i.remove(); continue smallstacks;} // remove all non-singletons
-                            } else /*smallStacksExist*/ {
-                                if (size > 10) {i.remove(); continue smallstacks;} // remove all large stacks
-                            }
-                        }
-                    }
-                    if (this.roundRobinHostHashes.size() == 1) {
-                        if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
-                    } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
-                    }
-                }
-                if (this.roundRobinHostHashes.size() == 0) return null;
-                
-                // if the queue size is 1, just take that
-                if (this.roundRobinHostHashes.size() == 1) {
-                    rhh = this.roundRobinHostHashes.iterator().next();
-                    rhq = this.queues.get(rhh);
-                }
-                
-                if (rhq == null) {
-                    // mixed minimum sleep time / largest queue strategy:
-                    // create a map of sleep time / queue relations with a fuzzy sleep time (ms / 500).
-                    // if the entry with the smallest sleep time contains at least two entries,
-                    // then the larger one from these queues are selected.
-                    TreeMap<Integer, List<String>> fastTree = new TreeMap<>();
-                    mixedstrategy: for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), h, robots, ClientIdentification.yacyInternetCrawlerAgent) / 200;
-                            if (delta < 0) delta = 0;
-                            List<String> queueHashes = fastTree.get(delta);
-                            if (queueHashes == null) {
-                                queueHashes = new ArrayList<>(2);
-                                fastTree.put(delta, queueHashes);
-                            }
-                            queueHashes.add(h);
-                            // check stop criteria
-                            List<String> firstEntries = fastTree.firstEntry().getValue();
-                            if (firstEntries.size() > 1) {
-                                // select larger queue from that list
-                                int largest = Integer.MIN_VALUE;
-                                for (String hh: firstEntries) {
-                                    HostQueue hhq = this.queues.get(hh);
-                                    if (hhq != null) {
-                                        int s = hhq.size();
-                                        if (s > largest) {
-                                            largest = s;
-                                            rhh = hh;
-                                        }
-                                    }
-                                }
-                                rhq = this.queues.get(rhh);
-                                break mixedstrategy;
-                            }
-                        }
-                    }
-                    if (rhq == null && fastTree.size() > 0) {
-                        // it may be possible that the lowest entry never has more than one queues assigned
-                        // in this case just take the smallest entry
-                        List<String> firstEntries = fastTree.firstEntry().getValue();
-                        assert firstEntries.size() == 1;
-                        rhh = firstEntries.get(0);
-                        rhq = this.queues.get(rhh);
-                    }
-                    // to prevent that the complete roundrobinhosthashes are taken for each round, we remove the entries from the top of the fast queue
-                    List<String> lastEntries = fastTree.size() > 0 ? fastTree.lastEntry().getValue() : null;
-                    if (lastEntries != null) {
-                        for (String h: lastEntries) this.roundRobinHostHashes.remove(h);
-                    }
-                }
-
-                /*
-                // first strategy: get one entry which does not need sleep time
-                Iterator<String> nhhi = this.roundRobinHostHashes.iterator();
-                nosleep: while (nhhi.hasNext()) {
-                    rhh = nhhi.next();
-                    rhq = this.queues.get(rhh);
-                    if (rhq == null) {
-                        nhhi.remove();
-                        continue nosleep;
-            }
-                    int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhh, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                    if (delta <= 10 || this.roundRobinHostHashes.size() == 1 || rhq.size() == 1) {
-                        nhhi.remove();
-                        break nosleep;
-                    }
-                }
-                if (rhq == null) {
-                    // second strategy: take from the largest stack
-                    int largest = Integer.MIN_VALUE;
-                    for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int s = hq.size();
-                            if (s > largest) {
-                                largest = s;
-                                rhh = h;
-                            }
-                        }
-                    }
-                    rhq = this.queues.get(rhh);
-                }
-                */
-            }
-            
-            if (rhq == null) {
-                this.roundRobinHostHashes.clear(); // force re-initialization
-                continue tryagain;
-            }
-            this.roundRobinHostHashes.remove(rhh); // prevent that the queue is used again
-            long timestamp = System.currentTimeMillis();
-            Request request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
-            long actualwaiting = System.currentTimeMillis() - timestamp;
-            
-            if (actualwaiting > 1000) {
-                synchronized (this) {
-                    // to prevent that this occurs again, remove all stacks with positive delay times (which may be less after that waiting)
-                    Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    protectcheck: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 3) break protectcheck; // don't shrink the hosts until nothing is left
-                        String s = i.next();
-                        HostQueue hq = this.queues.get(s);
-                        if (hq == null) {i.remove(); continue protectcheck;}
-                        int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                        if (delta >= 0) {i.remove();}
-                    }
-                }
-            }
-            
-            if (rhq.isEmpty()) {
-                synchronized (this) {
-                    this.queues.remove(rhh);
-                }
-                rhq.close();
-            }
-            if (request == null) continue tryagain;
+            final String rhh = selectHost(delay, Integer.MAX_VALUE, cs, robots);
+            if (rhh == null) return null;
+            final Request request = popHost(rhh, delay, cs, robots);
+            if (request == null) continue tryagain; // the queue had only entries which were rejected; try another host
             return request;
         } catch (ConcurrentModificationException e) {
             continue tryagain;
@@ -492,6 +359,110 @@ public class HostBalancer implements Balancer {
         }
     }
 
+    @Override
+    public Request popReady(final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        while (true) {
+            final String rhh = selectHost(true, maxLoadingPerHost, cs, robots);
+            if (rhh == null) return null;
+            final Request request = popHost(rhh, true, cs, robots);
+            if (request != null) return request;
+            // the queue had only entries which were rejected; try another host
+        }
+    }
+
+    @Override
+    public synchronized long readyIn() {
+        final long t = this.readyQueue.peekTime();
+        return t == Long.MAX_VALUE ? t : Math.max(0, t - System.currentTimeMillis());
+    }
+
+    /**
+     * take the host with the earliest access time from the schedule. The selected host is parked at the end
+     * of the schedule until its entry has been taken, so concurrent pops do not select the same host.
+     * The scheduled times are guesses which were made when the host was scheduled; the latency of the host
+     * may have grown since then. Therefore the time of a ready host is computed again before it is selected,
+     * and a host which is not ready yet is scheduled again with the new time.
+     * @param onlyReady if true, a host is only selected if it may be accessed now
+     * @param maxLoadingPerHost hosts with this number of running loads are not selected
+     * @param cs
+     * @param robots
+     * @return the hash of the selected host or null if no host can be selected now
+     */
+    private synchronized String selectHost(final boolean onlyReady, final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) {
+        int revalidations = 0;
+        while (!this.readyQueue.isEmpty()) {
+            final String h = this.readyQueue.peek();
+            final HostQueue hq = this.queues.get(h);
+            if (hq == null) {
+                this.readyQueue.remove(h);
+                continue;
+            }
+            if (onlyReady) {
+                final long now = System.currentTimeMillis();
+                if (this.readyQueue.peekTime() > now) return null; // the earliest host is not ready, so no host is ready
+                if (revalidations++ >= MAX_REVALIDATIONS) return null; // try again in the next round
+                final long readyTime = readyTime(hq, cs, robots, now);
+                if (readyTime > now) {
+                    this.readyQueue.put(h, readyTime);
+                    continue;
+                }
+                if (Latency.loading(h) >= maxLoadingPerHost) {
+                    this.readyQueue.put(h, now + ClientIdentification.yacyInternetCrawlerAgent.minimumDelta);
+                    continue;
+                }
+            }
+            this.readyQueue.put(h, Long.MAX_VALUE);
+            return h;
+        }
+        return null;
+    }
+
+    /**
+     * take the next entry from the queue of a host which was selected with selectHost and schedule the host again
+     * @param rhh the host hash
+     * @param load true if the entry will be loaded; then the access time of the host is set now
+     * @param cs
+     * @param robots
+     * @return the entry or null if the queue had no acceptable entry
+     * @throws IOException
+     */
+    private Request popHost(final String rhh, final boolean load, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        final HostQueue rhq = this.queues.get(rhh);
+        Request request = null;
+        try {
+            if (rhq != null) request = rhq.pop(false, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
+            // set the access time now, so the host is scheduled after the coming load
+            if (request != null && load) Latency.updateBeforeLoad(request.url());
+        } finally {
+            synchronized (this) {
+                if (rhq == null || rhq.isEmpty()) {
+                    this.readyQueue.remove(rhh);
+                    if (rhq != null && this.queues.remove(rhh) != null) rhq.close();
+                } else {
+                    this.readyQueue.put(rhh, readyTime(rhq, cs, robots, System.currentTimeMillis()));
+                }
+            }
+        }
+        return request;
+    }
+
+    /**
+     * compute the time when a host may be accessed again. Hosts which are overdue get a time in the past,
+     * so the host which waits longest is selected first. Like in HostQueue.pop, the time depends on the crawl
+     * profile of the next entry: its agent gives the minimum delta, and entries which are loaded from the
+     * cache need no waiting time.
+     * @param cs the crawl profiles; if null, the time is guessed with the agent of the internet crawler
+     */
+    private static long readyTime(final HostQueue hq, final CrawlSwitchboard cs, final RobotsTxt robots, final long now) {
+        if (cs != null) try {
+            final Request next = hq.top();
+            if (next != null) return now + Latency.getDomainSleepTimeGuessed(robots, cs.get(UTF8.getBytes(next.profileHandle())), next.url());
+        } catch (final IOException e) {
+            log.warn("cannot read the next entry of host " + hq.getHost() + ": " + e.getMessage());
+        }
+        return now + Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), hq.getHostHash(), robots, ClientIdentification.yacyInternetCrawlerAgent);
+    }
+
     @Override
     public Iterator<Request> iterator() throws IOException {
         final Iterator<HostQueue> hostsIterator = this.queues.values().iterator();
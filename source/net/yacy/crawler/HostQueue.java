@@ -514,6 +514,35 @@ public class HostQueue implements Balancer {
         return crawlEntry;
     }
 
+    /**
+     * get the entry which is taken by the next pop, without removing it
+     * @return the entry or null if the queue is empty
+     * @throws IOException
+     */
+    public synchronized Request top() throws IOException {
+        final Index depthStack = getLowestStack();
+        if (depthStack == null) return null;
+        final List<Row.Entry> top = depthStack.top(1);
+        if (top == null || top.isEmpty()) return null;
+        return new Request(top.get(0));
+    }
+
+    @Override
+    public Request popReady(final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        // all entries of this queue belong to the same host, so only the host must be checked
+        if (Latency.loading(this.hostHash) >= maxLoadingPerHost) return null;
+        if (Latency.waitingRemainingGuessed(this.hostName, this.port, this.hostHash, robots, ClientIdentification.yacyInternetCrawlerAgent) > 0) return null;
+        final Request request = pop(false, cs, robots);
+        if (request != null) Latency.updateBeforeLoad(request.url());
+        return request;
+    }
+
+    @Override
+    public long readyIn() {
+        // pop waits for the host itself
+        return isEmpty() ? Long.MAX_VALUE : 0;
+    }
+
     @Override
     public Iterator<Request> iterator() throws IOException {
         final Iterator<Map.Entry<Integer, Index>> depthIterator = this.depthStacks.entrySet().iterator();
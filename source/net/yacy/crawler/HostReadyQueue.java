@@ -0,0 +1,183 @@
+/**
+ *  HostReadyQueue
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A priority queue of host hashes ordered by the time when the host may be accessed again.
+ * This is an indexed binary heap: the host with the earliest ready time is found in O(1),
+ * and insert, re-scheduling and removal of any host are done in O(log n).
+ * The queue is not synchronized; the owner must synchronize the access.
+ */
+public final class HostReadyQueue {
+
+    private String[] hosts;
+    private long[] times;
+    private int size;
+    private final Map<String, Integer> position; // the heap position of each host
+
+    public HostReadyQueue() {
+        this.hosts = new String[16];
+        this.times = new long[16];
+        this.size = 0;
+        this.position = new HashMap<String, Integer>();
+    }
+
+    /**
+     * schedule a host; if the host is already scheduled, its ready time is replaced
+     * @param hosthash
+     * @param readyTime the time in milliseconds since epoch when the host may be accessed
+     */
+    public void put(final String hosthash, final long readyTime) {
+        final Integer p = this.position.get(hosthash);
+        if (p == null) {
+            if (this.size == this.hosts.length) {
+                this.hosts = Arrays.copyOf(this.hosts, this.size * 2);
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+            }
+            final int i = this.size++;
+            this.hosts[i] = hosthash;
+            this.times[i] = readyTime;
+            this.position.put(hosthash, i);
+            up(i);
+            return;
+        }
+        final int i = p.intValue();
+        final long old = this.times[i];
+        this.times[i] = readyTime;
+        if (readyTime < old) up(i); else if (readyTime > old) down(i);
+    }
+
+    /**
+     * schedule a host only if it is not scheduled yet
+     * @param hosthash
+     * @param readyTime
+     * @return true if the host was added
+     */
+    public boolean putIfAbsent(final String hosthash, final long readyTime) {
+        if (this.position.containsKey(hosthash)) return false;
+        put(hosthash, readyTime);
+        return true;
+    }
+
+    /**
+     * remove a host from the schedule
+     * @param hosthash
+     * @return true if the host was scheduled
+     */
+    public boolean remove(final String hosthash) {
+        final Integer p = this.position.remove(hosthash);
+        if (p == null) return false;
+        final int i = p.intValue();
+        final int last = --this.size;
+        if (i != last) {
+            this.hosts[i] = this.hosts[last];
+            this.times[i] = this.times[last];
+            this.position.put(this.hosts[i], i);
+            this.hosts[last] = null;
+            down(i);
+            up(i);
+        } else {
+            this.hosts[last] = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return the host with the earliest ready time or null if the queue is empty
+     */
+    public String peek() {
+        return this.size == 0 ? null : this.hosts[0];
+    }
+
+    /**
+     * @return the earliest ready time or Long.MAX_VALUE if the queue is empty
+     */
+    public long peekTime() {
+        return this.size == 0 ? Long.MAX_VALUE : this.times[0];
+    }
+
+    /**
+     * @param hosthash
+     * @return the ready time of the host or -1 if the host is not scheduled
+     */
+    public long readyTime(final String hosthash) {
+        final Integer p = this.position.get(hosthash);
+        return p == null ? -1 : this.times[p.intValue()];
+    }
+
+    public boolean contains(final String hosthash) {
+        return this.position.containsKey(hosthash);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.hosts, 0, this.size, null);
+        this.size = 0;
+        this.position.clear();
+    }
+
+    private void up(int i) {
+        final String h = this.hosts[i];
+        final long t = this.times[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (this.times[parent] <= t) break;
+            move(parent, i);
+            i = parent;
+        }
+        this.hosts[i] = h;
+        this.times[i] = t;
+        this.position.put(h, i);
+    }
+
+    private void down(int i) {
+        final String h = this.hosts[i];
+        final long t = this.times[i];
+        final int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.size && this.times[child + 1] < this.times[child]) child++;
+            if (t <= this.times[child]) break;
+            move(child, i);
+            i = child;
+        }
+        this.hosts[i] = h;
+        this.times[i] = t;
+        this.position.put(h, i);
+    }
+
+    private void move(final int from, final int to) {
+        this.hosts[to] = this.hosts[from];
+        this.times[to] = this.times[from];
+        this.position.put(this.hosts[to], to);
+    }
+
+}
@@ -440,6 +440,43 @@ public class LegacyBalancer implements Balancer {
         return crawlEntry;
     }
 
+    @Override
+    public Request popReady(final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        // take the first entry of the first domain stack which is ready
+        while (true) {
+            synchronized (this) {
+                fillDomainStacks();
+                String host = null;
+                byte[] nexthash = null;
+                for (Map.Entry<String, HostHandles> entry: this.domainStacks.entrySet()) {
+                    final HostHandles hosthandles = entry.getValue();
+                    if (hosthandles.handleSet.isEmpty()) continue;
+                    if (Latency.loading(hosthandles.hosthash) >= maxLoadingPerHost) continue;
+                    if (Latency.waitingRemainingGuessed(entry.getKey(), 80, hosthandles.hosthash, robots, ClientIdentification.yacyInternetCrawlerAgent) > 0) continue;
+                    host = entry.getKey();
+                    nexthash = hosthandles.handleSet.getOne(0);
+                    break;
+                }
+                if (nexthash == null) return null;
+                removeHashFromDomainStacks(host, nexthash);
+                final Row.Entry rowEntry = this.urlFileIndex.remove(nexthash);
+                if (rowEntry == null) continue;
+                final Request crawlEntry = new Request(rowEntry);
+                if (Switchboard.urlBlacklist.isListed(BlacklistType.CRAWLER, crawlEntry.url())) continue;
+                if (cs.get(UTF8.getBytes(crawlEntry.profileHandle())) == null) continue;
+                Latency.updateAfterSelection(crawlEntry.url(), 0);
+                Latency.updateBeforeLoad(crawlEntry.url());
+                return crawlEntry;
+            }
+        }
+    }
+
+    @Override
+    public long readyIn() {
+        // pop waits for the hosts itself
+        return isEmpty() ? Long.MAX_VALUE : 0;
+    }
+
     private byte[] getbest(final RobotsTxt robots, final CrawlSwitchboard cs) {
 
         synchronized (this.zeroWaitingCandidates) {
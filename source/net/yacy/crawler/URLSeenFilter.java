@@ -0,0 +1,252 @@
+/**
+ *  URLSeenFilter
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.BloomFilter;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A scalable bloom filter of the urls which have been stacked for a crawl: a list of bloom filter slices.
+ * Keys are added to the newest slice; when it holds its capacity, a new slice with the double capacity and
+ * half the false positive probability is started, so the false positive probability of the whole filter
+ * stays below the given probability however many keys are added. When the filter has more than the maximum
+ * number of keys, the oldest slice is dropped; then the filter forgets the oldest keys.
+ * Each slice is stored in a file of the filter directory. A full slice is written when it is full, the
+ * newest slice when the filter is closed; a slice which is lost in a crash only makes the filter forget keys.
+ */
+public final class URLSeenFilter {
+
+    private final static ConcurrentLog log = new ConcurrentLog("URLSeenFilter");
+
+    private static final String sliceSuffix = ".bloom";
+    private static final double growthFpp = 0.5d; // the factor of the false positive probability of each new slice
+
+    private final File path;
+    private final long initialCapacity;
+    private final long maxKeys;
+    private final double fpp;
+    private volatile Slice[] slices; // the oldest slice first
+    private int nextNumber;
+    private final AtomicLong lookups, hits;
+
+    private static final class Slice {
+        private final int number;
+        private final BloomFilter filter;
+        private final long capacity;
+        private Slice(final int number, final BloomFilter filter, final long capacity) {
+            this.number = number;
+            this.filter = filter;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * open a filter; the slices in the path are loaded
+     * @param path the directory of the slice files
+     * @param initialCapacity the number of keys of the first slice
+     * @param maxKeys the number of keys after which the oldest keys are forgotten
+     * @param fpp the false positive probability of the whole filter
+     */
+    public URLSeenFilter(final File path, final long initialCapacity, final long maxKeys, final double fpp) {
+        this.path = path;
+        this.initialCapacity = Math.max(1024, initialCapacity);
+        this.maxKeys = Math.max(this.initialCapacity, maxKeys);
+        this.fpp = fpp;
+        this.lookups = new AtomicLong(0);
+        this.hits = new AtomicLong(0);
+        if (!path.exists()) path.mkdirs();
+        final List<Slice> loaded = new ArrayList<Slice>();
+        final String[] names = path.list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (final String name: names) {
+                if (!name.endsWith(sliceSuffix)) continue;
+                final File f = new File(path, name);
+                try {
+                    final int number = Integer.parseInt(name.substring(0, name.length() - sliceSuffix.length()));
+                    final BloomFilter filter = BloomFilter.load(f);
+                    // the number of hash functions was chosen for the capacity of the slice
+                    loaded.add(new Slice(number, filter, (long) (filter.bitSize() * Math.log(2) / filter.hashCount())));
+                } catch (final IOException | NumberFormatException e) {
+                    log.warn("deleting broken url-seen filter slice " + name + ": " + e.getMessage());
+                    FileUtils.deletedelete(f);
+                }
+            }
+        }
+        this.nextNumber = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).number + 1;
+        this.slices = loaded.toArray(new Slice[loaded.size()]);
+        if (this.slices.length == 0) addSlice();
+        if (log.isInfo()) log.info("opened url-seen filter with " + size() + " urls in " + this.slices.length + " slices, " + (mem() / 1024 / 1024) + " MB");
+    }
+
+    private long capacity(final int i) {
+        // the slices grow until four slices hold the maximum number of keys; then the slices are rotated
+        return Math.max(this.initialCapacity, Math.min(this.initialCapacity << Math.min(i, 30), this.maxKeys / 4));
+    }
+
+    private double sliceFpp(final int i) {
+        // the sum of the probabilities of all slices is below fpp
+        return this.fpp * (1.0d - growthFpp) * Math.pow(growthFpp, Math.min(i, 20));
+    }
+
+    private synchronized void addSlice() {
+        final int i = this.slices.length;
+        final long capacity = capacity(i);
+        final double p = sliceFpp(i);
+        final Slice slice = new Slice(this.nextNumber++, new BloomFilter(capacity, p), capacity);
+        final Slice[] s = Arrays.copyOf(this.slices, i + 1);
+        s[i] = slice;
+        this.slices = s;
+    }
+
+    /**
+     * test if a key was added
+     * @param key
+     * @return false if the key was never added, true if the key was possibly added
+     */
+    public boolean mightContain(final byte[] key) {
+        this.lookups.incrementAndGet();
+        final Slice[] s = this.slices;
+        for (int i = s.length - 1; i >= 0; i--) {
+            if (s[i].filter.mightContain(key)) {
+                this.hits.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * add a key
+     * @param key
+     */
+    public void add(final byte[] key) {
+        Slice[] s = this.slices;
+        Slice newest = s[s.length - 1];
+        if (newest.filter.count() >= newest.capacity) {
+            rollover(newest);
+            s = this.slices;
+            newest = s[s.length - 1];
+        }
+        newest.filter.add(key);
+    }
+
+    /**
+     * start a new slice if the given slice is still the newest one; the full slice is written to its file
+     * and the oldest slices are dropped if the filter has too many keys
+     */
+    private synchronized void rollover(final Slice full) {
+        if (this.slices[this.slices.length - 1] != full) return; // another thread did that already
+        try {
+            full.filter.dump(file(full));
+        } catch (final IOException e) {
+            log.warn("cannot write url-seen filter slice " + full.number + ": " + e.getMessage());
+        }
+        addSlice();
+        while (this.slices.length > 1 && size() > this.maxKeys) {
+            final Slice oldest = this.slices[0];
+            this.slices = Arrays.copyOfRange(this.slices, 1, this.slices.length);
+            FileUtils.deletedelete(file(oldest));
+            if (log.isInfo()) log.info("dropped the oldest url-seen filter slice with " + oldest.filter.count() + " urls");
+        }
+    }
+
+    private File file(final Slice slice) {
+        return new File(this.path, String.format("%06d", slice.number) + sliceSuffix);
+    }
+
+    /**
+     * @return the number of added keys
+     */
+    public long size() {
+        long c = 0;
+        for (final Slice slice: this.slices) c += slice.filter.count();
+        return c;
+    }
+
+    /**
+     * @return the number of slices
+     */
+    public int slices() {
+        return this.slices.length;
+    }
+
+    /**
+     * @return the memory used by the filter in bytes
+     */
+    public long mem() {
+        long m = 0;
+        for (final Slice slice: this.slices) m += slice.filter.mem();
+        return m;
+    }
+
+    /**
+     * @return the number of lookups since the filter was opened
+     */
+    public long lookups() {
+        return this.lookups.get();
+    }
+
+    /**
+     * @return the number of lookups since the filter was opened which found a key
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the share of lookups which found a key
+     */
+    public double hitRate() {
+        final long l = this.lookups.get();
+        return l == 0 ? 0.0d : (double) this.hits.get() / l;
+    }
+
+    /**
+     * @return the expected false positive probability for the keys added so far
+     */
+    public double expectedFpp() {
+        double p = 0.0d;
+        for (final Slice slice: this.slices) p += slice.filter.expectedFpp();
+        return Math.min(1.0d, p);
+    }
+
+    /**
+     * write the newest slice; the older slices have been written when they were full
+     */
+    public synchronized void close() {
+        final Slice newest = this.slices[this.slices.length - 1];
+        if (newest.filter.count() == 0) return;
+        try {
+            newest.filter.dump(file(newest));
+        } catch (final IOException e) {
+            log.warn("cannot write url-seen filter slice " + newest.number + ": " + e.getMessage());
+        }
+    }
+
+}
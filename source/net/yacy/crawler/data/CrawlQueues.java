@@ -37,7 +37,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -59,6 +63,7 @@ import net.yacy.crawler.data.NoticedURL.StackType;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.crawler.robots.RobotsTxtEntry;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.kelondro.workflow.WorkflowJob;
 import net.yacy.peers.DHTSelection;
 import net.yacy.peers.Protocol;
@@ -74,12 +79,23 @@ public class CrawlQueues {
     
     private final static Request POISON_REQUEST = new Request();
     private final static ConcurrentLog log = new ConcurrentLog("CRAWLER");
+    private final static int PPS_WINDOW = 11; // seconds of the pages/second window, including the running second
 
     private final Switchboard sb;
     private final Loader[] worker;
     private final ArrayBlockingQueue<Request> workerQueue;
     private ArrayList<String> remoteCrawlProviderHashes;
 
+    // the asynchronous mode: http(s) loads are running without a thread each, the executor is null in the thread mode
+    private final ThreadPoolExecutor asyncExecutor;
+    private final Map<DigestURL, Request> asyncLoading;
+    private final int maxLoading, maxLoadingPerHost;
+    private long lastAsyncCrawl;
+
+    // the number of loaded pages in each second of the pages/second window
+    private final long[] loadedSecond = new long[PPS_WINDOW];
+    private final int[] loadedCount = new int[PPS_WINDOW];
+
     public  NoticedURL noticeURL;
     public  ErrorCache errorURL;
     
@@ -94,11 +110,25 @@ public class CrawlQueues {
          * will be used to send POISON_REQUEST items consumed by all eventually running workers in the close() function*/
         this.workerQueue = new ArrayBlockingQueue<Request>(maxWorkers);
         this.remoteCrawlProviderHashes = null;
+        this.maxLoading = Math.max(1, sb.getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_LOADING, 1000));
+        this.maxLoadingPerHost = Math.max(1, sb.getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_LOADING_PER_HOST, 2));
+        this.asyncLoading = new ConcurrentHashMap<DigestURL, Request>();
+        this.lastAsyncCrawl = 0;
+        if (sb.getConfigBool(SwitchboardConstants.CRAWLER_ASYNC, false)) {
+            // the executor runs the robots check, the cache access and the indexer hand-over; the loads themselves do not hold a thread
+            final int threads = Math.max(2, Math.min(maxWorkers, 4 * Runtime.getRuntime().availableProcessors()));
+            this.asyncExecutor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory("CrawlQueues.async"));
+            this.asyncExecutor.allowCoreThreadTimeOut(true);
+            log.config("Asynchronous loading with " + this.maxLoading + " loads, " + this.maxLoadingPerHost + " per host");
+        } else {
+            this.asyncExecutor = null;
+        }
 
         // start crawling management
         log.config("Starting Crawling Management");
         log.config("Opening noticeURL..");
-        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727);
+        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727, "file".equals(sb.getConfig(SwitchboardConstants.CRAWLER_FRONTIER, "hostqueues")));
         log.config("Opening errorURL..");
         this.errorURL = new ErrorCache(sb);
         log.config("Opening delegatedURL..");
@@ -127,7 +157,7 @@ public class CrawlQueues {
         
         if (this.remoteCrawlProviderHashes != null) this.remoteCrawlProviderHashes.clear();
         this.noticeURL.close();
-        this.noticeURL = new NoticedURL(newQueuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727);
+        this.noticeURL = new NoticedURL(newQueuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727, "file".equals(this.sb.getConfig(SwitchboardConstants.CRAWLER_FRONTIER, "hostqueues")));
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
@@ -156,6 +186,15 @@ public class CrawlQueues {
                 }
             }
         }
+        if (this.asyncExecutor != null) {
+            this.asyncExecutor.shutdown();
+            try {
+                this.asyncExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                CrawlQueues.log.warn("Interrupted while waiting for the asynchronous loader termination.");
+            }
+            this.sb.loader.closeAsync();
+        }
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
@@ -250,6 +289,7 @@ public class CrawlQueues {
     }
     
     public Map<DigestURL, Request> activeWorkerEntries() {
+        if (this.asyncExecutor != null) return new HashMap<DigestURL, Request>(this.asyncLoading);
         synchronized (this.worker) {
             Map<DigestURL, Request> map = new HashMap<DigestURL, Request>();
             for (final Loader w: this.worker) {
@@ -262,6 +302,50 @@ public class CrawlQueues {
         }
     }
 
+    /**
+     * @return the maximum number of loads which can run at the same time
+     */
+    public int loaderMax() {
+        return this.asyncExecutor == null ? this.worker.length : this.maxLoading;
+    }
+
+    /**
+     * @return true if the loader cannot take another request
+     */
+    private boolean loaderFull() {
+        return this.asyncExecutor == null ? this.workerQueue.remainingCapacity() == 0 : this.asyncLoading.size() >= this.maxLoading;
+    }
+
+    private int loaderQueueSize() {
+        return this.asyncExecutor == null ? this.workerQueue.size() : this.asyncLoading.size();
+    }
+
+    /**
+     * count a page which was loaded for the pages/second statistic
+     */
+    private synchronized void countLoaded() {
+        final long second = System.currentTimeMillis() / 1000;
+        final int i = (int) (second % PPS_WINDOW);
+        if (this.loadedSecond[i] != second) {
+            this.loadedSecond[i] = second;
+            this.loadedCount[i] = 0;
+        }
+        this.loadedCount[i]++;
+    }
+
+    /**
+     * @return the number of loaded pages per second, averaged over the last completed seconds
+     */
+    public synchronized double loadedPagesPerSecond() {
+        final long second = System.currentTimeMillis() / 1000;
+        int sum = 0;
+        for (int i = 0; i < PPS_WINDOW; i++) {
+            final long age = second - this.loadedSecond[i];
+            if (age > 0 && age < PPS_WINDOW) sum += this.loadedCount[i];
+        }
+        return ((double) sum) / (PPS_WINDOW - 1);
+    }
+
     public int coreCrawlJobSize() {
         return this.noticeURL.stackSize(NoticedURL.StackType.LOCAL) + this.noticeURL.stackSize(NoticedURL.StackType.NOLOAD);
     }
@@ -297,6 +381,11 @@ public class CrawlQueues {
             return false;
         }
 
+        // in the asynchronous mode, fill the free load slots; entries which are not loaded are handled below
+        if (this.asyncExecutor != null && this.noticeURL.isEmpty(NoticedURL.StackType.NOLOAD)) {
+            return coreCrawlJobAsync();
+        }
+
         // do a local crawl
         Request urlEntry;
         while (!this.noticeURL.isEmpty(NoticedURL.StackType.LOCAL) || !this.noticeURL.isEmpty(NoticedURL.StackType.NOLOAD)) {
@@ -329,7 +418,10 @@ public class CrawlQueues {
 
                 urlEntry = this.noticeURL.pop(NoticedURL.StackType.LOCAL, true, this.sb.crawler, this.sb.robots);
                 if (urlEntry == null) {
-                    continue;
+                    // no host may be accessed now; the balancer does not wait for a host. If a host is ready before
+                    // the idle sleep would end, the job is called again after the busy sleep
+                    final long idleSleep = this.sb.getConfigLong(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL_IDLESLEEP, 2000L);
+                    return this.noticeURL.readyIn(NoticedURL.StackType.LOCAL) < idleSleep;
                 }
                 // System.out.println("DEBUG plasmaSwitchboard.processCrawling:
                 // profileHandle = " + profileHandle + ", urlEntry.url = " + urlEntry.url());
@@ -349,6 +441,41 @@ public class CrawlQueues {
         return true;
     }
 
+    /**
+     * The local crawl of the asynchronous mode: take entries of hosts which are ready from the balancer and start
+     * their loads. The number of entries follows the crawl speed setting, one entry for each busy sleep time of
+     * the local crawl job since the last call, and is limited by the free load slots. This never waits for a host.
+     * @return true if a load was started
+     */
+    private boolean coreCrawlJobAsync() {
+        final long now = System.currentTimeMillis();
+        final long busySleep = Math.max(1, this.sb.getConfigLong(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL_BUSYSLEEP, 1000L));
+        int quota = (int) Math.min(this.maxLoading - this.asyncLoading.size(), Math.max(1, (now - this.lastAsyncCrawl) / busySleep));
+        this.lastAsyncCrawl = now;
+        boolean started = false;
+        while (quota > 0 && !this.noticeURL.isEmpty(NoticedURL.StackType.LOCAL)) {
+            final String stats = "LOCALCRAWL[" +
+                this.noticeURL.stackSize(NoticedURL.StackType.LOCAL) + ", " +
+                this.asyncLoading.size() + " loading]";
+            final Request urlEntry;
+            try {
+                urlEntry = this.noticeURL.popReady(NoticedURL.StackType.LOCAL, this.maxLoadingPerHost, this.sb.crawler, this.sb.robots);
+            } catch (final IOException e) {
+                CrawlQueues.log.severe(stats + ": CANNOT FETCH ENTRY: " + e.getMessage(), e);
+                break;
+            }
+            if (urlEntry == null) break; // no host is ready now
+            if (urlEntry.profileHandle() == null) {
+                CrawlQueues.log.severe(stats + ": NULL PROFILE HANDLE '" + urlEntry.profileHandle() + "' for URL " + urlEntry.url());
+                continue;
+            }
+            load(urlEntry, stats);
+            started = true;
+            quota--;
+        }
+        return started;
+    }
+
     /**
      * Make some checks if crawl is valid and start it
      *
@@ -379,6 +506,8 @@ public class CrawlQueues {
                 // work off one Crawl stack entry
                 if (urlEntry == null || urlEntry.url() == null) {
                     CrawlQueues.log.info(stats + ": urlEntry = null");
+                } else if (this.asyncExecutor != null) {
+                    loadAsync(urlEntry);
                 } else {
                     if (!activeWorkerEntries().containsKey(urlEntry.url())) {
                         try {
@@ -430,8 +559,8 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
-            return "too many workers active: " + this.workerQueue.size();
+        if (loaderFull()) {
+            return "too many workers active: " + loaderQueueSize();
         }
 
         final String cautionCause = this.sb.onlineCaution();
@@ -455,9 +584,9 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
+        if (loaderFull()) {
             if (CrawlQueues.log.isFine()) {
-                CrawlQueues.log.fine("remoteCrawlLoaderJob: too many processes in loader queue, dismissed (" + "workerQueue=" + this.workerQueue.size() + "), httpClients = " + ConnectionInfo.getCount());
+                CrawlQueues.log.fine("remoteCrawlLoaderJob: too many processes in loader queue, dismissed (" + "workerQueue=" + loaderQueueSize() + "), httpClients = " + ConnectionInfo.getCount());
             }
             return false;
         }
@@ -702,6 +831,106 @@ public class CrawlQueues {
         }
     }
 
+    /**
+     * start a load in the asynchronous mode. The robots.txt check and the hand-over to the indexer are done in the
+     * executor, the http(s) load itself is done by the non-blocking client of the loader.
+     * @param request
+     */
+    private void loadAsync(final Request request) {
+        if (this.asyncLoading.putIfAbsent(request.url(), request) != null) return;
+        Latency.loadStarted(request.url());
+        request.setStatus("worker-initialized", WorkflowJob.STATUS_INITIATED);
+        try {
+            this.asyncExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final CrawlProfile profile = CrawlQueues.this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+                    try {
+                        // checking robots.txt for http(s) resources
+                        request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
+                        RobotsTxtEntry robotsEntry;
+                        if ((request.url().getProtocol().equals("http") || request.url().getProtocol().equals("https")) &&
+                            (robotsEntry = CrawlQueues.this.sb.robots.getEntry(request.url(), profile.getAgent())) != null &&
+                            robotsEntry.isDisallowed(request.url())) {
+                            CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_ROBOTS_RULE, "denied by robots.txt", -1);
+                            request.setStatus("worker-disallowed", WorkflowJob.STATUS_FINISHED);
+                            loadFinished(request);
+                            return;
+                        }
+                        request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
+                        CrawlQueues.this.sb.loader.loadAsync(request, profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent(), CrawlQueues.this.asyncExecutor)
+                        .whenComplete(new BiConsumer<Response, Throwable>() {
+                            @Override
+                            public void accept(final Response response, final Throwable e) {
+                                try {
+                                    processLoaded(request, profile, response, e);
+                                } catch (final Exception ee) {
+                                    CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, ee.getMessage() + " - in worker", -1);
+                                    request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
+                                } finally {
+                                    loadFinished(request);
+                                }
+                            }
+                        });
+                    } catch (final Exception e) {
+                        CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
+                        request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
+                        loadFinished(request);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            loadFinished(request); // the crawler is closed
+        }
+    }
+
+    private void loadFinished(final Request request) {
+        if (this.asyncLoading.remove(request.url()) != null) Latency.loadFinished(request.url());
+    }
+
+    /**
+     * hand a loaded response over to the indexer or push the reason why the load failed to the error cache
+     * @param request
+     * @param profile
+     * @param response the loaded response; null if the load failed
+     * @param failure the exception of the load; null if the load did not fail with an exception
+     */
+    private void processLoaded(final Request request, final CrawlProfile profile, final Response response, final Throwable failure) {
+        String error = null;
+        if (failure != null) {
+            request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+            if (CrawlQueues.log.isFine()) {
+                CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + failure.getMessage());
+            }
+            error = "load error - " + failure.getMessage();
+        } else if (response == null) {
+            request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+            if (CrawlQueues.log.isFine()) {
+                CrawlQueues.log.fine("problem loading " + request.url().toString() + ": no content (possibly caused by cache policy)");
+            }
+            error = "no content (possibly caused by cache policy)";
+        } else {
+            countLoaded();
+            request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
+            final String storedFailMessage = this.sb.toIndexer(response);
+            request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
+            error = (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
+        }
+
+        if (error != null) {
+            if (error.endsWith("$")) {
+                // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
+                // thus we only push this message if we don't have that mark
+                error = error.substring(0, error.length() - 1).trim();
+            } else {
+                this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
+            }
+            request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+        } else {
+            request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+        }
+    }
+
     private void ensureLoaderRunning() {
         // check if there is at least one loader available
         for (int i = 0; i < this.worker.length; i++) {
@@ -733,6 +962,7 @@ public class CrawlQueues {
                     request.setStatus("worker-initialized", WorkflowJob.STATUS_INITIATED);
                     this.setName("CrawlQueues.Loader(" + request.url().toNormalform(false) + ")");
                     CrawlProfile profile = CrawlQueues.this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+                    Latency.loadStarted(request.url());
                     try {
                         // checking robots.txt for http(s) resources
                         request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
@@ -746,50 +976,21 @@ public class CrawlQueues {
                         } else {
                             // starting a load from the internet
                             request.setStatus("worker-loading", WorkflowJob.STATUS_RUNNING);
-                            String error = null;
    
                             // load a resource and push queue entry to switchboard queue
-                            // returns null if everything went fine, a fail reason string if a problem occurred
                             try {
                                 request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
                                 final Response response = CrawlQueues.this.sb.loader.load(request, profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent());
-                                if (response == null) {
-                                    request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                    if (CrawlQueues.log.isFine()) {
-                                        CrawlQueues.log.fine("problem loading " + request.url().toString() + ": no content (possibly caused by cache policy)");
-                                    }
-                                    error = "no content (possibly caused by cache policy)";
-                                } else {
-                                    request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
-                                    final String storedFailMessage = CrawlQueues.this.sb.toIndexer(response);
-                                    request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
-                                    error = (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
-                                }
+                                processLoaded(request, profile, response, null);
                             } catch (final IOException e) {
-                                request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                if (CrawlQueues.log.isFine()) {
-                                    CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + e.getMessage());
-                                }
-                                error = "load error - " + e.getMessage();
-                            }
-   
-                            if (error != null) {
-                                if (error.endsWith("$")) {
-                                    // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
-                                    // thus we only push this message if we don't have that mark
-                                    error = error.substring(0, error.length() - 1).trim();
-                                } else {
-                                    CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
-                                }
-                                request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
-                            } else {
-                                request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+                                processLoaded(request, profile, null, e);
                             }
                         }
                     } catch (final Exception e) {
                         CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
                         request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
                     } finally {
+                        Latency.loadFinished(request.url());
                         request = null;
                         this.setName("CrawlQueues.Loader(WAITING)");
                     }
@@ -46,6 +46,47 @@ public class Latency {
     private static final int mapMaxSize = 1000;
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
 
+    // the number of loads which are currently running for each host hash; entries are removed when the count drops to zero
+    private static final ConcurrentHashMap<String, AtomicInteger> loading = new ConcurrentHashMap<String, AtomicInteger>();
+
+    /**
+     * count a load of the url as running; must be followed by loadFinished(url)
+     * @param url
+     */
+    public static void loadStarted(final DigestURL url) {
+        final String hosthash = url.hosthash();
+        synchronized (loading) {
+            AtomicInteger c = loading.get(hosthash);
+            if (c == null) {
+                c = new AtomicInteger(0);
+                loading.put(hosthash, c);
+            }
+            c.incrementAndGet();
+        }
+    }
+
+    /**
+     * count a load of the url as finished
+     * @param url
+     */
+    public static void loadFinished(final DigestURL url) {
+        final String hosthash = url.hosthash();
+        synchronized (loading) {
+            final AtomicInteger c = loading.get(hosthash);
+            if (c != null && c.decrementAndGet() <= 0) loading.remove(hosthash);
+        }
+    }
+
+    /**
+     * get the number of running loads for a host
+     * @param hosthash
+     * @return the number of loads which were started and not yet finished
+     */
+    public static int loading(final String hosthash) {
+        final AtomicInteger c = loading.get(hosthash);
+        return c == null ? 0 : c.get();
+    }
+
     /**
      * update the latency entry after a host was selected for queueing into the loader
      * @param url
@@ -164,7 +205,7 @@ public class Latency {
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
 
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(hostname) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
+        if (loading(hosthash) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
         
         // the time since last access to the domain is the basis of the remaining calculation
         final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
@@ -207,7 +248,7 @@ public class Latency {
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
         
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
+        if (loading(url.hosthash()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
 
         // the time since last access to the domain is the basis of the remaining calculation
         final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
@@ -248,7 +289,7 @@ public class Latency {
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
         
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        int hostcount = Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost());
+        int hostcount = loading(url.hosthash());
         if (hostcount > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) {
             s.append(", hostcount = ").append(hostcount);
             waiting += 5000;
@@ -285,6 +326,22 @@ public class Latency {
             ) ? Integer.MIN_VALUE : waitingRemaining(crawlURL, robots, profileEntry.getAgent()); // this uses the robots.txt database and may cause a loading of robots.txt from the server
         return sleeptime;
     }
+
+    /**
+     * Guess the minimum sleep time for a given url like getDomainSleepTime, but only with the robots.txt entries which
+     * are already known; this never loads a robots.txt and can therefore be called in synchronized environments.
+     * @param robots
+     * @param profileEntry
+     * @param crawlURL
+     * @return the sleep time in milliseconds; may be negative for no sleep time
+     */
+    public static int getDomainSleepTimeGuessed(final RobotsTxt robots, final CrawlProfile profileEntry, final DigestURL crawlURL) {
+        if (profileEntry == null) return 0;
+        if (profileEntry.cacheStrategy() == CacheStrategy.CACHEONLY ||
+            (profileEntry.cacheStrategy() == CacheStrategy.IFEXIST && Cache.has(crawlURL.hash()))) return Integer.MIN_VALUE;
+        final String host = crawlURL.getHost() == null ? "localhost" : crawlURL.getHost();
+        return waitingRemainingGuessed(host, crawlURL.getPort(), crawlURL.hosthash(), robots, profileEntry.getAgent());
+    }
     
     /**
      * load a robots.txt to get the robots time.
@@ -42,6 +42,7 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.Balancer;
 import net.yacy.crawler.CrawlSwitchboard;
+import net.yacy.crawler.FrontierBalancer;
 import net.yacy.crawler.HostBalancer;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
@@ -68,32 +69,48 @@ public class NoticedURL {
     private Balancer noloadStack;
     
     private final File cachePath;
+    
+    /** true if the stacks are stored in a single frontier file each instead of a directory for each host */
+    private final boolean frontierFile;
 
+    /**
+     * @param cachePath
+     * @param onDemandLimit
+     * @param exceed134217727
+     * @param frontierFile true if the stacks are stored in a single frontier file each, false for a directory for each host
+     */
     protected NoticedURL(
             final File cachePath,
             final int onDemandLimit,
-            final boolean exceed134217727) {
+            final boolean exceed134217727,
+            final boolean frontierFile) {
         ConcurrentLog.info("NoticedURL", "START CREATING STACKS at " + cachePath.toString());
         ConcurrentLog.info("NoticedURL", "opening CrawlerCoreStacks..");
         this.cachePath = cachePath;
-        this.coreStack = new HostBalancer(new File(cachePath, "CrawlerCoreStacks"), onDemandLimit, exceed134217727);
+        this.frontierFile = frontierFile;
+        this.coreStack = newStack("CrawlerCoreStacks", onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "opening CrawlerLimitStacks..");
-        this.limitStack = new HostBalancer(new File(cachePath, "CrawlerLimitStacks"), onDemandLimit, exceed134217727);
+        this.limitStack = newStack("CrawlerLimitStacks", onDemandLimit, exceed134217727);
 
         this.remoteStack = null; // init on demand (on first push)
         
         ConcurrentLog.info("NoticedURL", "opening CrawlerNoLoadStacks..");
-        this.noloadStack = new HostBalancer(new File(cachePath, "CrawlerNoLoadStacks"), onDemandLimit, exceed134217727);
+        this.noloadStack = newStack("CrawlerNoLoadStacks", onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "FINISHED CREATING STACKS at " + cachePath.toString());
     }
 
+    private Balancer newStack(final String name, final int onDemandLimit, final boolean exceed134217727) {
+        if (this.frontierFile) return new FrontierBalancer(new File(this.cachePath, name + ".frontier"), onDemandLimit, exceed134217727);
+        return new HostBalancer(new File(this.cachePath, name), onDemandLimit, exceed134217727);
+    }
+
     /**
      * Init Remote crawl stack, internally called on 1st push to remoteStack
      */
     protected void initRemoteStack() {
         if (this.remoteStack == null && !MemoryControl.shortStatus()) {
             ConcurrentLog.info("NoticedURL", "opening CrawlerRemoteStacks..");
-            this.remoteStack = new HostBalancer(new File(this.cachePath, "CrawlerRemoteStacks"), this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
+            this.remoteStack = newStack("CrawlerRemoteStacks", this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
         }
     }
 
@@ -296,6 +313,40 @@ public class NoticedURL {
         }
     }
 
+    /**
+     * get the next entry of a host which can be loaded now; this never waits
+     * @param stackType
+     * @param maxLoadingPerHost the maximum number of running loads for a single host
+     * @param cs
+     * @param robots
+     * @return a request or null if the stack is empty or no host of the stack is ready
+     * @throws IOException
+     */
+    public Request popReady(final StackType stackType, final int maxLoadingPerHost, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        switch (stackType) {
+            case LOCAL:     return this.coreStack.popReady(maxLoadingPerHost, cs, robots);
+            case GLOBAL:    return this.limitStack.popReady(maxLoadingPerHost, cs, robots);
+            case REMOTE:   return (this.remoteStack != null) ? this.remoteStack.popReady(maxLoadingPerHost, cs, robots) : null;
+            case NOLOAD:   return pop(this.noloadStack, false, cs, robots); // entries which are not loaded need no host budget
+            default: return null;
+        }
+    }
+
+    /**
+     * guess the time until a host of a stack may be accessed
+     * @param stackType
+     * @return the time in milliseconds, Long.MAX_VALUE if no host is scheduled
+     */
+    public long readyIn(final StackType stackType) {
+        switch (stackType) {
+            case LOCAL:     return (this.coreStack == null) ? Long.MAX_VALUE : this.coreStack.readyIn();
+            case GLOBAL:    return (this.limitStack == null) ? Long.MAX_VALUE : this.limitStack.readyIn();
+            case REMOTE:   return (this.remoteStack == null) ? Long.MAX_VALUE : this.remoteStack.readyIn();
+            case NOLOAD:   return (this.noloadStack == null) ? Long.MAX_VALUE : this.noloadStack.readyIn();
+            default: return Long.MAX_VALUE;
+        }
+    }
+
     protected void shift(final StackType fromStack, final StackType toStack, final CrawlSwitchboard cs, final RobotsTxt robots) {
         try {
             final Request entry = pop(fromStack, false, cs, robots);
@@ -340,6 +391,7 @@ public class NoticedURL {
         while (!balancer.isEmpty()) {
             entry = balancer.pop(delay, cs, robots);
             if (entry != null) return entry;
+            if (delay) return null; // no host may be accessed now; a balancer may return null instead of waiting
 
             // the balancer was supposed to be not empty. Check this again
             // it may be possible that another process has taken all
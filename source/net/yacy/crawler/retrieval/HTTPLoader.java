@@ -28,17 +28,31 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.federate.solr.FailCategory;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.HTTPInputStream;
 import net.yacy.cora.util.StrictLimitInputStream;
@@ -62,6 +76,9 @@ public final class HTTPLoader {
     public  static final int    DEFAULT_MAXFILESIZE = 1024 * 1024 * 10;
     public  static final int    DEFAULT_CRAWLING_RETRY_COUNT = 5;
 
+    /** the non-blocking client of loadAsync; it is shared by all loads and started on first use */
+    private static HttpClient asyncClient = null;
+
     /**
      * The socket timeout that should be used
      */
@@ -158,8 +175,8 @@ public final class HTTPLoader {
 		if (statusCode > 299 && statusCode < 310) {
 			client.finish();
 			
-			final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, statusline,
-					responseHeader, requestURLString);
+			final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, statusline.getStatusCode(),
+					statusline.toString(), responseHeader, requestURLString);
 
 			if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
 				// we have two use cases here: loading from a crawl or just
@@ -262,7 +279,7 @@ public final class HTTPLoader {
 	 * @throws IOException when an error occured
 	 */
 	private DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
-			final StatusLine statusline, final ResponseHeader responseHeader, String requestURLString)
+			final int statusCode, final String statusline, final ResponseHeader responseHeader, String requestURLString)
 					throws IOException {
 		// read redirection URL
 		String redirectionUrlString = responseHeader.get(HeaderFramework.LOCATION);
@@ -271,7 +288,7 @@ public final class HTTPLoader {
 		if (redirectionUrlString.isEmpty()) {
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
 					FailCategory.TEMPORARY_NETWORK_FAILURE,
-					"no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusline.getStatusCode());
+					"no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusCode);
 			throw new IOException("REJECTED EMTPY REDIRECTION '" + statusline
 					+ "' for URL '" + requestURLString + "'$");
 		}
@@ -288,7 +305,7 @@ public final class HTTPLoader {
 
 		if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_RECORD_REDIRECTS, true)) {
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
-					FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusline.getStatusCode());
+					FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusCode);
 		}
 		return redirectionUrl;
 	}
@@ -374,8 +391,8 @@ public final class HTTPLoader {
         // check redirection
     	if (statusCode > 299 && statusCode < 310) {
 
-    	    final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, client.getHttpResponse().getStatusLine(),
-					responseHeader, requestURLString);
+    	    final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, statusCode,
+					client.getHttpResponse().getStatusLine().toString(), responseHeader, requestURLString);
 
     	    if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
     	        // we have two use cases here: loading from a crawl or just loading the url. Check this:
@@ -449,6 +466,239 @@ public final class HTTPLoader {
         }
     }
 
+    /**
+     * Load a resource with a non-blocking client. The connection is not bound to a thread while the remote
+     * server answers, so a crawler can keep many loads running at the same time. The response is evaluated
+     * in the given executor with the same rules as load(): redirects, error pushes and status codes are
+     * handled as in the synchronous case. Requests to the local peer and requests which must pass a proxy
+     * are done with load() inside the executor.
+     * @param entry
+     * @param profile
+     * @param maxFileSize max file size to load. -1 means no limit.
+     * @param blacklistType
+     * @param agent
+     * @param executor the executor which evaluates the response; the evaluation may block, so this must not be a thread of the client
+     * @return a future which completes with the response or exceptionally with the IOException which load() would have thrown
+     */
+    public CompletableFuture<Response> loadAsync(final Request entry, final CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor) {
+        final CompletableFuture<Response> future = new CompletableFuture<Response>();
+        final DigestURL url = entry.url();
+        final String host = url.getHost();
+        final ProxySettings.Protocol protocol = url.getProtocol().equals("https") ? ProxySettings.Protocol.HTTPS : ProxySettings.Protocol.HTTP;
+        if (host == null || Domains.isLocalhost(host) || ProxySettings.useForHost(host, protocol)) {
+            execute(executor, future, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(load(entry, profile, maxFileSize, blacklistType, agent));
+                    } catch (final Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+            return future;
+        }
+        Latency.updateBeforeLoad(url);
+        final long start = System.currentTimeMillis();
+        future.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(final Response response, final Throwable e) {
+                Latency.updateAfterLoad(url, System.currentTimeMillis() - start);
+            }
+        });
+        loadAsync(entry, profile, DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent, executor, future);
+        return future;
+    }
+
+    private void loadAsync(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor, final CompletableFuture<Response> future) {
+        try {
+            if (retryCount < 0) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
+                throw new IOException("retry counter exceeded for URL " + request.url().toString() + ". Processing aborted.$");
+            }
+
+            DigestURL url = request.url();
+
+            final String host = url.getHost();
+            if (host == null || host.length() < 2) throw new IOException("host is not well-formed: '" + host + "'");
+            final String path = url.getFile();
+
+            // check if url is in blacklist
+            final String hostlow = host.toLowerCase(Locale.ROOT);
+            if (blacklistType != null && Switchboard.urlBlacklist.isListed(blacklistType, hostlow, path)) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+                throw new IOException("CRAWLER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            }
+
+            // resolve yacy and yacyh domains
+            final AlternativeDomainNames yacyResolver = this.sb.peers;
+            if (yacyResolver != null) {
+                final String yAddress = yacyResolver.resolve(host);
+                if (yAddress != null) {
+                    url = new DigestURL(url.getProtocol() + "://" + yAddress + path);
+                }
+            }
+
+            // create a request header; the client decodes only gzip
+            final RequestHeader requestHeader = createRequestheader(request, agent);
+            requestHeader.put(HeaderFramework.ACCEPT_ENCODING, "gzip");
+
+            final org.eclipse.jetty.client.api.Request get;
+            try {
+                get = asyncClient(this.socketTimeout).newRequest(url.toNormalform(true));
+            } catch (final IllegalArgumentException e) {
+                throw new IOException(e.getMessage()); // can be caused at java.net.URI.create()
+            }
+            get.timeout(this.socketTimeout, TimeUnit.MILLISECONDS);
+            for (final Map.Entry<String, String> h: requestHeader.entrySet()) get.header(h.getKey(), h.getValue());
+
+            // send request; the listener is called by a thread of the client, the evaluation is done in the executor
+            final DigestURL requestURL = url;
+            get.send(new BufferingResponseListener(maxFileSize < 0 ? Integer.MAX_VALUE : maxFileSize) {
+                @Override
+                public void onComplete(final Result result) {
+                    final byte[] responseBody = result.isFailed() ? null : getContent();
+                    execute(executor, future, new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                if (result.isFailed()) {
+                                    final Throwable failure = result.getFailure();
+                                    throw new IOException("CRAWLER cannot load URL " + request.url().toNormalform(true) + ": " + (failure == null ? "unknown failure" : failure.getMessage()));
+                                }
+                                final Response response = evaluateAsync(request, profile, retryCount, maxFileSize, blacklistType, agent, executor, future, requestURL, requestHeader, result.getResponse(), responseBody);
+                                if (response != null) future.complete(response);
+                            } catch (final Throwable e) {
+                                future.completeExceptionally(e);
+                            }
+                        }
+                    });
+                }
+            });
+        } catch (final Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * evaluate a response of the non-blocking client like load() does
+     * @return the response or null if the request was redirected and the future is completed by the redirected load
+     */
+    private Response evaluateAsync(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor, final CompletableFuture<Response> future,
+            final DigestURL url, final RequestHeader requestHeader, final org.eclipse.jetty.client.api.Response clientResponse, final byte[] responseBody) throws IOException {
+        final int statusCode = clientResponse.getStatus();
+        final String statusline = clientResponse.getVersion() + " " + statusCode + " " + clientResponse.getReason();
+        final ResponseHeader responseHeader = new ResponseHeader(statusCode);
+        // the client has decoded gzip content, so the encoding and length headers do not describe the body any more
+        final boolean decoded = "gzip".equalsIgnoreCase(clientResponse.getHeaders().get(HttpHeader.CONTENT_ENCODING));
+        for (final HttpField field: clientResponse.getHeaders()) {
+            if (decoded && (field.getHeader() == HttpHeader.CONTENT_ENCODING || field.getHeader() == HttpHeader.CONTENT_LENGTH)) continue;
+            responseHeader.add(field.getName(), field.getValue());
+        }
+        final String requestURLString = request.url().toNormalform(true);
+
+        // check redirection
+        if (statusCode > 299 && statusCode < 310) {
+            final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, statusCode, statusline, responseHeader, requestURLString);
+
+            if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
+                // we have two use cases here: loading from a crawl or just loading the url. Check this:
+                if (profile != null && !CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) {
+                    // put redirect url on the crawler queue to repeat a double-check
+                    final Request redirectedRequest = new Request(request.initiator(),
+                            redirectionUrl,
+                            request.referrerhash(),
+                            request.name(),
+                            request.appdate(),
+                            request.profileHandle(),
+                            request.depth(),
+                            request.timezoneOffset());
+                    final String rejectReason = this.sb.crawlStacker.stackCrawl(redirectedRequest);
+                    // in the end we must throw an exception (even if this is not an error, just to abort the current process
+                    if (rejectReason != null) {
+                        throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason);
+                    }
+                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
+                }
+
+                // if we are already doing a shutdown we don't need to retry crawling; the callback does not run in the thread of the crawler
+                if (Thread.currentThread().isInterrupted() || this.sb.isTerminated()) {
+                    this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "server shutdown", statusCode);
+                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted because of server shutdown.$");
+                }
+
+                // retry crawling with new url
+                request.redirectURL(redirectionUrl);
+                loadAsync(request, profile, retryCount - 1, maxFileSize, blacklistType, agent, executor, future);
+                return null;
+            }
+            // we don't want to follow redirects
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
+            throw new IOException("REJECTED UNWANTED REDIRECTION '" + statusline + "' for URL '" + requestURLString + "'$");
+        } else if (responseBody == null) {
+            // no response, reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            throw new IOException("REJECTED EMPTY RESPONSE BODY '" + statusline + "' for URL '" + requestURLString + "'$");
+        } else if (statusCode == 200 || statusCode == 203) {
+            // the transfer is ok
+            final long contentLength = responseBody.length;
+            ByteCount.addAccountCount(ByteCount.CRAWLER, contentLength);
+
+            // create a new cache entry
+            return new Response(
+                    request,
+                    requestHeader,
+                    responseHeader,
+                    profile,
+                    false,
+                    responseBody
+            );
+        } else {
+            // if the response has not the right response type then reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+            throw new IOException("REJECTED WRONG STATUS TYPE '" + statusline + "' for URL '" + requestURLString + "'$");
+        }
+    }
+
+    private static void execute(final Executor executor, final CompletableFuture<Response> future, final Runnable job) {
+        try {
+            executor.execute(job);
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("loader is closed: " + e.getMessage()));
+        }
+    }
+
+    private synchronized static HttpClient asyncClient(final int timeout) throws IOException {
+        if (asyncClient == null) {
+            final HttpClient client = new HttpClient(new SslContextFactory.Client(true)); // trust all certificates as HTTPClient does
+            client.setName("HTTPLoader.async");
+            client.setFollowRedirects(false); // we want to handle redirection ourselves, so we don't index pages twice
+            client.setConnectTimeout(timeout);
+            client.setIdleTimeout(timeout);
+            client.setUserAgentField(null); // the user agent is sent with the request header
+            try {
+                client.start();
+            } catch (final Exception e) {
+                throw new IOException("cannot start the http client: " + e.getMessage());
+            }
+            asyncClient = client;
+        }
+        return asyncClient;
+    }
+
+    /**
+     * stop the client of loadAsync; it is started again on the next use
+     */
+    public synchronized static void closeAsync() {
+        if (asyncClient == null) return;
+        try {
+            asyncClient.stop();
+        } catch (final Exception e) {
+            ConcurrentLog.logException(e);
+        }
+        asyncClient = null;
+    }
+
     public static Response load(final Request request, ClientIdentification.Agent agent) throws IOException {
         return load(request, agent, 3);
     }
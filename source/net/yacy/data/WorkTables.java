@@ -57,6 +57,7 @@ import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.data.ymark.YMarkTables;
+import net.yacy.kelondro.blob.HeapColumnIndex;
 import net.yacy.kelondro.blob.Tables;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.rwi.IndexCell;
@@ -95,6 +96,13 @@ public class WorkTables extends Tables {
 
     public WorkTables(final File workPath) {
         super(workPath, 12);
+        try {
+            // api calls are selected by their url and ordered by the date of their last execution
+            this.createColumnIndex(TABLE_API_NAME, TABLE_API_COL_URL, HeapColumnIndex.Type.HASH);
+            this.createColumnIndex(TABLE_API_NAME, TABLE_API_COL_DATE_LAST_EXEC, HeapColumnIndex.Type.STRING);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
         this.bookmarks = new YMarkTables(this);
     }
     
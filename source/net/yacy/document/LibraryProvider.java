@@ -34,6 +34,7 @@ import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -49,6 +50,8 @@ import net.yacy.cora.language.synonyms.AutotaggingLibrary;
 import net.yacy.cora.language.synonyms.SynonymLibrary;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.retrieval.URLRewriterLibrary;
+import net.yacy.kelondro.data.word.TermDictionary;
+import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.util.FileUtils;
 
 public class LibraryProvider {
@@ -60,6 +63,7 @@ public class LibraryProvider {
     public static final String path_to_autotagging_dictionaries = "autotagging";
     public static final String path_to_synonym_dictionaries = "synonyms";
     public static final String path_to_rewriter_dictionaries = "rewriter";
+    public static final String term_dictionary_file = "termhash.dict";
 
     public static final String disabledExtension = ".disabled";
 
@@ -178,6 +182,43 @@ public class LibraryProvider {
             return;
         }
     }    
+    /**
+     * build the persistent term-to-hash dictionary and assign it to Word.
+     * The dictionary contains the terms of the did-you-mean dictionaries, the learned common words
+     * and the terms of a previous dictionary, so frequent terms are kept across restarts.
+     * Must be called after initialize().
+     */
+    public static void initTermDictionary() {
+        final File dictFile = new File(dictRoot, term_dictionary_file);
+        final Set<String> terms = new HashSet<String>();
+        final TermDictionary old = Word.getDictionary();
+        if (old != null) {
+            final Iterator<String> i = old.terms();
+            while (i.hasNext()) terms.add(i.next());
+        } else if (dictFile.exists()) {
+            try {
+                final Iterator<String> i = new TermDictionary(dictFile).terms();
+                while (i.hasNext()) terms.add(i.next());
+            } catch (final IOException e) {
+                LOG.warn("cannot read term dictionary " + dictFile + ": " + e.getMessage());
+            }
+        }
+        for (final WordCache.Dictionary dict: dymLib.getDictionaries().values()) {
+            for (final StringBuilder sb: dict.getWords()) terms.add(sb.toString());
+        }
+        terms.addAll(WordCache.getCommonWords());
+        if (terms.isEmpty()) return;
+        try {
+            Word.setDictionary(null); // the old file is replaced
+            final int count = TermDictionary.write(dictFile, terms.iterator());
+            Word.setDictionary(new TermDictionary(dictFile));
+            LOG.info("term dictionary " + dictFile + " created with " + count + " terms");
+        } catch (final IOException e) {
+            LOG.warn("cannot create term dictionary " + dictFile + ": " + e.getMessage());
+            Word.setDictionary(old);
+        }
+    }
+
     public static void initDidYouMean() {
         final File dymDict = new File(dictRoot, path_to_did_you_mean_dictionaries);
         if ( !dymDict.exists() ) {
@@ -265,6 +265,14 @@ public class Tokenizer {
         return this.words;
     }
     
+    /**
+     * compute the word hashes of all distinct words of this text in one batch
+     * @return a map from the words (lowercase) to their word hashes
+     */
+    public Map<String, byte[]> hashes() {
+        return Word.words2hashes(this.words.keySet());
+    }
+
     public static Map<String, Word> getWords(final String text, final WordCache meaningLib) {
         // returns a word/indexWord relation map
         if (text == null) return null;
@@ -28,16 +28,22 @@ package net.yacy.kelondro.blob;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
@@ -49,6 +55,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
@@ -59,6 +66,12 @@ import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BloomFilter;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowMergeIterator;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.index.RowSetCodec;
+import net.yacy.kelondro.index.RowSetStream;
 import net.yacy.kelondro.rwi.Reference;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.rwi.ReferenceFactory;
@@ -98,11 +111,20 @@ public class ArrayStack implements BLOB {
     private final String         prefix;
     private final int            buffersize;
     private final boolean        trimall;
+    private       boolean        compress; // write reference containers with RowSetCodec in merges and rewrites
 
     /** the thread pool for the keeperOf executor service */
     private final ExecutorService executor;
 
+    /** statistics of the bloom filters: key lookups, BLOBs asked, BLOBs skipped by their filter, BLOBs asked in vain although their filter had the key */
+    private final LongAdder lookups = new LongAdder(), probes = new LongAdder(), rejected = new LongAdder(), falsePositives = new LongAdder();
+
     // use our own formatter to prevent concurrency locks with other processes
+    /** number of threads which open the BLOB files of a stack concurrently at start-up; overwrite this to speed up the start */
+    public static int openThreads = 1;
+    /** containers of a term in several files are merged as a stream of references if their total size in bytes is larger than this */
+    public static long mergeStreamSize = 16 * 1024 * 1024;
+
     private final static GenericFormatter my_SHORT_MILSEC_FORMATTER  = new GenericFormatter(GenericFormatter.newShortMilsecFormat(), 1);
 
 
@@ -124,6 +146,7 @@ public class ArrayStack implements BLOB {
         this.repositoryAgeMax = Long.MAX_VALUE;
         this.repositorySizeMax = Long.MAX_VALUE;
         this.trimall = trimall;
+        this.compress = false;
 
         // init the thread pool for the keeperOf executor service
         this.executor = new ThreadPoolExecutor(
@@ -152,7 +175,7 @@ public class ArrayStack implements BLOB {
                 FileUtils.deletedelete(new File(heapLocation, file));
                 deletions = true;
             }
-            if (file.endsWith(".idx") || file.endsWith(".gap")) {
+            if (file.endsWith(".idx") || file.endsWith(".gap") || file.endsWith(".blm")) {
                 final String s = file.substring(0, file.length() - 17);
                 if (!fh.contains(s)) {
                     FileUtils.deletedelete(new File(heapLocation, file));
@@ -195,30 +218,81 @@ public class ArrayStack implements BLOB {
             }
         }
 
-        // open all blob files
-        for (final String file : files) {
-            if (file.length() >= 22 && file.charAt(this.prefix.length()) == '.' && file.endsWith(".blob")) {
+        // open all blob files; the files are independent from each other and can be opened concurrently
+        final ExecutorService opener = openThreads > 1 ? Executors.newFixedThreadPool(openThreads, new NamePrefixThreadFactory(this.prefix + ".open")) : null;
+        final TreeMap<Long, FutureTask<BLOB>> openings = new TreeMap<Long, FutureTask<BLOB>>();
+        final TreeMap<Long, Date> dates = new TreeMap<Long, Date>();
+        final TreeMap<Long, File> blobFiles = new TreeMap<Long, File>();
+        final Map<Long, BloomFilter> filters = new ConcurrentHashMap<Long, BloomFilter>();
+        boolean opened = false;
+        try {
+            for (final String file : files) {
+                if (file.length() >= 22 && file.charAt(this.prefix.length()) == '.' && file.endsWith(".blob")) {
+                    try {
+                       d = my_SHORT_MILSEC_FORMATTER.parse(file.substring(this.prefix.length() + 1, this.prefix.length() + 18), 0).getTime();
+                       final File blobFile = new File(heapLocation, file);
+                       time = d.getTime();
+                       final boolean writable = time == maxtime && !trimall;
+                       final Long t = Long.valueOf(time);
+                       final FutureTask<BLOB> opening = new FutureTask<BLOB>(new Callable<BLOB>() {
+                           @Override
+                           public BLOB call() throws IOException {
+                               if (writable) return new Heap(blobFile, keylength, ordering, buffersize);
+                               final BLOB blob = new HeapModifier(blobFile, keylength, ordering);
+                               blob.optimize(); // no writings here, can be used with minimum memory
+                               final BloomFilter filter = filter(blobFile, blob);
+                               if (filter != null) filters.put(t, filter);
+                               return blob;
+                           }
+                       });
+                       if (opener == null) opening.run(); else opener.execute(opening);
+                       openings.put(Long.valueOf(time), opening);
+                       dates.put(Long.valueOf(time), d);
+                       blobFiles.put(Long.valueOf(time), blobFile);
+                   } catch (final ParseException e) {continue;}
+                }
+            }
+            for (final Map.Entry<Long, FutureTask<BLOB>> opening: openings.entrySet()) {
+                d = dates.get(opening.getKey());
+                f = blobFiles.get(opening.getKey());
                 try {
-                   d = my_SHORT_MILSEC_FORMATTER.parse(file.substring(this.prefix.length() + 1, this.prefix.length() + 18), 0).getTime();
-                   f = new File(heapLocation, file);
-                   time = d.getTime();
-                   try {
-                       if (time == maxtime && !trimall) {
-                           oneBlob = new Heap(f, keylength, ordering, buffersize);
-                       } else {
-                           oneBlob = new HeapModifier(f, keylength, ordering);
-                           oneBlob.optimize(); // no writings here, can be used with minimum memory
-                       }
-                       sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
-                   } catch (final IOException e) {
-                       if (deleteonfail) {
-                           ConcurrentLog.warn("ArrayStack", "cannot read file " + f.getName() + ", deleting it (smart fail; alternative would be: crash; required user action would be same as deletion)");
-                           f.delete();
-                       } else {
-                           throw new IOException(e.getMessage(), e);
-                       }
-                   }
-               } catch (final ParseException e) {continue;}
+                    oneBlob = opening.getValue().get();
+                    final blobItem bi = new blobItem(d, f, oneBlob);
+                    bi.filter = filters.get(opening.getKey());
+                    sortedItems.put(opening.getKey(), bi);
+                } catch (final InterruptedException e) {
+                    throw new IOException(e.getMessage(), e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (!(cause instanceof IOException)) throw new IOException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+                    if (deleteonfail) {
+                        ConcurrentLog.warn("ArrayStack", "cannot read file " + f.getName() + ", deleting it (smart fail; alternative would be: crash; required user action would be same as deletion)");
+                        f.delete();
+                    } else {
+                        throw new IOException(cause.getMessage(), cause);
+                    }
+                }
+            }
+            opened = true;
+        } finally {
+            if (opener != null) opener.shutdown();
+            if (!opened) {
+                // close all files which have been opened before the failure, also those of openings which are still running
+                boolean interrupted = false;
+                for (final FutureTask<BLOB> opening: openings.values()) {
+                    while (true) {
+                        try {
+                            final BLOB blob = opening.get();
+                            if (blob != null) blob.close(false);
+                            break;
+                        } catch (final InterruptedException e) {
+                            interrupted = true; // wait for the opening anyway, otherwise its file is never closed
+                        } catch (final Throwable e) {
+                            break; // this opening failed as well; there is nothing to close
+                        }
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
             }
         }
 
@@ -258,13 +332,124 @@ public class ArrayStack implements BLOB {
             throw new IOException("date parse problem with file " + location.toString() + ": " + e.getMessage());
         }
         BLOB oneBlob;
+        BloomFilter filter = null;
         if (full && this.buffersize > 0 && !this.trimall) {
             oneBlob = new Heap(location, this.keylength, this.ordering, this.buffersize);
         } else {
             oneBlob = new HeapModifier(location, this.keylength, this.ordering);
             oneBlob.optimize();
+            filter = filter(location, oneBlob);
+        }
+        final blobItem bi = new blobItem(d, location, oneBlob);
+        bi.filter = filter;
+        this.blobs.add(bi);
+    }
+
+    /**
+     * get the bloom filter of a BLOB file which is not written any more. The filter is read from the dump which
+     * was written together with the file; if there is no dump, the filter is built from the keys of the BLOB and dumped.
+     * @param location the BLOB file
+     * @param blob the opened BLOB
+     * @return the filter or null if bloom filters are switched off or the filter cannot be built
+     */
+    private static BloomFilter filter(final File location, final BLOB blob) {
+        if (!HeapReader.bloomFilter) return null;
+        final String fingerprint = HeapReader.fingerprintFileHash(location);
+        final File dump = fingerprint == null ? null : HeapWriter.fingerprintFilterFile(location, fingerprint);
+        if (dump != null && dump.exists()) try {
+            return BloomFilter.load(dump);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("ArrayStack", "cannot read bloom filter " + dump.getName() + ", building it again: " + e.getMessage());
+        }
+        try {
+            final CloneableIterator<byte[]> keys = blob.keys(true, false);
+            final BloomFilter filter = HeapWriter.filter(keys, blob.size());
+            keys.close();
+            if (dump != null) {
+                HeapWriter.deleteFilters(location); // filters of an older state of the file
+                filter.dump(dump);
+            }
+            return filter;
+        } catch (final IOException e) {
+            ConcurrentLog.warn("ArrayStack", "cannot build bloom filter for " + location.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * check the bloom filter of a BLOB
+     * @param bi
+     * @param k the normalized key
+     * @return false if the BLOB does not contain the key, true if the BLOB may contain the key or has no filter
+     */
+    private static boolean mayContain(final blobItem bi, final byte[] k) {
+        final BloomFilter filter = bi.filter;
+        return filter == null || filter.mightContain(k);
+    }
+
+    /**
+     * check the bloom filter of a BLOB for a lookup and count the result for the statistics
+     * @param bi
+     * @param k the normalized key
+     * @return false if the BLOB does not need to be asked for the key
+     */
+    private boolean probe(final blobItem bi, final byte[] k) {
+        if (!mayContain(bi, k)) {
+            this.rejected.increment();
+            return false;
+        }
+        this.probes.increment();
+        return true;
+    }
+
+    /**
+     * count a probe which did not find the key
+     */
+    private void miss(final blobItem bi) {
+        if (bi.filter != null) this.falsePositives.increment();
+    }
+
+    private boolean has(final blobItem bi, final byte[] k, final byte[] key) {
+        if (!probe(bi, k)) return false;
+        if (bi.blob.containsKey(key)) return true;
+        miss(bi);
+        return false;
+    }
+
+    /**
+     * @return the number of key lookups; a lookup which asks for all BLOBs with a key counts once
+     */
+    public long lookups() {
+        return this.lookups.sum();
+    }
+
+    /**
+     * @return the average number of BLOBs which were asked for a key in one lookup
+     */
+    public double probesPerLookup() {
+        final long l = this.lookups.sum();
+        return l == 0 ? 0.0d : (double) this.probes.sum() / l;
+    }
+
+    /**
+     * @return the rate of BLOBs without the key which the bloom filters did not exclude
+     */
+    public double falsePositiveRate() {
+        final long fp = this.falsePositives.sum();
+        final long n = fp + this.rejected.sum();
+        return n == 0 ? 0.0d : (double) fp / n;
+    }
+
+    /**
+     * @return the memory which is used by the bloom filters of the BLOBs
+     */
+    public long filterMem() {
+        long m = 0;
+        if (this.blobs != null) for (final blobItem bi: this.blobs) {
+            final BloomFilter filter = bi.filter;
+            if (filter != null) m += filter.mem();
         }
-        this.blobs.add(new blobItem(d, location, oneBlob));
+        return m;
     }
 
     private synchronized void unmountBLOB(final File location, final boolean writeIDX) {
@@ -345,6 +530,37 @@ public class ArrayStack implements BLOB {
         return new File[]{f0, f1};
     }
 
+    /**
+     * unmount the smallest BLOB files for a merge of several files in one pass
+     * @param count the maximum number of files
+     * @param maxResultSize the maximum sum of the file sizes
+     * @return at least two files, ordered by the age of the files, or null if there are no two files which fit into maxResultSize
+     */
+    public synchronized File[] unmountSmallest(final int count, final long maxResultSize) {
+        if (this.blobs.size() < 2 || count < 2) return null;
+        final List<blobItem> bySize = new ArrayList<blobItem>(this.blobs);
+        Collections.sort(bySize, new Comparator<blobItem>() {
+            @Override
+            public int compare(final blobItem o1, final blobItem o2) {
+                return Long.compare(o1.location.length(), o2.location.length());
+            }
+        });
+        final List<blobItem> selected = new ArrayList<blobItem>(count);
+        long size = 0;
+        for (final blobItem b: bySize) {
+            final long l = b.location.length();
+            if (selected.size() >= count || size + l > maxResultSize) break;
+            selected.add(b);
+            size += l;
+        }
+        if (selected.size() < 2) return null;
+        // keep the order of the stack, which is the order of the creation date
+        final List<File> files = new ArrayList<File>(selected.size());
+        for (final blobItem b: this.blobs) if (selected.contains(b)) files.add(b.location);
+        for (final File f: files) unmountBLOB(f, false);
+        return files.toArray(new File[files.size()]);
+    }
+
     private synchronized File smallestBLOB(final File excluding, final long maxsize) {
         if (this.blobs.isEmpty()) return null;
         File bestFile = null;
@@ -399,6 +615,19 @@ public class ArrayStack implements BLOB {
         this.fileAgeLimit = Math.min(oneMonth, maxAge / 10);
     }
 
+    /**
+     * switch the compression of reference containers on or off. This affects only files which are written
+     * by merges and rewrites; existing files are converted when they are merged or rewritten.
+     * @param compress if true, containers are written with RowSetCodec
+     */
+    public void setCompression(final boolean compress) {
+        this.compress = compress;
+    }
+
+    public boolean compression() {
+        return this.compress;
+    }
+
     public void setMaxSize(final long maxSize) {
         this.repositorySizeMax = maxSize;
         this.fileSizeLimit = Math.min(maxFileSize, maxSize / 100L);
@@ -446,6 +675,7 @@ public class ArrayStack implements BLOB {
         Date creation;
         File location;
         BLOB blob;
+        volatile BloomFilter filter; // null if the BLOB has no filter, then it is always asked for a key
         public blobItem(final Date creation, final File location, final BLOB blob) {
             assert blob != null;
             this.creation = creation;
@@ -554,7 +784,7 @@ public class ArrayStack implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized boolean containsKey(final byte[] key) {
+    public boolean containsKey(final byte[] key) {
     	final blobItem bi = keeperOf(key);
     	return bi != null;
         //for (blobItem bi: blobs) if (bi.blob.has(key)) return true;
@@ -569,33 +799,44 @@ public class ArrayStack implements BLOB {
      */
     private blobItem keeperOf(final byte[] key) {
         if (this.blobs.isEmpty()) return null;
+        final byte[] k = HeapReader.normalizeKey(key, this.keylength);
+        this.lookups.increment();
         if (this.blobs.size() == 1) {
             final blobItem bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            if (has(bi, k, key)) return bi;
             return null;
         }
 
         // first check the current blob only because that has most probably the key if any has that key
         int bs1 = this.blobs.size() - 1;
         blobItem bi = this.blobs.get(bs1);
-        if (bi.blob.containsKey(key)) return bi;
-        if (this.blobs.size() == 2) {
+        if (has(bi, k, key)) return bi;
+
+        // only the BLOBs which may contain the key according to their bloom filter are asked
+        final List<blobItem> candidates = new ArrayList<blobItem>(bs1);
+        for (int i = 0; i < bs1; i++) {
+            bi = this.blobs.get(i);
+            if (probe(bi, k)) candidates.add(bi);
+        }
+        if (candidates.size() <= 2) {
             // this should not be done concurrently
-            bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            for (final blobItem b: candidates) {
+                if (b.blob.containsKey(key)) return b;
+                miss(b);
+            }
             return null;
         }
 
         // start a concurrent query to database tables
         final CompletionService<blobItem> cs = new ExecutorCompletionService<blobItem>(this.executor);
         int accepted = 0;
-        for (int i = 0; i < bs1; i++) {
-            final blobItem b = this.blobs.get(i);
+        for (final blobItem b: candidates) {
             try {
                 cs.submit(new Callable<blobItem>() {
                     @Override
                     public blobItem call() {
                         if (b.blob.containsKey(key)) return b;
+                        miss(b);
                         return null;
                     }
                 });
@@ -604,6 +845,7 @@ public class ArrayStack implements BLOB {
                 // the executor is either shutting down or the blocking queue is full
                 // execute the search direct here without concurrency
                 if (b.blob.containsKey(key)) return b;
+                miss(b);
             }
         }
 
@@ -642,7 +884,11 @@ public class ArrayStack implements BLOB {
         if (this.blobs == null || this.blobs.isEmpty()) return null;
         if (this.blobs.size() == 1) {
             final blobItem bi = this.blobs.get(0);
-            return bi.blob.get(key);
+            this.lookups.increment();
+            if (!probe(bi, HeapReader.normalizeKey(key, this.keylength))) return null;
+            final byte[] b = bi.blob.get(key);
+            if (b == null) miss(bi);
+            return b;
         }
 
         final blobItem bi = keeperOf(key);
@@ -685,21 +931,25 @@ public class ArrayStack implements BLOB {
     private class BlobValues extends LookAheadIterator<byte[]> {
 
         private final Iterator<blobItem> bii;
-        private final byte[] key;
+        private final byte[] key, k;
 
         public BlobValues(final byte[] key) {
             this.bii = ArrayStack.this.blobs.iterator();
             this.key = key;
+            this.k = HeapReader.normalizeKey(key, ArrayStack.this.keylength);
+            ArrayStack.this.lookups.increment();
         }
 
         @Override
         protected byte[] next0() {
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !probe(bi, this.k)) continue;
                 try {
                     final byte[] n = b.get(this.key);
                     if (n != null) return n;
+                    miss(bi);
                 } catch (final IOException e) {
                     ConcurrentLog.severe("ArrayStack", "BlobValues - IOException: " + e.getMessage(), e);
                     return null;
@@ -712,6 +962,27 @@ public class ArrayStack implements BLOB {
         }
     }
 
+    /**
+     * open streams on all BLOBs with the given key in the array, in the same order as getAll().
+     * The BLOBs are not loaded into memory; the streams fail with an IOException if a BLOB
+     * is modified while it is read.
+     * @param key
+     * @return a list of streams, empty if the key does not exist
+     * @throws IOException if a BLOB cannot be read as stream
+     */
+    public List<HeapReader.BlobInputStream> getAllStreams(final byte[] key) throws IOException {
+        final List<HeapReader.BlobInputStream> streams = new ArrayList<HeapReader.BlobInputStream>();
+        final byte[] k = HeapReader.normalizeKey(key, this.keylength);
+        this.lookups.increment();
+        for (final blobItem bi: this.blobs) {
+            if (bi.blob == null || !probe(bi, k)) continue;
+            if (!(bi.blob instanceof HeapReader)) throw new IOException("BLOB " + bi.location.getName() + " cannot be streamed");
+            final HeapReader.BlobInputStream s = ((HeapReader) bi.blob).getStream(key);
+            if (s != null) streams.add(s); else miss(bi);
+        }
+        return streams;
+    }
+
     /**
      * retrieve the size of the BLOB
      * @param key
@@ -721,7 +992,9 @@ public class ArrayStack implements BLOB {
     @Override
     public synchronized long length(final byte[] key) throws IOException {
         long l;
+        final byte[] k = HeapReader.normalizeKey(key, this.keylength);
         for (final blobItem bi: this.blobs) {
+            if (!mayContain(bi, k)) continue;
             l = bi.blob.length(key);
             if (l >= 0) return l;
         }
@@ -751,9 +1024,11 @@ public class ArrayStack implements BLOB {
 
         @Override
         protected Long next0() {
+            final byte[] k = HeapReader.normalizeKey(this.key, ArrayStack.this.keylength);
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !mayContain(bi, k)) continue;
                 try {
                     final long l = b.length(this.key);
                     if (l >= 0) return Long.valueOf(l);
@@ -799,7 +1074,12 @@ public class ArrayStack implements BLOB {
             System.out.println("bi.location.length() > this.maxsize");
         */
         if ((bi == null) || (System.currentTimeMillis() - bi.creation.getTime() > this.fileAgeLimit) || (bi.location.length() > this.fileSizeLimit && this.fileSizeLimit >= 0)) {
-            // add a new blob to the array
+            // add a new blob to the array; the previous one is not written any more and gets a bloom filter
+            if (bi != null && bi.filter == null && HeapReader.bloomFilter) {
+                final CloneableIterator<byte[]> keys = bi.blob.keys(true, false);
+                bi.filter = HeapWriter.filter(keys, bi.blob.size());
+                keys.close();
+            }
             bi = new blobItem(this.buffersize);
             this.blobs.add(bi);
         }
@@ -817,8 +1097,9 @@ public class ArrayStack implements BLOB {
     @Override
     public synchronized int replace(final byte[] key, final Rewriter rewriter) throws IOException, SpaceExceededException {
         int d = 0;
+        final byte[] k = HeapReader.normalizeKey(key, this.keylength);
         for (final blobItem bi: this.blobs) {
-            d += bi.blob.replace(key, rewriter);
+            if (mayContain(bi, k)) d += bi.blob.replace(key, rewriter);
         }
         return d;
     }
@@ -832,8 +1113,9 @@ public class ArrayStack implements BLOB {
     @Override
     public synchronized int reduce(final byte[] key, final Reducer reduce) throws IOException, SpaceExceededException {
         int d = 0;
+        final byte[] k = HeapReader.normalizeKey(key, this.keylength);
         for (final blobItem bi: this.blobs) {
-            d += bi.blob.reduce(key, reduce);
+            if (mayContain(bi, k)) d += bi.blob.reduce(key, reduce);
         }
         return d;
     }
@@ -852,10 +1134,14 @@ public class ArrayStack implements BLOB {
             final blobItem bi = this.blobs.get(0);
             bi.blob.delete(key);
         } else {
+            // BLOBs which do not contain the key according to their bloom filter are not asked
+            final byte[] k = HeapReader.normalizeKey(key, this.keylength);
+            final List<blobItem> candidates = new ArrayList<blobItem>(this.blobs.size());
+            for (final blobItem bi: this.blobs) if (mayContain(bi, k)) candidates.add(bi);
             @SuppressWarnings("unchecked")
-            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, this.blobs.size() - 1);
+            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, Math.max(0, candidates.size() - 1));
             int i = 0;
-            for (final blobItem bi: this.blobs) {
+            for (final blobItem bi: candidates) {
                 if (i < t.length) {
                     // run this in a concurrent thread
                     final blobItem bi0 = bi;
@@ -903,7 +1189,20 @@ public class ArrayStack implements BLOB {
      */
     @Override
     public synchronized void close(final boolean writeIDX) {
-        for (final blobItem bi: this.blobs) bi.blob.close(writeIDX);
+        for (final blobItem bi: this.blobs) {
+            bi.blob.close(writeIDX);
+            // a filter which was built after the BLOB was written is dumped for the next start
+            if (writeIDX && bi.filter != null && bi.location.exists()) {
+                final String fingerprint = HeapReader.fingerprintFileHash(bi.location);
+                final File dump = fingerprint == null ? null : HeapWriter.fingerprintFilterFile(bi.location, fingerprint);
+                if (dump != null && !dump.exists()) try {
+                    HeapWriter.deleteFilters(bi.location);
+                    bi.filter.dump(dump);
+                } catch (final IOException e) {
+                    ConcurrentLog.warn("ArrayStack", "cannot write bloom filter " + dump.getName() + ": " + e.getMessage());
+                }
+            }
+        }
         this.blobs.clear();
         this.blobs = null;
         this.executor.shutdown();
@@ -926,7 +1225,7 @@ public class ArrayStack implements BLOB {
         if (f2 == null) {
             // this is a rewrite
             ConcurrentLog.info("BLOBArray", "rewrite of " + f1.getName());
-            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer);
+            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer, this.compress);
             if (resultFile == null) {
                 ConcurrentLog.warn("BLOBArray", "rewrite of file " + f1 + " returned null. newFile = " + newFile);
                 return null;
@@ -941,7 +1240,7 @@ public class ArrayStack implements BLOB {
             return resultFile;
         }
         ConcurrentLog.info("BLOBArray", "merging " + f1.getName() + " with " + f2.getName());
-        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer);
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, new File[]{f1, f2}, newFile, writeBuffer, this.compress);
         if (resultFile == null) {
             ConcurrentLog.warn("BLOBArray", "merge of files " + f1 + ", " + f2 + " returned null. newFile = " + newFile);
             return null;
@@ -956,69 +1255,220 @@ public class ArrayStack implements BLOB {
         return resultFile;
     }
 
+    /**
+     * merge any number of blob files into one in a single pass.
+     * @param files the files to be merged; one file is only rewritten
+     * @param factory
+     * @param newFile
+     * @param writeBuffer
+     * @return the target file where the given files are merged in
+     */
+    public File mergeMount(final File[] files,
+            final ReferenceFactory<? extends Reference> factory,
+            final File newFile, final int writeBuffer) {
+        if (files.length == 1) return mergeMount(files[0], null, factory, newFile, writeBuffer);
+        if (files.length == 2) return mergeMount(files[0], files[1], factory, newFile, writeBuffer);
+        ConcurrentLog.info("BLOBArray", "merging " + files.length + " files into " + newFile.getName());
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, files, newFile, writeBuffer, this.compress);
+        if (resultFile == null) {
+            ConcurrentLog.warn("BLOBArray", "merge of " + files.length + " files returned null. newFile = " + newFile);
+            return null;
+        }
+        try {
+            mountBLOB(resultFile, false);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("BLOBArray", "merge of " + files.length + " files successfull, but read failed. resultFile = " + resultFile);
+            return null;
+        }
+        ConcurrentLog.info("BLOBArray", "merged " + files.length + " files into " + resultFile);
+        return resultFile;
+    }
+
     private static <ReferenceType extends Reference> File mergeWorker(
                     final ReferenceFactory<ReferenceType> factory,
-                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer) {
-        // iterate both files and write a new one
-        ReferenceIterator<ReferenceType> i1 = null;
+                    final int keylength, final ByteOrder order, final File[] files, final File newFile, final int writeBuffer,
+                    final boolean compress) {
+        // iterate all files and write a new one
+        final List<HeapRecordReader> readers = new ArrayList<HeapRecordReader>(files.length);
         try {
-            i1 = new ReferenceIterator<ReferenceType>(f1, factory);
-            ReferenceIterator<ReferenceType> i2 = null;
-            try {
-                i2 = new ReferenceIterator<ReferenceType>(f2, factory);
-                if (!i1.hasNext()) {
-                    if (i2.hasNext()) {
-                        HeapWriter.delete(f1);
-                        if (f2.renameTo(newFile)) return newFile;
-                        return f2;
-                    }
-                    HeapWriter.delete(f1);
-                    HeapWriter.delete(f2);
-                    return null;
-                } else if (!i2.hasNext()) {
-                    HeapWriter.delete(f2);
-                    if (f1.renameTo(newFile)) return newFile;
-                    return f1;
-                }
-                assert i1.hasNext();
-                assert i2.hasNext();
-                final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+            for (final File f: files) {
                 try {
-                    final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-                    merge(i1, i2, order, writer);
-                    writer.close(true);
+                    final HeapRecordReader r = new HeapRecordReader(f, keylength);
+                    if (r.next()) readers.add(r); else r.close();
                 } catch (final IOException e) {
-                    ConcurrentLog.severe("ArrayStack", "cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
-                    HeapWriter.delete(tmpFile);
-                    HeapWriter.delete(newFile);
-                    return null;
-                } catch (final SpaceExceededException e) {
-                    ConcurrentLog.severe("ArrayStack", "cannot merge because of memory failure: " + e.getMessage(), e);
-                    HeapWriter.delete(tmpFile);
-                    HeapWriter.delete(newFile);
+                    ConcurrentLog.severe("ArrayStack", "cannot merge because input files cannot be read, f = " + f.toString() + ": " + e.getMessage(), e);
                     return null;
                 }
-                // we don't need the old files any more
-                HeapWriter.delete(f1);
-                HeapWriter.delete(f2);
-                return newFile;
+            }
+            if (readers.isEmpty()) {
+                for (final File f: files) HeapWriter.delete(f);
+                return null;
+            }
+            final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+            try {
+                final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
+                merge(readers, factory, order, writer, compress);
+                writer.close(true);
             } catch (final IOException e) {
-                ConcurrentLog.severe("ArrayStack", "cannot merge because input files cannot be read, f2 = " + f2.toString() + ": " + e.getMessage(), e);
+                ConcurrentLog.severe("ArrayStack", "cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
+                HeapWriter.delete(tmpFile);
+                HeapWriter.delete(newFile);
+                return null;
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.severe("ArrayStack", "cannot merge because of memory failure: " + e.getMessage(), e);
+                HeapWriter.delete(tmpFile);
+                HeapWriter.delete(newFile);
                 return null;
-            } finally {
-                if (i2 != null) i2.close();
             }
-        } catch (final IOException e) {
-            ConcurrentLog.severe("ArrayStack", "cannot merge because input files cannot be read, f1 = " + f1.toString() + ": " + e.getMessage(), e);
-            return null;
         } finally {
-            if (i1 != null) i1.close();
+            for (final HeapRecordReader r: readers) r.close();
+        }
+        // we don't need the old files any more
+        for (final File f: files) HeapWriter.delete(f);
+        return newFile;
+    }
+
+    /**
+     * the current record of one input of a k-way merge
+     */
+    private static class MergeSource {
+        private final int position; // position of the input, containers with the same term hash are merged in this order
+        private final HeapRecordReader reader;
+        private MergeSource(final int position, final HeapRecordReader reader) {
+            this.position = position;
+            this.reader = reader;
+        }
+        private boolean advance(final ByteOrder ordering) throws IOException {
+            final byte[] lh = this.reader.key();
+            if (!this.reader.next()) return false;
+            assert ordering.compare(this.reader.key(), lh) > 0;
+            return true;
+        }
+    }
+
+    private static <ReferenceType extends Reference> void merge(
+            final List<HeapRecordReader> readers, final ReferenceFactory<ReferenceType> factory,
+            final ByteOrder ordering, final HeapWriter writer, final boolean compress) throws IOException, SpaceExceededException {
+        final PriorityQueue<MergeSource> queue = new PriorityQueue<MergeSource>(readers.size(), new Comparator<MergeSource>() {
+            @Override
+            public int compare(final MergeSource o1, final MergeSource o2) {
+                final int c = ordering.compare(o1.reader.key(), o2.reader.key());
+                return c == 0 ? o1.position - o2.position : c;
+            }
+        });
+        int p = 0;
+        for (final HeapRecordReader r: readers) queue.add(new MergeSource(p++, r));
+        final List<MergeSource> sources = new ArrayList<MergeSource>(readers.size());
+        while (!queue.isEmpty()) {
+            // collect the records of all inputs with the same term hash
+            sources.clear();
+            sources.add(queue.poll());
+            final byte[] termHash = sources.get(0).reader.key();
+            long length = sources.get(0).reader.length();
+            while (!queue.isEmpty() && ordering.equal(queue.peek().reader.key(), termHash)) {
+                final MergeSource source = queue.poll();
+                sources.add(source);
+                length += source.reader.length();
+            }
+            if (sources.size() > 1 && length > mergeStreamSize && ReferenceContainer.maxReferences <= 0) {
+                mergeStream(sources, termHash, factory, writer, compress);
+            } else {
+                mergeContainers(sources, termHash, factory, writer, compress);
+            }
+            for (final MergeSource source: sources) {
+                if (source.advance(ordering)) queue.add(source);
+            }
+        }
+    }
+
+    /**
+     * merge the containers of one term by loading them into memory
+     */
+    private static <ReferenceType extends Reference> void mergeContainers(
+            final List<MergeSource> sources, final byte[] termHash, final ReferenceFactory<ReferenceType> factory,
+            final HeapWriter writer, final boolean compress) throws IOException, SpaceExceededException {
+        ReferenceContainer<ReferenceType> c = null;
+        for (final MergeSource source: sources) {
+            final RowSet row;
+            try {
+                row = RowSetCodec.importRowSet(source.reader.value(), factory.getRow());
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.severe("ArrayStack", "lost entry '" + UTF8.String(termHash) + "' because of too low memory: " + e.toString());
+                continue;
+            } catch (final IOException e) {
+                ConcurrentLog.severe("ArrayStack", "lost entry '" + UTF8.String(termHash) + "' because of a corrupted container: " + e.getMessage());
+                continue;
+            }
+            final ReferenceContainer<ReferenceType> container = new ReferenceContainer<ReferenceType>(factory, termHash, row);
+            c = (c == null) ? container : c.merge(container);
+        }
+        if (c == null) return;
+        final int s = c.shrinkReferences();
+        if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(termHash) + " by " + s + " to " + c.size() + " entries");
+        writer.add(termHash, RowSetCodec.exportCollection(c, compress));
+    }
+
+    /**
+     * merge the containers of one term as a stream of rows; the containers are never loaded into memory
+     */
+    private static <ReferenceType extends Reference> void mergeStream(
+            final List<MergeSource> sources, final byte[] termHash, final ReferenceFactory<ReferenceType> factory,
+            final HeapWriter writer, final boolean compress) throws IOException, SpaceExceededException {
+        final Row rowdef = factory.getRow();
+        final List<RowSetStream> inputs = new ArrayList<RowSetStream>(sources.size());
+        for (final MergeSource source: sources) {
+            inputs.add(new RowSetStream(source.reader.stream(), rowdef, source.reader.length()));
+        }
+        final RowMergeIterator rows = new RowMergeIterator(rowdef, inputs);
+        try {
+            if (!rows.hasNext()) return;
+            ConcurrentLog.info("ArrayStack", "merging " + rows.size() + " references of " + ASCII.String(termHash) + " as stream");
+            if (compress) {
+                writer.add(termHash, new HeapWriter.BlobStream() {
+                    private RowSetCodec.Encoder encoder = null;
+                    @Override
+                    public long write(final OutputStream os) throws IOException {
+                        this.encoder = new RowSetCodec.Encoder(os, rowdef, RowSetCodec.blockSize);
+                        while (rows.hasNext()) this.encoder.add(rows.next().bytes(), 0);
+                        if (rows.error() != null) throw rows.error();
+                        return this.encoder.finish(0);
+                    }
+                    @Override
+                    public byte[] header() {
+                        return this.encoder.header(System.currentTimeMillis());
+                    }
+                });
+                return;
+            }
+            writer.add(termHash, new HeapWriter.BlobStream() {
+                private int count = 0;
+                @Override
+                public long write(final OutputStream os) throws IOException {
+                    final byte[] header = RowSet.exportHeader(rowdef, 0, 0, System.currentTimeMillis()); // replaced by header()
+                    os.write(header);
+                    long length = header.length;
+                    while (rows.hasNext()) {
+                        os.write(rows.next().bytes());
+                        length += rowdef.objectsize;
+                        this.count++;
+                    }
+                    if (rows.error() != null) throw rows.error();
+                    return length;
+                }
+                @Override
+                public byte[] header() {
+                    return RowSet.exportHeader(rowdef, this.count, this.count, System.currentTimeMillis());
+                }
+            });
+        } finally {
+            rows.close();
         }
     }
 
     private static <ReferenceType extends Reference> File rewriteWorker(
             final ReferenceFactory<ReferenceType> factory,
-            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer) {
+            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer,
+            final boolean compress) {
         // iterate both files and write a new one
 
         CloneableIterator<ReferenceContainer<ReferenceType>> i = null;
@@ -1036,7 +1486,7 @@ public class ArrayStack implements BLOB {
         final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
         try {
             final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-            rewrite(i, order, writer);
+            rewrite(i, order, writer, compress);
             writer.close(true);
             i.close();
         } catch (final IOException e) {
@@ -1055,110 +1505,9 @@ public class ArrayStack implements BLOB {
         return newFile;
     }
 
-    private static <ReferenceType extends Reference> void merge(
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i1,
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i2,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
-        assert i1.hasNext();
-        assert i2.hasNext();
-        byte[] c1lh, c2lh;
-        ReferenceContainer<ReferenceType> c1, c2;
-        c1 = i1.next();
-        c2 = i2.next();
-        int e, s;
-        while (true) {
-            assert c1 != null;
-            assert c2 != null;
-            e = ordering.compare(c1.getTermHash(), c2.getTermHash());
-            if (e < 0) {
-            	s = c1.shrinkReferences();
-            	if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-                writer.add(c1.getTermHash(), c1.exportCollection());
-                if (i1.hasNext()) {
-                    c1lh = c1.getTermHash();
-                    c1 = i1.next();
-                    assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-                    continue;
-                }
-                c1 = null;
-                break;
-            }
-            if (e > 0) {
-                s = c2.shrinkReferences();
-                if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-                writer.add(c2.getTermHash(), c2.exportCollection());
-                if (i2.hasNext()) {
-                    c2lh = c2.getTermHash();
-                    c2 = i2.next();
-                    assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-                    continue;
-                }
-                c2 = null;
-                break;
-            }
-            assert e == 0;
-            // merge the entries
-            c1 = c1.merge(c2);
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
-            c1lh = c1.getTermHash();
-            c2lh = c2.getTermHash();
-            if (i1.hasNext() && i2.hasNext()) {
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-                continue;
-            }
-            c1 = null;
-            c2 = null;
-            if (i1.hasNext()) {
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-            }
-            if (i2.hasNext()) {
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-            }
-            break;
-
-        }
-        // catch up remaining entries
-        assert !(i1.hasNext() && i2.hasNext());
-        assert (c1 == null) || (c2 == null);
-        while (c1 != null) {
-            //System.out.println("FLUSH REMAINING 1: " + c1.getWordHash());
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
-            if (i1.hasNext()) {
-                c1lh = c1.getTermHash();
-                c1 = i1.next();
-                assert ordering.compare(c1.getTermHash(), c1lh) > 0;
-            } else {
-                c1 = null;
-            }
-        }
-        while (c2 != null) {
-            //System.out.println("FLUSH REMAINING 2: " + c2.getWordHash());
-            s = c2.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-            writer.add(c2.getTermHash(), c2.exportCollection());
-            if (i2.hasNext()) {
-                c2lh = c2.getTermHash();
-                c2 = i2.next();
-                assert ordering.compare(c2.getTermHash(), c2lh) > 0;
-            } else {
-                c2 = null;
-            }
-        }
-        // finished with writing
-    }
-
     private static <ReferenceType extends Reference> void rewrite(
             final CloneableIterator<ReferenceContainer<ReferenceType>> i,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+            final ByteOrder ordering, final HeapWriter writer, final boolean compress) throws IOException, SpaceExceededException {
         assert i.hasNext();
         byte[] clh;
         ReferenceContainer<ReferenceType> c;
@@ -1168,7 +1517,7 @@ public class ArrayStack implements BLOB {
             assert c != null;
             s = c.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
-            writer.add(c.getTermHash(), c.exportCollection());
+            writer.add(c.getTermHash(), RowSetCodec.exportCollection(c, compress));
             if (i.hasNext()) {
                 clh = c.getTermHash();
                 c = i.next();
@@ -26,6 +26,7 @@ package net.yacy.kelondro.blob;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -34,6 +35,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import net.yacy.cora.document.encoding.ASCII;
@@ -46,8 +48,7 @@ import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.storage.MapStore;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
-import net.yacy.kelondro.util.BDecoder;
-import net.yacy.kelondro.util.BDecoder.BObject;
+import net.yacy.kelondro.util.BDictionaryView;
 import net.yacy.kelondro.util.BEncoder;
 import net.yacy.kelondro.util.FileUtils;
 
@@ -59,6 +60,8 @@ public class BEncodedHeap implements MapStore {
 
     private Heap table;
     private final LinkedHashSet<String> columnames;
+    private final Map<String, HeapColumnIndex> columnIndexes; // secondary indexes, the key is the column name
+    private boolean modified; // true if the heap was written after it was opened; then the index dumps are stale
 
     /**
      * produce or open a properties table
@@ -76,6 +79,8 @@ public class BEncodedHeap implements MapStore {
         final int buffermax) throws IOException {
         this.table = new Heap(location, keylength, ordering, buffermax);
         this.columnames = new LinkedHashSet<String>();
+        this.columnIndexes = new ConcurrentHashMap<String, HeapColumnIndex>();
+        this.modified = false;
     }
 
     /**
@@ -87,6 +92,107 @@ public class BEncodedHeap implements MapStore {
     public BEncodedHeap(final File location, final int keylength) throws IOException {
         this.table = new Heap(location, keylength, NaturalOrder.naturalOrder, 100);
         this.columnames = new LinkedHashSet<String>();
+        this.columnIndexes = new ConcurrentHashMap<String, HeapColumnIndex>();
+        this.modified = false;
+    }
+
+    /**
+     * create a secondary index on a column or return the existing index. The index is read from the dump
+     * which was written when the heap was closed; if there is no such dump or the heap was changed since it
+     * was opened, the index is generated from all rows.
+     * The index is maintained with every change of the heap.
+     *
+     * @param column the name of the column
+     * @param type the encoding of the values of the column
+     * @return the index
+     * @throws IOException
+     */
+    public synchronized HeapColumnIndex createColumnIndex(final String column, final HeapColumnIndex.Type type) throws IOException {
+        HeapColumnIndex index = this.columnIndexes.get(column);
+        if (index != null && index.type() == type) return index;
+        index = new HeapColumnIndex(column, type, this.table.keylength());
+        final File heapFile = this.table.heapFile;
+        final File dump = heapFile.length() == 0 ? null : columnIndexDump(heapFile, HeapReader.fingerprintFileHash(heapFile), index);
+        // the index is generated with the lock of write() and delete(), otherwise a row which is written during the generation could be missing
+        synchronized (this.columnIndexes) {
+            try {
+                if (!this.modified && dump != null && dump.exists()) {
+                    index.load(dump);
+                } else {
+                    final Iterator<Map.Entry<byte[], Map<String, byte[]>>> i = this.iterator();
+                    while (i != null && i.hasNext()) {
+                        final Map.Entry<byte[], Map<String, byte[]>> row = i.next();
+                        index.add(row.getKey(), row.getValue());
+                    }
+                }
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            }
+            // the dumps are deleted because they would be stale after the next write
+            deleteColumnIndexDumps(heapFile, index.name());
+            this.columnIndexes.put(column, index);
+        }
+        return index;
+    }
+
+    /**
+     * get the secondary index of a column
+     * @param column the name of the column
+     * @return the index or null if the column has no index
+     */
+    public HeapColumnIndex getColumnIndex(final String column) {
+        return this.columnIndexes.get(column);
+    }
+
+    private static File columnIndexDump(final File heapFile, final String fingerprint, final HeapColumnIndex index) {
+        return new File(heapFile.getParentFile(), heapFile.getName() + "." + fingerprint + "." + index.name() + HeapColumnIndex.suffix);
+    }
+
+    private static void deleteColumnIndexDumps(final File heapFile, final String name) {
+        final String[] l = heapFile.getParentFile().list();
+        if (l == null) return;
+        for (final String f: l) {
+            if (f.startsWith(heapFile.getName()) && f.endsWith(HeapColumnIndex.suffix) &&
+                (name == null || f.endsWith("." + name + HeapColumnIndex.suffix))) FileUtils.deletedelete(new File(heapFile.getParentFile(), f));
+        }
+    }
+
+    /**
+     * write a row to the heap and update the secondary indexes
+     * @param pk the primary key
+     * @param map the row
+     * @param b the encoded row
+     */
+    private void write(final byte[] pk, final Map<String, byte[]> map, final byte[] b) throws IOException {
+        synchronized (this.columnIndexes) {
+            this.modified = true;
+            if (this.columnIndexes.isEmpty()) {
+                this.table.insert(pk, b);
+                return;
+            }
+            final byte[] key = HeapReader.normalizeKey(pk, this.table.keylength());
+            final Map<String, byte[]> old = indexedRow(key);
+            this.table.insert(pk, b);
+            for (final HeapColumnIndex index: this.columnIndexes.values()) {
+                index.remove(key, old);
+                try {
+                    index.add(key, map);
+                } catch (final SpaceExceededException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * get a row before it is changed to remove it from the secondary indexes
+     */
+    private Map<String, byte[]> indexedRow(final byte[] key) throws IOException {
+        try {
+            return this.get(key);
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        }
     }
 
     @Override
@@ -160,6 +266,32 @@ public class BEncodedHeap implements MapStore {
 
     }
 
+    private static class ViewIter implements Iterator<Map.Entry<byte[], BDictionaryView>>
+    {
+        HeapReader.entries iter;
+
+        public ViewIter(final File location, final int keylen) throws IOException {
+            this.iter = new HeapReader.entries(location, keylen);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iter.hasNext();
+        }
+
+        @Override
+        public Entry<byte[], BDictionaryView> next() {
+            final Map.Entry<byte[], byte[]> entry = this.iter.next();
+            return new AbstractMap.SimpleImmutableEntry<byte[], BDictionaryView>(entry.getKey(), new BDictionaryView(entry.getValue()));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
     private static class b2mEntry implements Map.Entry<byte[], Map<String, byte[]>>
     {
         private final byte[] s;
@@ -193,19 +325,8 @@ public class BEncodedHeap implements MapStore {
             return null;
         }
         //System.out.println("b = " + UTF8.String(b));
-        final BDecoder decoder = new BDecoder(b);
-        final BObject bobj = decoder.parse();
-        if ( bobj == null || bobj.getType() != BDecoder.BType.dictionary ) {
-            return null;
-        }
-        final Map<String, BDecoder.BObject> map = bobj.getMap();
-        final Map<String, byte[]> m = new HashMap<String, byte[]>();
-        for ( final Map.Entry<String, BDecoder.BObject> entry : map.entrySet() ) {
-            BObject ev = entry.getValue();
-            if ( ev == null || ev.getType() != BDecoder.BType.string ) continue;
-            m.put(entry.getKey(), ev.getString());
-        }
-        return m;
+        // the view decodes the values directly without BDecoder objects for the entries
+        return new BDictionaryView(b).toMap();
     }
 
     /**
@@ -284,6 +405,39 @@ public class BEncodedHeap implements MapStore {
         return b2m(b);
     }
 
+    /**
+     * get some columns of a row; the other columns are not decoded
+     *
+     * @param pk the primary key
+     * @param columns the names of the columns
+     * @return a map with the given columns which exist in the row or NULL if no entry exists or the entry is corrupt
+     * @throws SpaceExceededException
+     * @throws IOException
+     */
+    public Map<String, byte[]> get(final byte[] pk, final String... columns) throws IOException, SpaceExceededException {
+        final byte[] b = this.table.get(pk);
+        if ( b == null ) {
+            return null;
+        }
+        return new BDictionaryView(b).toMap(columns);
+    }
+
+    /**
+     * get a view on a row which decodes the values of the columns on demand
+     *
+     * @param pk the primary key
+     * @return the view or NULL if no entry exists
+     * @throws SpaceExceededException
+     * @throws IOException
+     */
+    public BDictionaryView view(final byte[] pk) throws IOException, SpaceExceededException {
+        final byte[] b = this.table.get(pk);
+        if ( b == null ) {
+            return null;
+        }
+        return new BDictionaryView(b);
+    }
+
     /**
      * get a map from the table this method is here to implement the Map interface
      *
@@ -392,13 +546,15 @@ public class BEncodedHeap implements MapStore {
         throws SpaceExceededException,
         IOException {
         final byte[] b = BEncoder.encode(BEncoder.transcode(map));
-        this.table.insert(pk, b);
+        this.write(pk, map, b);
         this.columnames.addAll(map.keySet());
     }
 
     public void insert(final byte[] pk, final String key, final byte[] value) throws IOException {
         final byte[] b = BEncoder.encodeMap(key, value);
-        this.table.insert(pk, b);
+        final Map<String, byte[]> map = new HashMap<String, byte[]>();
+        map.put(key, value);
+        this.write(pk, map, b);
         this.columnames.add(key);
     }
 
@@ -439,7 +595,7 @@ public class BEncodedHeap implements MapStore {
         try {
             final Map<String, byte[]> entry = this.get(pk);
             final byte[] b = BEncoder.encode(BEncoder.transcode(map));
-            this.table.insert(pk, b);
+            this.write(pk, map, b);
             this.columnames.addAll(map.keySet());
             return entry;
         } catch (final IOException e ) {
@@ -458,7 +614,17 @@ public class BEncodedHeap implements MapStore {
      * @throws IOException
      */
     public void delete(final byte[] pk) throws IOException {
-        this.table.delete(pk);
+        synchronized (this.columnIndexes) {
+            this.modified = true;
+            if (this.columnIndexes.isEmpty()) {
+                this.table.delete(pk);
+                return;
+            }
+            final byte[] key = HeapReader.normalizeKey(pk, this.table.keylength());
+            final Map<String, byte[]> old = indexedRow(key);
+            this.table.delete(pk);
+            for (final HeapColumnIndex index: this.columnIndexes.values()) index.remove(key, old);
+        }
     }
 
     /**
@@ -514,8 +680,12 @@ public class BEncodedHeap implements MapStore {
     @Override
     public void clear() {
         try {
-            this.table.clear();
-            this.columnames.clear();
+            synchronized (this.columnIndexes) {
+                this.modified = true;
+                this.table.clear();
+                this.columnames.clear();
+                for (final HeapColumnIndex index: this.columnIndexes.values()) index.clear();
+            }
         } catch (final IOException e ) {
             ConcurrentLog.logException(e);
         }
@@ -530,7 +700,20 @@ public class BEncodedHeap implements MapStore {
         int s = this.size();
         File f = this.table.heapFile;
         this.table.close();
-        if (s == 0) f.delete();
+        if (!this.columnIndexes.isEmpty()) deleteColumnIndexDumps(f, null);
+        if (s == 0) {
+            f.delete();
+        } else if (!this.columnIndexes.isEmpty()) {
+            // write the secondary indexes with the fingerprint of the closed heap file
+            final String fingerprint = HeapReader.fingerprintFileHash(f);
+            if (fingerprint != null) for (final HeapColumnIndex index: this.columnIndexes.values()) {
+                try {
+                    index.dump(columnIndexDump(f, fingerprint, index));
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+        }
     }
 
     /**
@@ -626,6 +809,31 @@ public class BEncodedHeap implements MapStore {
         }
     }
 
+    /**
+     * iterate views on all rows of the table; the values of the rows are decoded on demand, which is
+     * cheaper than iterator() if only some columns are used or only some rows are selected
+     */
+    public Iterator<Map.Entry<byte[], BDictionaryView>> views() {
+        final File location = this.table.location();
+        final int keylen = this.table.keylength();
+        try {
+            this.table.flushBuffer();
+            return new ViewIter(location, keylen);
+        } catch (final IOException e1 ) {
+            final ByteOrder order = this.table.ordering();
+            final int buffermax = this.table.getBuffermax();
+            this.table.close();
+            try {
+                final Iterator<Map.Entry<byte[], BDictionaryView>> iter = new ViewIter(location, keylen);
+                this.table = new Heap(location, keylen, order, buffermax);
+                return iter;
+            } catch (final IOException e ) {
+                ConcurrentLog.severe("PropertiesTable", e.getMessage(), e);
+                return null;
+            }
+        }
+    }
+
     /**
      * iterate all rows of the table. this is a static method that expects that the given file is not opened
      * by any other application
@@ -108,6 +108,14 @@ public final class Heap extends HeapModifier implements BLOB {
         */
     }
     
+    /**
+     * a Heap appends new records to the end of the file; these would not be visible in a mapped view
+     */
+    @Override
+    protected boolean mappable() {
+        return false;
+    }
+
     /**
      * the number of BLOBs in the heap
      * @return the number of BLOBs in the heap
@@ -127,13 +135,16 @@ public final class Heap extends HeapModifier implements BLOB {
     public boolean containsKey(byte[] key) {
         if (this.index == null) return false;
         key = normalizeKey(key);
-        synchronized (this) {
+        this.readLock.lock();
+        try {
             // check the buffer
             assert this.buffer != null;
             if (this.buffer != null) {
                 if (this.buffer.containsKey(key)) return true;
             }
             return super.containsKey(key);
+        } finally {
+            this.readLock.unlock();
         }
     }
     
@@ -166,7 +177,17 @@ public final class Heap extends HeapModifier implements BLOB {
      * @throws SpaceExceededException 
      */
     public void flushBuffer() throws IOException {
+        this.writeLock.lock();
+        try {
+            flushBufferLocked();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    private void flushBufferLocked() throws IOException {
         if (this.buffer == null) return;
+        this.writeCount++;
         
         // check size of buffer
         Iterator<Map.Entry<byte[], byte[]>> i = this.buffer.entrySet().iterator();
@@ -189,9 +210,7 @@ public final class Heap extends HeapModifier implements BLOB {
         assert l + (4 + this.keylength) * this.buffer.size() == posBuffer : "l = " + l + ", this.keylength = " + this.keylength + ", this.buffer.size() = " + this.buffer.size() + ", posBuffer = " + posBuffer;
          */
         
-        synchronized (this) {
-            super.deleteFingerprint();
-        }
+        super.deleteFingerprint();
         
         // append all contents of the buffer into one byte[]
         i = this.buffer.entrySet().iterator();
@@ -242,15 +261,20 @@ public final class Heap extends HeapModifier implements BLOB {
     public byte[] get(byte[] key) throws IOException, SpaceExceededException {
         key = normalizeKey(key);
         
-        synchronized (this) {
+        this.readLock.lock();
+        try {
             // check the buffer
             if (this.buffer != null) {
                 byte[] blob = this.buffer.get(key);
                 if (blob != null) return blob;
             }
-            
-            return super.get(key);
+        } finally {
+            this.readLock.unlock();
         }
+
+        // the file is read without holding the readLock because a corrupted record is removed with the writeLock;
+        // if the buffer is flushed in between, the blob is found in the file
+        return super.get(key);
     }
 
     /**
@@ -263,7 +287,8 @@ public final class Heap extends HeapModifier implements BLOB {
     public long length(byte[] key) throws IOException {
         key = normalizeKey(key);
 
-        synchronized (this) {
+        this.readLock.lock();
+        try {
             // check the buffer
             if (this.buffer != null) {
                 byte[] blob = this.buffer.get(key);
@@ -271,6 +296,8 @@ public final class Heap extends HeapModifier implements BLOB {
             }
             
             return super.length(key);
+        } finally {
+            this.readLock.unlock();
         }
     }
     
@@ -279,35 +306,45 @@ public final class Heap extends HeapModifier implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized void clear() throws IOException {
+    public void clear() throws IOException {
         ConcurrentLog.info("Heap", "clearing heap " + this.name());
-        assert this.buffer != null;
-        if (this.buffer == null) this.buffer = new TreeMap<byte[], byte[]>(this.ordering);
-    	this.buffer.clear();
-        this.buffersize = 0;
-        super.clear();
+        this.writeLock.lock();
+        try {
+            assert this.buffer != null;
+            if (this.buffer == null) this.buffer = new TreeMap<byte[], byte[]>(this.ordering);
+            this.buffer.clear();
+            this.buffersize = 0;
+            super.clear();
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     /**
      * close the BLOB table
      */
     @Override
-    public synchronized void close(final boolean writeIDX) {
+    public void close(final boolean writeIDX) {
         ConcurrentLog.info("Heap", "closing heap " + this.name());
-    	if (this.file != null && this.buffer != null) {
-            try {
-                flushBuffer();
-            } catch (final IOException e) {
-                ConcurrentLog.logException(e);
+        this.writeLock.lock();
+        try {
+            if (this.file != null && this.buffer != null) {
+                try {
+                    flushBufferLocked();
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                }
             }
+            this.buffer = null;
+            super.close(writeIDX);
+            assert this.file == null;
+        } finally {
+            this.writeLock.unlock();
         }
-    	this.buffer = null;
-    	super.close(writeIDX);
-    	assert this.file == null;
     }
     
     @Override
-    public synchronized void close() {
+    public void close() {
         this.close(true);
     }
     
@@ -335,7 +372,9 @@ public final class Heap extends HeapModifier implements BLOB {
         // we do not write records of length 0 into the BLOB
         if (b.length == 0) return;
         
-        synchronized (this) {
+        this.writeLock.lock();
+        try {
+            this.writeCount++;
             // first remove the old entry (removes from buffer and file)
             // TODO: this can be enhanced!
             this.delete(key);
@@ -351,7 +390,7 @@ public final class Heap extends HeapModifier implements BLOB {
             if (this.buffersize + b.length > this.buffermax || MemoryControl.shortStatus()) {
                 // this is too big. Flush everything
                 super.shrinkWithGapsAtEnd();
-                flushBuffer();
+                flushBufferLocked();
                 if (b.length > this.buffermax) {
                     this.add(key, b);
                 } else {
@@ -368,6 +407,8 @@ public final class Heap extends HeapModifier implements BLOB {
                 this.buffer.put(key, b);
                 this.buffersize += b.length;
             }
+        } finally {
+            this.writeLock.unlock();
         }
     }
     
@@ -376,6 +417,7 @@ public final class Heap extends HeapModifier implements BLOB {
         if (b.length == 0) return true;
         
         // then look if we can use a free entry
+        loadGaps();
         if (this.free == null || this.free.isEmpty()) return false;
         
         // find the largest entry
@@ -470,7 +512,8 @@ public final class Heap extends HeapModifier implements BLOB {
     public void delete(byte[] key) throws IOException {
         key = normalizeKey(key);
         
-        synchronized (this) {
+        this.writeLock.lock();
+        try {
             super.deleteFingerprint();
             
             // check the buffer
@@ -484,6 +527,8 @@ public final class Heap extends HeapModifier implements BLOB {
             }
             
             super.delete(key);
+        } finally {
+            this.writeLock.unlock();
         }
     }
     
@@ -495,9 +540,14 @@ public final class Heap extends HeapModifier implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized CloneableIterator<byte[]> keys(final boolean up, final boolean rotating) throws IOException {
-        this.flushBuffer();
-        return super.keys(up, rotating);
+    public CloneableIterator<byte[]> keys(final boolean up, final boolean rotating) throws IOException {
+        this.writeLock.lock();
+        try {
+            this.flushBufferLocked();
+            return super.keys(up, rotating);
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     /**
@@ -508,14 +558,24 @@ public final class Heap extends HeapModifier implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) throws IOException {
-        this.flushBuffer();
-        return super.keys(up, firstKey);
+    public CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) throws IOException {
+        this.writeLock.lock();
+        try {
+            this.flushBufferLocked();
+            return super.keys(up, firstKey);
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     @Override
-    public synchronized long length() {
-        return super.length() + this.buffersize;
+    public long length() {
+        this.readLock.lock();
+        try {
+            return super.length() + this.buffersize;
+        } finally {
+            this.readLock.unlock();
+        }
     }
 
     public static void heaptest() {
@@ -0,0 +1,258 @@
+// HeapColumnIndex.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * a secondary index on one column of a BEncodedHeap.
+ * The index is a sorted set of keys, each key is the encoded value of the column followed by the primary key
+ * of the row. The keys of all rows with the same value are therefore neighbours in the set and are ordered by
+ * their primary key; this is used for lookups of a value, for range scans and for the retrieval of the
+ * first rows in the order of the column without reading the other rows.
+ * The encoding of a value may lose information: long strings are truncated and hashes may collide. A row
+ * which is found with the index must therefore be checked against the predicate with matches().
+ * The index is maintained by the BEncodedHeap with every write operation and is written to a dump
+ * when the heap is closed.
+ */
+public final class HeapColumnIndex {
+
+    public enum Type {
+        /** values are ordered as strings; only the first 24 bytes are used for the order */
+        STRING(24),
+        /** values are decimal numbers and are ordered by their numeric value; other values are ordered first */
+        NUMBER(8),
+        /** values can only be compared for equality, i.e. for long values like urls */
+        HASH(8);
+
+        private final int length;
+
+        private Type(final int length) {
+            this.length = length;
+        }
+    }
+
+    protected static final String suffix = ".cidx";
+    private static final byte[] empty = new byte[0];
+
+    private final String column;
+    private final Type type;
+    private final int keylength;
+    private final Row rowdef;
+    private RowSet index;
+
+    /**
+     * create an empty index
+     * @param column the name of the indexed column
+     * @param type the encoding of the column values
+     * @param keylength the length of the primary keys of the heap
+     */
+    protected HeapColumnIndex(final String column, final Type type, final int keylength) {
+        this.column = column;
+        this.type = type;
+        this.keylength = keylength;
+        this.rowdef = new Row("byte[] key-" + (type.length + keylength), NaturalOrder.naturalOrder);
+        this.index = new RowSet(this.rowdef);
+    }
+
+    public String column() {
+        return this.column;
+    }
+
+    public Type type() {
+        return this.type;
+    }
+
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * the name of the dump of this index; it is unique for the column and the type
+     */
+    protected String name() {
+        final StringBuilder sb = new StringBuilder(this.column.length() + 10);
+        for (final char c: this.column.toCharArray()) sb.append(Character.isLetterOrDigit(c) || c == '_' ? c : '-');
+        return sb.append('.').append(this.type.name().toLowerCase()).toString();
+    }
+
+    /**
+     * encode a column value to the prefix of an index key
+     * @param value the value of the column, may be null if the row has no such column
+     * @return the encoded value with a length of type.length
+     */
+    private byte[] encode(final byte[] value) {
+        final byte[] e = new byte[this.type.length];
+        switch (this.type) {
+            case STRING:
+                if (value != null) System.arraycopy(value, 0, e, 0, Math.min(value.length, e.length));
+                break;
+            case NUMBER:
+                // flip the sign bit to get an unsigned order of the big-endian bytes
+                NaturalOrder.encodeLong(number(value) ^ Long.MIN_VALUE, e, 0, 8);
+                break;
+            case HASH:
+                if (value == null) break;
+                long h = 0xcbf29ce484222325L; // FNV-1a
+                for (final byte b: value) h = (h ^ (b & 0xff)) * 0x100000001b3L;
+                NaturalOrder.encodeLong(h, e, 0, 8);
+                break;
+        }
+        return e;
+    }
+
+    private static long number(final byte[] value) {
+        if (value == null || value.length == 0) return Long.MIN_VALUE;
+        try {
+            return Long.parseLong(UTF8.String(value).trim());
+        } catch (final NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private byte[] key(final byte[] value, final byte[] pk) {
+        final byte[] k = new byte[this.rowdef.primaryKeyLength];
+        System.arraycopy(encode(value), 0, k, 0, this.type.length);
+        System.arraycopy(pk, 0, k, this.type.length, Math.min(pk.length, this.keylength));
+        return k;
+    }
+
+    /**
+     * add the row with the given primary key to the index
+     * @param pk a normalized primary key
+     * @param row the row, may be null
+     */
+    protected synchronized void add(final byte[] pk, final Map<String, byte[]> row) throws SpaceExceededException {
+        if (row == null) return;
+        this.index.put(this.rowdef.newEntry(key(row.get(this.column), pk)));
+    }
+
+    /**
+     * remove the row with the given primary key from the index
+     * @param pk a normalized primary key
+     * @param row the row as it was added to the index, may be null
+     */
+    protected synchronized void remove(final byte[] pk, final Map<String, byte[]> row) {
+        if (row == null) return;
+        this.index.delete(key(row.get(this.column), pk));
+    }
+
+    protected synchronized void clear() {
+        this.index = new RowSet(this.rowdef);
+    }
+
+    /**
+     * compare two column values in the order of the index; values which are not present are smaller than
+     * all other values. Values of a HASH index have no order, they are only compared for equality.
+     */
+    public int compare(final byte[] a, final byte[] b) {
+        if (this.type == Type.NUMBER) return Long.compare(number(a), number(b));
+        final byte[] a0 = a == null ? empty : a, b0 = b == null ? empty : b;
+        if (this.type == Type.HASH) return Arrays.equals(a0, b0) ? 0 : 1;
+        return NaturalOrder.naturalOrder.compare(a0, b0);
+    }
+
+    /**
+     * check if a column value is inside a range. The range of a HASH index can only be a single value.
+     * @param value the value of the column of a row
+     * @param low the smallest matching value or null for no lower bound
+     * @param high the largest matching value or null for no upper bound
+     * @return true if low &lt;= value &lt;= high
+     */
+    public boolean matches(final byte[] value, final byte[] low, final byte[] high) {
+        if (this.type == Type.HASH) return low != null && Arrays.equals(low, high) && compare(value, low) == 0;
+        return (low == null || compare(low, value) <= 0) && (high == null || compare(value, high) <= 0);
+    }
+
+    /**
+     * select the primary keys of the rows with a value inside of a range. Because the encoding of the values
+     * may lose information, the rows may contain values which are slightly outside of the range and must be
+     * checked with matches().
+     * @param low the smallest value or null for no lower bound
+     * @param high the largest value or null for no upper bound
+     * @param up true for an ascending order of the values, false for a descending order
+     * @param limit the maximum number of primary keys
+     * @return the primary keys in the order of their values
+     */
+    public synchronized List<byte[]> select(final byte[] low, final byte[] high, final boolean up, final int limit) {
+        if (this.type == Type.HASH && (low == null || high == null)) throw new UnsupportedOperationException("no range scans on a hash index");
+        this.index.sort();
+        final int first = low == null ? 0 : position(encode(low), false);
+        final int last = (high == null ? this.index.size() : position(encode(high), true)) - 1;
+        final List<byte[]> pks = new ArrayList<byte[]>(Math.max(0, Math.min(limit, last - first + 1)));
+        for (int i = up ? first : last; i >= first && i <= last && pks.size() < limit; i += up ? 1 : -1) {
+            final byte[] k = this.index.get(i, false).getPrimaryKeyBytes();
+            final byte[] pk = new byte[this.keylength];
+            System.arraycopy(k, this.type.length, pk, 0, this.keylength);
+            pks.add(pk);
+        }
+        return pks;
+    }
+
+    /**
+     * search an encoded value in the sorted index
+     * @param value the encoded value
+     * @param after false for the position of the first key with this value, true for the position after the last key with this value
+     * @return the position
+     */
+    private int position(final byte[] value, final boolean after) {
+        int l = 0, r = this.index.size();
+        while (l < r) {
+            final int p = (l + r) >>> 1;
+            final int c = NaturalOrder.naturalOrder.compare(this.index.get(p, false).getPrimaryKeyBytes(), 0, value, 0, value.length);
+            if (c < 0 || (after && c == 0)) l = p + 1; else r = p;
+        }
+        return l;
+    }
+
+    /**
+     * write the index to a file
+     */
+    protected synchronized void dump(final File file) throws IOException {
+        this.index.saveCollection(file);
+    }
+
+    /**
+     * read the index from a dump file
+     */
+    protected synchronized void load(final File file) throws IOException, SpaceExceededException {
+        this.index = RowSet.importRowSet(FileUtils.read(file), this.rowdef);
+    }
+
+    @Override
+    public String toString() {
+        return this.column + " (" + this.type.name() + ", " + size() + " rows)";
+    }
+}
@@ -63,27 +63,40 @@ public class HeapModifier extends HeapReader implements BLOB {
      * @throws IOException
      */
     @Override
-    public synchronized void clear() throws IOException {
-        this.index.clear();
-        this.free.clear();
-        this.file.close();
-        this.file = null;
-        FileUtils.deletedelete(this.heapFile);
-        super.deleteFingerprint();
-        this.file = new CachedFileWriter(this.heapFile);
+    public void clear() throws IOException {
+        this.writeLock.lock();
+        try {
+            this.writeCount++;
+            this.index.clear();
+            loadGaps();
+            this.free.clear();
+            unmap();
+            this.file.close();
+            this.file = null;
+            FileUtils.deletedelete(this.heapFile);
+            super.deleteFingerprint();
+            this.file = new CachedFileWriter(this.heapFile);
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     /**
      * close the BLOB table
      */
     @Override
-    public synchronized void close(boolean writeIDX) {
-        shrinkWithGapsAtEnd();
-        super.close(writeIDX);
+    public void close(boolean writeIDX) {
+        this.writeLock.lock();
+        try {
+            shrinkWithGapsAtEnd();
+            super.close(writeIDX);
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
         close(true);
     }
 
@@ -102,14 +115,16 @@ public class HeapModifier extends HeapReader implements BLOB {
         if (this.index == null) return;
         key = normalizeKey(key);
 
-        // pre-check before synchronization
+        // pre-check before locking
         long seek = this.index.get(key);
         if (seek < 0) return;
 
-        synchronized (this) {
+        this.writeLock.lock();
+        try {
             // check again if the index contains the key
             seek = this.index.get(key);
             if (seek < 0) return;
+            this.writeCount++;
 
             // check consistency of the index
             //assert (checkKey(key, seek)) : "key compare failed; key = " + UTF8.String(key) + ", seek = " + seek;
@@ -139,6 +154,8 @@ public class HeapModifier extends HeapReader implements BLOB {
             // recursively merge gaps
             tryMergeNextGaps(seek, size);
             tryMergePreviousGap(seek);
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
@@ -226,12 +243,17 @@ public class HeapModifier extends HeapReader implements BLOB {
 
     protected void shrinkWithGapsAtEnd() {
         // find gaps at the end of the file and shrink the file by these gaps
+        loadGaps();
     	if (this.free == null) return;
+        boolean shrinked = false;
         try {
             while (!this.free.isEmpty()) {
                 Long seek = this.free.lastKey();
                 int size = this.free.get(seek).intValue();
-                if (seek.longValue() + size + 4 != this.file.length()) return;
+                if (seek.longValue() + size + 4 != this.file.length()) break;
+                // a mapped view must not extend beyond the end of the file
+                if (!shrinked) unmap();
+                shrinked = true;
                 // shrink the file
                 this.file.setLength(seek.longValue());
                 this.free.remove(seek);
@@ -239,6 +261,7 @@ public class HeapModifier extends HeapReader implements BLOB {
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
+        if (shrinked) remap();
     }
 
 	@Override
@@ -251,78 +274,112 @@ public class HeapModifier extends HeapReader implements BLOB {
 	    throw new UnsupportedOperationException();
     }
 
+    /**
+     * Reduce a BLOB. The blob is read and reduced while holding only the readLock, so readers of
+     * other records are not blocked by the reducer. Only the write-back of the reduced blob needs the
+     * writeLock. If the heap was modified in between, the blob is read and reduced again while
+     * holding the writeLock.
+     */
 	@Override
     public int reduce(byte[] key, final Reducer reducer) throws IOException, SpaceExceededException {
         key = normalizeKey(key);
         assert key.length == this.keylength;
 
-        // pre-check before synchronization
+        // pre-check before locking
         long pos = this.index.get(key);
         if (pos < 0) return 0;
 
-        synchronized (this) {
-            long m = this.mem();
-
+        // read and reduce the blob concurrently to other readers
+        final long readCount;
+        byte[] blob;
+        this.readLock.lock();
+        try {
             // check again if the index contains the key
             pos = this.index.get(key);
             if (pos < 0) return 0;
+            readCount = this.writeCount;
+            blob = readForReduce(key, pos);
+        } finally {
+            this.readLock.unlock();
+        }
+        if (blob == null) return 0;
+        int len = blob.length;
+        blob = reducer.rewrite(blob);
 
-            // check consistency of the index
-            //assert checkKey(key, pos) : "key compare failed; key = " + UTF8.String(key) + ", seek = " + pos;
-
-            // access the file and read the container
-            this.file.seek(pos);
-            final int len = this.file.readInt() - this.keylength;
-            if (MemoryControl.available() < len) {
-                if (!MemoryControl.request(len, true)) return 0; // not enough memory available for this blob
+        this.writeLock.lock();
+        try {
+            if (this.writeCount != readCount) {
+                // the heap was changed in between; do everything again exclusively
+                pos = this.index.get(key);
+                if (pos < 0) return 0;
+                blob = readForReduce(key, pos);
+                if (blob == null) return 0;
+                len = blob.length;
+                blob = reducer.rewrite(blob);
             }
-            super.deleteFingerprint();
+            this.writeCount++;
+            return writeReduced(key, pos, len, blob);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
 
-            // read the key
-            final byte[] keyf = new byte[this.keylength];
-            this.file.readFully(keyf, 0, keyf.length);
-            assert this.ordering == null || this.ordering.equal(key, keyf) : "key = " + UTF8.String(key) + ", keyf = " + UTF8.String(keyf);
-
-            // read the blob
-            byte[] blob = new byte[len];
-            this.file.readFully(blob, 0, blob.length);
-
-            // rewrite the entry
-            blob = reducer.rewrite(blob);
-            int reduction = len - blob.length;
-            if (reduction == 0) {
-                // even if the reduction is zero then it is still be possible that the record has been changed
-                this.file.seek(pos + 4 + key.length);
-                this.file.write(blob);
-                return 0;
-            }
+    private byte[] readForReduce(final byte[] key, final long pos) throws IOException {
+        // access the file and read the container
+        final int len = this.file.readInt(pos) - this.keylength;
+        if (MemoryControl.available() < len) {
+            if (!MemoryControl.request(len, true)) return null; // not enough memory available for this blob
+        }
+
+        // read the key
+        final byte[] keyf = new byte[this.keylength];
+        this.file.readFully(pos + 4, keyf, 0, keyf.length);
+        assert this.ordering == null || this.ordering.equal(key, keyf) : "key = " + UTF8.String(key) + ", keyf = " + UTF8.String(keyf);
 
-            // the new entry must be smaller than the old entry and must at least be 4 bytes smaller
-            // because that is the space needed to write a new empty entry record at the end of the gap
-            if (blob.length > len - 4) throw new IOException("replace of BLOB for key " + UTF8.String(key) + " failed (too large): new size = " + blob.length + ", old size = " + (len - 4));
+        // read the blob
+        final byte[] blob = new byte[len];
+        this.file.readFully(pos + 4 + this.keylength, blob, 0, blob.length);
+        return blob;
+    }
 
-            // replace old content
-            this.file.seek(pos);
-            this.file.writeInt(blob.length + key.length);
-            this.file.write(key);
+    private int writeReduced(final byte[] key, final long pos, final int len, final byte[] blob) throws IOException {
+        long m = this.mem();
+        super.deleteFingerprint();
+
+        // rewrite the entry
+        int reduction = len - blob.length;
+        if (reduction == 0) {
+            // even if the reduction is zero then it is still be possible that the record has been changed
+            this.file.seek(pos + 4 + key.length);
             this.file.write(blob);
+            return 0;
+        }
 
-            // define the new empty entry
-            final int newfreereclen = reduction - 4;
-            assert newfreereclen >= 0;
-            this.file.writeInt(newfreereclen);
+        // the new entry must be smaller than the old entry and must at least be 4 bytes smaller
+        // because that is the space needed to write a new empty entry record at the end of the gap
+        if (blob.length > len - 4) throw new IOException("replace of BLOB for key " + UTF8.String(key) + " failed (too large): new size = " + blob.length + ", old size = " + (len - 4));
 
-            // fill zeros to the content
-            int l = newfreereclen; byte[] fill = new byte[newfreereclen];
-            while (l-- > 0) fill[l] = 0;
-            this.file.write(fill, 0, newfreereclen);
+        // replace old content
+        this.file.seek(pos);
+        this.file.writeInt(blob.length + key.length);
+        this.file.write(key);
+        this.file.write(blob);
 
-            // add a new free entry
-            this.free.put(pos + 4 + blob.length + key.length, newfreereclen);
+        // define the new empty entry
+        final int newfreereclen = reduction - 4;
+        assert newfreereclen >= 0;
+        this.file.writeInt(newfreereclen);
 
-            assert mem() <= m : "m = " + m + ", mem() = " + mem();
-            return reduction;
-        }
+        // fill zeros to the content
+        int l = newfreereclen; byte[] fill = new byte[newfreereclen];
+        while (l-- > 0) fill[l] = 0;
+        this.file.write(fill, 0, newfreereclen);
+
+        // add a new free entry
+        this.free.put(pos + 4 + blob.length + key.length, newfreereclen);
+
+        assert mem() <= m : "m = " + m + ", mem() = " + mem();
+        return reduction;
     }
 
 }
@@ -29,12 +29,15 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -46,8 +49,12 @@ import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.HashHandleMap;
+import net.yacy.kelondro.index.OffHeapHandleMap;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.io.CachedFileWriter;
+import net.yacy.kelondro.io.MappedFileReader;
+import net.yacy.kelondro.io.Reader;
 import net.yacy.kelondro.io.Writer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
@@ -60,6 +67,12 @@ public class HeapReader {
 
 	private final static ConcurrentLog log = new ConcurrentLog("HeapReader");
 
+	public static boolean useMappedReader = false; // overwrite this to read BLOB files through a memory-mapped view
+	public static boolean concurrentReaders = true; // overwrite this with false to serialize all access to a heap file with one lock
+	public static boolean offHeapIndex = false; // overwrite this to keep the key/seek index outside of the java heap; gap dumps are then read when the gaps are used first
+	public static boolean hashIndex = false; // overwrite this to hold the key/seek index of written or dumped heaps in a hash table (HashHandleMap) instead of a RowHandleMap
+	public static boolean bloomFilter = true; // overwrite this with false to neither write nor use the bloom filters of heap files which let an ArrayStack skip files that do not contain a key
+
     // input values
     protected int                keylength;  // the length of the primary key
     protected File               heapFile;   // the file of the heap
@@ -67,8 +80,14 @@ public class HeapReader {
 
     // computed values
     protected Writer             file;       // a random access to the file
+    protected MappedFileReader   mapped;     // a read access to the file without file pointer, null if the file is not mapped
+    private   final ReentrantReadWriteLock lock;
+    protected final Lock         readLock;   // shared lock for readers of committed records; same as writeLock if concurrentReaders == false
+    protected final Lock         writeLock;  // exclusive lock for all modifications of the file, the index and the gaps
+    protected long               writeCount; // number of modifications, changed only while holding the writeLock
     protected HandleMap          index;      // key/seek relation for used records
-    protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
+    protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records; null until loadGaps() if freeDump != null
+    private   File               freeDump;   // a gap dump which has not been read yet
     private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
 
@@ -79,8 +98,13 @@ public class HeapReader {
         this.ordering = ordering;
         this.heapFile = heapFile;
         this.keylength = keylength;
+        this.lock = new ReentrantReadWriteLock();
+        this.writeLock = this.lock.writeLock();
+        this.readLock = concurrentReaders ? this.lock.readLock() : this.writeLock;
+        this.writeCount = 0;
         this.index = null; // will be created as result of initialization process
         this.free = null; // will be initialized later depending on existing idx/gap file
+        this.freeDump = null;
         this.heapFile.getParentFile().mkdirs();
         this.file = new CachedFileWriter(this.heapFile);
         this.closeDate = null;
@@ -118,13 +142,52 @@ public class HeapReader {
         }
 
         // merge gaps that follow directly
-        mergeFreeEntries();
+        if (this.free != null) mergeFreeEntries();
 
         // after the initial initialization of the heap, we close the file again
         // to make more room to file pointers which may run out if the number
         // of file descriptors is too low and the number of files is too high
         this.file.close();
         // the file will be opened again automatically when the next access to it comes.
+
+        // open a memory-mapped view for concurrent read access
+        remap();
+    }
+
+    /**
+     * decide if the heap file may be read using a memory-mapped view. A subclass which appends
+     * records to the file must not use the mapping because appended records are not visible in a mapping.
+     * The file is only mapped if the mapping can be released before the file is truncated or deleted.
+     * @return true if the file shall be mapped
+     */
+    protected boolean mappable() {
+        return useMappedReader && MappedFileReader.UNMAP_SUPPORTED;
+    }
+
+    /**
+     * drop an existing mapping of the heap file and map the file again. This must be called
+     * after the length of the file has been changed.
+     */
+    protected void remap() {
+        unmap();
+        if (!mappable() || this.heapFile.length() == 0) return;
+        try {
+            this.mapped = new MappedFileReader(this.heapFile);
+        } catch (final IOException e) {
+            // i.e. if the virtual address space is exhausted; we can still use the file access
+            log.warn("cannot map " + this.heapFile.getName() + ", using file access instead: " + e.getMessage());
+            this.mapped = null;
+        }
+    }
+
+    /**
+     * drop the mapping of the heap file. This must be called holding the writeLock before the heap file
+     * is truncated or deleted; all reads from the mapping are done holding the readLock.
+     */
+    protected void unmap() {
+        final MappedFileReader m = this.mapped;
+        this.mapped = null;
+        if (m != null) m.close();
     }
 
     public long mem() {
@@ -175,8 +238,16 @@ public class HeapReader {
 
         // there is an index and a gap file:
         // read the index file:
-        try {
-            this.index = new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+        if (offHeapIndex) try {
+            // map the dump; this does not need to read the file
+            this.index = new OffHeapHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+        } catch (final IOException e) {
+            log.info("cannot map " + this.fingerprintFileIdx.getName() + ", reading it into the heap: " + e.getMessage());
+        }
+        if (this.index == null) try {
+            this.index = hashIndex ?
+                    new HashHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx) :
+                    new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
             return false;
@@ -194,7 +265,10 @@ public class HeapReader {
         }
 
         // read the gap file:
-        try {
+        if (this.index instanceof OffHeapHandleMap) {
+            // the gaps are not needed to read the heap; read them when they are used first
+            this.freeDump = this.fingerprintFileGap;
+        } else try {
             this.free = new Gap(this.fingerprintFileGap);
         } catch (final IOException e) {
         	ConcurrentLog.logException(e);
@@ -210,8 +284,10 @@ public class HeapReader {
      * if the files are not deleted then it may be possible that they are not used anyway because the
      * fingerprint hash does not fit with the heap dump file hash. But since the hash is not computed
      * from all the data and just some key bytes it may be possible that the hash did not change.
+     * A gap dump which was not read yet is read before it is deleted.
      */
     public void deleteFingerprint() {
+        loadGaps();
         if (this.fingerprintFileIdx != null) {
             FileUtils.deletedelete(this.fingerprintFileIdx);
             this.fingerprintFileIdx = null;
@@ -252,6 +328,7 @@ public class HeapReader {
         log.info("generating index for " + this.heapFile.toString() + ", " + (this.file.length() / 1024 / 1024) + " MB. Please wait.");
 
         this.free = new Gap();
+        this.freeDump = null;
         RowHandleMap.initDataConsumer indexready = RowHandleMap.asynchronusInitializer(this.name() + ".initializer", this.keylength, this.ordering, 8, Math.max(10, (int) (Runtime.getRuntime().freeMemory() / (10 * 1024 * 1024))));
         byte[] key = new byte[this.keylength];
         int reclen;
@@ -313,6 +390,35 @@ public class HeapReader {
         	ConcurrentLog.logException(e);
         }
         log.info("finished index generation for " + this.heapFile.toString() + ", " + this.index.size() + " entries, " + this.free.size() + " gaps.");
+
+        // move the index out of the java heap
+        if (offHeapIndex && this.index instanceof RowHandleMap) try {
+            final HandleMap offheap = new OffHeapHandleMap((RowHandleMap) this.index, 8);
+            this.index.close();
+            this.index = offheap;
+        } catch (final SpaceExceededException e) {
+            log.info("cannot move the index of " + this.heapFile.getName() + " out of the java heap: " + e.getMessage());
+        }
+    }
+
+    /**
+     * read a gap dump which was not read during the initialization of the heap.
+     * This must be called holding the writeLock before this.free is used.
+     */
+    protected final void loadGaps() {
+        if (this.free != null || this.freeDump == null) return;
+        final File dump = this.freeDump;
+        this.freeDump = null;
+        try {
+            this.free = new Gap(dump);
+            mergeFreeEntries();
+        } catch (final IOException e) {
+            // free records which are not in the gap list are not re-used but they do not harm;
+            // deleting the dumps causes a complete scan of the heap on the next start
+            log.warn("cannot read gap dump " + dump.getName() + ": " + e.getMessage());
+            if (this.free == null) this.free = new Gap();
+            deleteFingerprint();
+        }
     }
 
     private void mergeFreeEntries() throws IOException {
@@ -388,9 +494,12 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             // check if the file index contains the key
             return this.index.get(key) >= 0;
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -405,14 +514,17 @@ public class HeapReader {
      * @return the smallest key in the heap
      * @throws IOException
      */
-    protected synchronized byte[] firstKey() throws IOException {
+    protected byte[] firstKey() throws IOException {
         assert (this.index != null) : "index == null; closeDate=" + this.closeDate + ", now=" + new Date();
         if (this.index == null) {
             log.severe("this.index == null in firstKey(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return null;
         }
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             return this.index.smallestKey();
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -429,11 +541,15 @@ public class HeapReader {
             log.severe("this.index == null in first(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return null;
         }
-        synchronized (this.index) {
-            byte[] key = this.index.smallestKey();
-            if (key == null) return null;
-            return get(key);
+        final byte[] key;
+        this.readLock.lock();
+        try {
+            key = this.index.smallestKey();
+        } finally {
+            this.readLock.unlock();
         }
+        // get() is called without holding the readLock because it may need the writeLock
+        return key == null ? null : get(key);
     }
 
     /**
@@ -450,8 +566,11 @@ public class HeapReader {
             return null;
         }
         if (this.index == null) return null;
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             return this.index.largestKey();
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -468,11 +587,15 @@ public class HeapReader {
             log.severe("this.index == null in last(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return null;
         }
-        synchronized (this.index) {
-            byte[] key = this.index.largestKey();
-            if (key == null) return null;
-            return get(key);
+        final byte[] key;
+        this.readLock.lock();
+        try {
+            key = this.index.largestKey();
+        } finally {
+            this.readLock.unlock();
         }
+        // get() is called without holding the readLock because it may need the writeLock
+        return key == null ? null : get(key);
     }
 
     /**
@@ -489,63 +612,113 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
-        synchronized (this.index) {
+        final long pos;
+        final byte[] blob;
+        this.readLock.lock();
+        try {
             // check if the index contains the key
-            final long pos = this.index.get(key);
+            pos = this.index.get(key);
             if (pos < 0) return null;
+            blob = read(key, pos);
+        } finally {
+            this.readLock.unlock();
+        }
+        if (blob == null) removeCorrupted(key, pos);
+        return blob;
+    }
 
-            // access the file and read the container
-            this.file.seek(pos);
-            final int len = this.file.readInt() - this.keylength;
-            if (len < 0) {
-                // database file may be corrupted and should be deleted :-((
-                log.severe("file " + this.file.file() + " corrupted at " + pos + ": negative len. len = " + len + ", pk.len = " + this.keylength);
-                // to get lazy over that problem (who wants to tell the user to stop operation and delete the file???) we work on like the entry does not exist
-                this.index.remove(key);
-                return null;
-            }
-            long memr = len + this.keylength + 64;
-            if (MemoryControl.available() < memr) {
-                if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.get()/check"); // not enough memory available for this blob
-            }
+    /**
+     * remove the index entry of a corrupted record. The readLock cannot be upgraded to the writeLock,
+     * therefore this must be called after the readLock was released; if the current thread still holds
+     * the readLock, the entry is kept and the record is found to be corrupted again with the next read.
+     * @param key the normalized key
+     * @param pos the position of the corrupted record
+     */
+    private void removeCorrupted(final byte[] key, final long pos) {
+        if (this.lock.getReadHoldCount() > 0) return;
+        this.writeLock.lock();
+        try {
+            // the record may have been moved or deleted in between
+            if (this.index == null || this.index.get(key) != pos) return;
+            this.writeCount++;
+            this.index.remove(key);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
 
-            // read the key
-            byte[] keyf;
-            try {
-                keyf = new byte[this.keylength];
-            } catch (final OutOfMemoryError e) {
-                throw new SpaceExceededException(this.keylength, "HeapReader.get()/keyf");
-            }
-            this.file.readFully(keyf, 0, keyf.length);
-            if (!this.ordering.equal(key, keyf)) {
-                // verification of the indexed access failed. we must re-read the index
-                log.severe("indexed verification access failed for " + this.heapFile.toString());
-                // this is a severe operation, it should never happen.
-                // remove entry from index because keeping that element in the index would not make sense
-                this.index.remove(key);
-                // nothing to return
-                return null;
-                // but if the process ends in this state, it would completely fail
-                // if the index is not rebuild now at once
-                //initIndexReadFromHeap();
-            }
+    /**
+     * read a blob from the heap file at a given position. This uses only positional reads,
+     * therefore it can be called concurrently by all threads which hold the readLock.
+     * A corrupted record is not removed from the index here because that needs the writeLock, see removeCorrupted().
+     * @param key the normalized key
+     * @param pos the seek position of the record as stored in the index
+     * @return the blob or null if the record is not valid
+     */
+    protected byte[] read(final byte[] key, final long pos) throws IOException, SpaceExceededException {
+        // access the file and read the container
+        final Reader r = reader(pos);
+        final int len = r.readInt(pos) - this.keylength;
+        if (len < 0) {
+            // database file may be corrupted and should be deleted :-((
+            log.severe("file " + this.heapFile + " corrupted at " + pos + ": negative len. len = " + len + ", pk.len = " + this.keylength);
+            // to get lazy over that problem (who wants to tell the user to stop operation and delete the file???) we work on like the entry does not exist
+            return null;
+        }
+        checkMemory(len);
+
+        // read the key
+        byte[] keyf;
+        try {
+            keyf = new byte[this.keylength];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException(this.keylength, "HeapReader.get()/keyf");
+        }
+        r.readFully(pos + 4, keyf, 0, keyf.length);
+        if (!this.ordering.equal(key, keyf)) {
+            // verification of the indexed access failed. we must re-read the index
+            log.severe("indexed verification access failed for " + this.heapFile.toString());
+            // this is a severe operation, it should never happen.
+            // the caller removes the entry from index because keeping that element in the index would not make sense
+            // nothing to return
+            return null;
+            // but if the process ends in this state, it would completely fail
+            // if the index is not rebuild now at once
+            //initIndexReadFromHeap();
+        }
+
+        // read the blob
+        final byte[] blob = allocateBlob(len);
+        r.readFully(pos + 4 + this.keylength, blob, 0, blob.length);
+        return blob;
+    }
 
-            // read the blob
-            byte[] blob;
+    /**
+     * select the reader for a record: the mapped file if the record header is inside of the mapping, the file otherwise
+     */
+    private Reader reader(final long pos) {
+        final MappedFileReader m = this.mapped;
+        return (m != null && pos + 4 + this.keylength <= m.length()) ? m : this.file;
+    }
+
+    private void checkMemory(final int len) throws SpaceExceededException {
+        final long memr = len + this.keylength + 64;
+        if (MemoryControl.available() < memr) {
+            if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.get()/check"); // not enough memory available for this blob
+        }
+    }
+
+    private static byte[] allocateBlob(final int len) throws SpaceExceededException {
+        try {
+            return new byte[len];
+        } catch (final OutOfMemoryError e) {
+            // try once again after GC
+            MemoryControl.gc(1000, "HeapReader.get()/blob");
             try {
-                blob = new byte[len];
-            } catch (final OutOfMemoryError e) {
-                // try once again after GC
-                MemoryControl.gc(1000, "HeapReader.get()/blob");
-                try {
-                    blob = new byte[len];
-                } catch (final OutOfMemoryError ee) {
-                    throw new SpaceExceededException(len, "HeapReader.get()/blob");
-                }
+                return new byte[len];
+            } catch (final OutOfMemoryError ee) {
+                throw new SpaceExceededException(len, "HeapReader.get()/blob");
             }
-            this.file.readFully(blob, 0, blob.length);
-
-            return blob;
         }
     }
 
@@ -563,12 +736,10 @@ public class HeapReader {
 
     protected boolean checkKey(byte[] key, final long pos) throws IOException {
         key = normalizeKey(key);
-        this.file.seek(pos);
-        this.file.readInt(); // skip the size value
 
-        // read the key
+        // read the key; skip the size value
         final byte[] keyf = new byte[this.keylength];
-        this.file.readFully(keyf, 0, keyf.length);
+        reader(pos).readFully(pos + 4, keyf, 0, keyf.length);
         return this.ordering.equal(key, keyf);
     }
 
@@ -586,14 +757,156 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             // check if the index contains the key
             final long pos = this.index.get(key);
             if (pos < 0) return -1;
 
             // access the file and read the size of the container
-            this.file.seek(pos);
-            return this.file.readInt() - this.keylength;
+            return reader(pos).readInt(pos) - this.keylength;
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * open a stream on a blob. The blob is read in chunks with positional reads, so the blob
+     * is never loaded into memory as a whole. No lock is held between the reads of the chunks;
+     * if the heap is modified while the stream is open, the next read throws an IOException.
+     * @param key
+     * @return a stream on the blob or null if the key does not exist
+     * @throws IOException
+     */
+    public BlobInputStream getStream(byte[] key) throws IOException {
+        if (this.index == null) return null;
+        key = normalizeKey(key);
+        this.readLock.lock();
+        try {
+            final long pos = this.index.get(key);
+            if (pos < 0) return null;
+            final int len = reader(pos).readInt(pos) - this.keylength;
+            if (len < 0 || !checkKey(key, pos)) {
+                log.severe("file " + this.heapFile + " corrupted at " + pos + ", len = " + len);
+                return null;
+            }
+            return new BlobInputStream(pos + 4 + this.keylength, len, this.writeCount);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * a stream on a blob of this heap, see getStream()
+     */
+    public class BlobInputStream extends InputStream {
+
+        private static final int CHUNKSIZE = 32 * 1024;
+
+        private final int length;        // the length of the blob
+        private final long start;        // the file position of the blob
+        private final long writeCount;   // the writeCount of the heap when the stream was opened
+        private long seek;               // the file position of the next chunk
+        private long end;                // the file position after the end of the blob
+        private byte[] buffer;
+        private int bufferPos, bufferLen;
+
+        private BlobInputStream(final long seek, final int length, final long writeCount) {
+            this.length = length;
+            this.writeCount = writeCount;
+            this.start = seek;
+            this.seek = seek;
+            this.end = seek + length;
+            this.buffer = null;
+            this.bufferPos = 0;
+            this.bufferLen = 0;
+        }
+
+        /**
+         * @return the length of the blob
+         */
+        public int length() {
+            return this.length;
+        }
+
+        /**
+         * @return the heap file which contains the blob
+         */
+        public File location() {
+            return HeapReader.this.heapFile;
+        }
+
+        /**
+         * @return false if the heap was modified or closed since the stream was opened
+         */
+        public boolean valid() {
+            return HeapReader.this.writeCount == this.writeCount && HeapReader.this.index != null;
+        }
+
+        /**
+         * read a part of the blob with a positional read. This does not change the position of the stream.
+         * @param offset the position of the first byte in the blob
+         * @param b the target array
+         * @param off the position in the target array
+         * @param len the number of bytes to read
+         * @throws IOException if the part exceeds the blob or if the heap was modified or closed since the stream was opened
+         */
+        public void readFully(final long offset, final byte[] b, final int off, final int len) throws IOException {
+            if (offset < 0 || offset + len > this.length) throw new IOException("read of " + len + " bytes at " + offset + " exceeds blob of length " + this.length);
+            read(this.start + offset, b, off, len);
+        }
+
+        private void read(final long pos, final byte[] b, final int off, final int len) throws IOException {
+            HeapReader.this.readLock.lock();
+            try {
+                if (HeapReader.this.writeCount != this.writeCount || HeapReader.this.index == null) {
+                    throw new IOException("heap " + HeapReader.this.heapFile.getName() + " was modified or closed while a blob was read");
+                }
+                final MappedFileReader m = HeapReader.this.mapped;
+                final Reader r = (m != null && pos + len <= m.length()) ? m : HeapReader.this.file;
+                r.readFully(pos, b, off, len);
+            } finally {
+                HeapReader.this.readLock.unlock();
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (this.seek >= this.end) return false;
+            final int n = (int) Math.min(CHUNKSIZE, this.end - this.seek);
+            if (this.buffer == null) this.buffer = new byte[Math.min(CHUNKSIZE, this.length)];
+            read(this.seek, this.buffer, 0, n);
+            this.seek += n;
+            this.bufferPos = 0;
+            this.bufferLen = n;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.bufferPos >= this.bufferLen && !fill()) return -1;
+            return this.buffer[this.bufferPos++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            if (this.bufferPos >= this.bufferLen && !fill()) return -1;
+            final int n = Math.min(len, this.bufferLen - this.bufferPos);
+            System.arraycopy(this.buffer, this.bufferPos, b, off, n);
+            this.bufferPos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) (this.end - this.seek) + this.bufferLen - this.bufferPos;
+        }
+
+        @Override
+        public void close() {
+            this.end = this.seek;
+            this.bufferLen = 0;
+            this.buffer = null;
         }
     }
 
@@ -602,8 +915,10 @@ public class HeapReader {
      */
     public void close(boolean writeIDX) {
         if (this.index == null) return;
-        synchronized (this.index) {
+        this.writeLock.lock();
+        try {
             try {
+            unmap();
             if (this.file != null)
     			try {
     				this.file.close();
@@ -611,7 +926,7 @@ public class HeapReader {
     				ConcurrentLog.logException(e);
     			}
             this.file = null;
-            if (writeIDX && this.index != null && this.free != null && (this.index.size() > 3 || this.free.size() > 3)) {
+            if (writeIDX && this.index != null && (this.free != null || this.freeDump != null) && (this.index.size() > 3 || this.free == null || this.free.size() > 3)) {
                 // now we can create a dump of the index and the gap information
                 // to speed up the next start
                 try {
@@ -626,12 +941,14 @@ public class HeapReader {
                             log.info("using existing gap dump instead of writing a new one: " + this.fingerprintFileGap.getName());
                         } else {
                             long start = System.currentTimeMillis();
+                            loadGaps();
                             this.free.dump(newFingerprintFileGap);
                             log.info("wrote a dump for the " + this.free.size() +  " gap entries of " + this.heapFile.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
                         }
                     }
-                    this.free.clear();
+                    if (this.free != null) this.free.clear();
                     this.free = null;
+                    this.freeDump = null;
                     if (fingerprint != null) {
                         File newFingerprintFileIdx = HeapWriter.fingerprintIndexFile(this.heapFile, fingerprint);
                         if (this.fingerprintFileIdx != null &&
@@ -652,15 +969,18 @@ public class HeapReader {
             }
             if (this.free != null) this.free.clear();
             this.free = null;
+            this.freeDump = null;
             if (this.index != null) this.index.close();
             this.index = null;
             this.closeDate = new Date();
             } catch (Throwable e) {ConcurrentLog.logException(e);}
             log.info("close HeapFile " + this.heapFile.getName() + "; trace: " + ConcurrentLog.stackTrace());
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
-    public synchronized void close() {
+    public void close() {
         close(true);
     }
 
@@ -689,8 +1009,11 @@ public class HeapReader {
             log.severe("this.index == null in keys(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return null;
         }
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             return new RotateIterator<byte[]>(this.index.keys(up, null), null, this.index.size());
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -707,8 +1030,11 @@ public class HeapReader {
             log.severe("this.index == null in keys(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return null;
         }
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             return this.index.keys(up, firstKey);
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -718,8 +1044,11 @@ public class HeapReader {
             log.severe("this.index == null in length(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
             return 0;
         }
-        synchronized (this.index) {
+        this.readLock.lock();
+        try {
             return this.heapFile.length();
+        } finally {
+            this.readLock.unlock();
         }
     }
 
@@ -0,0 +1,181 @@
+// HeapRecordReader.java
+// ---------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * sequential reader of the records of a heap file. In contrast to HeapReader.entries the BLOBs are not
+ * loaded when the reader moves to the next record: the BLOB can be read as a whole with value() or as a stream
+ * with stream(), which is the way to process BLOBs which are too large to be loaded into memory.
+ * A truncated or corrupted record ends the sequence in the same way as in HeapReader.entries.
+ */
+public class HeapRecordReader {
+
+    private final static ConcurrentLog log = new ConcurrentLog("HeapRecordReader");
+
+    private final File blobFile;
+    private final int keylength;
+    private final long filelength;
+    private DataInputStream is;
+    private long seek;        // the position of the stream in the file
+    private byte[] key;       // the key of the current record
+    private int length;       // the length of the BLOB of the current record
+    private long remaining;   // the number of bytes of the current BLOB which have not been read
+
+    public HeapRecordReader(final File blobFile, final int keylength) throws IOException {
+        if (!(blobFile.exists())) throw new IOException("file " + blobFile + " does not exist");
+        this.blobFile = blobFile;
+        this.keylength = keylength;
+        this.filelength = blobFile.length();
+        this.is = new DataInputStream(new BufferedInputStream(new FileInputStream(blobFile), 256 * 1024));
+        this.seek = 0;
+        this.key = null;
+        this.length = 0;
+        this.remaining = 0;
+    }
+
+    /**
+     * move to the next record. The remaining bytes of the BLOB of the current record are skipped.
+     * @return true if there is a next record, false if the end of the file is reached or the file is corrupted
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (this.is == null) return false;
+        skip(this.remaining);
+        this.remaining = 0;
+        this.key = null;
+        while (this.seek + 4 <= this.filelength) {
+            final int len = this.is.readInt();
+            this.seek += 4;
+            if (len == 0) continue; // rare, but possible: zero length record (takes 4 bytes)
+            if (len < this.keylength || this.seek + len > this.filelength) {
+                // corrupted or truncated record
+                log.warn("record of length " + len + " at " + (this.seek - 4) + " in " + this.blobFile.getName() + " exceeds the file or is too short");
+                close();
+                return false;
+            }
+            final byte[] k = new byte[this.keylength];
+            this.is.readFully(k);
+            this.seek += this.keylength;
+            if (k[0] == 0) {
+                // this is an empty record
+                skip(len - this.keylength);
+                continue;
+            }
+            this.key = k;
+            this.length = len - this.keylength;
+            this.remaining = this.length;
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    private void skip(long n) throws IOException {
+        while (n > 0) {
+            final int s = this.is.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (s <= 0) throw new IOException("cannot skip " + n + " bytes in " + this.blobFile.getName());
+            n -= s;
+            this.seek += s;
+        }
+    }
+
+    /**
+     * @return the key of the current record
+     */
+    public byte[] key() {
+        return this.key;
+    }
+
+    /**
+     * @return the length of the BLOB of the current record
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * read the BLOB of the current record
+     * @return the BLOB
+     * @throws IOException if the BLOB was already read, completely or partly
+     */
+    public byte[] value() throws IOException {
+        if (this.remaining != this.length) throw new IOException("BLOB was already read");
+        final byte[] b = new byte[this.length];
+        this.is.readFully(b);
+        this.seek += this.length;
+        this.remaining = 0;
+        return b;
+    }
+
+    /**
+     * get a stream on the BLOB of the current record. The stream is valid until next() is called.
+     * @return the stream
+     */
+    public InputStream stream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (HeapRecordReader.this.remaining <= 0) return -1;
+                final int b = HeapRecordReader.this.is.read();
+                if (b < 0) throw new IOException("unexpected end of " + HeapRecordReader.this.blobFile.getName());
+                HeapRecordReader.this.remaining--;
+                HeapRecordReader.this.seek++;
+                return b;
+            }
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                if (len == 0) return 0;
+                if (HeapRecordReader.this.remaining <= 0) return -1;
+                final int n = HeapRecordReader.this.is.read(b, off, (int) Math.min(len, HeapRecordReader.this.remaining));
+                if (n < 0) throw new IOException("unexpected end of " + HeapRecordReader.this.blobFile.getName());
+                HeapRecordReader.this.remaining -= n;
+                HeapRecordReader.this.seek += n;
+                return n;
+            }
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, HeapRecordReader.this.remaining);
+            }
+            @Override
+            public void close() {
+                // the file is closed with the reader
+            }
+        };
+    }
+
+    public void close() {
+        if (this.is != null) try {this.is.close();} catch (final IOException e) {}
+        this.is = null;
+        this.key = null;
+        this.remaining = 0;
+    }
+}
@@ -29,12 +29,18 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BloomFilter;
+import net.yacy.kelondro.index.HashHandleMap;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.util.FileUtils;
 
@@ -43,12 +49,14 @@ public final class HeapWriter {
 
     private final static ConcurrentLog log = new ConcurrentLog("HeapWriter");
     public final static byte[] ZERO = new byte[]{0};
+    protected final static double filterFpp = 0.01d; // the false positive probability of the bloom filters of heap files
 
     private final int          keylength;     // the length of the primary key
     private HandleMap          index;         // key/seek relation for used records
     private final File         heapFileTMP;   // the temporary file of the heap during writing
     private final File         heapFileREADY; // the final file of the heap when the file is closed
     private DataOutputStream   os;            // the output stream where the BLOB is written
+    private FileChannel        channel;       // the channel of the file, used to patch the record length of streamed BLOBs
     private long               seek;          // the current write position
     //private HashSet<String>    doublecheck;// only for testing
 
@@ -82,8 +90,11 @@ public final class HeapWriter {
         this.heapFileTMP = temporaryHeapFile;
         this.heapFileREADY = readyHeapFile;
         this.keylength = keylength;
-        this.index = new RowHandleMap(keylength, ordering, 8, 100000, readyHeapFile.getAbsolutePath());
+        this.index = HeapReader.hashIndex ?
+                new HashHandleMap(keylength, ordering, 8, 100000, readyHeapFile.getAbsolutePath()) :
+                new RowHandleMap(keylength, ordering, 8, 100000, readyHeapFile.getAbsolutePath());
         final FileOutputStream fileStream = new FileOutputStream(temporaryHeapFile);
+        this.channel = fileStream.getChannel();
         try {
         	try {
         		this.os = new DataOutputStream(new BufferedOutputStream(fileStream, outBuffer));
@@ -126,6 +137,60 @@ public final class HeapWriter {
         //os.flush(); // necessary? may cause bad IO performance :-(
     }
 
+    /**
+     * a BLOB which is written as a stream; used for BLOBs which are too large to be produced in memory
+     */
+    public interface BlobStream {
+
+        /**
+         * write the BLOB
+         * @param os the stream to which the BLOB is written
+         * @return the number of bytes written
+         * @throws IOException
+         */
+        public long write(OutputStream os) throws IOException;
+
+        /**
+         * this is called after write()
+         * @return bytes which overwrite the beginning of the BLOB, or null if the written BLOB shall not be changed
+         */
+        public byte[] header();
+    }
+
+    /**
+     * add a BLOB to the heap which is written as a stream. The length of the BLOB is not known in advance;
+     * it is written to the record after the BLOB has been written, together with the header of the BLOB.
+     * newly added heap entries must have keys that have not been added before
+     * @param key
+     * @param blob
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public synchronized void add(byte[] key, final BlobStream blob) throws IOException, SpaceExceededException {
+        key = HeapReader.normalizeKey(key, this.keylength);
+        assert key.length == this.keylength : "key.length == " + key.length + ", this.keylength = " + this.keylength;
+        assert this.index.get(key) < 0 : "index.get(key) = " + this.index.get(key) + ", key = " + UTF8.String(key); // must not occur before
+        final long start = this.seek;
+        this.os.writeInt(0); // placeholder for the record length
+        this.os.write(key);
+        final long length = blob.write(this.os);
+        if (length <= 0 || length + this.keylength > Integer.MAX_VALUE) throw new IOException("streamed BLOB for " + UTF8.String(key) + " has a wrong length: " + length);
+        final int chunkl = this.keylength + (int) length;
+        this.os.flush();
+        final ByteBuffer b = ByteBuffer.allocate(4);
+        b.putInt(chunkl);
+        b.flip();
+        while (b.hasRemaining()) this.channel.write(b, start + b.position());
+        final byte[] header = blob.header();
+        if (header != null) {
+            assert header.length <= length;
+            final ByteBuffer h = ByteBuffer.wrap(header);
+            while (h.hasRemaining()) this.channel.write(h, start + 4 + this.keylength + h.position());
+        }
+        this.index.putUnique(key, start);
+        this.seek += chunkl + 4;
+    }
+
     /**
      * close the BLOB table
      * @throws
@@ -162,6 +227,7 @@ public final class HeapWriter {
             } else {
                 new Gap().dump(fingerprintGapFile(this.heapFileREADY, fingerprint));
                 this.index.dump(fingerprintIndexFile(this.heapFileREADY, fingerprint));
+                if (HeapReader.bloomFilter) filter(this.index.keys(true, null), this.index.size()).dump(fingerprintFilterFile(this.heapFileREADY, fingerprint));
                 log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFileREADY.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
             }
             this.index.close();
@@ -180,11 +246,24 @@ public final class HeapWriter {
         FileUtils.deletedelete(f);
         for (String s: l) {
             if (s.startsWith(n) &&
-                (s.endsWith(".idx") || s.endsWith(".gap")))
+                (s.endsWith(".idx") || s.endsWith(".gap") || s.endsWith(".blm")))
                FileUtils.deletedelete(new File(p, s));
         }
     }
 
+    /**
+     * delete the bloom filter dumps of a heap file
+     */
+    protected static void deleteFilters(File f) {
+        File p = f.getParentFile();
+        String n = f.getName() + ".";
+        String[] l = p.list();
+        if (l == null) return;
+        for (String s: l) {
+            if (s.startsWith(n) && s.endsWith(".blm")) FileUtils.deletedelete(new File(p, s));
+        }
+    }
+
     protected static File fingerprintIndexFile(File f, String fingerprint) {
         assert f != null;
         return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".idx");
@@ -194,4 +273,21 @@ public final class HeapWriter {
         assert f != null;
         return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".gap");
     }
+
+    protected static File fingerprintFilterFile(File f, String fingerprint) {
+        assert f != null;
+        return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".blm");
+    }
+
+    /**
+     * create the bloom filter of the keys of a heap
+     * @param keys the normalized keys
+     * @param size the number of keys
+     * @return a filter with a false positive probability of filterFpp
+     */
+    protected static BloomFilter filter(final Iterator<byte[]> keys, final int size) {
+        final BloomFilter filter = new BloomFilter(Math.max(1000, size), filterFpp);
+        while (keys.hasNext()) filter.add(keys.next());
+        return filter;
+    }
 }
@@ -31,14 +31,15 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -48,11 +49,13 @@ import java.util.regex.Pattern;
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.data.ymark.YMarkUtil;
+import net.yacy.kelondro.util.BDictionaryView;
 import net.yacy.kelondro.util.FileUtils;
 
 
@@ -72,6 +75,7 @@ public class Tables implements Iterable<String> {
     private final File location;
     private final ConcurrentHashMap<String, BEncodedHeap> tables;
     private final ConcurrentHashMap<String, TablesColumnIndex> cidx;
+    private final ConcurrentHashMap<String, Map<String, HeapColumnIndex.Type>> columnIndexTypes; // the secondary indexes of each table
     private int keymaxlen;
 
     // use our own formatter to prevent concurrency locks with other processes
@@ -95,6 +99,39 @@ public class Tables implements Iterable<String> {
             }
         }
         this.cidx = new ConcurrentHashMap<String, TablesColumnIndex>();
+        this.columnIndexTypes = new ConcurrentHashMap<String, Map<String, HeapColumnIndex.Type>>();
+    }
+
+    /**
+     * create a persistent secondary index on a column of a table. The index is maintained with every change
+     * of the table and is used by the iterators which select rows with a given value of the column, by
+     * range scans and by orderBy(table, column, ...). The index is created again whenever the table is opened.
+     * @param tablename
+     * @param column the name of the indexed column
+     * @param type the encoding of the values, HASH for long values which are only selected by equality
+     * @return the index
+     * @throws IOException
+     */
+    public HeapColumnIndex createColumnIndex(final String tablename, final String column, final HeapColumnIndex.Type type) throws IOException {
+        Map<String, HeapColumnIndex.Type> types = this.columnIndexTypes.get(tablename);
+        if (types == null) {
+            this.columnIndexTypes.putIfAbsent(tablename, new ConcurrentHashMap<String, HeapColumnIndex.Type>());
+            types = this.columnIndexTypes.get(tablename);
+        }
+        types.put(column, type);
+        return getHeap(tablename).createColumnIndex(column, type);
+    }
+
+    /**
+     * get the secondary index of a column
+     * @param tablename
+     * @param column
+     * @return the index or null if there is no index for the column
+     * @throws IOException
+     */
+    public HeapColumnIndex getColumnIndex(final String tablename, final String column) throws IOException {
+        if (column == null || !this.columnIndexTypes.containsKey(tablename)) return null;
+        return getHeap(tablename).getColumnIndex(column);
     }
 
     public TablesColumnIndex getIndex(final String tableName, TablesColumnIndex.INDEXTYPE indexType) throws TableColumnIndexException, IOException {
@@ -319,6 +356,8 @@ public class Tables implements Iterable<String> {
         // open a new heap and register it in the tables
         final File heapf = new File(this.location, table);
         heap = new BEncodedHeap(heapf, this.keymaxlen);
+        final Map<String, HeapColumnIndex.Type> types = this.columnIndexTypes.get(tablename);
+        if (types != null) for (final Map.Entry<String, HeapColumnIndex.Type> type: types.entrySet()) heap.createColumnIndex(type.getKey(), type.getValue());
         this.tables.put(tablename, heap);
         return heap;
     }
@@ -429,6 +468,34 @@ public class Tables implements Iterable<String> {
         return null;
     }
 
+    /**
+     * select some columns of a row; the other columns are not decoded
+     * @param table
+     * @param pk
+     * @param columns the names of the columns
+     * @return a row with the given columns which exist in the row or null if there is no such row
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public Row select(final String table, final byte[] pk, final String... columns) throws IOException, SpaceExceededException {
+        final BEncodedHeap heap = getHeap(table);
+        final Map<String,byte[]> b = heap.get(pk, columns);
+        if (b != null) return new Row(pk, b);
+        return null;
+    }
+
+    /**
+     * get a view on a row which decodes the columns on demand
+     * @param table
+     * @param pk
+     * @return the view or null if there is no such row
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public BDictionaryView view(final String table, final byte[] pk) throws IOException, SpaceExceededException {
+        return getHeap(table).view(pk);
+    }
+
     public void delete(final String table, final byte[] pk) throws IOException {
         final BEncodedHeap heap = getHeap(table);
         heap.delete(pk);
@@ -454,6 +521,8 @@ public class Tables implements Iterable<String> {
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final byte[] whereValue) throws IOException {
+        final HeapColumnIndex index = whereValue == null ? null : getColumnIndex(table, whereColumn);
+        if (index != null) return new IndexedRowIterator(table, index, whereValue, whereValue, true, null);
         return new HeapRowIterator(table, whereColumn, whereValue);
     }
 
@@ -470,9 +539,28 @@ public class Tables implements Iterable<String> {
     }
 
     public Iterator<Row> iterator(final String table, final String whereColumn, final byte[] whereValue, final boolean up) throws IOException {
+        final HeapColumnIndex index = whereValue == null ? null : getColumnIndex(table, whereColumn);
+        if (index != null) return new IndexedRowIterator(table, index, whereValue, whereValue, up, getHeap(table).getOrdering());
         return new OrderedRowIterator(table, whereColumn, whereValue, up);
     }
 
+    /**
+     * iterate the rows of a table where the value of a column is inside of a range, in the order of the column.
+     * The column must have a secondary index of type STRING or NUMBER.
+     * @param table
+     * @param column the name of the column
+     * @param low the smallest value or null for no lower bound
+     * @param high the largest value or null for no upper bound
+     * @param up true for the ascending order of the values
+     * @return the rows with low &lt;= value &lt;= high; rows with the same value are ordered by their primary key
+     * @throws IOException if the column has no index which supports range scans
+     */
+    public Iterator<Row> iterator(final String table, final String column, final byte[] low, final byte[] high, final boolean up) throws IOException {
+        final HeapColumnIndex index = getColumnIndex(table, column);
+        if (index == null || index.type() == HeapColumnIndex.Type.HASH) throw new IOException("no range index for column " + column + " in table " + table);
+        return new IndexedRowIterator(table, index, low, high, up, null);
+    }
+
     public Iterator<Row> iterator(final String table, final String whereColumn, final Pattern wherePattern, final boolean up) throws IOException {
         return new OrderedRowIterator(table, whereColumn, wherePattern, up);
     }
@@ -615,6 +703,38 @@ public class Tables implements Iterable<String> {
 		return sortTree;
 	}
 
+	/**
+	 * retrieve the first rows of a table in the order of a column without reading all rows.
+	 * If the column has no secondary index of type STRING or NUMBER, all rows are read and are ordered as strings.
+	 * @param table the table name
+	 * @param sortColumn the name of the column to use for sorting
+	 * @param sortDir the sorting direction. When null, {@link SortDirection#ASC} is applied.
+	 * @param limit the maximum number of rows
+	 * @return the first rows ordered on the given column name; rows with equal values are ordered by their primary key
+	 * @throws IOException
+	 */
+	public Collection<Row> orderBy(final String table, final String sortColumn, final SortDirection sortDir, final int limit) throws IOException {
+		final HeapColumnIndex index = getColumnIndex(table, sortColumn);
+		final List<Row> rows = new ArrayList<Row>();
+		if (index == null || index.type() == HeapColumnIndex.Type.HASH) {
+			for (final Row row: orderByString(iterator(table), sortColumn, "", sortDir)) {
+				if (rows.size() >= limit) break;
+				rows.add(row);
+			}
+			return rows;
+		}
+		final BEncodedHeap heap = getHeap(table);
+		for (final byte[] pk: index.select(null, null, sortDir != SortDirection.DESC, limit)) {
+			try {
+				final Map<String, byte[]> map = heap.get(pk);
+				if (map != null) rows.add(new Row(pk, map));
+			} catch (final SpaceExceededException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+		return rows;
+	}
+
     public ArrayList<String> columns(final String table) throws IOException {
         final BEncodedHeap heap = getHeap(table);
         return heap.columns();
@@ -628,12 +748,42 @@ public class Tables implements Iterable<String> {
     	DESC
     }
 
+    /**
+     * check the predicate of an iterator on a view of a row; only the column of the predicate is decoded
+     * unless the row matches
+     * @param pk the primary key of the row
+     * @param view the row
+     * @param whereColumn the column of the predicate or null for all columns
+     * @param whereValue the value of the column or null
+     * @param wherePattern a pattern for the value of the column or null
+     * @return the row if it matches or if there is no predicate, otherwise null
+     */
+    private Row selectRow(final byte[] pk, final BDictionaryView view, final String whereColumn, final byte[] whereValue, final Pattern wherePattern) {
+        if (!view.isDictionary()) return null;
+        if (whereValue != null) {
+            if (!view.equals(whereColumn, whereValue)) return null;
+        } else if (wherePattern != null) {
+            if (whereColumn == null) {
+                // shall match any column
+                final Map<String, byte[]> map = view.toMap();
+                for (final byte[] b: map.values()) {
+                    if (wherePattern.matcher(UTF8.String(b)).matches()) return new Row(pk, map);
+                }
+                return null;
+            }
+            // must match the given column
+            final String value = view.get(whereColumn, (String) null);
+            if (value == null || !wherePattern.matcher(value).matches()) return null;
+        }
+        return new Row(pk, view.toMap());
+    }
+
     public class HeapRowIterator extends LookAheadIterator<Row> implements Iterator<Row> {
 
         private final String whereColumn;
         private final byte[] whereValue;
         private final Pattern wherePattern;
-        private final Iterator<Map.Entry<byte[], Map<String, byte[]>>> i;
+        private final Iterator<Map.Entry<byte[], BDictionaryView>> i;
 
         /**
          * iterator that iterates all elements in the given table
@@ -645,7 +795,7 @@ public class Tables implements Iterable<String> {
             this.whereValue = null;
             this.wherePattern = null;
             final BEncodedHeap heap = getHeap(table);
-            this.i = heap.iterator();
+            this.i = heap.views();
         }
 
         /**
@@ -662,7 +812,7 @@ public class Tables implements Iterable<String> {
             this.whereValue = whereValue;
             this.wherePattern = null;
             final BEncodedHeap heap = getHeap(table);
-            this.i = heap.iterator();
+            this.i = heap.views();
         }
 
         /**
@@ -678,7 +828,7 @@ public class Tables implements Iterable<String> {
             this.whereValue = null;
             this.wherePattern = wherePattern == null || wherePattern.toString().isEmpty() ? null : wherePattern;
             final BEncodedHeap heap = getHeap(table);
-            this.i = heap.iterator();
+            this.i = heap.views();
         }
 
         /**
@@ -693,32 +843,17 @@ public class Tables implements Iterable<String> {
             this.whereValue = null;
             this.wherePattern = pattern == null || pattern.toString().isEmpty() ? null : pattern;
             final BEncodedHeap heap = getHeap(table);
-            this.i = heap.iterator();
+            this.i = heap.views();
         }
 
         @Override
         protected Row next0() {
             if (this.i == null) return null;
-        	Row r;
+            Row r;
             while (this.i.hasNext()) {
-                r = new Row(this.i.next());
-                if (this.whereValue != null) {
-                    if (Arrays.equals(r.get(this.whereColumn), this.whereValue)) {
-                    	return r;
-                    }
-                } else if (this.wherePattern != null) {
-                    if (this.whereColumn == null) {
-                        // shall match any column
-                        for (final byte[] b: r.values()) {
-                            if (this.wherePattern.matcher(UTF8.String(b)).matches()) return r;
-                        }
-                    } else {
-                        // must match the given column
-                        if (this.wherePattern.matcher(UTF8.String(r.get(this.whereColumn))).matches()) return r;
-                    }
-                } else {
-                    return r;
-                }
+                final Map.Entry<byte[], BDictionaryView> entry = this.i.next();
+                r = selectRow(entry.getKey(), entry.getValue(), this.whereColumn, this.whereValue, this.wherePattern);
+                if (r != null) return r;
             }
             return null;
         }
@@ -803,26 +938,11 @@ public class Tables implements Iterable<String> {
             Row r;
             while (this.i.hasNext()) {
                 byte[] pk = this.i.next();
-                Map<String, byte[]> map;
                 try {
-                    map = this.heap.get(pk);
-                    if (map == null) continue;
-                    r = new Row(pk, map);
-                    if (this.whereValue != null) {
-                        if (Arrays.equals(r.get(this.whereColumn), this.whereValue)) return r;
-                    } else if (this.wherePattern != null) {
-                        if (this.whereColumn == null) {
-                            // shall match any column
-                            for (final byte[] b: r.values()) {
-                                if (this.wherePattern.matcher(UTF8.String(b)).matches()) return r;
-                            }
-                        } else {
-                            // must match the given column
-                            if (this.wherePattern.matcher(UTF8.String(r.get(this.whereColumn))).matches()) return r;
-                        }
-                    } else {
-                        return r;
-                    }
+                    final BDictionaryView view = this.heap.view(pk);
+                    if (view == null) continue;
+                    r = selectRow(pk, view, this.whereColumn, this.whereValue, this.wherePattern);
+                    if (r != null) return r;
                 } catch (IOException | SpaceExceededException e) {
                     continue;
                 }
@@ -832,6 +952,60 @@ public class Tables implements Iterable<String> {
 
     }
     
+    /**
+     * iterator that iterates the rows which are selected with a secondary index of a column;
+     * the rows are checked against the predicate because the index may select some more rows
+     */
+    public class IndexedRowIterator extends LookAheadIterator<Row> implements Iterator<Row> {
+
+        private final HeapColumnIndex index;
+        private final byte[] low, high;
+        private final Iterator<byte[]> i;
+        private final BEncodedHeap heap;
+
+        /**
+         * @param table
+         * @param index the index of the column
+         * @param low the smallest value or null for no lower bound
+         * @param high the largest value or null for no upper bound
+         * @param up the direction of the iteration
+         * @param ordering if not null, the rows are iterated in the order of their primary keys instead of the order of the column
+         * @throws IOException
+         */
+        public IndexedRowIterator(final String table, final HeapColumnIndex index, final byte[] low, final byte[] high, final boolean up, final ByteOrder ordering) throws IOException {
+            this.index = index;
+            this.low = low;
+            this.high = high;
+            this.heap = getHeap(table);
+            final List<byte[]> pks = index.select(low, high, up, Integer.MAX_VALUE);
+            if (ordering != null) {
+                pks.sort(ordering);
+                if (!up) Collections.reverse(pks);
+            }
+            this.i = pks.iterator();
+        }
+
+        @Override
+        protected Row next0() {
+            while (this.i.hasNext()) {
+                final byte[] pk = this.i.next();
+                try {
+                    final BDictionaryView view = this.heap.view(pk);
+                    if (view == null || !view.isDictionary()) continue;
+                    if (this.low != null && this.low == this.high) {
+                        // selection of a single value
+                        if (view.equals(this.index.column(), this.low)) return new Row(pk, view.toMap());
+                    } else if (this.index.matches(view.get(this.index.column()), this.low, this.high)) {
+                        return new Row(pk, view.toMap());
+                    }
+                } catch (IOException | SpaceExceededException e) {
+                    continue;
+                }
+            }
+            return null;
+        }
+    }
+
     public static class Data extends LinkedHashMap<String, byte[]> {
 
         private static final long serialVersionUID = 978426054043749337L;
@@ -31,6 +31,7 @@ import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.Column;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.index.RowArena;
 import net.yacy.kelondro.rwi.Reference;
 
 public class CitationReference implements Reference, Serializable {
@@ -92,6 +93,11 @@ public class CitationReference implements Reference, Serializable {
         return this.entry;
     }
 
+    @Override
+    public Entry toKelondroEntry(final RowArena arena) {
+        return this.entry;
+    }
+
     @Override
     public byte[] urlhash() {
         return this.entry.getColBytes(col_urlhash, true);
@@ -0,0 +1,247 @@
+/**
+ *  TermDictionary
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.data.word;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+/**
+ * A persistent, read-only dictionary from terms to word hashes.
+ * The dictionary file is mapped into memory; it is an open-addressing hash table
+ * of int offsets, followed by the entries {hash, length of term, term} where the
+ * term is the UTF-8 encoding of the lower-case word. A lookup of a known term
+ * therefore costs one array probe and a byte comparison instead of an MD5 computation.
+ * The file is written once with write() and replaced as a whole when it is rebuilt.
+ */
+public final class TermDictionary {
+
+    private static final int MAGIC = 0x59544431; // "YTD1"
+    private static final int HEADER = 16;        // magic, slots, count, reserved
+    private static final int MAXTERMLENGTH = 255;
+
+    private final File file;
+    private final ByteBuffer base;
+    private final int slots, mask, count;
+    private final AtomicLong hits = new AtomicLong(0), misses = new AtomicLong(0);
+
+    /**
+     * map an existing dictionary file
+     * @param file a file written with write()
+     * @throws IOException if the file does not exist, cannot be mapped or has not the format of a dictionary
+     */
+    public TermDictionary(final File file) throws IOException {
+        this.file = file;
+        if (!file.exists()) throw new IOException("term dictionary " + file.getName() + " does not exist");
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final long length = raf.length();
+            if (length < HEADER) throw new IOException("term dictionary " + file.getName() + " is too short: " + length);
+            if (length > Integer.MAX_VALUE) throw new IOException("term dictionary " + file.getName() + " is too large to be mapped: " + length);
+            this.base = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+        if (this.base.getInt(0) != MAGIC) throw new IOException("term dictionary " + file.getName() + " has a wrong magic number");
+        this.slots = this.base.getInt(4);
+        this.count = this.base.getInt(8);
+        if (this.slots <= 0 || Integer.bitCount(this.slots) != 1 || HEADER + 4L * this.slots > this.base.capacity()) {
+            throw new IOException("term dictionary " + file.getName() + " has a wrong slot table size " + this.slots);
+        }
+        this.mask = this.slots - 1;
+    }
+
+    /**
+     * get the word hash of a term
+     * @param wordlc the term, must be lower case
+     * @return the hash of the term or null if the term is not in the dictionary
+     */
+    public byte[] get(final String wordlc) {
+        final byte[] term = UTF8.getBytes(wordlc);
+        if (term.length > MAXTERMLENGTH) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        int slot = slot(term) & this.mask;
+        int offset;
+        while ((offset = this.base.getInt(HEADER + 4 * slot)) != 0) {
+            if (matches(offset, term)) {
+                final byte[] h = new byte[Word.commonHashLength];
+                for (int i = 0; i < Word.commonHashLength; i++) h[i] = this.base.get(offset + i);
+                this.hits.incrementAndGet();
+                return h;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    private boolean matches(final int offset, final byte[] term) {
+        final int p = offset + Word.commonHashLength;
+        if ((this.base.get(p) & 0xff) != term.length) return false;
+        for (int i = 0; i < term.length; i++) {
+            if (this.base.get(p + 1 + i) != term[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * the slot hash of a term; this must never change since it is part of the file format
+     */
+    private static int slot(final byte[] term) {
+        int h = 0x811c9dc5; // FNV-1a
+        for (final byte b: term) {
+            h ^= (b & 0xff);
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the number of terms in the dictionary
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return the number of lookups which found a term
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups which did not find a term
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    public File file() {
+        return this.file;
+    }
+
+    /**
+     * iterate over all terms of the dictionary; this is used to carry the terms over when the dictionary is rebuilt
+     * @return the terms in the order of the file
+     */
+    public Iterator<String> terms() {
+        return new Iterator<String>() {
+            private int p = HEADER + 4 * TermDictionary.this.slots;
+            private int n = 0;
+            @Override
+            public boolean hasNext() {
+                return this.n < TermDictionary.this.count;
+            }
+            @Override
+            public String next() {
+                final int len = TermDictionary.this.base.get(this.p + Word.commonHashLength) & 0xff;
+                final byte[] term = new byte[len];
+                for (int i = 0; i < len; i++) term[i] = TermDictionary.this.base.get(this.p + Word.commonHashLength + 1 + i);
+                this.p += Word.commonHashLength + 1 + len;
+                this.n++;
+                return UTF8.String(term);
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * write a new dictionary file. The hashes are computed with one digest for all terms.
+     * The file is written to a temporary file first and then renamed, so a mapped old file stays valid.
+     * @param file the target file
+     * @param terms the terms; they are converted to lower case, double entries and terms which are too long are omitted
+     * @return the number of terms written
+     * @throws IOException
+     */
+    public static int write(final File file, final Iterator<String> terms) throws IOException {
+        final Set<String> unique = new LinkedHashSet<String>();
+        while (terms.hasNext()) {
+            final String t = terms.next();
+            if (t == null || t.isEmpty()) continue;
+            unique.add(t.toLowerCase(Locale.ENGLISH));
+        }
+        final List<byte[]> encoded = new ArrayList<byte[]>(unique.size());
+        final List<byte[]> hashes = new ArrayList<byte[]>(unique.size());
+        final MessageDigest digest = Word.newDigest();
+        for (final String t: unique) {
+            final byte[] b = UTF8.getBytes(t);
+            if (b.length > MAXTERMLENGTH) continue;
+            encoded.add(b);
+            hashes.add(Word.computeHash(t, digest));
+        }
+        int slots = 16;
+        while (slots < encoded.size() * 2) slots <<= 1;
+        final int mask = slots - 1;
+
+        // compute the offsets of the entries and fill the slot table
+        final int[] table = new int[slots];
+        long offset = HEADER + 4L * slots;
+        for (final byte[] b: encoded) {
+            if (offset > Integer.MAX_VALUE) throw new IOException("term dictionary " + file.getName() + " exceeds 2GB");
+            int slot = slot(b) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = (int) offset;
+            offset += Word.commonHashLength + 1 + b.length;
+        }
+
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+        try {
+            os.writeInt(MAGIC);
+            os.writeInt(slots);
+            os.writeInt(encoded.size());
+            os.writeInt(0);
+            for (final int t: table) os.writeInt(t);
+            for (int i = 0; i < encoded.size(); i++) {
+                final byte[] b = encoded.get(i);
+                os.write(hashes.get(i));
+                os.write(b.length);
+                os.write(b);
+            }
+        } finally {
+            os.close();
+        }
+        if (file.exists() && !file.delete()) throw new IOException("cannot delete old term dictionary " + file.getName());
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp.getName() + " to " + file.getName());
+        return encoded.size();
+    }
+
+}
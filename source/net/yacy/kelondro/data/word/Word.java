@@ -26,14 +26,19 @@
 
 package net.yacy.kelondro.data.word;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
+import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.storage.TinyLFUCache;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.RowHandleSet;
@@ -54,12 +59,20 @@ public class Word {
 
     private static final int hashCacheSize = Math.max(20000, Math.min(200000, (int) (MemoryControl.available() / 40000L)));
     private static ARC<String, byte[]> hashCache = null;
+    private static TermDictionary dictionary = null; // a persistent term-to-hash dictionary, consulted before the cache
     static {
+        initCache();
+    }
+
+    /**
+     * create the word hash cache; this is done again if the cache implementation is changed
+     */
+    public static void initCache() {
         try {
-            hashCache = new ConcurrentARC<String, byte[]>(hashCacheSize, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
+            hashCache = TinyLFUCache.newCache(hashCacheSize, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()), hashCacheSize * 128L);
             ConcurrentLog.info("Word", "hashCache.size = " + hashCacheSize);
         } catch (final OutOfMemoryError e) {
-            hashCache = new ConcurrentARC<String, byte[]>(1000, Math.min(8, 1 + Runtime.getRuntime().availableProcessors()));
+            hashCache = TinyLFUCache.newCache(1000, Math.min(8, 1 + Runtime.getRuntime().availableProcessors()), 1000 * 128L);
             ConcurrentLog.info("Word", "hashCache.size = " + 1000);
         }
     }
@@ -82,6 +95,18 @@ public class Word {
     public static void clearCache() {
         hashCache.clear();
     }
+
+    /**
+     * set the persistent term dictionary which is consulted before the hash cache
+     * @param dict the dictionary or null to switch it off
+     */
+    public static void setDictionary(final TermDictionary dict) {
+        dictionary = dict;
+    }
+
+    public static TermDictionary getDictionary() {
+        return dictionary;
+    }
     
     public void inc() {
         this.count++;
@@ -112,10 +137,82 @@ public class Word {
     // create a word hash
     public static final byte[] word2hash(final String word) {
     	final String wordlc = word.toLowerCase(Locale.ENGLISH);
-    	byte[] h = hashCache.get(wordlc);
+    	byte[] h = known(wordlc);
         if (h != null) return h;
         // calculate the hash
-    	h = commonHashOrder.encodeSubstring(Digest.encodeMD5Raw(wordlc), commonHashLength);
+        final MessageDigest digest = Digest.digestPool.poll();
+        h = computeHash(wordlc, digest == null ? newDigest() : digest);
+        if (digest != null) Digest.digestPool.add(digest);
+        remember(wordlc, h);
+        return h;
+    }
+
+    /**
+     * create the hashes of many words at once, i.e. all distinct words of a document.
+     * Words from the term dictionary and the hash cache are not hashed again; all other
+     * words are hashed with one digest object which is not shared with other threads during the batch.
+     * @param words the words, need not be lower case
+     * @return a map from the given words to their hashes
+     */
+    public static final Map<String, byte[]> words2hashes(final Collection<String> words) {
+        final Map<String, byte[]> hashes = new HashMap<String, byte[]>(words.size() * 4 / 3 + 1);
+        MessageDigest digest = null;
+        for (final String word: words) {
+            final String wordlc = word.toLowerCase(Locale.ENGLISH);
+            byte[] h = known(wordlc);
+            if (h == null) {
+                if (digest == null) {
+                    digest = Digest.digestPool.poll();
+                    if (digest == null) digest = newDigest();
+                }
+                h = computeHash(wordlc, digest);
+                remember(wordlc, h);
+            }
+            hashes.put(word, h);
+        }
+        if (digest != null) Digest.digestPool.add(digest);
+        return hashes;
+    }
+
+    /**
+     * get a hash without computation from the term dictionary or the hash cache
+     */
+    private static byte[] known(final String wordlc) {
+        final TermDictionary dict = dictionary;
+        if (dict != null) {
+            final byte[] h = dict.get(wordlc);
+            if (h != null) return h;
+        }
+        return hashCache.get(wordlc);
+    }
+
+    private static void remember(final String wordlc, final byte[] h) {
+        if (MemoryControl.shortStatus()) {
+            hashCache.clear();
+        } else {
+            //hashCache.putIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
+            hashCache.insertIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // MD5 is a required algorithm of every java platform
+        }
+    }
+
+    /**
+     * compute the hash of a lower case word
+     * @param wordlc the word in lower case
+     * @param digest a MD5 digest which is used by the calling thread only; it is reset after use
+     * @return the word hash
+     */
+    static byte[] computeHash(final String wordlc, final MessageDigest digest) {
+        digest.reset();
+        final byte[] md5 = digest.digest(UTF8.getBytes(wordlc));
+        final byte[] h = commonHashOrder.encodeSubstring(md5, commonHashLength);
     	while (h[0] == highByte && h[1] == highByte && h[2] == highByte && h[3] == highByte && h[4] == highByte) {
     	    // ensure that word hashes do not start with hash '_____' which is a key for an extra hash range for private usage on the local peer
     	    // statistically we are inside this loop only every 2^^30 calls of word2hash (which means almost never)
@@ -123,12 +220,6 @@ public class Word {
     	    h[commonHashLength - 1] = lowByte;
     	}
         assert h[2] != '@';
-        if (MemoryControl.shortStatus()) {
-            hashCache.clear();
-        } else {
-            //hashCache.putIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
-            hashCache.insertIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
-        }
         return h;
     }
 
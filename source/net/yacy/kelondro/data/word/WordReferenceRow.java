@@ -133,9 +133,38 @@ public final class WordReferenceRow extends AbstractReference implements WordRef
             final int      wordDistance,  // average distance of multi search query words
             final Bitfield flags  // attributes to the url and to the word according the url
     ) {
+        this(urlEntryRow.newEntry(), urlHash, urlLength, urlComps, titlewordcount, hitcount, wordcount, phrasecount,
+             posintext, posinphrase, posofphrase, lastmodified, updatetime, language, doctype, outlinksSame, outlinksOther,
+             wordDistance, flags);
+    }
+
+    /**
+     * write a reference into a given empty row, i.e. a row of a RowArena
+     */
+    protected WordReferenceRow(
+            final Row.Entry target,
+            final byte[]   urlHash,
+            final int      urlLength,
+            final int      urlComps,
+            final int      titlewordcount,
+            final int      hitcount,
+            final int      wordcount,
+            final int      phrasecount,
+            final int      posintext,
+            final int      posinphrase,
+            final int      posofphrase,
+            final long     lastmodified,
+            final long     updatetime,
+            final byte[]   language,
+            final char     doctype,
+            final int      outlinksSame,
+            final int      outlinksOther,
+            final int      wordDistance,
+            final Bitfield flags
+    ) {
 
         assert (urlHash.length == 12) : "urlhash = " + ASCII.String(urlHash);
-        this.entry = urlEntryRow.newEntry();
+        this.entry = target;
         final int mddlm = MicroDate.microDateDays(lastmodified);
         final int mddct = MicroDate.microDateDays(updatetime);
         this.entry.setCol(col_urlhash, urlHash);
@@ -374,6 +403,7 @@ public final class WordReferenceRow extends AbstractReference implements WordRef
 
     @Override
     public int hashCode() {
+        if (this.entry instanceof Row.View) return ByteArray.hashCode(urlhash()); // the view may be moved to another row
         if (this.hashCache == Integer.MIN_VALUE) {
             this.hashCache = ByteArray.hashCode(urlhash());
         }
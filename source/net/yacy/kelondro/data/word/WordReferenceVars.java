@@ -40,6 +40,7 @@ import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.index.RowArena;
 import net.yacy.kelondro.rwi.AbstractReference;
 import net.yacy.kelondro.rwi.Reference;
 import net.yacy.kelondro.rwi.ReferenceContainer;
@@ -299,7 +300,12 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
     }
 
     private WordReferenceRow toRowEntry() {
+        return toRowEntry(WordReferenceRow.urlEntryRow.newEntry());
+    }
+
+    private WordReferenceRow toRowEntry(final Row.Entry target) {
         return new WordReferenceRow(
+                target,
                 this.urlHash,
                 this.urllength,     // byte-length of complete URL
                 this.urlcomps,      // number of path components
@@ -326,6 +332,11 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
         return toRowEntry().toKelondroEntry();
     }
 
+    @Override
+    public Entry toKelondroEntry(final RowArena arena) {
+        return toRowEntry(arena.newEntry()).toKelondroEntry();
+    }
+
     @Override
     public String toPropertyForm() {
         return toRowEntry().toPropertyForm();
@@ -544,10 +555,14 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
     public static BlockingQueue<WordReferenceVars> transform(final ReferenceContainer<WordReference> container, final long maxtime, final boolean local) {
     	final LinkedBlockingQueue<WordReferenceVars> vars = new LinkedBlockingQueue<WordReferenceVars>();
     	if (container.size() <= 100) {
-    	    // transform without concurrency to omit thread creation overhead
-    	    for (final Row.Entry entry: container) {
+    	    // transform without concurrency to omit thread creation overhead;
+    	    // the rows are read through one view, the WordReferenceVars copy the values they keep
+    	    final Row.View view = WordReferenceRow.urlEntryRow.newView();
+    	    final WordReferenceRow row = new WordReferenceRow(view);
+    	    for (int p = 0; p < container.size(); p++) {
+    	        if (container.get(p, view) == null) break;
     	        try {
-    	            vars.put(new WordReferenceVars(new WordReferenceRow(entry), local));
+    	            vars.put(new WordReferenceVars(row, local));
     	        } catch (final InterruptedException e) {}
     	    }
             try {
@@ -578,30 +593,14 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
 
         @Override
     	public void run() {
-        	// start the transformation threads
+        	// start the transformation threads; each worker reads every cores0-th row of the container
+        	// through its own view, so no row needs to be copied or queued
         	final int cores0 = Math.min(WorkflowProcessor.availableCPU, this.container.size() / 100) + 1;
         	final TransformWorker[] worker = new TransformWorker[cores0];
         	for (int i = 0; i < cores0; i++) {
-        		worker[i] = new TransformWorker(this.out, this.maxtime, this.local);
+        		worker[i] = new TransformWorker(this.container, i, cores0, this.out, this.maxtime, this.local);
         		worker[i].start();
         	}
-        	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-
-        	// fill the queue
-        	int p = this.container.size();
-    		while (p > 0) {
-    			p--;
-				worker[p % cores0].add(this.container.get(p, false));
-				if (p % 100 == 0 && System.currentTimeMillis() > timeout) {
-				    ConcurrentLog.warn("TransformDistributor", "distribution of WordReference entries to worker queues ended with timeout = " + this.maxtime);
-				    break;
-				}
-            }
-
-        	// insert poison to stop the queues
-        	for (int i = 0; i < cores0; i++) {
-        	    worker[i].add(WordReferenceRow.poisonRowEntry);
-        	}
 
         	// wait for the worker to terminate because we want to place a poison entry into the out queue afterwards
         	for (int i = 0; i < cores0; i++) {
@@ -617,33 +616,31 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
 
     private static class TransformWorker extends Thread {
 
-    	private BlockingQueue<Row.Entry> in;
+    	private ReferenceContainer<WordReference> container;
+    	private final int first, step;
     	private BlockingQueue<WordReferenceVars> out;
     	private long maxtime;
     	private final boolean local;
 
-    	private TransformWorker(final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
+    	private TransformWorker(final ReferenceContainer<WordReference> container, final int first, final int step, final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
     		super("WordReferenceVars.TransformWorker");
-    		this.in = new LinkedBlockingQueue<Row.Entry>();
+    		this.container = container;
+    		this.first = first;
+    		this.step = step;
     		this.out = out;
     		this.maxtime = maxtime;
     		this.local = local;
     	}
 
-    	private void add(final Row.Entry entry) {
-    		try {
-				this.in.put(entry);
-			} catch (final InterruptedException e) {
-			}
-    	}
-
         @Override
     	public void run() {
-        	Row.Entry entry;
+        	final Row.View view = WordReferenceRow.urlEntryRow.newView();
+        	final WordReferenceRow row = new WordReferenceRow(view);
         	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
     		try {
-				while ((entry = this.in.take()) != WordReferenceRow.poisonRowEntry) {
-				    this.out.put(new WordReferenceVars(new WordReferenceRow(entry), local));
+    			for (int p = this.first; p < this.container.size(); p += this.step) {
+    			    if (this.container.get(p, view) == null) break;
+				    this.out.put(new WordReferenceVars(row, this.local));
 				    if (System.currentTimeMillis() > timeout) {
 	                    ConcurrentLog.warn("TransformWorker", "normalization of row entries from row to vars ended with timeout = " + this.maxtime);
 				        break;
@@ -0,0 +1,83 @@
+/**
+ *  AsyncGet
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * Execution of Index.getAsync(): indexes which are backed by files run the batched get
+ * in a shared thread pool, so a caller can issue the lookups of several indexes at once
+ * and overlap their IO. Indexes which are held in RAM complete the future at once.
+ */
+public final class AsyncGet {
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2 * Runtime.getRuntime().availableProcessors(),
+            2 * Runtime.getRuntime().availableProcessors(), 10,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new NamePrefixThreadFactory("Index.getAsync"));
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private AsyncGet() {}
+
+    /**
+     * run index.get(keys, forcecopy) in the thread pool
+     * @return a future which completes with the found rows or exceptionally with the IOException or InterruptedException of the get
+     */
+    public static CompletableFuture<Map<byte[], Row.Entry>> submit(final Index index, final Collection<byte[]> keys, final boolean forcecopy) {
+        final CompletableFuture<Map<byte[], Row.Entry>> future = new CompletableFuture<Map<byte[], Row.Entry>>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(index.get(keys, forcecopy));
+                } catch (final Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * run index.get(keys, forcecopy) in the calling thread
+     * @return a completed future
+     */
+    public static CompletableFuture<Map<byte[], Row.Entry>> completed(final Index index, final Collection<byte[]> keys, final boolean forcecopy) {
+        final CompletableFuture<Map<byte[], Row.Entry>> future = new CompletableFuture<Map<byte[], Row.Entry>>();
+        try {
+            future.complete(index.get(keys, forcecopy));
+        } catch (final Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ *  BloomFilter
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bloom filter for byte[] keys. It tells for sure that a key was never added;
+ * if it answers that a key may be contained, the key must be checked in the real index.
+ * The bit positions are computed with double hashing from a 64-bit hash of the key.
+ * Keys can be added concurrently with lookups; keys cannot be removed, a filter is
+ * rebuilt when too many removed keys make it too full.
+ */
+public final class BloomFilter {
+
+    private static final int MAGIC = 0x59424631; // "YBF1"
+
+    private final AtomicLongArray bits;
+    private final long m;     // number of bits, a power of two
+    private final int k;      // number of hash functions
+    private final AtomicLong count;
+
+    /**
+     * create an empty filter
+     * @param expectedKeys the number of keys which are expected to be added
+     * @param fpp the false positive probability when the expected number of keys was added
+     */
+    public BloomFilter(final long expectedKeys, final double fpp) {
+        final long n = Math.max(64, expectedKeys);
+        final double p = Math.min(0.5d, Math.max(1e-9d, fpp));
+        final long optimal = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        long bitcount = 64;
+        while (bitcount < optimal && bitcount < (1L << 36)) bitcount <<= 1;
+        this.m = bitcount;
+        this.k = Math.max(1, Math.min(16, (int) Math.round((double) this.m / n * Math.log(2))));
+        this.bits = new AtomicLongArray((int) (this.m >>> 6));
+        this.count = new AtomicLong(0);
+    }
+
+    private BloomFilter(final long m, final int k, final long count, final AtomicLongArray bits) {
+        this.m = m;
+        this.k = k;
+        this.count = new AtomicLong(count);
+        this.bits = bits;
+    }
+
+    /**
+     * add a key to the filter
+     * @param key
+     */
+    public void add(final byte[] key) {
+        add(key, 0, key.length);
+    }
+
+    public void add(final byte[] key, final int offset, final int length) {
+        final long h = hash(key, offset, length);
+        final long h1 = h, h2 = (h >>> 32) | (h << 32) | 1L;
+        final long mask = this.m - 1;
+        for (int i = 0; i < this.k; i++) {
+            final long bit = (h1 + i * h2) & mask;
+            final int word = (int) (bit >>> 6);
+            final long b = 1L << (bit & 63);
+            long old;
+            while (((old = this.bits.get(word)) & b) == 0) {
+                if (this.bits.compareAndSet(word, old, old | b)) break;
+            }
+        }
+        this.count.incrementAndGet();
+    }
+
+    /**
+     * test if a key may be contained in the filter
+     * @param key
+     * @return false if the key was never added, true if the key was possibly added
+     */
+    public boolean mightContain(final byte[] key) {
+        return mightContain(key, 0, key.length);
+    }
+
+    public boolean mightContain(final byte[] key, final int offset, final int length) {
+        final long h = hash(key, offset, length);
+        final long h1 = h, h2 = (h >>> 32) | (h << 32) | 1L;
+        final long mask = this.m - 1;
+        for (int i = 0; i < this.k; i++) {
+            final long bit = (h1 + i * h2) & mask;
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over the key bytes with the finalizer of MurmurHash3 to spread the bits
+     */
+    private static long hash(final byte[] key, final int offset, final int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= (key[i] & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return the number of add operations; double keys are counted twice
+     */
+    public long count() {
+        return this.count.get();
+    }
+
+    /**
+     * @return the number of bits of the filter
+     */
+    public long bitSize() {
+        return this.m;
+    }
+
+    /**
+     * @return the number of bits which are set for each key
+     */
+    public int hashCount() {
+        return this.k;
+    }
+
+    /**
+     * @return the memory used by the filter in bytes
+     */
+    public long mem() {
+        return this.m >>> 3;
+    }
+
+    /**
+     * @return the expected false positive probability for the number of keys added so far
+     */
+    public double expectedFpp() {
+        return Math.pow(1.0d - Math.exp(-(double) this.k * this.count.get() / this.m), this.k);
+    }
+
+    /**
+     * write the filter to a file
+     * @param file
+     * @throws IOException
+     */
+    public void dump(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+        try {
+            os.writeInt(MAGIC);
+            os.writeInt(this.k);
+            os.writeLong(this.m);
+            os.writeLong(this.count.get());
+            for (int i = 0; i < this.bits.length(); i++) os.writeLong(this.bits.get(i));
+        } finally {
+            os.close();
+        }
+        if (file.exists() && !file.delete()) throw new IOException("cannot delete old bloom filter " + file.getName());
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp.getName() + " to " + file.getName());
+    }
+
+    /**
+     * read a filter which was written with dump()
+     * @param file
+     * @return the filter
+     * @throws IOException if the file does not exist or has not the format of a filter dump
+     */
+    public static BloomFilter load(final File file) throws IOException {
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            if (is.readInt() != MAGIC) throw new IOException("bloom filter " + file.getName() + " has a wrong magic number");
+            final int k = is.readInt();
+            final long m = is.readLong();
+            final long count = is.readLong();
+            if (k < 1 || m < 64 || Long.bitCount(m) != 1 || file.length() != 24 + (m >>> 3)) {
+                throw new IOException("bloom filter " + file.getName() + " has a wrong size");
+            }
+            final AtomicLongArray bits = new AtomicLongArray((int) (m >>> 6));
+            for (int i = 0; i < bits.length(); i++) bits.set(i, is.readLong());
+            return new BloomFilter(m, k, count, bits);
+        } finally {
+            is.close();
+        }
+    }
+}
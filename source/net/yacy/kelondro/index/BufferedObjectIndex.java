@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.storage.HandleSet;
@@ -165,14 +166,24 @@ public class BufferedObjectIndex implements Index, Iterable<Row.Entry> {
     @Override
     public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
+        final List<byte[]> misses = new ArrayList<byte[]>();
         Row.Entry entry;
-        for (final byte[] key: keys) {
-            entry = get(key, forcecopy);
-            if (entry != null) map.put(key, entry);
+        synchronized (this.backend) {
+            for (final byte[] key: keys) {
+                entry = this.buffer.get(key, forcecopy);
+                if (entry != null) map.put(key, entry); else misses.add(key);
+            }
+            // the keys which are not in the buffer are requested from the backend with one batch get
+            if (!misses.isEmpty()) map.putAll(this.backend.get(misses, forcecopy));
         }
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     @Override
     public boolean has(final byte[] key) {
         synchronized (this.backend) {
@@ -25,6 +25,7 @@
 package net.yacy.kelondro.index;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -32,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.SpaceExceededException;
@@ -322,16 +324,62 @@ public final class Cache implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
+    public final synchronized Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
+        final List<byte[]> misses = new ArrayList<byte[]>();
         Row.Entry entry;
         for (final byte[] key: keys) {
-            entry = get(key, forcecopy);
-            if (entry != null) map.put(key, entry);
+            // first look into the miss cache
+            if (this.readMissCache != null) {
+                if (this.readMissCache.has(key)) {
+                    this.hasnotHit++;
+                    continue;
+                }
+                this.hasnotMiss++;
+            }
+            // then try the hit cache
+            if (this.readHitCache != null) {
+                entry = this.readHitCache.get(key, forcecopy);
+                if (entry != null) {
+                    this.readHit++;
+                    map.put(key, entry);
+                    continue;
+                }
+            }
+            this.readMiss++;
+            misses.add(key);
+        }
+        if (misses.isEmpty()) return map;
+
+        // ask the back-end index once for all remaining keys and learn from the result
+        final Map<byte[], Row.Entry> found = this.index.get(misses, forcecopy);
+        for (final byte[] key: misses) {
+            entry = found.get(key);
+            if (entry == null) {
+                if (checkMissSpace()) try {
+                    final Row.Entry dummy = this.readMissCache.replace(this.readMissCache.row().newEntry(key));
+                    if (dummy == null) this.hasnotUnique++; else this.hasnotDouble++;
+                } catch (final SpaceExceededException e) {
+                    clearCache();
+                }
+                continue;
+            }
+            map.put(key, entry);
+            if (checkHitSpace()) try {
+                final Row.Entry dummy = this.readHitCache.replace(entry);
+                if (dummy == null) this.writeUnique++; else this.writeDouble++;
+            } catch (final SpaceExceededException e) {
+                clearCache();
+            }
         }
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     @Override
     public final synchronized boolean put(final Row.Entry row) throws IOException, SpaceExceededException {
         assert (row != null);
@@ -0,0 +1,650 @@
+/**
+ *  HashHandleMap
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * A HandleMap which is an open-addressing hash table with linear probing.
+ * All entries are stored as {key, value} records in one byte[] arena, the value with idxbytes
+ * bytes in the same encoding as in a dump; a long[] bitfield marks the used slots. There are no
+ * objects per entry and get, put and inc do not depend on the size of the map, while a RowHandleMap
+ * must sort its collections for a lookup and moves the tail of a collection for an insert.
+ * Keys are compared bytewise, the ordering is only used for ordered access: keys(), iterator(),
+ * dump() and top() use a sorted copy of all records which is made when it is needed first and
+ * which is dropped with the next change of the map. Iterators work on that copy, therefore they
+ * are not affected by concurrent changes. A dump has the same format as the dump of a RowHandleMap.
+ */
+public final class HashHandleMap implements HandleMap {
+
+    private static final int minCapacity = 16;
+    private static final int maxInitialCapacity = 1 << 16; // the expected space is only a hint, the table grows when needed
+
+    private final int keylength, idxbytes, width;
+    private final ByteOrder ordering;
+    private final String name;
+    private byte[] arena;              // capacity records of key and value
+    private long[] used;               // one bit for each slot of the arena
+    private int capacity, mask, count;
+    private byte[] sorted;             // the sorted records of all entries or null if it must be computed again
+    private ArrayList<byte[]> doubles; // records of keys which had been inserted twice with putUnique
+
+    /**
+     * initialize a HandleMap
+     * This may store a key and a long value for each key.
+     * @param keylength
+     * @param objectOrder the order of the keys in ordered iterations and dumps
+     * @param idxbytes the number of bytes of a value
+     * @param expectedspace
+     * @param name
+     */
+    public HashHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final int expectedspace, final String name) {
+        assert idxbytes > 0 && idxbytes <= 8 : "idxbytes = " + idxbytes;
+        this.keylength = keylength;
+        this.idxbytes = idxbytes;
+        this.width = keylength + idxbytes;
+        this.ordering = objectOrder;
+        this.name = name;
+        this.doubles = null;
+        init(capacityFor(Math.min(maxInitialCapacity, Math.max(0, expectedspace))));
+    }
+
+    /**
+     * initialize a HandleMap with the content of a dumped index
+     * @param keylength
+     * @param objectOrder
+     * @param idxbytes
+     * @param file a dump written by HandleMap.dump()
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public HashHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final File file) throws IOException, SpaceExceededException {
+        this(keylength, objectOrder, idxbytes, 0, file.getAbsolutePath());
+        final boolean gz = file.getName().endsWith(".gz");
+        // reserve the complete space at once to prevent that the table grows step by step
+        if (!gz) grow(capacityFor((int) Math.min(Integer.MAX_VALUE, file.length() / this.width)));
+        InputStream is = new FileInputStream(file);
+        try {
+            is = new BufferedInputStream(is, 1024 * 1024);
+            if (gz) is = new GZIPInputStream(is);
+            final byte[] a = new byte[this.width];
+            int c, p;
+            while (true) {
+                // read a complete record; a truncated record at the end of the dump is ignored
+                p = 0;
+                while (p < a.length && (c = is.read(a, p, a.length - p)) > 0) p += c;
+                if (p < a.length) break;
+                putRecord(a);
+            }
+        } finally {
+            is.close();
+        }
+        assert gz || this.count == file.length() / this.width;
+    }
+
+    private static int capacityFor(final int size) {
+        int c = minCapacity;
+        while (c < Integer.MAX_VALUE / 2 && c - (c >> 2) < size) c <<= 1;
+        return c;
+    }
+
+    private void init(final int c) {
+        this.arena = new byte[c * this.width];
+        this.used = new long[(c + 63) >> 6];
+        this.capacity = c;
+        this.mask = c - 1;
+        this.count = 0;
+        this.sorted = null;
+    }
+
+    /**
+     * move all entries into a table with a new capacity
+     * @param c the new capacity, a power of 2
+     * @throws SpaceExceededException if the new table cannot be allocated
+     */
+    private void grow(final int c) throws SpaceExceededException {
+        if (c <= this.capacity) return;
+        final long needed = ((long) c) * this.width;
+        if (needed > Integer.MAX_VALUE - 8) throw new SpaceExceededException(needed, "HashHandleMap " + this.name);
+        final byte[] oldarena = this.arena;
+        final long[] oldused = this.used;
+        final int oldcapacity = this.capacity;
+        try {
+            init(c);
+        } catch (final OutOfMemoryError e) {
+            this.arena = oldarena;
+            this.used = oldused;
+            this.capacity = oldcapacity;
+            this.mask = oldcapacity - 1;
+            throw new SpaceExceededException(needed, "HashHandleMap " + this.name);
+        }
+        for (int i = 0; i < oldcapacity; i++) {
+            if ((oldused[i >> 6] & (1L << i)) == 0) continue;
+            int s = hash(oldarena, i * this.width) & this.mask;
+            while (isUsed(s)) s = (s + 1) & this.mask;
+            System.arraycopy(oldarena, i * this.width, this.arena, s * this.width, this.width);
+            this.used[s >> 6] |= 1L << s;
+            this.count++;
+        }
+    }
+
+    private int hash(final byte[] b, final int offset) {
+        int h = 0;
+        for (int j = 0; j < this.keylength; j++) h = 31 * h + b[offset + j];
+        // spread the bits, the table size is a power of 2
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isUsed(final int s) {
+        return (this.used[s >> 6] & (1L << s)) != 0;
+    }
+
+    private boolean equalKey(final int s, final byte[] key, final int offset) {
+        final byte[] a = this.arena;
+        final int p = s * this.width;
+        for (int j = 0; j < this.keylength; j++) if (a[p + j] != key[offset + j]) return false;
+        return true;
+    }
+
+    /**
+     * find the slot of a key
+     * @return the slot of the key or (-(free slot) - 1) if the key is not in the map
+     */
+    private int find(final byte[] key, final int offset) {
+        int s = hash(key, offset) & this.mask;
+        while (isUsed(s)) {
+            if (equalKey(s, key, offset)) return s;
+            s = (s + 1) & this.mask;
+        }
+        return -s - 1;
+    }
+
+    private long value(final int s) {
+        final byte[] a = this.arena;
+        final int p = s * this.width + this.keylength;
+        long c = 0;
+        for (int j = 0; j < this.idxbytes; j++) c = (c << 8) | (a[p + j] & 0xFFL);
+        return c;
+    }
+
+    private void setValue(final int s, long c) {
+        final byte[] a = this.arena;
+        final int p = s * this.width + this.keylength;
+        for (int j = this.idxbytes - 1; j >= 0; j--) {
+            a[p + j] = (byte) c;
+            c >>= 8;
+        }
+    }
+
+    private byte[] key(final int s) {
+        final byte[] k = new byte[this.keylength];
+        System.arraycopy(this.arena, s * this.width, k, 0, this.keylength);
+        return k;
+    }
+
+    /**
+     * store a new key in a free slot
+     * @param free the free slot returned by find
+     * @return the slot of the key, which is different from the free slot if the table had to grow
+     */
+    private int insert(final int free, final byte[] key) throws SpaceExceededException {
+        int s = free;
+        if (this.count + 1 > this.capacity - (this.capacity >> 2)) {
+            grow(this.capacity << 1);
+            s = -find(key, 0) - 1;
+        }
+        System.arraycopy(key, 0, this.arena, s * this.width, this.keylength);
+        this.used[s >> 6] |= 1L << s;
+        this.count++;
+        return s;
+    }
+
+    private void putRecord(final byte[] record) throws SpaceExceededException {
+        final int s = find(record, 0);
+        if (s >= 0) {
+            addDouble(s);
+            System.arraycopy(record, this.keylength, this.arena, s * this.width + this.keylength, this.idxbytes);
+            return;
+        }
+        final int t = insert(-s - 1, record);
+        System.arraycopy(record, this.keylength, this.arena, t * this.width + this.keylength, this.idxbytes);
+    }
+
+    /**
+     * remember the record in a slot before it is overwritten by putUnique
+     */
+    private void addDouble(final int s) {
+        if (this.doubles == null) this.doubles = new ArrayList<byte[]>();
+        final byte[] record = new byte[this.width];
+        System.arraycopy(this.arena, s * this.width, record, 0, this.width);
+        this.doubles.add(record);
+    }
+
+    /**
+     * clear a slot and move the following entries of the same probe sequence into the gap
+     */
+    private void delete(int s) {
+        int t = s;
+        while (true) {
+            t = (t + 1) & this.mask;
+            if (!isUsed(t)) break;
+            final int h = hash(this.arena, t * this.width) & this.mask;
+            // the entry in t can be moved to s if its home slot h is not in the cyclic interval (s, t]
+            if (s <= t ? (h <= s || h > t) : (h <= s && h > t)) {
+                System.arraycopy(this.arena, t * this.width, this.arena, s * this.width, this.width);
+                s = t;
+            }
+        }
+        this.used[s >> 6] &= ~(1L << s);
+        this.count--;
+    }
+
+    /**
+     * compute the sorted records of all entries if they are not available
+     * @return the sorted records; the array must not be changed
+     */
+    private byte[] sorted() {
+        if (this.sorted != null) return this.sorted;
+        final int[] slots = new int[this.count];
+        int c = 0;
+        for (int s = 0; s < this.capacity; s++) if (isUsed(s)) slots[c++] = s;
+        assert c == this.count;
+        sort(slots, new int[c], 0, c);
+        final byte[] b = new byte[c * this.width];
+        for (int i = 0; i < c; i++) System.arraycopy(this.arena, slots[i] * this.width, b, i * this.width, this.width);
+        this.sorted = b;
+        return b;
+    }
+
+    /**
+     * merge sort of slots by their keys
+     */
+    private void sort(final int[] slots, final int[] tmp, final int from, final int to) {
+        if (to - from < 8) {
+            for (int i = from + 1; i < to; i++) {
+                final int s = slots[i];
+                int j = i - 1;
+                while (j >= from && compareSlots(slots[j], s) > 0) {
+                    slots[j + 1] = slots[j];
+                    j--;
+                }
+                slots[j + 1] = s;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        sort(slots, tmp, from, mid);
+        sort(slots, tmp, mid, to);
+        if (compareSlots(slots[mid - 1], slots[mid]) <= 0) return;
+        System.arraycopy(slots, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) slots[k++] = compareSlots(tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        while (i < mid) slots[k++] = tmp[i++];
+        while (j < to) slots[k++] = tmp[j++];
+    }
+
+    private int compareSlots(final int a, final int b) {
+        return this.ordering.compare(this.arena, a * this.width, this.arena, b * this.width, this.keylength);
+    }
+
+    @Override
+    public synchronized long mem() {
+        return this.arena.length + 8L * this.used.length + (this.sorted == null ? 0 : this.sorted.length);
+    }
+
+    /**
+     * release the sorted copy of the entries
+     */
+    @Override
+    public synchronized void optimize() {
+        this.sorted = null;
+    }
+
+    /**
+     * write a dump of the index to a file. The dump has the same format as the dump of a RowHandleMap.
+     */
+    @Override
+    public int dump(final File file) throws IOException {
+        final byte[] b;
+        synchronized (this) {
+            b = sorted();
+        }
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final FileOutputStream fileStream = new FileOutputStream(tmp);
+        OutputStream os = null;
+        try {
+            try {
+                os = new BufferedOutputStream(fileStream, 4 * 1024 * 1024);
+            } catch (final OutOfMemoryError e) {
+                os = fileStream;
+            }
+            if (file.getName().endsWith(".gz")) os = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+            os.write(b);
+            os.flush();
+        } finally {
+            try {
+                if (os != null) os.close();
+            } finally {
+                if (fileStream != os) fileStream.close();
+            }
+        }
+        tmp.renameTo(file);
+        assert file.exists() : file.toString();
+        assert !tmp.exists() : tmp.toString();
+        return b.length / this.width;
+    }
+
+    @Override
+    public synchronized void clear() {
+        init(minCapacity);
+        this.doubles = null;
+    }
+
+    @Override
+    public synchronized byte[] smallestKey() {
+        int m = -1;
+        for (int s = 0; s < this.capacity; s++) if (isUsed(s) && (m < 0 || compareSlots(s, m) < 0)) m = s;
+        return m < 0 ? null : key(m);
+    }
+
+    @Override
+    public synchronized byte[] largestKey() {
+        int m = -1;
+        for (int s = 0; s < this.capacity; s++) if (isUsed(s) && (m < 0 || compareSlots(s, m) > 0)) m = s;
+        return m < 0 ? null : key(m);
+    }
+
+    @Override
+    public synchronized boolean has(final byte[] key) {
+        assert key != null;
+        return find(key, 0) >= 0;
+    }
+
+    @Override
+    public synchronized long get(final byte[] key) {
+        assert key != null;
+        final int s = find(key, 0);
+        return s < 0 ? -1 : value(s);
+    }
+
+    @Override
+    public synchronized long put(final byte[] key, final long l) throws SpaceExceededException {
+        assert l >= 0 : "l = " + l;
+        assert key != null;
+        int s = find(key, 0);
+        long old = -1;
+        if (s >= 0) old = value(s); else s = insert(-s - 1, key);
+        setValue(s, l);
+        this.sorted = null;
+        return old;
+    }
+
+    /**
+     * put a key which is expected to be new; if the key exists, the old entry is remembered and
+     * reported by removeDoubles() in the same way as the doubles of a RowHandleMap
+     */
+    @Override
+    public synchronized void putUnique(final byte[] key, final long l) throws SpaceExceededException {
+        assert l >= 0 : "l = " + l;
+        assert key != null;
+        int s = find(key, 0);
+        if (s >= 0) addDouble(s); else s = insert(-s - 1, key);
+        setValue(s, l);
+        this.sorted = null;
+    }
+
+    @Override
+    public synchronized long add(final byte[] key, final long a) throws SpaceExceededException {
+        assert key != null;
+        int s = find(key, 0);
+        this.sorted = null;
+        if (s < 0) {
+            s = insert(-s - 1, key);
+            setValue(s, a);
+            return 1;
+        }
+        final long i = value(s) + a;
+        setValue(s, i);
+        return i;
+    }
+
+    @Override
+    public long inc(final byte[] key) throws SpaceExceededException {
+        return add(key, 1);
+    }
+
+    @Override
+    public long dec(final byte[] key) throws SpaceExceededException {
+        return add(key, -1);
+    }
+
+    /**
+     * remove all keys which had been inserted more than once with putUnique
+     * @return for each of these keys a list of all values which had been inserted
+     */
+    @Override
+    public synchronized ArrayList<long[]> removeDoubles() throws SpaceExceededException {
+        final ArrayList<long[]> report = new ArrayList<long[]>();
+        if (this.doubles == null) return report;
+        final TreeMap<byte[], ArrayList<Long>> d = new TreeMap<byte[], ArrayList<Long>>(this.ordering);
+        for (final byte[] record: this.doubles) {
+            final byte[] key = new byte[this.keylength];
+            System.arraycopy(record, 0, key, 0, this.keylength);
+            ArrayList<Long> values = d.get(key);
+            if (values == null) {
+                values = new ArrayList<Long>();
+                d.put(key, values);
+            }
+            long c = 0;
+            for (int j = this.keylength; j < this.width; j++) c = (c << 8) | (record[j] & 0xFFL);
+            values.add(c);
+        }
+        this.doubles = null;
+        for (final Map.Entry<byte[], ArrayList<Long>> e: d.entrySet()) {
+            final int s = find(e.getKey(), 0);
+            final ArrayList<Long> values = e.getValue();
+            if (s >= 0) {
+                values.add(value(s));
+                delete(s);
+            }
+            final long[] is = new long[values.size()];
+            for (int i = 0; i < is.length; i++) is[i] = values.get(i);
+            report.add(is);
+        }
+        this.sorted = null;
+        return report;
+    }
+
+    /**
+     * a hash table has no order of insertion; this returns any count keys
+     */
+    @Override
+    public synchronized ArrayList<byte[]> top(final int count) {
+        final ArrayList<byte[]> list = new ArrayList<byte[]>();
+        for (int s = this.capacity - 1; s >= 0 && list.size() < count; s--) if (isUsed(s)) list.add(key(s));
+        return list;
+    }
+
+    @Override
+    public synchronized long remove(final byte[] key) {
+        assert key != null;
+        final int s = find(key, 0);
+        if (s < 0) return -1;
+        final long old = value(s);
+        delete(s);
+        this.sorted = null;
+        return old;
+    }
+
+    @Override
+    public synchronized long removeone() {
+        for (int s = this.capacity - 1; s >= 0; s--) {
+            if (!isUsed(s)) continue;
+            final long old = value(s);
+            delete(s);
+            this.sorted = null;
+            return old;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.count;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    @Override
+    public synchronized CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) {
+        return new keyIterator(sorted(), up, firstKey);
+    }
+
+    @Override
+    public Iterator<Entry<byte[], Long>> iterator() {
+        final keyIterator i;
+        synchronized (this) {
+            i = new keyIterator(sorted(), true, null);
+        }
+        return new Iterator<Entry<byte[], Long>>() {
+            private byte[] last = null;
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            @Override
+            public Entry<byte[], Long> next() {
+                final long v = i.value();
+                this.last = i.next();
+                return new AbstractMap.SimpleEntry<byte[], Long>(this.last, v);
+            }
+            @Override
+            public void remove() {
+                if (this.last == null) throw new IllegalStateException();
+                HashHandleMap.this.remove(this.last);
+                this.last = null;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        clear();
+    }
+
+    /**
+     * iterator over the keys of a sorted copy of the records
+     */
+    private class keyIterator implements CloneableIterator<byte[]> {
+
+        private final byte[] records;
+        private final boolean up;
+        private int p;
+
+        public keyIterator(final byte[] records, final boolean up, final byte[] firstKey) {
+            this.records = records;
+            this.up = up;
+            final int n = records.length / HashHandleMap.this.width;
+            if (firstKey == null) {
+                this.p = up ? 0 : n - 1;
+            } else {
+                // binary search of the first key
+                int low = 0, high = n - 1, mid, c;
+                this.p = -1;
+                while (low <= high) {
+                    mid = (low + high) >>> 1;
+                    c = HashHandleMap.this.ordering.compare(records, mid * HashHandleMap.this.width, firstKey, 0, HashHandleMap.this.keylength);
+                    if (c < 0) low = mid + 1;
+                    else if (c > 0) high = mid - 1;
+                    else {this.p = mid; break;}
+                }
+                if (this.p < 0) this.p = up ? low : low - 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.p >= 0 && this.p < this.records.length / HashHandleMap.this.width;
+        }
+
+        /**
+         * @return the value of the entry which is returned by the next call of next()
+         */
+        protected long value() {
+            final int q = this.p * HashHandleMap.this.width + HashHandleMap.this.keylength;
+            long c = 0;
+            for (int j = 0; j < HashHandleMap.this.idxbytes; j++) c = (c << 8) | (this.records[q + j] & 0xFFL);
+            return c;
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final byte[] k = new byte[HashHandleMap.this.keylength];
+            System.arraycopy(this.records, this.p * HashHandleMap.this.width, k, 0, k.length);
+            this.p += this.up ? 1 : -1;
+            return k;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CloneableIterator<byte[]> clone(final Object modifier) {
+            return new keyIterator(this.records, this.up, (byte[]) modifier);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.SpaceExceededException;
@@ -47,6 +48,14 @@ public interface Index extends Iterable<Row.Entry> {
     public boolean has(byte[] key); // use this only if there is no get in case that has returns true
     public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, boolean forcecopy) throws IOException, InterruptedException;
     public Row.Entry get(byte[] key, boolean forcecopy) throws IOException;
+
+    /**
+     * get many rows at once without blocking the caller
+     * @param keys the primary keys of the rows
+     * @param forcecopy
+     * @return a future for a map from the keys to the rows which exist
+     */
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, boolean forcecopy);
     public Row.Entry replace(Row.Entry row) throws SpaceExceededException, IOException;
 
     /**
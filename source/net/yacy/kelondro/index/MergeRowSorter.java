@@ -0,0 +1,161 @@
+// MergeRowSorter.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.yacy.kelondro.workflow.WorkflowProcessor;
+
+/**
+ * a merge sort of rows which works with any order of the keys.
+ * Ranges with at least parallelLimit rows are sorted with the threads of a fork-join pool;
+ * the sort needs a buffer with the size of the sorted range.
+ */
+public final class MergeRowSorter implements RowSorter {
+
+    protected static final int insertionLimit = 24;
+
+    private static ForkJoinPool pool = null;
+
+    private final int parallelLimit;
+
+    /**
+     * @param parallelLimit the minimum number of rows of a range which is sorted by several threads
+     */
+    public MergeRowSorter(final int parallelLimit) {
+        this.parallelLimit = Math.max(insertionLimit, parallelLimit);
+    }
+
+    /**
+     * @return the pool of the threads which sort large collections
+     */
+    protected static synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(WorkflowProcessor.availableCPU);
+        return pool;
+    }
+
+    @Override
+    public void sort(final Row rowdef, final byte[] chunkcache, final int from, final int to) {
+        if (to - from < 2) return;
+        final byte[] tmp = new byte[(to - from) * rowdef.objectsize];
+        if (to - from < this.parallelLimit) {
+            sort(rowdef, chunkcache, tmp, from, from, to, Integer.MAX_VALUE);
+        } else {
+            pool().invoke(new SortTask(rowdef, chunkcache, tmp, from, from, to, this.parallelLimit));
+        }
+    }
+
+    private static void sort(final Row rowdef, final byte[] chunkcache, final byte[] tmp, final int base, final int from, final int to, final int parallelLimit) {
+        if (to - from < insertionLimit) {
+            insertionSort(rowdef, chunkcache, from, to);
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        if (to - from >= parallelLimit) {
+            RecursiveAction.invokeAll(
+                    new SortTask(rowdef, chunkcache, tmp, base, from, mid, parallelLimit),
+                    new SortTask(rowdef, chunkcache, tmp, base, mid, to, parallelLimit));
+        } else {
+            sort(rowdef, chunkcache, tmp, base, from, mid, parallelLimit);
+            sort(rowdef, chunkcache, tmp, base, mid, to, parallelLimit);
+        }
+        // merge: the first half is copied to its place in the buffer and merged with the second half
+        final int os = rowdef.objectsize;
+        if (compare(rowdef, chunkcache, mid - 1, mid) <= 0) return;
+        System.arraycopy(chunkcache, from * os, tmp, (from - base) * os, (mid - from) * os);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            if (rowdef.objectOrder.compare(tmp, (i - base) * os, chunkcache, j * os, rowdef.primaryKeyLength) <= 0) {
+                System.arraycopy(tmp, (i++ - base) * os, chunkcache, k++ * os, os);
+            } else {
+                System.arraycopy(chunkcache, j++ * os, chunkcache, k++ * os, os);
+            }
+        }
+        if (i < mid) System.arraycopy(tmp, (i - base) * os, chunkcache, k * os, (mid - i) * os);
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Row rowdef;
+        private final byte[] chunkcache, tmp;
+        private final int base, from, to, parallelLimit;
+        private SortTask(final Row rowdef, final byte[] chunkcache, final byte[] tmp, final int base, final int from, final int to, final int parallelLimit) {
+            this.rowdef = rowdef;
+            this.chunkcache = chunkcache;
+            this.tmp = tmp;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+            this.parallelLimit = parallelLimit;
+        }
+        @Override
+        protected void compute() {
+            sort(this.rowdef, this.chunkcache, this.tmp, this.base, this.from, this.to, this.parallelLimit);
+        }
+    }
+
+    protected static int compare(final Row rowdef, final byte[] chunkcache, final int i, final int j) {
+        return rowdef.objectOrder.compare(chunkcache, i * rowdef.objectsize, chunkcache, j * rowdef.objectsize, rowdef.primaryKeyLength);
+    }
+
+    protected static void insertionSort(final Row rowdef, final byte[] chunkcache, final int from, final int to) {
+        final int os = rowdef.objectsize;
+        final byte[] swapspace = new byte[os];
+        for (int i = from + 1; i < to; i++) {
+            if (compare(rowdef, chunkcache, i - 1, i) <= 0) continue;
+            // move the row to the front until it is in place
+            System.arraycopy(chunkcache, i * os, swapspace, 0, os);
+            int j = i;
+            while (j > from && rowdef.objectOrder.compare(chunkcache, (j - 1) * os, swapspace, 0, rowdef.primaryKeyLength) > 0) j--;
+            System.arraycopy(chunkcache, j * os, chunkcache, (j + 1) * os, (i - j) * os);
+            System.arraycopy(swapspace, 0, chunkcache, j * os, os);
+        }
+    }
+
+    /**
+     * merge two sorted ranges of rows which follow each other; this is used to sort a collection with
+     * a large sorted part and a small unsorted tail: only the tail must be sorted before the merge.
+     * The merge needs a buffer of the size of the second range.
+     * @param rowdef
+     * @param chunkcache
+     * @param from the first row of the first range
+     * @param mid the first row of the second range
+     * @param to the row after the last row of the second range
+     */
+    public static void merge(final Row rowdef, final byte[] chunkcache, final int from, final int mid, final int to) {
+        if (mid <= from || to <= mid || compare(rowdef, chunkcache, mid - 1, mid) <= 0) return;
+        final int os = rowdef.objectsize;
+        final byte[] tail = new byte[(to - mid) * os];
+        System.arraycopy(chunkcache, mid * os, tail, 0, tail.length);
+        // merge from the end, the largest row is moved first
+        int i = mid - 1, j = to - mid - 1, k = to - 1;
+        while (j >= 0) {
+            if (i >= from && rowdef.objectOrder.compare(chunkcache, i * os, tail, j * os, rowdef.primaryKeyLength) > 0) {
+                System.arraycopy(chunkcache, i-- * os, chunkcache, k-- * os, os);
+            } else {
+                System.arraycopy(tail, j-- * os, chunkcache, k-- * os, os);
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+/**
+ *  OffHeapHandleMap
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.MergeIterator;
+
+/**
+ * A HandleMap which keeps its entries outside of the java heap.
+ * The entries are stored as a sorted sequence of {key, value} records in a ByteBuffer;
+ * this is exactly the format of a dump written with HandleMap.dump(), so an existing
+ * dump file can be mapped into memory without reading it. The buffer is either a
+ * read-only mapping of a dump file or a direct buffer; a mapping is copied into a direct
+ * buffer when a record is changed the first time.
+ * Changes of values of existing keys and removals are done in place; a removed
+ * entry is marked with a value where all bytes are 0xff. New keys are stored in a
+ * small RowHandleMap on the java heap.
+ * Lookups are not synchronized: they use the buffer which is current when the lookup starts,
+ * the buffer is replaced but never released while it is in use.
+ */
+public final class OffHeapHandleMap implements HandleMap {
+
+    private final static int SORT_CHECK_SAMPLES = 64; // number of neighbouring records which are compared when a dump is mapped
+
+    private final int keylength, idxbytes, width;
+    private final long removedValue;   // the value which marks removed entries
+    private final ByteOrder ordering;
+    private volatile ByteBuffer base;  // sorted records of key and value; the number of records is capacity / width
+    private int removed;               // number of removed records in base
+    private final RowHandleMap delta;  // keys which are not in base
+
+    /**
+     * map the content of a dumped index
+     * @param keylength
+     * @param objectOrder
+     * @param idxbytes
+     * @param file a dump file written with HandleMap.dump(); must not be compressed
+     * @throws IOException if the file cannot be mapped or has not the format of a dump
+     */
+    public OffHeapHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final File file) throws IOException {
+        this(keylength, objectOrder, idxbytes, file.getAbsolutePath());
+        if (file.getName().endsWith(".gz")) throw new IOException("compressed dump " + file.getName() + " cannot be mapped");
+        if (!file.exists()) throw new IOException("dump " + file.getName() + " does not exist");
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final ByteBuffer b;
+        try {
+            final long length = raf.length();
+            if (length % this.width != 0) throw new IOException("dump " + file.getName() + " has a wrong length " + length + " for records of size " + this.width);
+            if (length > Integer.MAX_VALUE) throw new IOException("dump " + file.getName() + " is too large to be mapped: " + length);
+            b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+        // the binary search needs strictly ascending keys; the dump was written sorted, so only a sample
+        // of neighbouring records is compared to catch a damaged or foreign file without reading all keys
+        final int count = count(b);
+        if (count > 1) {
+            final byte[] k0 = new byte[this.keylength], k1 = new byte[this.keylength];
+            final int samples = Math.min(count - 1, SORT_CHECK_SAMPLES);
+            int i;
+            for (int s = 1; s <= samples; s++) {
+                i = (int) ((long) s * (count - 1) / samples);
+                readKey(b, i - 1, k0);
+                readKey(b, i, k1);
+                if (this.ordering.compare(k0, k1) >= 0) throw new IOException("dump " + file.getName() + " is not sorted at record " + i);
+            }
+        }
+        this.base = b;
+    }
+
+    /**
+     * copy the content of a RowHandleMap into a direct buffer. The source map is not changed.
+     * @param map the source map, must have the same key length and ordering
+     * @param idxbytes
+     * @throws SpaceExceededException if no direct buffer of the required size can be allocated
+     */
+    public OffHeapHandleMap(final RowHandleMap map, final int idxbytes) throws SpaceExceededException {
+        this(map.row().primaryKeyLength, map.row().objectOrder, idxbytes, "OffHeapHandleMap");
+        final long length = (long) map.size() * this.width;
+        if (length > Integer.MAX_VALUE) throw new SpaceExceededException(length, "OffHeapHandleMap/size");
+        final ByteBuffer b;
+        try {
+            b = ByteBuffer.allocateDirect((int) length);
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException(length, "OffHeapHandleMap/allocateDirect");
+        }
+        final byte[] v = new byte[this.idxbytes];
+        final Iterator<Row.Entry> i = map.rows(true, null);
+        Row.Entry row;
+        while (i.hasNext()) {
+            row = i.next();
+            b.put(row.getPrimaryKeyBytes(), 0, this.keylength);
+            NaturalOrder.encodeLong(row.getColLong(1), v, 0, this.idxbytes);
+            b.put(v);
+        }
+        assert b.position() == b.capacity();
+        this.base = b;
+    }
+
+    private OffHeapHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final String name) {
+        this.keylength = keylength;
+        this.idxbytes = idxbytes;
+        this.width = keylength + idxbytes;
+        this.removedValue = idxbytes >= 8 ? -1L : (1L << (8 * idxbytes)) - 1;
+        this.ordering = objectOrder;
+        this.base = ByteBuffer.allocate(0);
+        this.removed = 0;
+        this.delta = new RowHandleMap(keylength, objectOrder, idxbytes, 100, name + ".delta");
+    }
+
+    private final int count(final ByteBuffer b) {
+        return b.capacity() / this.width;
+    }
+
+    private final byte[] key(final ByteBuffer b, final int i) {
+        final byte[] k = new byte[this.keylength];
+        readKey(b, i, k);
+        return k;
+    }
+
+    private final void readKey(final ByteBuffer b, final int i, final byte[] k) {
+        final int p = i * this.width;
+        for (int j = 0; j < this.keylength; j++) k[j] = b.get(p + j);
+    }
+
+    private final long value(final ByteBuffer b, final int i) {
+        final int p = i * this.width + this.keylength;
+        long c = 0;
+        for (int j = 0; j < this.idxbytes; j++) c = (c << 8) | (b.get(p + j) & 0xFFL);
+        return c;
+    }
+
+    /**
+     * change a value in the base; this must be called synchronized
+     */
+    private final void setValue(final int i, long c) {
+        ByteBuffer b = this.base;
+        if (b.isReadOnly()) {
+            // copy the mapping of the dump when a record is changed the first time
+            final ByteBuffer w = ByteBuffer.allocateDirect(b.capacity());
+            w.put(b.duplicate());
+            this.base = b = w;
+        }
+        final int p = i * this.width + this.keylength;
+        for (int j = this.idxbytes - 1; j >= 0; j--) {
+            b.put(p + j, (byte) (c & 0xFF));
+            c >>= 8;
+        }
+    }
+
+    /**
+     * binary search for a key in the base records
+     * @param b the base
+     * @param key
+     * @return the position of the key, or (-(insertion point) - 1) if the key is not in the base
+     */
+    private final int find(final ByteBuffer b, final byte[] key) {
+        final byte[] k = new byte[this.keylength];
+        int low = 0, high = count(b) - 1, mid, c;
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            readKey(b, mid, k);
+            c = this.ordering.compare(k, 0, key, 0, this.keylength);
+            if (c < 0) low = mid + 1;
+            else if (c > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public long mem() {
+        return this.delta.mem();
+    }
+
+    @Override
+    public void optimize() {
+        this.delta.optimize();
+    }
+
+    /**
+     * write a dump of the index to a file. The dump has the same format as the dump of a RowHandleMap.
+     */
+    @Override
+    public synchronized int dump(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final Iterator<Map.Entry<byte[], Long>> i = this.iterator();
+        int c = 0;
+        final FileOutputStream fileStream = new FileOutputStream(tmp);
+        OutputStream os = null;
+        try {
+            try {
+                os = new BufferedOutputStream(fileStream, 4 * 1024 * 1024);
+            } catch (final OutOfMemoryError e) {
+                os = fileStream;
+            }
+            if (file.getName().endsWith(".gz")) os = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+            final byte[] v = new byte[this.idxbytes];
+            Map.Entry<byte[], Long> e;
+            while (i.hasNext()) {
+                e = i.next();
+                os.write(e.getKey(), 0, this.keylength);
+                NaturalOrder.encodeLong(e.getValue().longValue(), v, 0, this.idxbytes);
+                os.write(v);
+                c++;
+            }
+            os.flush();
+        } finally {
+            try {
+                if (os != null) os.close();
+            } finally {
+                if (fileStream != os) fileStream.close();
+            }
+        }
+        tmp.renameTo(file);
+        assert file.exists() : file.toString();
+        assert !tmp.exists() : tmp.toString();
+        return c;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.base = ByteBuffer.allocate(0);
+        this.removed = 0;
+        this.delta.clear();
+    }
+
+    @Override
+    public byte[] smallestKey() {
+        final ByteBuffer base = this.base;
+        byte[] b = null;
+        for (int i = 0; i < count(base); i++) if (value(base, i) != this.removedValue) {b = key(base, i); break;}
+        final Iterator<byte[]> i = this.delta.keys(true, null);
+        final byte[] d = i.hasNext() ? i.next() : null;
+        if (b == null) return d;
+        if (d == null) return b;
+        return this.ordering.compare(b, d) < 0 ? b : d;
+    }
+
+    @Override
+    public byte[] largestKey() {
+        final ByteBuffer base = this.base;
+        byte[] b = null;
+        for (int i = count(base) - 1; i >= 0; i--) if (value(base, i) != this.removedValue) {b = key(base, i); break;}
+        final Iterator<byte[]> i = this.delta.keys(false, null);
+        final byte[] d = i.hasNext() ? i.next() : null;
+        if (b == null) return d;
+        if (d == null) return b;
+        return this.ordering.compare(b, d) > 0 ? b : d;
+    }
+
+    @Override
+    public boolean has(final byte[] key) {
+        return get(key) >= 0;
+    }
+
+    /**
+     * get a value; this is not synchronized, a concurrent modification of the same key must be prevented by the caller
+     */
+    @Override
+    public long get(final byte[] key) {
+        assert key != null;
+        final ByteBuffer b = this.base;
+        final int i = find(b, key);
+        if (i >= 0) {
+            final long v = value(b, i);
+            return v == this.removedValue ? -1 : v;
+        }
+        return this.delta.get(key);
+    }
+
+    @Override
+    public synchronized long put(final byte[] key, final long l) throws SpaceExceededException {
+        assert l >= 0 : "l = " + l;
+        assert key != null;
+        final int i = find(this.base, key);
+        if (i >= 0) {
+            final long old = value(this.base, i);
+            setValue(i, l);
+            if (old != this.removedValue) return old;
+            this.removed--;
+            return -1;
+        }
+        return this.delta.put(key, l);
+    }
+
+    @Override
+    public void putUnique(final byte[] key, final long l) throws SpaceExceededException {
+        put(key, l);
+    }
+
+    @Override
+    public synchronized long add(final byte[] key, final long a) throws SpaceExceededException {
+        assert key != null;
+        final int i = find(this.base, key);
+        if (i >= 0) {
+            final long old = value(this.base, i);
+            if (old == this.removedValue) {
+                setValue(i, a);
+                this.removed--;
+                return 1;
+            }
+            setValue(i, old + a);
+            return old + a;
+        }
+        return this.delta.add(key, a);
+    }
+
+    @Override
+    public long inc(final byte[] key) throws SpaceExceededException {
+        return add(key, 1);
+    }
+
+    @Override
+    public long dec(final byte[] key) throws SpaceExceededException {
+        return add(key, -1);
+    }
+
+    @Override
+    public ArrayList<long[]> removeDoubles() throws SpaceExceededException {
+        // the base cannot contain doubles
+        return this.delta.removeDoubles();
+    }
+
+    @Override
+    public ArrayList<byte[]> top(final int count) {
+        final ArrayList<byte[]> list = this.delta.top(count);
+        final ByteBuffer b = this.base;
+        for (int i = count(b) - 1; i >= 0 && list.size() < count; i--) {
+            if (value(b, i) != this.removedValue) list.add(key(b, i));
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized long remove(final byte[] key) {
+        assert key != null;
+        final int i = find(this.base, key);
+        if (i >= 0) {
+            final long old = value(this.base, i);
+            if (old == this.removedValue) return -1;
+            setValue(i, this.removedValue);
+            this.removed++;
+            return old;
+        }
+        return this.delta.remove(key);
+    }
+
+    @Override
+    public synchronized long removeone() {
+        if (!this.delta.isEmpty()) return this.delta.removeone();
+        for (int i = count(this.base) - 1; i >= 0; i--) {
+            final long old = value(this.base, i);
+            if (old == this.removedValue) continue;
+            setValue(i, this.removedValue);
+            this.removed++;
+            return old;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return count(this.base) - this.removed + this.delta.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) {
+        return new MergeIterator<byte[]>(new baseKeyIterator(up, firstKey), this.delta.keys(up, firstKey), this.ordering, MergeIterator.simpleMerge, up);
+    }
+
+    @Override
+    public Iterator<Entry<byte[], Long>> iterator() {
+        final Iterator<byte[]> i = keys(true, null);
+        return new Iterator<Entry<byte[], Long>>() {
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            @Override
+            public Entry<byte[], Long> next() {
+                final byte[] key = i.next();
+                return new AbstractMap.SimpleEntry<byte[], Long>(key, get(key));
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        // a lookup which is still running uses the old buffer; it is released by the garbage collector.
+        // The delta is cleared but not closed, so a concurrent lookup does not fail.
+        this.base = ByteBuffer.allocate(0);
+        this.removed = 0;
+        this.delta.clear();
+    }
+
+    /**
+     * iterator over the keys of the base records which are not removed
+     */
+    private class baseKeyIterator implements CloneableIterator<byte[]> {
+
+        private final boolean up;
+        private final ByteBuffer b; // the base when the iterator was created; a copy of the base has the same keys
+        private final int count;
+        private int p;
+
+        public baseKeyIterator(final boolean up, final byte[] firstKey) {
+            this.up = up;
+            this.b = OffHeapHandleMap.this.base;
+            this.count = count(this.b);
+            if (firstKey == null) {
+                this.p = up ? 0 : this.count - 1;
+            } else {
+                final int i = find(this.b, firstKey);
+                this.p = i >= 0 ? i : up ? -i - 1 : -i - 2;
+            }
+            skipRemoved();
+        }
+
+        private void skipRemoved() {
+            // removals are written to the current base, which is a copy of this.b if it has the same size
+            final ByteBuffer current = OffHeapHandleMap.this.base;
+            final ByteBuffer v = current.capacity() == this.b.capacity() ? current : this.b;
+            while (this.p >= 0 && this.p < this.count && value(v, this.p) == OffHeapHandleMap.this.removedValue) {
+                this.p += this.up ? 1 : -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.p >= 0 && this.p < this.count;
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final byte[] k = key(this.b, this.p);
+            this.p += this.up ? 1 : -1;
+            skipRemoved();
+            return k;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CloneableIterator<byte[]> clone(final Object modifier) {
+            return new baseKeyIterator(this.up, (byte[]) modifier);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
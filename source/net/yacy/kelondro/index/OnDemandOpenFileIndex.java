@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.ConcurrentLog;
@@ -184,6 +185,11 @@ public class OnDemandOpenFileIndex implements Index, Iterable<Row.Entry> {
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     @Override
     public synchronized boolean has(final byte[] key) {
         if (this.sizecache == 0) return false;
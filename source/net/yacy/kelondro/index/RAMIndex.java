@@ -32,6 +32,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.SpaceExceededException;
@@ -146,7 +147,8 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
+    public synchronized Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
+        // the lock is acquired once for all keys
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
         Row.Entry entry;
         for (final byte[] key: keys) {
@@ -156,6 +158,11 @@ public final class RAMIndex implements Index, Iterable<Row.Entry> {
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.completed(this, keys, forcecopy);
+    }
+
     @Override
     public final synchronized boolean has(final byte[] key) {
 		assert (key != null);
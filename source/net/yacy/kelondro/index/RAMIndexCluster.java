@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.storage.HandleSet;
@@ -180,14 +181,33 @@ public final class RAMIndexCluster implements Index, Iterable<Row.Entry>, Clonea
     public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
 
-        Row.Entry entry;
+        // group the keys by partition, then each partition is asked once
+        final List<List<byte[]>> partitions = new ArrayList<List<byte[]>>(this.cluster.length);
+        for (int i = 0; i < this.cluster.length; i++) partitions.add(null);
         for (final byte[] key: keys) {
-            entry = get(key, forcecopy);
-            if (entry != null) map.put(key, entry);
+            final int i = indexFor(key);
+            if (i < 0 || this.cluster[i] == null) continue;
+            List<byte[]> partition = partitions.get(i);
+            if (partition == null) {
+                partition = new ArrayList<byte[]>();
+                partitions.set(i, partition);
+            }
+            partition.add(key);
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            final List<byte[]> partition = partitions.get(i);
+            if (partition == null) continue;
+            final RAMIndex r = this.cluster[i];
+            if (r != null) map.putAll(r.get(partition, forcecopy));
         }
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.completed(this, keys, forcecopy);
+    }
+
     @Override
     public final boolean has(final byte[] key) {
         final int i = indexFor(key);
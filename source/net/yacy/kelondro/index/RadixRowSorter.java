@@ -0,0 +1,199 @@
+// RadixRowSorter.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+
+/**
+ * a most-significant-digit radix sort of rows with keys in Base64Order or NaturalOrder.
+ * Every byte of a key is a digit, its value is the position of the byte in the order: one of 64
+ * values in Base64Order and one of 256 values in NaturalOrder. The rows are distributed in place
+ * into the buckets of the first digit (american flag sort), then the buckets are sorted by the
+ * next digit; small buckets are sorted by insertion. The sort does not need compare operations
+ * and no buffer. Buckets of a range with at least parallelLimit rows are sorted by the threads
+ * of a fork-join pool.
+ * Keys in other orders, in a rotated order or with bytes which are not in the base64 alphabet
+ * are sorted with a MergeRowSorter.
+ */
+public final class RadixRowSorter implements RowSorter {
+
+    private static final int forkLimit = 4096; // buckets with less rows are sorted by the thread which distributed them
+
+    private final int parallelLimit;
+    private final MergeRowSorter fallback;
+
+    /**
+     * @param parallelLimit the minimum number of rows of a range which is sorted by several threads
+     */
+    public RadixRowSorter(final int parallelLimit) {
+        this.parallelLimit = Math.max(MergeRowSorter.insertionLimit, parallelLimit);
+        this.fallback = new MergeRowSorter(parallelLimit);
+    }
+
+    /**
+     * compute the value of each byte in the order
+     * @param order
+     * @return the value of each byte, -1 for bytes which are not in the order, or null if the order cannot be sorted with a radix sort
+     */
+    protected static int[] digits(final ByteOrder order) {
+        if (order.zero() != null) return null;
+        final int[] digits = new int[256];
+        final int max;
+        if (order instanceof NaturalOrder) {
+            for (int b = 0; b < 256; b++) digits[b] = b;
+            max = 255;
+        } else if (order instanceof Base64Order) {
+            for (int b = 0; b < 256; b++) digits[b] = b < 128 ? ((Base64Order) order).decodeByte((byte) b) : -1;
+            max = 63;
+        } else {
+            return null;
+        }
+        // a descending order has reversed values
+        final byte[] lo = new byte[1], hi = new byte[1];
+        for (int b = 0; b < 256; b++) {
+            if (digits[b] == 0) lo[0] = (byte) b;
+            if (digits[b] == max) hi[0] = (byte) b;
+        }
+        if (order.compare(lo, 0, hi, 0, 1) > 0) {
+            for (int b = 0; b < 256; b++) if (digits[b] >= 0) digits[b] = max - digits[b];
+        }
+        return digits;
+    }
+
+    @Override
+    public void sort(final Row rowdef, final byte[] chunkcache, final int from, final int to) {
+        if (to - from < 2) return;
+        final int[] digits = digits(rowdef.objectOrder);
+        if (digits == null || !wellformed(rowdef, chunkcache, from, to, digits)) {
+            this.fallback.sort(rowdef, chunkcache, from, to);
+            return;
+        }
+        int buckets = 0;
+        for (final int d: digits) buckets = Math.max(buckets, d + 1);
+        if (to - from < this.parallelLimit) {
+            sort(rowdef, chunkcache, digits, buckets, from, to, 0, Integer.MAX_VALUE);
+        } else {
+            MergeRowSorter.pool().invoke(new SortTask(rowdef, chunkcache, digits, buckets, from, to, 0, this.parallelLimit));
+        }
+    }
+
+    private static boolean wellformed(final Row rowdef, final byte[] chunkcache, final int from, final int to, final int[] digits) {
+        final int os = rowdef.objectsize;
+        for (int i = from; i < to; i++) {
+            final int p = i * os;
+            for (int j = 0; j < rowdef.primaryKeyLength; j++) if (digits[chunkcache[p + j] & 0xff] < 0) return false;
+        }
+        return true;
+    }
+
+    private static void sort(final Row rowdef, final byte[] chunkcache, final int[] digits, final int buckets, final int from, final int to, int depth, final int parallelLimit) {
+        final int os = rowdef.objectsize;
+        int[] count;
+        while (true) {
+            if (to - from < MergeRowSorter.insertionLimit) {
+                MergeRowSorter.insertionSort(rowdef, chunkcache, from, to);
+                return;
+            }
+            if (depth >= rowdef.primaryKeyLength) return; // all keys are equal
+            count = new int[buckets];
+            for (int i = from; i < to; i++) count[digits[chunkcache[i * os + depth] & 0xff]]++;
+            // if all rows are in the same bucket, the next digit is used without moving the rows
+            if (count[digits[chunkcache[from * os + depth] & 0xff]] < to - from) break;
+            depth++;
+        }
+
+        // distribute the rows into the buckets: each row which is not in its bucket is moved to the
+        // next free place of its bucket, and the row from that place is moved on in the same way
+        final int[] start = new int[buckets + 1];
+        start[0] = from;
+        for (int b = 0; b < buckets; b++) start[b + 1] = start[b] + count[b];
+        final int[] next = new int[buckets];
+        System.arraycopy(start, 0, next, 0, buckets);
+        byte[] row = new byte[os], displaced = new byte[os], t;
+        for (int b = 0; b < buckets; b++) {
+            final int end = start[b + 1];
+            while (next[b] < end) {
+                final int i = next[b];
+                int d = digits[chunkcache[i * os + depth] & 0xff];
+                if (d == b) {
+                    next[b]++;
+                    continue;
+                }
+                System.arraycopy(chunkcache, i * os, row, 0, os);
+                while (d != b) {
+                    int p = next[d]++;
+                    // skip rows which are already in their bucket
+                    while (digits[chunkcache[p * os + depth] & 0xff] == d) p = next[d]++;
+                    final int e = digits[chunkcache[p * os + depth] & 0xff];
+                    System.arraycopy(chunkcache, p * os, displaced, 0, os);
+                    System.arraycopy(row, 0, chunkcache, p * os, os);
+                    t = row; row = displaced; displaced = t;
+                    d = e;
+                }
+                System.arraycopy(row, 0, chunkcache, i * os, os);
+                next[b]++;
+            }
+        }
+
+        // sort the buckets by the next digit
+        final boolean parallel = to - from >= parallelLimit;
+        final List<SortTask> tasks = parallel ? new ArrayList<SortTask>() : null;
+        for (int b = 0; b < buckets; b++) {
+            if (count[b] < 2) continue;
+            if (parallel && count[b] >= forkLimit) {
+                tasks.add(new SortTask(rowdef, chunkcache, digits, buckets, start[b], start[b + 1], depth + 1, parallelLimit));
+            } else {
+                sort(rowdef, chunkcache, digits, buckets, start[b], start[b + 1], depth + 1, parallelLimit);
+            }
+        }
+        if (tasks != null && !tasks.isEmpty()) RecursiveAction.invokeAll(tasks);
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Row rowdef;
+        private final byte[] chunkcache;
+        private final int[] digits;
+        private final int buckets, from, to, depth, parallelLimit;
+        private SortTask(final Row rowdef, final byte[] chunkcache, final int[] digits, final int buckets, final int from, final int to, final int depth, final int parallelLimit) {
+            this.rowdef = rowdef;
+            this.chunkcache = chunkcache;
+            this.digits = digits;
+            this.buckets = buckets;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.parallelLimit = parallelLimit;
+        }
+        @Override
+        protected void compute() {
+            sort(this.rowdef, this.chunkcache, this.digits, this.buckets, this.from, this.to, this.depth, this.parallelLimit);
+        }
+    }
+}
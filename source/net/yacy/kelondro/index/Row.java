@@ -192,6 +192,14 @@ public final class Row implements Serializable {
         return new Entry(external, decimalCardinal);
     }
 
+    /**
+     * create a view which can be moved over the rows of a buffer without copying them
+     * @return a view which points to an empty row
+     */
+    public final View newView() {
+        return new View();
+    }
+
     public final EntryIndex newEntryIndex(final byte[] rowinstance, final int index) {
         if (rowinstance == null) return null;
         assert (rowinstance[0] != 0);
@@ -394,6 +402,18 @@ public final class Row implements Serializable {
             System.arraycopy(this.rowinstance, this.offset, target, targetOffset, Row.this.objectsize);
         }
 
+        /**
+         * write the row to a target array, but not more than length bytes
+         * @param target
+         * @param targetOffset
+         * @param length the maximum number of bytes which are written
+         */
+        public final void writeToArray(final byte[] target, final int targetOffset, final int length) {
+            final int l = Math.min(Row.this.objectsize, length);
+            assert (targetOffset + l <= target.length) : "targetOffset = " + targetOffset + ", target.length = " + target.length + ", length = " + l;
+            System.arraycopy(this.rowinstance, this.offset, target, targetOffset, l);
+        }
+
         public final int columns() {
             return Row.this.row.length;
         }
@@ -635,6 +655,44 @@ public final class Row implements Serializable {
 
     }
 
+    /**
+     * A flyweight entry: a view on a row inside of a shared buffer, i.e. the chunkcache of a RowCollection.
+     * The view is moved to another row with point(); this does not allocate anything.
+     * The content of a view changes when it is moved or when the buffer is changed; therefore a view must not
+     * escape the loop where it is used. Values which are kept must be read with the copying getters or the
+     * whole row must be copied with copy() (copy-on-escape).
+     */
+    public final class View extends Entry {
+
+        private static final long serialVersionUID=-4526734599417046162L;
+
+        private View() {
+            super();
+        }
+
+        /**
+         * move the view to another row
+         * @param buffer the buffer containing the row
+         * @param start the offset of the row within the buffer
+         * @return this view
+         */
+        public View point(final byte[] buffer, final int start) {
+            assert start >= 0 && start + Row.this.objectsize <= buffer.length : "start = " + start + ", buffer.length = " + buffer.length;
+            super.rowinstance = buffer;
+            super.offset = start;
+            return this;
+        }
+
+        /**
+         * @return an entry with an own copy of the row the view points to
+         */
+        public Entry copy() {
+            final Entry e = new Entry();
+            writeToArray(e.rowinstance, 0);
+            return e;
+        }
+    }
+
     public final class EntryIndex extends Entry implements Serializable {
 
         private static final long serialVersionUID=153069052590699231L;
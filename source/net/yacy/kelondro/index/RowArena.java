@@ -0,0 +1,148 @@
+/**
+ *  RowArena
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An arena for short-lived rows, i.e. the rows which are produced during a search request.
+ * The rows are placed one after another into large byte blocks instead of an own byte[] for each row.
+ * All rows of an arena are dropped at once with release(); the blocks are then given back to a
+ * pool which is shared by all arenas, so a following request reuses them.
+ * An arena is not thread-safe; each thread must use its own arena.
+ * Rows of the arena must not be used after release(), they must be copied if they shall be kept.
+ */
+public final class RowArena {
+
+    public static final int blockSize = 64 * 1024;
+    public static int maxPooledBlocks = 256; // 16MB
+
+    private static final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooled = new AtomicInteger(0);
+    private static final AtomicLong allocatedBlocks = new AtomicLong(0), reusedBlocks = new AtomicLong(0);
+
+    private final Row row;
+    private final List<byte[]> blocks;
+    private byte[] block;
+    private int pos;
+    private int rows;
+
+    public RowArena(final Row row) {
+        if (row.objectsize > blockSize) throw new IllegalArgumentException("row size " + row.objectsize + " exceeds block size " + blockSize);
+        this.row = row;
+        this.blocks = new ArrayList<byte[]>(4);
+        this.block = null;
+        this.pos = 0;
+        this.rows = 0;
+    }
+
+    private int reserve() {
+        if (this.block == null || this.pos + this.row.objectsize > blockSize) {
+            this.block = take();
+            this.blocks.add(this.block);
+            this.pos = 0;
+        }
+        final int p = this.pos;
+        this.pos += this.row.objectsize;
+        this.rows++;
+        return p;
+    }
+
+    /**
+     * @return a new empty row inside of the arena
+     */
+    public Row.Entry newEntry() {
+        final int p = reserve();
+        Arrays.fill(this.block, p, p + this.row.objectsize, (byte) 0);
+        return this.row.new Entry(this.block, p, false);
+    }
+
+    /**
+     * copy a row into the arena
+     * @param entry a row of the same row definition
+     * @return the copy inside of the arena
+     */
+    public Row.Entry copy(final Row.Entry entry) {
+        final int p = reserve();
+        entry.writeToArray(this.block, p);
+        return this.row.new Entry(this.block, p, false);
+    }
+
+    /**
+     * @return the number of rows which were placed in the arena since the last release
+     */
+    public int rows() {
+        return this.rows;
+    }
+
+    /**
+     * drop all rows of the arena and give the blocks back to the pool
+     */
+    public void release() {
+        for (final byte[] b: this.blocks) {
+            if (pooled.incrementAndGet() <= maxPooledBlocks) {
+                pool.offer(b);
+            } else {
+                pooled.decrementAndGet();
+            }
+        }
+        this.blocks.clear();
+        this.block = null;
+        this.pos = 0;
+        this.rows = 0;
+    }
+
+    private static byte[] take() {
+        final byte[] b = pool.poll();
+        if (b != null) {
+            pooled.decrementAndGet();
+            reusedBlocks.incrementAndGet();
+            return b;
+        }
+        allocatedBlocks.incrementAndGet();
+        return new byte[blockSize];
+    }
+
+    /**
+     * @return the number of blocks which had to be allocated because the pool was empty
+     */
+    public static long allocatedBlocks() {
+        return allocatedBlocks.get();
+    }
+
+    /**
+     * @return the number of blocks which were taken from the pool
+     */
+    public static long reusedBlocks() {
+        return reusedBlocks.get();
+    }
+
+    /**
+     * @return the number of blocks in the pool
+     */
+    public static int pooledBlocks() {
+        return pooled.get();
+    }
+}
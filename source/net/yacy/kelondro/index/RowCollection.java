@@ -57,6 +57,8 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     public  static final long growfactorSmall100 = 110L;
     private static final int isortlimit = 20;
 
+    public static RowSorter sorter = null; // overwrite this to change the sort engine; null selects the quicksort of cora.sorting.Array
+
     private static final int exp_chunkcount  = 0;
     private static final int exp_last_read   = 1;
     private static final int exp_last_wrote  = 2;
@@ -172,7 +174,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     private static Column exportColumn0, exportColumn1, exportColumn2, exportColumn3, exportColumn4, collectionColumnProducer;
 
-    protected static final long exportOverheadSize = 14;
+    public static final long exportOverheadSize = 14;
     
     private static Row exportRow(final int chunkcachelength) {
         /*
@@ -230,6 +232,25 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return entry.bytes();
     }
 
+    /**
+     * produce the header of an exported collection as it is written by exportCollection().
+     * This can be used to write an exported collection as a stream, the rows must follow the header.
+     * @param rowdef the row definition of the collection
+     * @param size the number of rows which follow the header
+     * @param sortBound the number of sorted rows at the beginning of the collection
+     * @param lastTimeWrote the time of the latest change of the collection
+     * @return the header with a length of exportOverheadSize
+     */
+    public static byte[] exportHeader(final Row rowdef, final int size, final int sortBound, final long lastTimeWrote) {
+        final byte[] b = new byte[(int) exportOverheadSize];
+        NaturalOrder.encodeLong(size, b, 0, 4);
+        NaturalOrder.encodeLong(daysSince2000(System.currentTimeMillis()), b, 4, 2);
+        NaturalOrder.encodeLong(daysSince2000(lastTimeWrote), b, 6, 2);
+        System.arraycopy((rowdef.objectOrder == null) ? ASCII.getBytes("__") : ASCII.getBytes(rowdef.objectOrder.signature()), 0, b, 8, 2);
+        NaturalOrder.encodeLong(sortBound, b, 10, 4);
+        return b;
+    }
+
     public void saveCollection(final File file) throws IOException {
         FileUtils.copy(exportCollection(), file);
     }
@@ -371,6 +392,21 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return entry;
     }
 
+    /**
+     * point a view to a row without copying it; the view is only valid as long as the collection is not changed
+     * @param index the position of the row
+     * @param view a view of the row definition of this collection
+     * @return the view or null if the index is out of range
+     */
+    public synchronized final Row.View get(final int index, final Row.View view) {
+        assert (index >= 0) : "get: access with index " + index + " is below zero";
+        if ((this.chunkcache == null) || (this.rowdef == null)) return null; // case may appear during shutdown
+        if (index >= this.chunkcount) return null;
+        final int addr = index * this.rowdef.objectsize;
+        if (addr + this.rowdef.objectsize > this.chunkcache.length) return null;
+        return view.point(this.chunkcache, addr);
+    }
+
     public synchronized final void set(final int index, final Row.Entry a) throws SpaceExceededException {
         assert (index >= 0) : "set: access with index " + index + " is below zero";
         ensureSize(index + 1);
@@ -399,8 +435,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
     }
 
     public synchronized void addUnique(final Row.Entry row) throws SpaceExceededException {
-        final byte[] r = row.bytes();
-        addUnique(r, 0, r.length);
+        // the row is written directly into the chunkcache; this avoids a copy if the row is a view or part of an arena
+        ensureSize(this.chunkcount + 1);
+        row.writeToArray(this.chunkcache, this.rowdef.objectsize * this.chunkcount, this.rowdef.objectsize);
+        assert (!(allZero(this.chunkcache, this.rowdef.objectsize * this.chunkcount, this.rowdef.objectsize)));
+        appended();
     }
 
     public synchronized void addUnique(final List<Row.Entry> rows) throws SpaceExceededException {
@@ -424,6 +463,10 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         final int l = Math.min(this.rowdef.objectsize, Math.min(alength, a.length - astart));
         ensureSize(this.chunkcount + 1);
         System.arraycopy(a, astart, this.chunkcache, this.rowdef.objectsize * this.chunkcount, l);
+        appended();
+    }
+
+    private final void appended() {
         this.chunkcount++;
         // if possible, increase the sortbound value to suppress unnecessary sorting
         if (this.chunkcount == 1) {
@@ -645,6 +688,42 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         return new rowIterator();
     }
 
+    /**
+     * iterate the rows with one view which is moved from row to row; see Row.View.
+     * The collection must not be changed during the iteration.
+     * @return an iterator which returns the same view object in each step
+     */
+    public Iterator<Row.Entry> views() {
+        return new viewIterator();
+    }
+
+    private class viewIterator implements Iterator<Row.Entry> {
+
+        private final Row.View view;
+        private int p;
+
+        public viewIterator() {
+            this.view = RowCollection.this.rowdef.newView();
+            this.p = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.p < RowCollection.this.chunkcount;
+        }
+
+        @Override
+        public Row.Entry next() {
+            return get(this.p++, this.view);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
     /**
      * Iterator for kelondroRowCollection.
      * It supports remove() and keeps the order of the underlying
@@ -686,7 +765,16 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         synchronized (this) {
             if (this.sortBound == this.chunkcount) return; // check again
             //Log.logInfo("RowCollection.sort()", "sorting array of size " + this.chunkcount + ", sortBound = " + this.sortBound);
-            net.yacy.cora.sorting.Array.sort(this);
+            final RowSorter s = sorter;
+            if (s == null) {
+                net.yacy.cora.sorting.Array.sort(this);
+            } else if (this.sortBound > 0 && this.sortBound >= this.chunkcount - this.sortBound) {
+                // only the unsorted tail is sorted and then merged with the sorted part
+                s.sort(this.rowdef, this.chunkcache, this.sortBound, this.chunkcount);
+                MergeRowSorter.merge(this.rowdef, this.chunkcache, 0, this.sortBound, this.chunkcount);
+            } else {
+                s.sort(this.rowdef, this.chunkcache, 0, this.chunkcount);
+            }
             this.sortBound = this.chunkcount;
         }
     }
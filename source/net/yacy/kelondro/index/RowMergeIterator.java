@@ -0,0 +1,146 @@
+/**
+ *  RowMergeIterator
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.yacy.cora.util.LookAheadIterator;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * k-way merge of iterators which return rows in ascending order of their primary key.
+ * Rows with the same primary key are returned only once: the row of the input which comes
+ * first in the list of inputs is returned, all other rows with that key are dropped.
+ * This is the same rule as used by RowSet.merge(), where the rows of the merged collection
+ * win over the rows of the argument collection.
+ * Only the current row of each input is held in memory.
+ */
+public class RowMergeIterator extends LookAheadIterator<Row.Entry> implements Iterator<Row.Entry> {
+
+    private final Row rowdef;
+    private final List<? extends Iterator<Row.Entry>> inputs;
+    private final PriorityQueue<Source> queue;
+
+    /**
+     * the current row of one input
+     */
+    private static class Source {
+        private final int position;
+        private final Iterator<Row.Entry> iterator;
+        private Row.Entry row;
+        private Source(final int position, final Iterator<Row.Entry> iterator) {
+            this.position = position;
+            this.iterator = iterator;
+            this.row = iterator.next();
+        }
+        private boolean advance() {
+            if (!this.iterator.hasNext()) return false;
+            this.row = this.iterator.next();
+            return true;
+        }
+    }
+
+    /**
+     * @param rowdef the row definition of all inputs
+     * @param inputs the sorted inputs; for rows with equal keys the input with the lowest index wins
+     */
+    public RowMergeIterator(final Row rowdef, final List<? extends Iterator<Row.Entry>> inputs) {
+        this.rowdef = rowdef;
+        this.inputs = inputs;
+        this.queue = new PriorityQueue<Source>(Math.max(1, inputs.size()), new Comparator<Source>() {
+            @Override
+            public int compare(final Source s1, final Source s2) {
+                final int c = rowdef.objectOrder.compare(s1.row.bytes(), s2.row.bytes(), rowdef.primaryKeyLength);
+                return c == 0 ? s1.position - s2.position : c;
+            }
+        });
+        int p = 0;
+        for (final Iterator<Row.Entry> i: inputs) {
+            if (i.hasNext()) this.queue.add(new Source(p, i));
+            p++;
+        }
+    }
+
+    @Override
+    protected Row.Entry next0() {
+        final Source source = this.queue.poll();
+        if (source == null) return null;
+        final Row.Entry row = source.row;
+        if (source.advance()) this.queue.add(source);
+        // drop all other rows with the same key, this includes doubles within the same input
+        Source s;
+        while ((s = this.queue.peek()) != null && this.rowdef.objectOrder.compare(s.row.bytes(), row.bytes(), this.rowdef.primaryKeyLength) == 0) {
+            this.queue.poll();
+            if (s.advance()) this.queue.add(s);
+        }
+        return row;
+    }
+
+    /**
+     * @return the sum of the sizes of all RowSetStream inputs; this is an upper bound of the number of rows of the merge
+     */
+    public int size() {
+        int s = 0;
+        for (final Iterator<Row.Entry> i: this.inputs) {
+            if (i instanceof RowSetStream) s += ((RowSetStream) i).size();
+        }
+        return s;
+    }
+
+    /**
+     * @return the first error of an input stream which terminated the input before its end, or null if there was no error
+     */
+    public IOException error() {
+        for (final Iterator<Row.Entry> i: this.inputs) {
+            if (i instanceof RowSetStream && ((RowSetStream) i).error() != null) return ((RowSetStream) i).error();
+        }
+        return null;
+    }
+
+    /**
+     * close all inputs which are RowSetStream objects
+     */
+    public void close() {
+        for (final Iterator<Row.Entry> i: this.inputs) {
+            if (i instanceof RowSetStream) ((RowSetStream) i).close();
+        }
+        this.queue.clear();
+    }
+
+    /**
+     * collect all rows of the merge into a new RowSet
+     * @param expectedSize the number of rows that shall be allocated in advance; this is usually the sum of the input sizes
+     * @return a sorted RowSet
+     * @throws SpaceExceededException
+     */
+    public RowSet toRowSet(final int expectedSize) throws SpaceExceededException {
+        final RowSet set = new RowSet(this.rowdef, expectedSize);
+        while (hasNext()) {
+            final byte[] b = next().bytes();
+            set.addSorted(b, 0, b.length);
+        }
+        set.trim();
+        return set;
+    }
+}
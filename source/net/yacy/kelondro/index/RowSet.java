@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -156,6 +157,11 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.completed(this, keys, forcecopy);
+    }
+
     /**
      * Adds the row to the index. The row is identified by the primary key of the row.
      * @param row a index row
@@ -0,0 +1,513 @@
+/**
+ *  RowSetCodec
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * a compressed encoding of exported collections, an alternative to RowCollection.exportCollection().
+ * The sorted rows are divided into blocks. In each block the primary keys are front-coded against the
+ * key of the previous row; keys which consist of base64 characters are packed with 6 bits per character.
+ * All other columns are stored column by column: every value of a column with a width of up to 7 bytes
+ * is stored as difference to the smallest value of the column in the block, with the number of bits that
+ * are needed for the largest difference. Columns which have the same value in all rows of a block need no space.
+ *
+ * The encoding has the same header as an exported collection, but the order signature is replaced by
+ * a marker and the sort bound is replaced by the number of blocks:
+ * <pre>
+ * header:    size (4), last read (2), last wrote (2), marker 0x00 'z' (2), number of blocks (4)
+ * blocks:    number of rows (2), length of the data (4), data
+ * padding:   zero bytes, optional; at least one byte if the length would be the length of an uncompressed export
+ * directory: for each block the primary key of the first row and the position of the block in the encoding (4)
+ * </pre>
+ * The blocks can be decoded one by one from a stream; the directory at the end can be used to find and decode
+ * a single block without reading the other blocks.
+ */
+public final class RowSetCodec {
+
+    public static int blockSize = 128; // the maximum number of rows in a block
+
+    private static final int blockHeaderSize = 6;
+    private static final int maxBlockRows = 0xffff;
+
+    /**
+     * @param header the first bytes of an exported collection, at least exportOverheadSize bytes
+     * @return true if the collection is compressed with this codec
+     */
+    public static boolean isCompressed(final byte[] header) {
+        return header.length >= RowCollection.exportOverheadSize && header[8] == 0 && header[9] == 'z';
+    }
+
+    /**
+     * a compressed encoding is padded so that its length is never the length of an uncompressed export
+     * @param length the length of an exported collection
+     * @param rowdef the row definition of the collection
+     * @return true if the collection is compressed with this codec; this needs no access to the collection
+     */
+    public static boolean isCompressed(final long length, final Row rowdef) {
+        return length < RowCollection.exportOverheadSize || (length - RowCollection.exportOverheadSize) % rowdef.objectsize != 0;
+    }
+
+    /**
+     * @param header the first bytes of an exported collection
+     * @return the number of rows of the collection; this works for compressed and uncompressed collections
+     */
+    public static int size(final byte[] header) {
+        return (int) NaturalOrder.decodeLong(header, 0, 4);
+    }
+
+    /**
+     * @param header the first bytes of a compressed collection
+     * @return the number of blocks of the collection
+     */
+    public static int blocks(final byte[] header) {
+        return (int) NaturalOrder.decodeLong(header, 10, 4);
+    }
+
+    /**
+     * @return the length of a directory entry for one block
+     */
+    public static int directoryEntrySize(final Row rowdef) {
+        return rowdef.primaryKeyLength + 4;
+    }
+
+    /**
+     * export a collection
+     * @param set the collection, it is sorted if necessary
+     * @param compress if true, the collection is compressed, otherwise exportCollection() is used
+     * @return the exported collection
+     */
+    public static byte[] exportCollection(final RowSet set, final boolean compress) {
+        if (!compress) return set.exportCollection();
+        return encode(set, null);
+    }
+
+    /**
+     * import a collection which was exported compressed or uncompressed
+     * @param b the exported collection
+     * @param rowdef the row definition of the collection
+     * @return the collection
+     * @throws IOException if the compressed encoding is corrupted
+     * @throws SpaceExceededException
+     */
+    public static RowSet importRowSet(final byte[] b, final Row rowdef) throws IOException, SpaceExceededException {
+        if (!isCompressed(b)) return RowSet.importRowSet(b, rowdef);
+        final int size = size(b);
+        final int blocks = blocks(b);
+        if (size < 0 || blocks < 0 || blocks > size) throw new IOException("wrong header of compressed collection: size = " + size + ", blocks = " + blocks);
+        final long alloc = ((long) size) * ((long) rowdef.objectsize);
+        if (alloc > Integer.MAX_VALUE) throw new SpaceExceededException(alloc, "RowSetCodec.importRowSet: alloc > Integer.MAX_VALUE");
+        final byte[] chunkcache;
+        try {
+            chunkcache = new byte[(int) alloc];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException(alloc, "RowSetCodec.importRowSet: OutOfMemoryError");
+        }
+        int p = (int) RowCollection.exportOverheadSize;
+        int rows = 0;
+        for (int i = 0; i < blocks; i++) {
+            if (p + blockHeaderSize > b.length) throw new IOException("compressed collection is truncated");
+            final int n = (int) NaturalOrder.decodeLong(b, p, 2);
+            final int len = (int) NaturalOrder.decodeLong(b, p + 2, 4);
+            p += blockHeaderSize;
+            if (rows + n > size || len < 0 || p + len > b.length) throw new IOException("wrong block header in compressed collection: rows = " + n + ", length = " + len);
+            decodeBlock(rowdef, b, p, len, n, chunkcache, rows * rowdef.objectsize);
+            p += len;
+            rows += n;
+        }
+        if (rows != size) throw new IOException("compressed collection has " + rows + " rows, expected " + size);
+        return new RowSet(rowdef, size, chunkcache, size);
+    }
+
+    /**
+     * encode a collection
+     * @param set the collection, it is sorted if necessary
+     * @param blockKeys if not null, a new block is started at each of these keys and not after blockSize rows.
+     * This is used to encode a subset of an encoded collection with the block structure of the original encoding,
+     * which ensures that the new encoding is not longer than the original.
+     * @return the encoded collection
+     */
+    public static byte[] encode(final RowSet set, final List<byte[]> blockKeys) {
+        set.sort();
+        final Row rowdef = set.rowdef;
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(set.size() * rowdef.objectsize / 2 + 64);
+        try {
+            final Encoder encoder = new Encoder(os, rowdef, blockKeys == null ? blockSize : maxBlockRows);
+            int k = 1; // the next block key, the first block starts with the first row anyway
+            for (int i = 0; i < set.chunkcount; i++) {
+                final int offset = i * rowdef.objectsize;
+                if (blockKeys != null) {
+                    boolean newBlock = false;
+                    while (k < blockKeys.size() && rowdef.objectOrder.compare(set.chunkcache, offset, blockKeys.get(k), 0, rowdef.primaryKeyLength) >= 0) {
+                        k++;
+                        newBlock = true;
+                    }
+                    if (newBlock) encoder.endBlock();
+                }
+                encoder.add(set.chunkcache, offset);
+            }
+            encoder.finish(0);
+            final byte[] b = os.toByteArray();
+            System.arraycopy(encoder.header(set.lastTimeWrote), 0, b, 0, (int) RowCollection.exportOverheadSize);
+            return b;
+        } catch (final IOException e) {
+            // a ByteArrayOutputStream does not throw IOExceptions
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * encode a subset of a compressed collection with the blocks of the original encoding. The blocks of the
+     * subset are not longer than the original blocks, therefore the new encoding is not longer than the original.
+     * A compressed collection which is only a few bytes shorter than the original is padded to the length of
+     * the original; this allows to overwrite a collection in a file without leaving gaps which are too small to be used.
+     * @param original the original compressed collection
+     * @param subset the remaining rows
+     * @param minGap the minimum number of bytes which the new encoding must be shorter than the original; otherwise it is padded
+     * @return the encoded subset
+     * @throws IOException if the original encoding is corrupted
+     */
+    public static byte[] reencode(final byte[] original, final RowSet subset, final int minGap) throws IOException {
+        assert isCompressed(original);
+        final Row rowdef = subset.rowdef;
+        final int blocks = blocks(original);
+        final int entrySize = directoryEntrySize(rowdef);
+        final int directory = original.length - blocks * entrySize;
+        if (blocks < 0 || directory < RowCollection.exportOverheadSize) throw new IOException("wrong directory in compressed collection: blocks = " + blocks + ", length = " + original.length);
+        final List<byte[]> blockKeys = new ArrayList<byte[]>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            final byte[] key = new byte[rowdef.primaryKeyLength];
+            System.arraycopy(original, directory + i * entrySize, key, 0, key.length);
+            blockKeys.add(key);
+        }
+        final byte[] b = encode(subset, blockKeys);
+        final int gap = original.length - b.length;
+        if (gap <= 0 || gap >= minGap) return b;
+        // insert zeros between the blocks and the directory
+        final byte[] padded = new byte[original.length];
+        final int d = b.length - blocks(b) * entrySize;
+        System.arraycopy(b, 0, padded, 0, d);
+        System.arraycopy(b, d, padded, d + gap, b.length - d);
+        return padded;
+    }
+
+    /**
+     * a stream encoder for compressed collections. Rows must be added in sorted order.
+     * A placeholder is written for the header; because the number of rows and blocks is only known
+     * after all rows have been written, the header must be written again with header().
+     */
+    public static final class Encoder {
+
+        private final OutputStream os;
+        private final Row rowdef;
+        private final int maxRows;
+        private final byte[] rows;        // the rows of the current block
+        private int count;                // the number of rows in the current block
+        private int size;                 // the number of rows in all blocks
+        private int blocks;               // the number of written blocks
+        private long length;              // the number of written bytes
+        private final ByteArrayOutputStream directory;
+
+        public Encoder(final OutputStream os, final Row rowdef, final int maxRows) throws IOException {
+            this.os = os;
+            this.rowdef = rowdef;
+            this.maxRows = Math.max(1, Math.min(maxBlockRows, maxRows));
+            this.rows = new byte[this.maxRows * rowdef.objectsize];
+            this.count = 0;
+            this.size = 0;
+            this.blocks = 0;
+            this.directory = new ByteArrayOutputStream();
+            os.write(new byte[(int) RowCollection.exportOverheadSize]);
+            this.length = RowCollection.exportOverheadSize;
+        }
+
+        /**
+         * add a row; rows must be added in the order of their primary keys
+         * @param row an array containing the row
+         * @param offset the position of the row in the array
+         * @throws IOException
+         */
+        public void add(final byte[] row, final int offset) throws IOException {
+            if (this.count == this.maxRows) endBlock();
+            System.arraycopy(row, offset, this.rows, this.count * this.rowdef.objectsize, this.rowdef.objectsize);
+            this.count++;
+            this.size++;
+        }
+
+        /**
+         * write the current block; the next row starts a new block
+         * @throws IOException
+         */
+        public void endBlock() throws IOException {
+            if (this.count == 0) return;
+            this.directory.write(this.rows, 0, this.rowdef.primaryKeyLength);
+            this.directory.write(NaturalOrder.encodeLong(this.length, 4));
+            final byte[] data = encodeBlock(this.rowdef, this.rows, this.count);
+            this.os.write(NaturalOrder.encodeLong(this.count, 2));
+            this.os.write(NaturalOrder.encodeLong(data.length, 4));
+            this.os.write(data);
+            this.length += blockHeaderSize + data.length;
+            this.blocks++;
+            this.count = 0;
+        }
+
+        /**
+         * write the last block and the directory
+         * @param padding the number of zero bytes which are written between the blocks and the directory;
+         * one byte more is written if the encoding would have the length of an uncompressed export
+         * @return the number of bytes of the encoding
+         * @throws IOException
+         */
+        public long finish(int padding) throws IOException {
+            endBlock();
+            if (!isCompressed(this.length + padding + this.directory.size(), this.rowdef)) padding++;
+            if (padding > 0) this.os.write(new byte[padding]);
+            this.directory.writeTo(this.os);
+            this.length += padding + this.directory.size();
+            return this.length;
+        }
+
+        /**
+         * @return the number of rows which have been added
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * the header of the encoding, which must replace the placeholder at the beginning of the encoding
+         * @param lastTimeWrote the time of the latest change of the collection
+         * @return the header
+         */
+        public byte[] header(final long lastTimeWrote) {
+            final byte[] header = RowCollection.exportHeader(this.rowdef, this.size, this.blocks, lastTimeWrote);
+            header[8] = 0;
+            header[9] = 'z';
+            return header;
+        }
+    }
+
+    private static int bits(final long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    private static long value(final byte[] b, final int offset, final int width) {
+        long v = 0;
+        for (int i = 0; i < width; i++) v = (v << 8) | (b[offset + i] & 0xff);
+        return v;
+    }
+
+    /**
+     * encode a block of sorted rows
+     * @param rowdef the row definition
+     * @param rows the rows of the block
+     * @param n the number of rows
+     * @return the encoded block
+     */
+    public static byte[] encodeBlock(final Row rowdef, final byte[] rows, final int n) {
+        final int keylength = rowdef.primaryKeyLength;
+        final int objectsize = rowdef.objectsize;
+        final BitWriter w = new BitWriter(n * objectsize + 8 * rowdef.columns() + 16);
+
+        // primary keys: front coding, base64 characters with 6 bits
+        boolean b64 = rowdef.objectOrder instanceof Base64Order;
+        for (int i = 0; b64 && i < n; i++) b64 = rowdef.objectOrder.wellformed(rows, i * objectsize, keylength);
+        final Base64Order order = b64 ? (Base64Order) rowdef.objectOrder : null;
+        final int prefixBits = bits(keylength);
+        final int charBits = b64 ? 6 : 8;
+        w.write(b64 ? 1 : 0, 1);
+        for (int i = 0; i < n; i++) {
+            final int p = i * objectsize;
+            int prefix = 0;
+            if (i > 0) while (prefix < keylength && rows[p + prefix] == rows[p - objectsize + prefix]) prefix++;
+            w.write(prefix, prefixBits);
+            for (int j = prefix; j < keylength; j++) w.write(b64 ? order.decodeByte(rows[p + j]) : rows[p + j] & 0xff, charBits);
+        }
+
+        // all other columns: difference to the smallest value of the column
+        for (int c = 1; c < rowdef.columns(); c++) {
+            final int start = rowdef.colstart[c];
+            final int width = rowdef.width(c);
+            if (width > 7) {
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < width; j++) w.write(rows[i * objectsize + start + j] & 0xff, 8);
+                }
+                continue;
+            }
+            long min = Long.MAX_VALUE, max = 0;
+            for (int i = 0; i < n; i++) {
+                final long v = value(rows, i * objectsize + start, width);
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            final int bits = bits(max - min);
+            w.write(min, width * 8);
+            w.write(bits, 6);
+            if (bits > 0) for (int i = 0; i < n; i++) w.write(value(rows, i * objectsize + start, width) - min, bits);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * decode a block of rows
+     * @param rowdef the row definition
+     * @param data the array which contains the encoded block
+     * @param offset the position of the block in the array
+     * @param length the length of the encoded block
+     * @param n the number of rows in the block
+     * @param target the array for the decoded rows
+     * @param targetOffset the position of the first row in the target array
+     * @throws IOException if the block is corrupted
+     */
+    public static void decodeBlock(final Row rowdef, final byte[] data, final int offset, final int length, final int n, final byte[] target, final int targetOffset) throws IOException {
+        final int keylength = rowdef.primaryKeyLength;
+        final int objectsize = rowdef.objectsize;
+        final BitReader r = new BitReader(data, offset, length);
+
+        final boolean b64 = r.read(1) == 1;
+        if (b64 && !(rowdef.objectOrder instanceof Base64Order)) throw new IOException("block with base64 keys for a row without base64 order");
+        final Base64Order order = b64 ? (Base64Order) rowdef.objectOrder : null;
+        final int prefixBits = bits(keylength);
+        final int charBits = b64 ? 6 : 8;
+        for (int i = 0; i < n; i++) {
+            final int p = targetOffset + i * objectsize;
+            final int prefix = (int) r.read(prefixBits);
+            if (prefix > keylength || (i == 0 && prefix > 0)) throw new IOException("wrong key prefix " + prefix + " in compressed block");
+            if (prefix > 0) System.arraycopy(target, p - objectsize, target, p, prefix);
+            for (int j = prefix; j < keylength; j++) {
+                final int c = (int) r.read(charBits);
+                target[p + j] = b64 ? (byte) order.encodeByte((byte) c) : (byte) c;
+            }
+        }
+
+        for (int c = 1; c < rowdef.columns(); c++) {
+            final int start = rowdef.colstart[c];
+            final int width = rowdef.width(c);
+            if (width > 7) {
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < width; j++) target[targetOffset + i * objectsize + start + j] = (byte) r.read(8);
+                }
+                continue;
+            }
+            final long min = r.read(width * 8);
+            final int bits = (int) r.read(6);
+            if (bits > width * 8) throw new IOException("wrong number of bits " + bits + " for column " + c + " in compressed block");
+            for (int i = 0; i < n; i++) {
+                long v = bits > 0 ? min + r.read(bits) : min;
+                final int p = targetOffset + i * objectsize + start;
+                for (int j = width - 1; j >= 0; j--) {
+                    target[p + j] = (byte) v;
+                    v >>>= 8;
+                }
+            }
+        }
+    }
+
+    private static final class BitWriter {
+
+        private byte[] buffer;
+        private int pos;
+        private long acc;   // bits which have not been written to the buffer
+        private int accBits;
+
+        private BitWriter(final int initialSize) {
+            this.buffer = new byte[Math.max(16, initialSize)];
+            this.pos = 0;
+            this.acc = 0;
+            this.accBits = 0;
+        }
+
+        /**
+         * write the lowest bits of a value
+         * @param value
+         * @param bits the number of bits, at most 56
+         */
+        private void write(final long value, final int bits) {
+            if (bits == 0) return;
+            this.acc = (this.acc << bits) | (value & ((1L << bits) - 1));
+            this.accBits += bits;
+            while (this.accBits >= 8) {
+                this.accBits -= 8;
+                put((byte) (this.acc >>> this.accBits));
+            }
+        }
+
+        private void put(final byte b) {
+            if (this.pos == this.buffer.length) {
+                final byte[] newBuffer = new byte[this.buffer.length * 2];
+                System.arraycopy(this.buffer, 0, newBuffer, 0, this.pos);
+                this.buffer = newBuffer;
+            }
+            this.buffer[this.pos++] = b;
+        }
+
+        private byte[] toByteArray() {
+            if (this.accBits > 0) {
+                put((byte) (this.acc << (8 - this.accBits)));
+                this.accBits = 0;
+            }
+            final byte[] b = new byte[this.pos];
+            System.arraycopy(this.buffer, 0, b, 0, this.pos);
+            return b;
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] data;
+        private int pos;
+        private final int end;
+        private long acc;
+        private int accBits;
+
+        private BitReader(final byte[] data, final int offset, final int length) {
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+            this.acc = 0;
+            this.accBits = 0;
+        }
+
+        /**
+         * read a value
+         * @param bits the number of bits, at most 56
+         * @return the value
+         * @throws IOException if the data ends before the value
+         */
+        private long read(final int bits) throws IOException {
+            if (bits == 0) return 0;
+            while (this.accBits < bits) {
+                if (this.pos >= this.end) throw new IOException("compressed block is truncated");
+                this.acc = (this.acc << 8) | (this.data[this.pos++] & 0xff);
+                this.accBits += 8;
+            }
+            this.accBits -= bits;
+            return (this.acc >>> this.accBits) & ((1L << bits) - 1);
+        }
+    }
+}
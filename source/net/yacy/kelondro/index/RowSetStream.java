@@ -0,0 +1,177 @@
+/**
+ *  RowSetStream
+ *  first published 17.10.2026 on http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.LookAheadIterator;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * iterator over the rows of an exported collection (see RowCollection.exportCollection()) which is read from a stream.
+ * The rows are read one by one, so the collection is never held in memory as a whole.
+ * Exported collections are written in sorted order, therefore the rows are returned in the order
+ * of the primary key. Only if the export has an unsorted tail the collection is imported
+ * completely and sorted before it is iterated.
+ * Collections which are compressed with RowSetCodec are decoded block by block.
+ * Errors while reading the stream terminate the iteration; they can be checked with error().
+ */
+public class RowSetStream extends LookAheadIterator<Row.Entry> implements Iterator<Row.Entry> {
+
+    private final Row rowdef;
+    private DataInputStream is;
+    private int size;                // the number of rows as given in the header
+    private int remaining;          // the number of rows which have not been read from the stream
+    private Iterator<Row.Entry> imported; // the rows of a collection which had to be sorted, or null
+    private IOException error;
+    private int blocks;             // the number of blocks of a compressed collection which have not been read
+    private byte[] block;           // the decoded rows of the current block of a compressed collection, or null
+    private int blockRows, blockPos;
+
+    /**
+     * open the stream of an exported collection and read its header
+     * @param is the stream, positioned at the beginning of the export
+     * @param rowdef the row definition of the collection
+     * @param length the length of the export in bytes
+     * @throws IOException if the header cannot be read or does not fit to the length
+     * @throws SpaceExceededException if the collection must be sorted and there is not enough memory to import it
+     */
+    public RowSetStream(final InputStream is, final Row rowdef, final int length) throws IOException, SpaceExceededException {
+        this.rowdef = rowdef;
+        this.is = (is instanceof DataInputStream) ? (DataInputStream) is : new DataInputStream(is);
+        this.error = null;
+        this.imported = null;
+        this.blocks = 0;
+        this.block = null;
+        this.blockRows = 0;
+        this.blockPos = 0;
+        if (length < RowCollection.exportOverheadSize) {
+            this.size = 0;
+            this.remaining = 0;
+            return;
+        }
+        final byte[] header = new byte[(int) RowCollection.exportOverheadSize];
+        this.is.readFully(header);
+        final int size = (int) NaturalOrder.decodeLong(header, 0, 4);
+        if (RowSetCodec.isCompressed(header)) {
+            this.blocks = RowSetCodec.blocks(header);
+            if (size < 0 || this.blocks < 0 || this.blocks > size) throw new IOException("wrong header of compressed collection: size = " + size + ", blocks = " + this.blocks);
+            this.size = size;
+            this.remaining = size;
+            this.block = new byte[0];
+            return;
+        }
+        final int orderbound = (int) NaturalOrder.decodeLong(header, 10, 4);
+        if (size < 0 || orderbound < 0 || ((long) size) * rowdef.objectsize != length - RowCollection.exportOverheadSize) {
+            throw new IOException("wrong export header: size = " + size + ", orderbound = " + orderbound + ", length = " + length + ", objectsize = " + rowdef.objectsize);
+        }
+        this.size = size;
+        this.remaining = size;
+        if (orderbound < size) {
+            // the tail of the collection is not sorted; this should not happen because exportCollection() sorts.
+            final byte[] b = new byte[length];
+            System.arraycopy(header, 0, b, 0, header.length);
+            this.is.readFully(b, header.length, length - header.length);
+            final RowSet rows = RowSet.importRowSet(b, rowdef);
+            rows.sort();
+            rows.uniq();
+            this.imported = rows.iterator();
+            this.remaining = 0;
+        }
+    }
+
+    /**
+     * the number of rows in the collection as given in the export header
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the exception which terminated the iteration, or null if the iteration was not terminated by an error
+     */
+    public IOException error() {
+        return this.error;
+    }
+
+    @Override
+    protected Row.Entry next0() {
+        if (this.imported != null) {
+            return this.imported.hasNext() ? this.imported.next() : null;
+        }
+        if (this.remaining <= 0 || this.is == null) return null;
+        if (this.block != null) return nextCompressed();
+        final byte[] b = new byte[this.rowdef.objectsize];
+        try {
+            this.is.readFully(b);
+        } catch (final EOFException e) {
+            this.error = new IOException("unexpected end of stream with " + this.remaining + " remaining rows", e);
+            return null;
+        } catch (final IOException e) {
+            this.error = e;
+            return null;
+        }
+        this.remaining--;
+        return this.rowdef.newEntry(b);
+    }
+
+    private Row.Entry nextCompressed() {
+        try {
+            if (this.blockPos >= this.blockRows) {
+                // read and decode the next block
+                if (this.blocks <= 0) throw new IOException("compressed collection ends with " + this.remaining + " remaining rows");
+                final int n = this.is.readUnsignedShort();
+                final int len = this.is.readInt();
+                if (n <= 0 || n > this.remaining || len < 0) throw new IOException("wrong block header in compressed collection: rows = " + n + ", length = " + len);
+                final byte[] data = new byte[len];
+                this.is.readFully(data);
+                if (this.block.length < n * this.rowdef.objectsize) this.block = new byte[n * this.rowdef.objectsize];
+                RowSetCodec.decodeBlock(this.rowdef, data, 0, len, n, this.block, 0);
+                this.blocks--;
+                this.blockRows = n;
+                this.blockPos = 0;
+            }
+        } catch (final EOFException e) {
+            this.error = new IOException("unexpected end of stream with " + this.remaining + " remaining rows", e);
+            return null;
+        } catch (final IOException e) {
+            this.error = e;
+            return null;
+        }
+        final byte[] b = new byte[this.rowdef.objectsize];
+        System.arraycopy(this.block, this.blockPos * this.rowdef.objectsize, b, 0, b.length);
+        this.blockPos++;
+        this.remaining--;
+        return this.rowdef.newEntry(b);
+    }
+
+    public void close() {
+        if (this.is != null) try {this.is.close();} catch (final IOException e) {}
+        this.is = null;
+        this.remaining = 0;
+        this.imported = null;
+        this.block = null;
+    }
+}
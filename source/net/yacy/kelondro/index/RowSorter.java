@@ -0,0 +1,41 @@
+// RowSorter.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+/**
+ * a sort engine for the rows of a RowCollection.
+ * The rows are sorted in place inside of the chunkcache of the collection by their primary keys
+ * in the order of the row definition; rows with equal keys may be in any order.
+ */
+public interface RowSorter {
+
+    /**
+     * sort a range of rows
+     * @param rowdef the row definition with the key length and the order of the keys
+     * @param chunkcache the rows
+     * @param from the first row of the range
+     * @param to the row after the last row of the range
+     */
+    public void sort(Row rowdef, byte[] chunkcache, int from, int to);
+
+}
@@ -46,6 +46,8 @@ public abstract class AbstractReader implements Reader {
     @Override
     abstract public void readFully(byte[] b, int off, int len) throws IOException;
     @Override
+    abstract public void readFully(long pos, byte[] b, int off, int len) throws IOException;
+    @Override
     abstract public long length() throws IOException;
     @Override
     abstract public long available() throws IOException;
@@ -82,6 +84,13 @@ public abstract class AbstractReader implements Reader {
         return (((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF));
     }
 
+    @Override
+    public int readInt(final long pos) throws IOException {
+        byte[] b = new byte[4];
+        this.readFully(pos, b, 0, 4);
+        return (((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF));
+    }
+
     @Override
     public final long readLong() throws IOException {
         return ((long) (readInt()) << 32) | (readInt() & 0xFFFFFFFFL);
@@ -76,6 +76,15 @@ public final class BufferedRecords {
         this.buffer.clear();
     }
 
+    /**
+     * flush the buffer and force the file to the disk
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        flushBuffer0();
+        if (this.efs != null) this.efs.sync();
+    }
+
     public final synchronized long size() throws IOException {
         return this.efs == null ? 0 : this.efs.size();
     }
@@ -112,6 +121,42 @@ public final class BufferedRecords {
         System.arraycopy(bb, 0, b, start, this.efs.recordsize);
     }
 
+    /**
+     * read many records at once; records which are not in the buffer are read with one batch read
+     * @param index the records which should be read, sorted ascending without double entries
+     * @param b destination arrays, one for each record
+     * @throws IOException
+     */
+    public final synchronized void get(final long[] index, final byte[][] b) throws IOException {
+        if (this.buffer.isEmpty()) {
+            this.efs.get(index, b);
+            return;
+        }
+        final long[] fileIndex = new long[index.length];
+        final byte[][] fileb = new byte[index.length][];
+        int c = 0;
+        byte[] bb;
+        for (int i = 0; i < index.length; i++) {
+            bb = this.buffer.get(Long.valueOf(index[i]));
+            if (bb == null) {
+                fileIndex[c] = index[i];
+                fileb[c++] = b[i];
+            } else {
+                System.arraycopy(bb, 0, b[i], 0, this.efs.recordsize);
+            }
+        }
+        if (c == 0) return;
+        if (c == index.length) {
+            this.efs.get(index, b);
+        } else {
+            final long[] fi = new long[c];
+            final byte[][] fb = new byte[c][];
+            System.arraycopy(fileIndex, 0, fi, 0, c);
+            System.arraycopy(fileb, 0, fb, 0, c);
+            this.efs.get(fi, fb);
+        }
+    }
+
     public final synchronized void put(final long index, final byte[] b, final int start) throws IOException {
         assert b.length - start >= this.efs.recordsize;
         final long s = size();
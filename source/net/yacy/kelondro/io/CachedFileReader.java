@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.util.MemoryControl;
@@ -31,7 +32,9 @@ import net.yacy.kelondro.util.MemoryControl;
 
 public final class CachedFileReader extends AbstractReader implements Reader {
 
-    private final RandomAccessFile RAFile;
+    private RandomAccessFile RAFile; // opened again if an interrupt during a positional read closed its channel
+    private final ReadChannel readChannel; // positional reads with the channel of the RAFile
+    private boolean closed;
     private byte[] cache;
     private final int cachelen;
 
@@ -39,6 +42,16 @@ public final class CachedFileReader extends AbstractReader implements Reader {
         this.name = file.getName();
         this.file = file;
         this.RAFile = new RandomAccessFile(this.file, "r");
+        this.readChannel = new ReadChannel(this.name, new ReadChannel.Owner() {
+            @Override
+            public FileChannel channel() throws IOException {
+                synchronized (CachedFileReader.this) {
+                    checkReopen();
+                    return CachedFileReader.this.RAFile.getChannel();
+                }
+            }
+        });
+        this.closed = false;
         if (MemoryControl.available() / 10L > this.RAFile.length() && this.RAFile.length() < Integer.MAX_VALUE) {
         	this.cache = new byte[(int) this.RAFile.length()];
         	this.RAFile.seek(0);
@@ -51,16 +64,19 @@ public final class CachedFileReader extends AbstractReader implements Reader {
     
     @Override
     public final synchronized long available() throws IOException {
+        checkReopen();
         return this.length() - RAFile.getFilePointer();
     }
 
     @Override
     public final synchronized long length() throws IOException {
+        checkReopen();
         return this.RAFile.length();
     }
 
     @Override
     public final synchronized void readFully(final byte[] b, final int off, int len) throws IOException {
+        checkReopen();
         long seek = RAFile.getFilePointer();
         if (cache != null  && cachelen - seek >= len) {
             // read from cache
@@ -73,10 +89,35 @@ public final class CachedFileReader extends AbstractReader implements Reader {
         return;
     }
 
+    @Override
+    public final void readFully(final long pos, final byte[] b, final int off, final int len) throws IOException {
+        final byte[] c = this.cache; // the cache holds the whole file if it is not null
+        if (c != null && pos + len <= c.length) {
+            System.arraycopy(c, (int) pos, b, off, len);
+            return;
+        }
+        // a positional read does not change the file pointer, therefore this may be called concurrently with other reads
+        this.readChannel.readFully(pos, b, off, len);
+    }
+
     @Override
     public final synchronized void seek(final long pos) throws IOException {
+        checkReopen();
         RAFile.seek(pos);
     }
+
+    /**
+     * open the file again if its channel was closed by an interrupt during a positional read.
+     * The file pointer is not restored, all users seek before they read.
+     */
+    private final void checkReopen() throws IOException {
+        if (this.closed) throw new IOException("file " + this.name + " is closed");
+        if (this.RAFile.getChannel().isOpen()) return;
+        try {
+            this.RAFile.close();
+        } catch (final IOException e) {}
+        this.RAFile = new RandomAccessFile(this.file, "r");
+    }
     
     @Override
     public final synchronized void close() {
@@ -86,6 +127,7 @@ public final class CachedFileReader extends AbstractReader implements Reader {
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
+        this.closed = true;
         this.cache = null;
     }
 
@@ -29,12 +29,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 import net.yacy.cora.util.ConcurrentLog;
 
 public final class CachedFileWriter extends AbstractWriter implements Writer {
 
     private RandomAccessFile RAFile;
+    private final ReadChannel readChannel; // positional reads with the channel of the RAFile
     private byte[] cache;
     private long cachestart;
     private int cachelen;
@@ -43,6 +45,16 @@ public final class CachedFileWriter extends AbstractWriter implements Writer {
         this.name = file.getName();
         this.file = file;
         this.RAFile = new RandomAccessFile(this.file, "rw");
+        this.readChannel = new ReadChannel(this.name, new ReadChannel.Owner() {
+            @Override
+            public FileChannel channel() throws IOException {
+                synchronized (CachedFileWriter.this) {
+                    checkReopen();
+                    if (CachedFileWriter.this.RAFile == null) throw new IOException("file " + CachedFileWriter.this.name + " cannot be opened");
+                    return CachedFileWriter.this.RAFile.getChannel();
+                }
+            }
+        });
         this.cache = new byte[32768];
         this.cachestart = 0;
         this.cachelen = 0;
@@ -106,6 +118,13 @@ public final class CachedFileWriter extends AbstractWriter implements Writer {
         
     }
 
+    @Override
+    public final void readFully(final long pos, final byte[] b, final int off, final int len) throws IOException {
+        // this is done outside of the synchronization; the write cache is a write-through cache
+        // so the channel always sees the latest content
+        this.readChannel.readFully(pos, b, off, len);
+    }
+
     @Override
     public final synchronized void write(final byte[] b, final int off, final int len) throws IOException {
         checkReopen();
@@ -158,7 +177,13 @@ public final class CachedFileWriter extends AbstractWriter implements Writer {
     }
     
     private final void checkReopen() {
-        if (this.RAFile != null) return;
+        if (this.RAFile != null) {
+            if (this.RAFile.getChannel().isOpen()) return;
+            // an interrupt during a positional read closed the channel and the file; the file pointer is not restored, all users seek first
+            try {
+                this.RAFile.close();
+            } catch (final IOException e) {}
+        }
         // re-open the file
         try {
             this.RAFile = new RandomAccessFile(this.file, "rw");
@@ -0,0 +1,233 @@
+// MappedFileReader.java
+// ---------------------
+// first published 16.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only view on a file using memory-mapped segments.
+ * Files larger than 2GB are mapped as a sequence of segments; a read which crosses
+ * a segment border is split into several copy operations.
+ * In addition to the sequential Reader interface this class provides positional
+ * read methods which do not need any synchronization, so many threads can read
+ * concurrently from the same file without copying the file into the java heap.
+ * The mapping has the length of the file at the time when the reader was created;
+ * content written later to the file inside that range is visible, appended content is not.
+ * The mapping is released when the reader is closed, so the file can be truncated or deleted
+ * afterwards; the owner of the reader must make sure that no read is running while it is closed.
+ */
+public final class MappedFileReader extends AbstractReader implements Reader {
+
+    public final static int DEFAULT_SEGMENT_SHIFT = 30; // segments of 1GB
+
+    // the method which releases a mapping at once, without waiting for the garbage collector
+    private final static Object unsafe;
+    private final static Method invokeCleaner;
+    static {
+        Object u = null;
+        Method m = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            m = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); // since java 9
+            final Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            u = f.get(null);
+        } catch (final Throwable e) {
+            m = null; // java 8: the cleaner of the buffer is used
+        }
+        unsafe = u;
+        invokeCleaner = m;
+    }
+
+    /**
+     * true if mappings can be released when a reader is closed. If this is false, a mapped file
+     * cannot be truncated or deleted on all platforms until the garbage collector removed the mapping.
+     */
+    public final static boolean UNMAP_SUPPORTED = unmapSupported();
+
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long length;
+    private volatile MappedByteBuffer[] segments;
+    private long seekpos; // position for the sequential read methods
+
+    public MappedFileReader(final File file) throws IOException, FileNotFoundException {
+        this(file, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * map a file for reading
+     * @param file the file to be mapped
+     * @param segmentShift the size of each mapped segment is 2^segmentShift; must be < 31
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFileReader(final File file, final int segmentShift) throws IOException, FileNotFoundException {
+        assert segmentShift > 2 && segmentShift < 31 : "segmentShift = " + segmentShift;
+        this.name = file.getName();
+        this.file = file;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.seekpos = 0;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            this.length = channel.size();
+            final long segmentSize = 1L << segmentShift;
+            final int count = (int) ((this.length + this.segmentMask) >>> segmentShift);
+            final MappedByteBuffer[] s = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                final long start = i * segmentSize;
+                s[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, this.length - start));
+            }
+            this.segments = s;
+        } finally {
+            // the mapping stays valid after the channel is closed; this saves a file handle
+            raf.close();
+        }
+    }
+
+    /**
+     * the length of the mapped file range. This is the length of the file when the mapping was created.
+     */
+    @Override
+    public final long length() {
+        return this.length;
+    }
+
+    /**
+     * read bytes from a given position; this does not change the sequential read position
+     * and can be called concurrently without synchronization
+     * @param pos the position in the file
+     * @param b the target array
+     * @param off the offset in the target array
+     * @param len the number of bytes to read
+     * @throws IOException if the reader is closed or the requested range is outside of the mapped file
+     */
+    @Override
+    public final void readFully(long pos, final byte[] b, int off, int len) throws IOException {
+        final MappedByteBuffer[] s = this.segments;
+        if (s == null) throw new IOException("file " + this.name + " is closed");
+        if (pos < 0 || pos + len > this.length) throw new IOException("EOF in " + this.name + ", length = " + this.length + ", requested = " + len + ", seek = " + pos);
+        while (len > 0) {
+            final int segoff = (int) (pos & this.segmentMask);
+            final int n = (int) Math.min(len, this.segmentMask + 1 - segoff);
+            final ByteBuffer bb = s[(int) (pos >>> this.segmentShift)].duplicate(); // a duplicate has its own position
+            bb.position(segoff);
+            bb.get(b, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * read an integer from a given position; this does not change the sequential read position
+     * and can be called concurrently without synchronization
+     * @param pos the position in the file
+     * @return the integer, read in the same byte order as AbstractReader.readInt()
+     * @throws IOException if the reader is closed or the requested range is outside of the mapped file
+     */
+    @Override
+    public final int readInt(final long pos) throws IOException {
+        final MappedByteBuffer[] s = this.segments;
+        if (s == null) throw new IOException("file " + this.name + " is closed");
+        if (pos < 0 || pos + 4 > this.length) throw new IOException("EOF in " + this.name + ", length = " + this.length + ", requested = 4, seek = " + pos);
+        final int segoff = (int) (pos & this.segmentMask);
+        if (segoff + 4 <= this.segmentMask + 1) return s[(int) (pos >>> this.segmentShift)].getInt(segoff);
+        // the integer crosses a segment border
+        final byte[] b = new byte[4];
+        readFully(pos, b, 0, 4);
+        return (((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF));
+    }
+
+    @Override
+    public final synchronized long available() {
+        return this.length - this.seekpos;
+    }
+
+    @Override
+    public final synchronized void readFully(final byte[] b, final int off, final int len) throws IOException {
+        readFully(this.seekpos, b, off, len);
+        this.seekpos += len;
+    }
+
+    @Override
+    public final synchronized void seek(final long pos) {
+        this.seekpos = pos;
+    }
+
+    /**
+     * release the mapping. The mapped memory is returned to the operating system at once,
+     * so the file can be truncated or deleted afterwards. A read which accesses the mapping
+     * while it is released may crash the JVM: the owner of the reader must make sure that
+     * no read is running, i.e. by closing the reader only while it holds a write lock.
+     * Reads which start after closing throw an IOException.
+     */
+    @Override
+    public final void close() {
+        final MappedByteBuffer[] s = this.segments;
+        this.segments = null;
+        if (s == null) return;
+        for (final MappedByteBuffer b: s) unmap(b);
+    }
+
+    private static boolean unmapSupported() {
+        if (invokeCleaner != null) return true;
+        try {
+            Class.forName("sun.misc.Cleaner");
+            return true;
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * release a mapped buffer without waiting for the garbage collector
+     * @return true if the buffer was released, false if it is released by the garbage collector
+     */
+    private static boolean unmap(final MappedByteBuffer buffer) {
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(unsafe, buffer);
+                return true;
+            }
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) return false;
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+}
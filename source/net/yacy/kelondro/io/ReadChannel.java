@@ -0,0 +1,88 @@
+// ReadChannel.java
+// ---------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Positional reads of a file with the channel of the RandomAccessFile of a reader or writer, so no
+ * second file descriptor is opened. A positional read does not change the file pointer.
+ * A FileChannel is closed for all threads when a thread is interrupted while it reads, and this closes
+ * the RandomAccessFile, too; the owner opens the file again when it hands out its channel the next time,
+ * so an interrupt fails only the read of the interrupted thread and not all following reads of the file.
+ */
+final class ReadChannel {
+
+    /**
+     * the reader or writer which owns the RandomAccessFile
+     */
+    interface Owner {
+        /**
+         * @return the channel of the RandomAccessFile; the file is opened again if the channel was closed by an interrupt
+         * @throws IOException if the owner is closed
+         */
+        public FileChannel channel() throws IOException;
+    }
+
+    private static final int MAX_REOPEN = 3; // reads which fail because another thread closed the channel are repeated
+
+    private final String name;
+    private final Owner owner;
+
+    ReadChannel(final String name, final Owner owner) {
+        this.name = name;
+        this.owner = owner;
+    }
+
+    /**
+     * read bytes from a given position. This does not change any file pointer and may be called concurrently.
+     * @throws ClosedByInterruptException if the current thread was interrupted
+     * @throws IOException if the owner is closed or the file is too short
+     */
+    void readFully(final long pos, final byte[] b, final int off, final int len) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            final FileChannel c = this.owner.channel();
+            try {
+                final ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+                long p = pos;
+                while (bb.hasRemaining()) {
+                    final int r = c.read(bb, p);
+                    if (r < 0) throw new EOFException("EOF in " + this.name + ", requested = " + len + ", seek = " + pos);
+                    p += r;
+                }
+                return;
+            } catch (final ClosedByInterruptException e) {
+                throw e; // this thread was interrupted; the owner opens the file again for the next read
+            } catch (final ClosedChannelException e) {
+                // the channel was closed by the interrupt of another thread
+                if (attempt >= MAX_REOPEN) throw e;
+            }
+        }
+    }
+
+}
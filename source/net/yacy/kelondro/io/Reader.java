@@ -39,6 +39,10 @@ public interface Reader {
     
     public void readFully(byte[] b, int off, int len) throws IOException;
     
+    // positional methods: these do not change the seek position and may be called concurrently
+    public void readFully(long pos, byte[] b, int off, int len) throws IOException;
+    public int readInt(long pos) throws IOException;
+
     public void seek(long pos) throws IOException;
     public void close() throws IOException;
 
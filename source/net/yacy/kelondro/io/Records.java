@@ -24,11 +24,14 @@
 
 package net.yacy.kelondro.io;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.util.ConcurrentLog;
@@ -73,6 +76,13 @@ public final class Records {
      */
     private static final int maxWriteBuffer = 16 * 1024;
 
+    /**
+     * batch reads: the maximum number of buffers of one scattering read and the
+     * maximum number of records between two requested records which are read over
+     */
+    private static final int maxScatter = 256;
+    private static final int maxGap = 8;
+
 
     public Records(final File tablefile, final int recordsize) {
         this.tablefile = tablefile;
@@ -208,6 +218,16 @@ public final class Records {
         this.buffercount = 0;
     }
 
+    /**
+     * write the buffer and force the file to the disk
+     * @throws IOException
+     */
+    public final synchronized void sync() throws IOException {
+        if (this.raf == null) return;
+        flushBuffer();
+        this.raf.getFD().sync();
+    }
+
     public final synchronized void close() {
         // close the file
         if (this.raf != null) try {
@@ -243,6 +263,57 @@ public final class Records {
         System.arraycopy(this.buffer, q * this.recordsize, b, start, this.recordsize);
     }
 
+    /**
+     * read many records at once. Records in the file which are close to each other are
+     * read with one scattering read; the records between them (at most maxGap) are read
+     * into a skip buffer. Records in the write buffer are copied.
+     * @param index the records which should be read, sorted ascending without double entries
+     * @param b destination arrays, one for each record, with a length of at least recordsize each
+     * @throws IOException
+     */
+    public final synchronized void get(final long[] index, final byte[][] b) throws IOException {
+        assert index.length == b.length;
+        final long filesize = filesize();
+        final long s = filesize + this.buffercount;
+        final FileChannel channel = this.raf.getChannel();
+        final byte[] skip = new byte[maxGap * this.recordsize];
+        final ByteBuffer[] dsts = new ByteBuffer[2 * maxScatter];
+        int i = 0;
+        while (i < index.length) {
+            if (index[i] >= s) throw new IndexOutOfBoundsException("kelondroEcoFS.get(" + index[i] + ") outside bounds (" + s + ")");
+            final int q = inBuffer(index[i], filesize);
+            if (q >= 0) {
+                System.arraycopy(this.buffer, q * this.recordsize, b[i], 0, this.recordsize);
+                i++;
+                continue;
+            }
+            // collect a region of records in the file
+            int d = 0;
+            long length = this.recordsize;
+            dsts[d++] = ByteBuffer.wrap(b[i], 0, this.recordsize);
+            int j = i + 1;
+            while (j < index.length && j - i < maxScatter && index[j] < filesize) {
+                assert index[j] > index[j - 1];
+                final long gap = index[j] - index[j - 1] - 1;
+                if (gap > maxGap) break;
+                if (gap > 0) {
+                    dsts[d++] = ByteBuffer.wrap(skip, 0, (int) gap * this.recordsize);
+                    length += gap * this.recordsize;
+                }
+                dsts[d++] = ByteBuffer.wrap(b[j], 0, this.recordsize);
+                length += this.recordsize;
+                j++;
+            }
+            channel.position(this.recordsize * index[i]);
+            while (length > 0) {
+                final long r = channel.read(dsts, 0, d);
+                if (r < 0) throw new EOFException("kelondroEcoFS.get(" + index[i] + ") unexpected end of file");
+                length -= r;
+            }
+            i = j;
+        }
+    }
+
     public final synchronized void put(final long index, final byte[] b, final int start) throws IOException {
         assert b.length - start >= this.recordsize;
         long filesize = filesize();
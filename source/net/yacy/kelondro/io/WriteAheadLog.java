@@ -0,0 +1,377 @@
+// WriteAheadLog.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * a write-ahead log for the rows of a table file. Every write to the table is appended to a buffer of the log
+ * and the buffer is written and forced to the disk later, so many writes share one force of the disk (group commit).
+ * The table file itself is only forced to the disk with a checkpoint; after a checkpoint the log is truncated.
+ * If the table was not closed properly, the writes which are in the log are replayed when the table is opened.
+ * Each record of the log is a type byte, the payload (a row or a primary key) and a CRC32 of both;
+ * a replay stops at the first record which is incomplete or damaged.
+ */
+public final class WriteAheadLog {
+
+    public enum Durability {
+        /** no log is written */
+        NONE,
+        /** the log is forced to the disk every commitDelay milliseconds; writes of the last milliseconds can be lost */
+        ASYNC,
+        /** a write returns after its record is forced to the disk; concurrent writes are forced together */
+        SYNC;
+    }
+
+    public interface Replay {
+        public void put(byte[] row) throws IOException;
+        public void remove(byte[] key) throws IOException;
+        public void clear() throws IOException;
+    }
+
+    public static final String suffix = ".wal";
+
+    /** delay between two forces of logs with ASYNC durability */
+    public static long commitDelay = 10;
+
+    /** size of the buffer of a log with ASYNC durability which causes a write before the delay is over */
+    private static final int maxPending = 1024 * 1024;
+
+    private static final byte PUT = 1, REMOVE = 2, CLEAR = 3;
+    private static final byte[] magic = {'Y', 'W', 'A', 'L'};
+    private static final int headerSize = magic.length + 8;
+
+    private static final Set<WriteAheadLog> asyncLogs = ConcurrentHashMap.newKeySet();
+    private static Thread committer = null;
+
+    private final File file;
+    private final int rowsize, keysize;
+    private final Durability durability;
+    private final Object commitLock; // held by the thread which writes the buffer (the leader of a group commit)
+    private final CRC32 crc;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private byte[] buffer, spare;
+    private int count;                 // bytes in buffer
+    private long appended;             // number of the last record in the buffer
+    private volatile long written;     // number of the last record which was written to the file
+    private volatile long forced;      // number of the last record which was forced to the disk
+    private long size;                 // size of the file
+
+    /**
+     * create a new, empty log; an existing log file must be replayed before, it is overwritten
+     * @param file the log file
+     * @param rowsize the size of the rows of the table
+     * @param keysize the size of the primary keys of the table
+     * @param durability ASYNC or SYNC
+     * @throws IOException
+     */
+    public WriteAheadLog(final File file, final int rowsize, final int keysize, final Durability durability) throws IOException {
+        assert durability != Durability.NONE;
+        this.file = file;
+        this.rowsize = rowsize;
+        this.keysize = keysize;
+        this.durability = durability;
+        this.commitLock = new Object();
+        this.crc = new CRC32();
+        this.buffer = new byte[Math.max(4096, 4 * (rowsize + 5))];
+        this.spare = new byte[this.buffer.length];
+        this.count = 0;
+        this.appended = 0;
+        this.written = 0;
+        this.forced = 0;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = this.raf.getChannel();
+        final ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.put(magic).putInt(rowsize).putInt(keysize).flip();
+        this.channel.truncate(0);
+        while (header.hasRemaining()) this.channel.write(header, headerSize - header.remaining());
+        this.channel.position(headerSize);
+        this.channel.force(false);
+        this.size = headerSize;
+        if (durability == Durability.ASYNC) startCommitter(this);
+    }
+
+    public File file() {
+        return this.file;
+    }
+
+    public Durability durability() {
+        return this.durability;
+    }
+
+    /**
+     * @return the number of bytes in the file and in the buffer
+     */
+    public synchronized long size() {
+        return this.size + this.count;
+    }
+
+    public void put(final byte[] row) {
+        assert row.length >= this.rowsize;
+        append(PUT, row, this.rowsize);
+    }
+
+    public void remove(final byte[] key) {
+        assert key.length >= this.keysize;
+        append(REMOVE, key, this.keysize);
+    }
+
+    public void clear() {
+        append(CLEAR, null, 0);
+    }
+
+    private synchronized void append(final byte type, final byte[] b, final int length) {
+        if (this.count + length + 5 > this.buffer.length) {
+            final byte[] n = new byte[Math.max(this.buffer.length * 2, this.count + length + 5)];
+            System.arraycopy(this.buffer, 0, n, 0, this.count);
+            this.buffer = n;
+        }
+        this.crc.reset();
+        this.buffer[this.count] = type;
+        if (length > 0) System.arraycopy(b, 0, this.buffer, this.count + 1, length);
+        this.crc.update(this.buffer, this.count, length + 1);
+        this.count += length + 1;
+        final int c = (int) this.crc.getValue();
+        this.buffer[this.count++] = (byte) (c >>> 24);
+        this.buffer[this.count++] = (byte) (c >>> 16);
+        this.buffer[this.count++] = (byte) (c >>> 8);
+        this.buffer[this.count++] = (byte) c;
+        this.appended++;
+    }
+
+    private synchronized long appended() {
+        return this.appended;
+    }
+
+    private synchronized int buffered() {
+        return this.count;
+    }
+
+    private synchronized boolean pending() {
+        return this.forced < this.appended;
+    }
+
+    /**
+     * make the records which are appended until now durable as defined by the durability of the log:
+     * with SYNC, the records are forced to the disk; with ASYNC, this is done by a background thread.
+     * This must not be called while the table is locked, otherwise writes of other threads can not be
+     * forced together with the own writes.
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        if (this.durability == Durability.SYNC) {
+            write(appended(), true);
+        } else if (buffered() > maxPending) {
+            write(appended(), false);
+        }
+    }
+
+    /**
+     * write all records to the file before the table is changed in a way that can not be repeated
+     * without the log, i.e. if a row is moved. With SYNC, the records are also forced to the disk.
+     * @throws IOException
+     */
+    public void protect() throws IOException {
+        write(appended(), this.durability == Durability.SYNC);
+    }
+
+    /**
+     * write and force all records
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        write(appended(), true);
+    }
+
+    /**
+     * write the buffer to the file. Only one thread writes at a time; threads which wait for the writer
+     * find their records written or write the records of all waiting threads together.
+     * @param record the number of the last record that must be written
+     * @param force if true, the record must also be forced to the disk
+     * @throws IOException
+     */
+    private void write(final long record, final boolean force) throws IOException {
+        if (record <= (force ? this.forced : this.written)) return;
+        synchronized (this.commitLock) {
+            if (this.channel == null) return;
+            if (this.written < record) {
+                final ByteBuffer bb;
+                final long last;
+                synchronized (this) {
+                    bb = ByteBuffer.wrap(this.buffer, 0, this.count);
+                    final byte[] b = this.buffer;
+                    this.buffer = this.spare;
+                    this.spare = b;
+                    this.count = 0;
+                    last = this.appended;
+                }
+                final int length = bb.remaining();
+                while (bb.hasRemaining()) this.channel.write(bb);
+                synchronized (this) {this.size += length;}
+                this.written = last;
+            }
+            if (force && this.forced < record) {
+                final long last = this.written;
+                this.channel.force(false);
+                this.forced = last;
+            }
+        }
+    }
+
+    /**
+     * truncate the log. This must be called after all rows of the table are forced to the disk and while
+     * the table is locked, so no records are appended meanwhile.
+     * @throws IOException
+     */
+    public void truncate() throws IOException {
+        synchronized (this.commitLock) {
+            if (this.channel == null) return;
+            synchronized (this) {
+                this.count = 0;
+                this.written = this.appended;
+                this.forced = this.appended;
+                this.size = headerSize;
+            }
+            this.channel.truncate(headerSize);
+            this.channel.position(headerSize);
+            this.channel.force(false);
+        }
+    }
+
+    /**
+     * close the log
+     * @param delete if true the log file is deleted, this shall be done after a checkpoint
+     */
+    public void close(final boolean delete) {
+        asyncLogs.remove(this);
+        synchronized (this.commitLock) {
+            if (this.channel == null) return;
+            try {
+                if (!delete) write(appended(), true);
+                this.raf.close();
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            }
+            this.channel = null;
+            this.raf = null;
+        }
+        if (delete) FileUtils.deletedelete(this.file);
+    }
+
+    /**
+     * read a log file and replay the records which are complete
+     * @param file the log file
+     * @param rowsize the size of the rows of the table
+     * @param keysize the size of the primary keys of the table
+     * @param replay the target of the records
+     * @return the number of records
+     * @throws IOException
+     */
+    public static int replay(final File file, final int rowsize, final int keysize, final Replay replay) throws IOException {
+        if (!file.exists() || file.length() <= headerSize) return 0;
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        int records = 0;
+        try {
+            final byte[] m = new byte[magic.length];
+            is.readFully(m);
+            for (int i = 0; i < magic.length; i++) if (m[i] != magic[i]) throw new IOException("not a write-ahead log: " + file);
+            if (is.readInt() != rowsize || is.readInt() != keysize) {
+                ConcurrentLog.warn("KELONDRO", "write-ahead log " + file + " does not fit to the table, ignored");
+                return 0;
+            }
+            final CRC32 crc = new CRC32();
+            final byte[] row = new byte[rowsize];
+            final byte[] key = new byte[keysize];
+            while (true) {
+                final int type = is.read();
+                if (type < 0) break;
+                final byte[] b;
+                if (type == PUT) b = row;
+                else if (type == REMOVE) b = key;
+                else if (type == CLEAR) b = null;
+                else break; // damaged
+                if (b != null) is.readFully(b);
+                crc.reset();
+                crc.update(type);
+                if (b != null) crc.update(b);
+                if (is.readInt() != (int) crc.getValue()) break; // damaged or incomplete
+                if (type == PUT) replay.put(row.clone());
+                else if (type == REMOVE) replay.remove(key.clone());
+                else replay.clear();
+                records++;
+            }
+        } catch (final EOFException e) {
+            // the last record is incomplete
+        } finally {
+            is.close();
+        }
+        if (records > 0) ConcurrentLog.info("KELONDRO", "replayed " + records + " records of write-ahead log " + file);
+        return records;
+    }
+
+    private static synchronized void startCommitter(final WriteAheadLog wal) {
+        asyncLogs.add(wal);
+        if (committer != null && committer.isAlive()) return;
+        committer = new Thread("WriteAheadLog.committer") {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(Math.max(1, commitDelay));
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (final WriteAheadLog log: asyncLogs) {
+                        try {
+                            if (log.pending()) log.write(log.appended(), true);
+                        } catch (final IOException e) {
+                            ConcurrentLog.logException(e);
+                        }
+                    }
+                }
+            }
+        };
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public String toString() {
+        return this.file.getName() + " (" + this.durability.name() + ", " + size() + " bytes)";
+    }
+}
@@ -28,10 +28,17 @@ package net.yacy.kelondro.rwi;
 
 import java.util.Iterator;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.index.RowArena;
 
 
 public abstract class AbstractReference implements Reference {
 
+    @Override
+    public Entry toKelondroEntry(final RowArena arena) {
+        return toKelondroEntry();
+    }
+
     /**
      * The average distance (in words) between search query terms for multi word searches.
      * @return word distance
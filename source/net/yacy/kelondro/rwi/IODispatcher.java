@@ -27,11 +27,17 @@ package net.yacy.kelondro.rwi;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 /**
@@ -41,6 +47,9 @@ import net.yacy.kelondro.util.MemoryControl;
  * of them. This is the best way to do the merging, because it does heavy IO access and
  * such access should not be performed concurrently, but queued. This class is the
  * manaagement class for queueing of merge jobs.
+ * On machines with many cores and fast storage the jobs can be executed by a pool of
+ * worker threads; the files of concurrent jobs are different because every job works on
+ * files which are unmounted from their array before the job is queued.
  *
  * to use this class, first instantiate a object and then start the concurrent execution
  * of merging with a call to the start() - method. To shut down all mergings, call terminate()
@@ -56,8 +65,22 @@ public class IODispatcher extends Thread {
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
     private   boolean                      terminate;
     private final int                      writeBufferSize;
+    private final ExecutorService          workers; // executes the jobs if there is more than one worker, otherwise null
+    private final Semaphore                workerSlots; // controls that not more jobs are running than workers exist
+    private final AtomicInteger            running; // number of running jobs
+    private final AtomicLong               mergeCount, mergeBytes, mergeTime; // statistics of finished merge jobs
 
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
+        this(dumpQueueLength, mergeQueueLength, writeBufferSize, 1);
+    }
+
+    /**
+     * @param dumpQueueLength
+     * @param mergeQueueLength
+     * @param writeBufferSize
+     * @param threads number of dump and merge jobs which may run concurrently
+     */
+    public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize, final int threads) {
     	super("IODispatcher");
         this.termination = new Semaphore(0);
         this.controlQueue = new Semaphore(0);
@@ -65,6 +88,34 @@ public class IODispatcher extends Thread {
         this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
         this.writeBufferSize = writeBufferSize;
         this.terminate = false;
+        this.workers = threads > 1 ? Executors.newFixedThreadPool(threads, new NamePrefixThreadFactory("IODispatcher.worker")) : null;
+        this.workerSlots = new Semaphore(Math.max(1, threads));
+        this.running = new AtomicInteger(0);
+        this.mergeCount = new AtomicLong(0);
+        this.mergeBytes = new AtomicLong(0);
+        this.mergeTime = new AtomicLong(0);
+    }
+
+    /**
+     * @return the number of finished merge and rewrite jobs
+     */
+    public long getMergeCount() {
+        return this.mergeCount.get();
+    }
+
+    /**
+     * @return the number of bytes of all input files of finished merge and rewrite jobs
+     */
+    public long getMergeBytes() {
+        return this.mergeBytes.get();
+    }
+
+    /**
+     * @return the average speed of a single merge job in MB/s, computed from the size of the input files
+     */
+    public double getMergeThroughput() {
+        final long t = this.mergeTime.get();
+        return t == 0 ? 0.0d : (this.mergeBytes.get() / 1024.0d / 1024.0d) / (t / 1000.0d);
     }
 
     public void terminate() {
@@ -84,7 +135,7 @@ public class IODispatcher extends Thread {
 	protected synchronized void dump(final ReferenceContainerCache<? extends Reference> cache, final File file, final ReferenceContainerArray<? extends Reference> array) {
         if (this.dumpQueue == null || this.controlQueue == null || !isAlive()) {
             log.warn("emergency dump of file " + file.getName());
-             if (!cache.isEmpty()) cache.dump(file, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
+             if (!cache.isEmpty()) cache.dump(file, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true, array.compression());
         } else {
             @SuppressWarnings("rawtypes")
             final
@@ -96,7 +147,7 @@ public class IODispatcher extends Thread {
                     log.info("appended dump job for file " + file.getName());
                 } catch (final IllegalStateException e) {
                     log.warn("could not append dump job, emergency dump of file " + file.getName());
-                    cache.dump(file, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
+                    cache.dump(file, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true, array.compression());
                 } finally {
                     this.controlQueue.release();
                 }
@@ -108,62 +159,93 @@ public class IODispatcher extends Thread {
     }
 
     protected synchronized int queueLength() {
-        return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits();
+        return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits() + this.running.get();
     }
 
     protected synchronized void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
+        merge(f2 == null ? new File[]{f1} : new File[]{f1, f2}, factory, array, newFile);
+    }
+
+    /**
+     * queue a merge of several files into one new file. A single file is rewritten.
+     * @param files the files to be merged; they must be unmounted from the array
+     * @param factory
+     * @param array the array where the new file is mounted
+     * @param newFile
+     */
+    protected synchronized void merge(final File[] files, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
         if (this.mergeQueue == null || this.controlQueue == null || !isAlive()) {
-            if (f2 == null) {
-                log.warn("emergency rewrite of file " + f1.getName() + " to " + newFile.getName());
-            } else {
-                log.warn("emergency merge of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
-            }
-            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
+            log.warn("emergency " + description(files, newFile));
+            array.mergeMount(files, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
         } else {
-            final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
+            final MergeJob job = new MergeJob(files, factory, array, newFile);
             if (isAlive()) {
                 try {
                     this.mergeQueue.add(job);
-                    if (f2 == null) {
-                        log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
-                    } else {
-                        log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
-                    }
+                    log.info("appended " + description(files, newFile) + " job");
                 } catch (final IllegalStateException e) { // because mergeQueue size is 1, IllegalStateException could happen frequently (serial execution ensured in run() )
                 	log.warn("Could not add merge job to queue: " + e.getMessage());
                 } finally {
                     this.controlQueue.release();
                 }
             } else {
-                job.merge();
-                if (f2 == null) {
-                    log.warn("dispatcher not running, merged files " + f1.getName() + " to " + newFile.getName());
-                } else {
-                    log.warn("dispatcher not running, rewrote file " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
-                }
+                job.run();
+                log.warn("dispatcher not running, did " + description(files, newFile));
             }
         }
     }
 
+    private static String description(final File[] files, final File newFile) {
+        final StringBuilder sb = new StringBuilder(80);
+        sb.append(files.length == 1 ? "rewrite of file " : "merge of files ");
+        for (int i = 0; i < files.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(files[i].getName());
+        }
+        return sb.append(" to ").append(newFile.getName()).toString();
+    }
+
+    /**
+     * run a job in the worker pool; if there is no pool, the job is executed by the dispatcher thread
+     */
+    private void execute(final Runnable job) throws InterruptedException {
+        if (this.workers == null) {
+            job.run();
+            return;
+        }
+        this.workerSlots.acquire();
+        this.running.incrementAndGet();
+        try {
+            this.workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        job.run();
+                    } finally {
+                        IODispatcher.this.running.decrementAndGet();
+                        IODispatcher.this.workerSlots.release();
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            this.running.decrementAndGet();
+            this.workerSlots.release();
+            throw e;
+        }
+    }
+
     @Override
     public void run() {
-        MergeJob mergeJob;
-        DumpJob<? extends Reference> dumpJob;
         try {
             loop: while (true) try {
                 this.controlQueue.acquire();
 
                 // prefer dump actions to flush memory to disc
                 if (!this.dumpQueue.isEmpty()) {
-                	File f = null;
                     try {
-                        dumpJob = this.dumpQueue.take();
-                        f = dumpJob.file;
-                        dumpJob.dump();
+                        execute(this.dumpQueue.take());
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (1)", e);
-                    } catch (final Throwable e) {
-                        log.severe("main run job had errors (1), dump to " + f + " failed.", e);
                     } finally {
                         // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error) - as the terminate() call releases only one controlQueue permit
                         if (this.terminate) this.controlQueue.release();
@@ -173,21 +255,10 @@ public class IODispatcher extends Thread {
 
                 // otherwise do a merge operation
                 if (!this.mergeQueue.isEmpty() && !MemoryControl.shortStatus()) {
-                	File f = null, f1 = null, f2 = null;
                     try {
-                        mergeJob = this.mergeQueue.take();
-                        f = mergeJob.newFile;
-                        f1 = mergeJob.f1;
-                        f2 = mergeJob.f2;
-                        mergeJob.merge();
+                        execute(this.mergeQueue.take());
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (2)", e);
-                    } catch (final Throwable e) {
-                        if (f2 == null) {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input file is " + f1, e);
-                        } else {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input files are " + f1 + " and " + f2, e);
-                        }
                     } finally {
                         // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error)
                         if (this.terminate) this.controlQueue.release();
@@ -209,6 +280,15 @@ public class IODispatcher extends Thread {
             log.severe("main run job failed (4)", e);
         } finally {
             log.info("terminating run job");
+            if (this.workers != null) {
+                // wait for running jobs
+                this.workers.shutdown();
+                try {
+                    this.workers.awaitTermination(1, TimeUnit.HOURS);
+                } catch (final InterruptedException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
             this.controlQueue = null;
             this.dumpQueue = null;
             this.mergeQueue = null;
@@ -216,7 +296,7 @@ public class IODispatcher extends Thread {
         }
     }
 
-    private class DumpJob<ReferenceType extends Reference> {
+    private class DumpJob<ReferenceType extends Reference> implements Runnable {
         private final ReferenceContainerCache<ReferenceType> cache;
         private final File file;
         private final ReferenceContainerArray<ReferenceType> array;
@@ -227,43 +307,67 @@ public class IODispatcher extends Thread {
         }
         private void dump() {
             try {
-                if (!this.cache.isEmpty()) this.cache.dump(this.file, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), true);
+                if (!this.cache.isEmpty()) this.cache.dump(this.file, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), true, this.array.compression());
                 this.array.mountBLOBFile(this.file);
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
             }
         }
+        @Override
+        public void run() {
+            try {
+                dump();
+            } catch (final Throwable e) {
+                log.severe("main run job had errors (1), dump to " + this.file + " failed.", e);
+            }
+        }
     }
 
-    private class MergeJob {
+    private class MergeJob implements Runnable {
 
-        private final File f1, f2, newFile;
+        private final File[] files;
+        private final File newFile;
         private final ArrayStack array;
         private final ReferenceFactory<? extends Reference> factory;
 
         private MergeJob(
-                final File f1,
-                final File f2,
+                final File[] files,
                 final ReferenceFactory<? extends Reference> factory,
                 final ArrayStack array,
                 final File newFile) {
-            this.f1 = f1;
-            this.f2 = f2;
+            this.files = files;
             this.factory = factory;
             this.newFile = newFile;
             this.array = array;
         }
 
         private File merge() {
-        	if (!this.f1.exists()) {
-        	    log.warn("merge of file (1) " + this.f1.getName() + " failed: file does not exists");
-        		return null;
-        	}
-        	if (this.f2 != null && !this.f2.exists()) {
-        	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
-        		return null;
-        	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            long bytes = 0;
+            for (final File f: this.files) {
+                if (!f.exists()) {
+                    log.warn("merge of file " + f.getName() + " failed: file does not exists");
+                    return null;
+                }
+                bytes += f.length();
+            }
+            final long start = System.currentTimeMillis();
+            final File result = this.array.mergeMount(this.files, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            final long time = Math.max(1, System.currentTimeMillis() - start);
+            IODispatcher.this.mergeCount.incrementAndGet();
+            IODispatcher.this.mergeBytes.addAndGet(bytes);
+            IODispatcher.this.mergeTime.addAndGet(time);
+            log.info("finished " + description(this.files, this.newFile) + ": " + (bytes / 1024 / 1024) + " MB in " + time + " ms, " +
+                    String.format("%.1f", (bytes / 1024.0d / 1024.0d) / (time / 1000.0d)) + " MB/s");
+            return result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                merge();
+            } catch (final Throwable e) {
+                log.severe("main run job had errors (2), " + description(this.files, this.newFile) + " failed.", e);
+            }
         }
     }
 
@@ -31,9 +31,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.order.Order;
@@ -44,7 +46,9 @@ import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.index.RowMergeIterator;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.MergeIterator;
 import net.yacy.search.EventTracker;
@@ -67,9 +71,12 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private static final long cleanupCycle =  60000;
     private static final long dumpCycle    = 600000;
 
+    public static int mergeFiles = 2; // maximum number of small BLOB files which are merged in one pass
+    public static int ramShards = 1;  // number of shards of the RAM cache; each shard is locked and dumped separately
+
     // class variables
     private final ReferenceContainerArray<ReferenceType> array;
-    private       ReferenceContainerCache<ReferenceType> ram;
+    private final ShardedReferenceContainerCache<ReferenceType> ram;
     private final ComparableARC<byte[], Integer>         countCache;
     private       int                                    maxRamEntries;
     private       IODispatcher                           merger; // pointer to shared merger
@@ -97,7 +104,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
         this.merger = merger;
         this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize);
-        this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+        this.ram = new ShardedReferenceContainerCache<ReferenceType>(factory, termOrder, termSize, ramShards);
         this.countCache = new ComparableARC<byte[], Integer>(1000, termOrder);
         this.maxRamEntries = maxRamEntries;
         this.lastCleanup = System.currentTimeMillis();
@@ -130,33 +137,26 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
         private void flushBuffer() {
 
-            // dump the cache if necessary
+            // dump the cache if necessary; the shards of the cache are dumped separately
             final long t = System.currentTimeMillis();
-            if ((IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                (IndexCell.this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false)) ||
-                (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t))) {
+            if (dumpShard(0, t) >= 0) {
                 synchronized (IndexCell.this.merger) {
-                    if (IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                        (IndexCell.this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false)) ||
-                        (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t)) try {
-                            IndexCell.this.lastDump = System.currentTimeMillis();
+                    int shard = dumpShard(0, t);
+                    if (shard >= 0) try {
+                        IndexCell.this.lastDump = System.currentTimeMillis();
                         // removed delayed
                         try {removeDelayed();} catch (final IOException e) {}
-                        // dump the ram
-                        final File dumpFile = IndexCell.this.array.newContainerBLOBFile();
-                        // a critical point: when the ram is handed to the dump job,
-                        // don't write into it any more. Use a fresh one instead
-                        ReferenceContainerCache<ReferenceType> ramdump;
-                        final ByteOrder termOrder = IndexCell.this.ram.termKeyOrdering();
-                        final int termSize = IndexCell.this.ram.termKeyLength();
-                        synchronized (this) {
-                            ramdump = IndexCell.this.ram;
-                            // get a fresh ram cache
-                            IndexCell.this.ram = new ReferenceContainerCache<ReferenceType>(IndexCell.this.factory, termOrder, termSize);
+                        while (shard >= 0) {
+                            // dump the ram
+                            final File dumpFile = IndexCell.this.array.newContainerBLOBFile();
+                            // a critical point: when the shard is handed to the dump job,
+                            // don't write into it any more. The ram uses a fresh one instead
+                            final ReferenceContainerCache<ReferenceType> ramdump = IndexCell.this.ram.detach(shard);
+                            // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
+                            // dump the buffer
+                            if (!ramdump.isEmpty()) IndexCell.this.merger.dump(ramdump, dumpFile, IndexCell.this.array);
+                            shard = dumpShard(shard + 1, t);
                         }
-                        // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
-                        // dump the buffer
-                        IndexCell.this.merger.dump(ramdump, dumpFile, IndexCell.this.array);
                         IndexCell.this.lastDump = System.currentTimeMillis();
                     } catch (final Throwable e) {
                         // catch all exceptions
@@ -183,12 +183,40 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     }
 
+    /**
+     * find the next shard of the ram which must be dumped: a shard is dumped if it holds its part of the maximum
+     * number of entries, if it is older than the dump cycle or if the memory is low
+     * @param start the first shard which is checked
+     * @param t the current time
+     * @return the number of the shard or -1 if no shard must be dumped
+     */
+    private int dumpShard(final int start, final long t) {
+        final int shards = this.ram.shards();
+        final int maxShardEntries = Math.max(1, this.maxRamEntries / shards);
+        final boolean lowMemory = this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false);
+        for (int i = start; i < shards; i++) {
+            final int size = this.ram.size(i);
+            if (size == 0) continue;
+            if (size >= maxShardEntries || lowMemory || this.ram.created(i) + dumpCycle < t) return i;
+        }
+        return -1;
+    }
+
     private boolean shrink(final long targetFileSize, final long maxFileSize) {
         if (this.array.entries() < 2) return false;
         boolean donesomething = false;
 
-        // first try to merge small files that match
+        // merge many small files in one pass
         int term = 10;
+        if (mergeFiles > 2) {
+            while (term-- > 0 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
+                if (!this.array.shrinkManySmallFiles(this.merger, targetFileSize, mergeFiles)) break;
+                donesomething = true;
+            }
+        }
+
+        // then try to merge small files that match
+        term = 10;
         while (term-- > 0 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
             if (!this.array.shrinkBestSmallFiles(this.merger, targetFileSize)) break;
             donesomething = true;
@@ -351,6 +379,12 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException {
+        if (urlselection != null && !urlselection.isEmpty()) try {
+            return getSelection(termHash, urlselection);
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.logException(e);
+            return null;
+        }
         final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
         ReferenceContainer<ReferenceType> c1 = null;
         try {
@@ -385,6 +419,74 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         return result;
     }
 
+    /**
+     * get the references of a term which point to the given urls. The references in the BLOB files
+     * are read as a stream and only the selected references are held in memory, so this can also
+     * be used for terms with a very large number of references. For large containers only the blocks
+     * which may contain the selected urls are read, see ReferenceContainerBlockIndex.
+     * @param termHash
+     * @param urlselection the url hashes of the references which shall be returned
+     * @return a container with the selected references or null if the term does not exist
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    private ReferenceContainer<ReferenceType> getSelection(final byte[] termHash, final HandleSet urlselection) throws IOException, SpaceExceededException {
+        final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, urlselection);
+        final RowMergeIterator c1;
+        try {
+            c1 = this.array.rows(termHash, urlselection);
+        } catch (final IOException e) {
+            // a BLOB file was changed while the block index was read
+            ConcurrentLog.info("IndexCell", "selection of " + ASCII.String(termHash) + " failed, loading containers: " + e.getMessage());
+            return filter(get(termHash, null), urlselection);
+        }
+        if (c1 == null) return removeDelayedURLs(termHash, c0); // the selection of the RAM container is a copy
+        final List<Iterator<Row.Entry>> inputs = new ArrayList<Iterator<Row.Entry>>(2);
+        inputs.add(c1); // references in the BLOB files win, as in get()
+        if (c0 != null) inputs.add(c0.rows());
+        final RowMergeIterator rows = new RowMergeIterator(this.array.rowdef(), inputs);
+        final ReferenceContainer<ReferenceType> result = new ReferenceContainer<ReferenceType>(this.factory, termHash, Math.min(urlselection.size(), c1.size() + (c0 == null ? 0 : c0.size())));
+        try {
+            Row.Entry row;
+            while (rows.hasNext()) {
+                row = rows.next();
+                if (urlselection.has(row.getPrimaryKeyBytes())) result.addUnique(row);
+            }
+        } finally {
+            c1.close();
+        }
+        if (c1.error() != null) {
+            // a BLOB file was changed while it was read
+            ConcurrentLog.info("IndexCell", "stream of " + ASCII.String(termHash) + " failed, loading containers: " + c1.error().getMessage());
+            return filter(get(termHash, null), urlselection);
+        }
+        return removeDelayedURLs(termHash, result);
+    }
+
+    /**
+     * remove the failed urls which are marked for a delayed removal, like in get()
+     * @param termHash
+     * @param c a container which is not shared with the RAM cache, may be null
+     * @return the container c
+     */
+    private ReferenceContainer<ReferenceType> removeDelayedURLs(final byte[] termHash, final ReferenceContainer<ReferenceType> c) {
+        if (c == null) return null;
+        synchronized (this.removeDelayedURLs) {
+            final HandleSet s = this.removeDelayedURLs.get(termHash);
+            if (s != null) c.removeEntries(s);
+        }
+        return c;
+    }
+
+    private ReferenceContainer<ReferenceType> filter(final ReferenceContainer<ReferenceType> c, final HandleSet urlselection) throws SpaceExceededException {
+        if (c == null) return null;
+        final ReferenceContainer<ReferenceType> result = new ReferenceContainer<ReferenceType>(this.factory, c.getTermHash(), Math.min(urlselection.size(), c.size()));
+        for (final Row.Entry row: c) {
+            if (urlselection.has(row.getPrimaryKeyBytes())) result.addUnique(row);
+        }
+        return result;
+    }
+
     /**
      * deleting a container affects the containers in RAM and all the BLOB files
      * the deleted containers are merged and returned as result of the method
@@ -598,7 +700,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     public synchronized void close() {
         this.countCache.clear();
         try {removeDelayed();} catch (final IOException e) {}
-        if (!this.ram.isEmpty()) this.ram.dump(this.array.newContainerBLOBFile(), (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
+        if (!this.ram.isEmpty()) this.ram.dump(this.array.newContainerBLOBFile(), (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true, this.array.compression());
         // close all
         this.flushShallRun = false;
         if (this.flushThread != null) try { this.flushThread.join(); } catch (final InterruptedException e) {}
@@ -640,6 +742,14 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         return this.array.entries();
     }
 
+    public double probesPerLookup() {
+        return this.array.probesPerLookup();
+    }
+
+    public double falsePositiveRate() {
+        return this.array.falsePositiveRate();
+    }
+
     @Override
     public int minMem() {
         return 10 * 1024 * 1024;
@@ -680,4 +790,13 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         this.maxRamEntries = maxWords;
     }
 
+    /**
+     * switch the compression of the containers in the BLOB files on or off; the RAM cache is not compressed.
+     * New dumps are written with the selected encoding, existing files are converted when they are merged or rewritten.
+     * @param compress if true, containers are written with RowSetCodec
+     */
+    public void setCompression(final boolean compress) {
+        this.array.setCompression(compress);
+    }
+
 }
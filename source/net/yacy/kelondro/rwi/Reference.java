@@ -29,6 +29,7 @@ package net.yacy.kelondro.rwi;
 import java.util.Collection;
 
 import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.index.RowArena;
 
 public interface Reference {
 
@@ -36,6 +37,13 @@ public interface Reference {
     
     public Entry toKelondroEntry();
 
+    /**
+     * get the row of the reference; if the row must be computed, it may be placed in the arena
+     * @param arena an arena for short-lived rows
+     * @return the row, which is only valid until the arena is released
+     */
+    public Entry toKelondroEntry(RowArena arena);
+
     public byte[] urlhash();
 
     public long lastModified();
@@ -43,6 +43,7 @@ import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowArena;
 import net.yacy.kelondro.index.RowSet;
 
 
@@ -119,6 +120,16 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         this.addUnique(entry.toKelondroEntry());
     }
 
+    /**
+     * add a reference without double-occurrence test; a row which must be computed from the reference
+     * is placed in the arena, so only the copy inside of this container is allocated
+     */
+    public void add(final Reference entry, final RowArena arena) throws SpaceExceededException {
+        final Row.Entry row = entry.toKelondroEntry(arena);
+        assert row.objectsize() == super.rowdef.objectsize;
+        this.addUnique(row);
+    }
+
     public ReferenceContainer<ReferenceType> merge(final ReferenceContainer<ReferenceType> c) throws SpaceExceededException {
         return new ReferenceContainer<ReferenceType>(this.factory, this.termHash, super.merge(c));
     }
@@ -251,6 +262,15 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         return new entryIterator();
     }
 
+    /**
+     * iterate the references without copying the rows: all references are backed by the same Row.View
+     * which is moved to the next row in each step. A reference which is kept after the next step must be
+     * copied, i.e. with ReferenceFactory.produceFast(reference, true). The container must not be changed during the iteration.
+     */
+    public Iterator<ReferenceType> entryViews() {
+        return new entryIterator(views());
+    }
+
     public class entryIterator implements Iterator<ReferenceType> {
 
         Iterator<Row.Entry> rowEntryIterator;
@@ -259,6 +279,10 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
             this.rowEntryIterator = iterator();
         }
 
+        private entryIterator(final Iterator<Row.Entry> rowEntryIterator) {
+            this.rowEntryIterator = rowEntryIterator;
+        }
+
         @Override
         public boolean hasNext() {
             return this.rowEntryIterator.hasNext();
@@ -426,21 +450,26 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         final int keylength = small.rowdef.width(0);
         assert (keylength == large.rowdef.width(0));
         final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0); // start with empty search result
-        final Iterator<ReferenceType> se = small.entries();
+        final RowArena arena = new RowArena(small.rowdef); // for the rows of the joined references, dropped after the join
+        final Iterator<ReferenceType> se = small.entryViews();
         ReferenceType ie1;
         ReferenceType ie2;
-        while (se.hasNext()) {
-            ie1 = se.next();
-            ie2 = large.getReference(ie1.urlhash());
-            if ((ie1 != null) && (ie2 != null)) {
-                assert (ie1.urlhash().length == keylength) : "ie0.urlHash() = " + ASCII.String(ie1.urlhash());
-                assert (ie2.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie2.urlhash());
-                // this is a hit. Calculate word distance:
-
-                ie1 = factory.produceFast(ie2, true);
-                ie1.join(ie2);
-                if (ie1.distance() <= maxDistance) conj.add(ie1);
+        try {
+            while (se.hasNext()) {
+                ie1 = se.next();
+                ie2 = large.getReference(ie1.urlhash());
+                if ((ie1 != null) && (ie2 != null)) {
+                    assert (ie1.urlhash().length == keylength) : "ie0.urlHash() = " + ASCII.String(ie1.urlhash());
+                    assert (ie2.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie2.urlhash());
+                    // this is a hit. Calculate word distance:
+
+                    ie1 = factory.produceFast(ie2, true);
+                    ie1.join(ie2);
+                    if (ie1.distance() <= maxDistance) conj.add(ie1, arena);
+                }
             }
+        } finally {
+            arena.release();
         }
         return conj;
     }
@@ -457,33 +486,39 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0); // start with empty search result
         if (!((i1.rowdef.getOrdering().signature().equals(i2.rowdef.getOrdering().signature())))) return conj; // ordering must be equal
         final ByteOrder ordering = i1.rowdef.getOrdering();
-        final Iterator<ReferenceType> e1 = i1.entries();
-        final Iterator<ReferenceType> e2 = i2.entries();
+        final Iterator<ReferenceType> e1 = i1.entryViews();
+        final Iterator<ReferenceType> e2 = i2.entryViews();
+        final RowArena arena = new RowArena(i1.rowdef); // for the rows of the joined references, dropped after the join
         int c;
-        if ((e1.hasNext()) && (e2.hasNext())) {
-            ReferenceType ie1;
-            ReferenceType ie2;
-            ie1 = e1.next();
-            ie2 = e2.next();
-
-            while (true) {
-                assert (ie1.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie1.urlhash());
-                assert (ie2.urlhash().length == keylength) : "ie2.urlHash() = " + ASCII.String(ie2.urlhash());
-                c = ordering.compare(ie1.urlhash(), ie2.urlhash());
-                //System.out.println("** '" + ie1.getUrlHash() + "'.compareTo('" + ie2.getUrlHash() + "')="+c);
-                if (c < 0) {
-                    if (e1.hasNext()) ie1 = e1.next(); else break;
-                } else if (c > 0) {
-                    if (e2.hasNext()) ie2 = e2.next(); else break;
-                } else {
-                    // we have found the same urls in different searches!
-                    ie1 = factory.produceFast(ie1, true);
-                    ie1.join(ie2);
-                    if (ie1.distance() <= maxDistance) conj.add(ie1);
-                    if (e1.hasNext()) ie1 = e1.next(); else break;
-                    if (e2.hasNext()) ie2 = e2.next(); else break;
+        try {
+            if ((e1.hasNext()) && (e2.hasNext())) {
+                ReferenceType ie1;
+                ReferenceType ie2;
+                ie1 = e1.next();
+                ie2 = e2.next();
+                byte[] u1 = ie1.urlhash(), u2 = ie2.urlhash(); // the url hash is only computed again when the iterator moves
+
+                while (true) {
+                    assert (u1.length == keylength) : "ie1.urlHash() = " + ASCII.String(u1);
+                    assert (u2.length == keylength) : "ie2.urlHash() = " + ASCII.String(u2);
+                    c = ordering.compare(u1, u2);
+                    //System.out.println("** '" + ie1.getUrlHash() + "'.compareTo('" + ie2.getUrlHash() + "')="+c);
+                    if (c < 0) {
+                        if (e1.hasNext()) {ie1 = e1.next(); u1 = ie1.urlhash();} else break;
+                    } else if (c > 0) {
+                        if (e2.hasNext()) {ie2 = e2.next(); u2 = ie2.urlhash();} else break;
+                    } else {
+                        // we have found the same urls in different searches!
+                        ie1 = factory.produceFast(ie1, true);
+                        ie1.join(ie2);
+                        if (ie1.distance() <= maxDistance) conj.add(ie1, arena);
+                        if (e1.hasNext()) {ie1 = e1.next(); u1 = ie1.urlhash();} else break;
+                        if (e2.hasNext()) {ie2 = e2.next(); u2 = ie2.urlhash();} else break;
+                    }
                 }
             }
+        } finally {
+            arena.release();
         }
         return conj;
     }
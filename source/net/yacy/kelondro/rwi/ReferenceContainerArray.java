@@ -26,19 +26,30 @@ package net.yacy.kelondro.rwi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.sorting.Rating;
+import net.yacy.cora.storage.ARC;
+import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BLOB;
+import net.yacy.kelondro.blob.HeapReader;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowMergeIterator;
+import net.yacy.kelondro.index.RowCollection;
 import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.index.RowSetCodec;
+import net.yacy.kelondro.index.RowSetStream;
 
 
 public final class ReferenceContainerArray<ReferenceType extends Reference> {
@@ -47,6 +58,8 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     private final ReferenceFactory<ReferenceType> factory;
     private final ArrayStack array;
+    private final ARC<String, ReferenceContainerBlockIndex> blockIndexCache; // block indexes of large containers, the key is the file name and the term hash
+    private long lastBLOBTime; // the time in the name of the latest new BLOB file
 
     /**
      * open a index container array based on BLOB dumps. The content of the BLOBs will not be read
@@ -65,6 +78,8 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     		final ByteOrder termOrder,
     		final int termSize) throws IOException {
         this.factory = factory;
+        this.blockIndexCache = new ConcurrentARC<String, ReferenceContainerBlockIndex>(100, Runtime.getRuntime().availableProcessors());
+        this.lastBLOBTime = 0;
         this.array = new ArrayStack(
             heapLocation,
             prefix,
@@ -91,14 +106,45 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return this.array.ordering();
     }
 
-    public File newContainerBLOBFile() {
-    	return this.array.newBLOB(new Date());
+    public synchronized File newContainerBLOBFile() {
+        // the names must be unique, the shards of a RAM cache are dumped within the same millisecond
+        this.lastBLOBTime = Math.max(System.currentTimeMillis(), this.lastBLOBTime + 1);
+    	return this.array.newBLOB(new Date(this.lastBLOBTime));
+    }
+
+    /**
+     * switch the compression of containers with RowSetCodec on or off. Containers are compressed when files
+     * are merged or rewritten; this converts existing files step by step. Compressed and uncompressed
+     * containers can be read in the same way, therefore the compression can be switched off at any time.
+     * @param compress
+     */
+    public void setCompression(final boolean compress) {
+        this.array.setCompression(compress);
+    }
+
+    public boolean compression() {
+        return this.array.compression();
     }
 
     public void mountBLOBFile(final File location) throws IOException {
         this.array.mountBLOB(location, false);
     }
 
+    /**
+     * @return the average number of BLOB files which are asked for a term; BLOB files which do not contain the term
+     * according to their bloom filter are not asked
+     */
+    public double probesPerLookup() {
+        return this.array.probesPerLookup();
+    }
+
+    /**
+     * @return the rate of BLOB files without a term which were asked because their bloom filter could not exclude the term
+     */
+    public double falsePositiveRate() {
+        return this.array.falsePositiveRate();
+    }
+
     public Row rowdef() {
         return this.factory.getRow();
     }
@@ -303,18 +349,123 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
      * @throws SpaceExceededException
      */
     public ReferenceContainer<ReferenceType> get(final byte[] termHash) throws IOException, SpaceExceededException {
+        // merge the containers of all BLOB files as stream into one container;
+        // this avoids to load a copy of each container into memory and to merge the copies pairwise
+        RowMergeIterator rows = null;
+        try {
+            rows = rows(termHash);
+            if (rows == null) return null;
+            final RowSet c = rows.toRowSet(rows.size());
+            if (rows.error() == null) return new ReferenceContainer<ReferenceType>(this.factory, termHash, c);
+            ConcurrentLog.info("ReferenceContainerArray", "stream of " + ASCII.String(termHash) + " failed, loading containers: " + rows.error().getMessage());
+        } catch (final IOException e) {
+            ConcurrentLog.info("ReferenceContainerArray", "stream of " + ASCII.String(termHash) + " failed, loading containers: " + e.getMessage());
+        } finally {
+            if (rows != null) rows.close();
+        }
+        return getContainers(termHash);
+    }
+
+    /**
+     * iterate the references of a term in all BLOB files without loading the containers of the files into memory.
+     * The rows are returned in the order of the url hashes; if a reference exists in several files, the
+     * reference of the oldest file is returned, which is the same rule as used by get().
+     * If a BLOB file is modified during the iteration, the iteration ends and the error is reported by the iterator.
+     * @param termHash
+     * @return an iterator over the rows which must be closed after use, or null if the term does not exist
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public RowMergeIterator rows(final byte[] termHash) throws IOException, SpaceExceededException {
+        final List<HeapReader.BlobInputStream> streams = this.array.getAllStreams(termHash);
+        if (streams.isEmpty()) return null;
+        final List<RowSetStream> inputs = new ArrayList<RowSetStream>(streams.size());
+        try {
+            for (final HeapReader.BlobInputStream s: streams) inputs.add(new RowSetStream(s, this.factory.getRow(), s.length()));
+        } catch (final IOException e) {
+            for (final RowSetStream i: inputs) i.close();
+            throw e;
+        } catch (final SpaceExceededException e) {
+            for (final RowSetStream i: inputs) i.close();
+            throw e;
+        }
+        return new RowMergeIterator(this.factory.getRow(), inputs);
+    }
+
+    /**
+     * iterate the references of a term to the given urls in all BLOB files. Large containers are not read completely:
+     * with a block index only the blocks of the container which may contain the urls are read.
+     * Small containers and containers where the selection would touch most of the blocks are read as a stream.
+     * The rows of the stream are not filtered, the caller must check them against the urlselection.
+     * @param termHash
+     * @param urlselection the url hashes of the references which are needed
+     * @return an iterator over the rows which must be closed after use, or null if the term does not exist
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public RowMergeIterator rows(final byte[] termHash, final HandleSet urlselection) throws IOException, SpaceExceededException {
+        final int rowsPerBlock = ReferenceContainerBlockIndex.blockSize;
+        if (rowsPerBlock <= 0) return rows(termHash);
+        final List<HeapReader.BlobInputStream> streams = this.array.getAllStreams(termHash);
+        if (streams.isEmpty()) return null;
+        final Row rowdef = this.factory.getRow();
+        final List<Iterator<Row.Entry>> inputs = new ArrayList<Iterator<Row.Entry>>(streams.size());
+        final byte[] header = new byte[(int) RowCollection.exportOverheadSize];
+        try {
+            for (final HeapReader.BlobInputStream s: streams) {
+                int size = 0;
+                if (s.length() >= header.length) {
+                    s.readFully(0, header, 0, header.length);
+                    size = RowSetCodec.size(header);
+                }
+                // a selection is only useful if it skips most of the blocks
+                ReferenceContainerBlockIndex index = null;
+                if (size >= 4 * rowsPerBlock && urlselection.size() * 2 < size / rowsPerBlock) {
+                    index = blockIndex(s, termHash, rowsPerBlock);
+                }
+                if (index == null) {
+                    inputs.add(new RowSetStream(s, rowdef, s.length()));
+                } else {
+                    inputs.add(index.select(urlselection).iterator());
+                }
+            }
+        } catch (final IOException e) {
+            for (final Iterator<Row.Entry> i: inputs) if (i instanceof RowSetStream) ((RowSetStream) i).close();
+            throw e;
+        } catch (final SpaceExceededException e) {
+            for (final Iterator<Row.Entry> i: inputs) if (i instanceof RowSetStream) ((RowSetStream) i).close();
+            throw e;
+        }
+        return new RowMergeIterator(rowdef, inputs);
+    }
+
+    /**
+     * get the block index of a container from the cache or create it. Indexes in the cache are bound to the
+     * stream that was used to create them; if the BLOB file was modified, the index is created again.
+     * Compressed containers have their own blocks, their index does not depend on the block size.
+     */
+    private ReferenceContainerBlockIndex blockIndex(final HeapReader.BlobInputStream s, final byte[] termHash, final int rowsPerBlock) throws IOException {
+        final String key = s.location().getName() + ASCII.String(termHash);
+        ReferenceContainerBlockIndex index = this.blockIndexCache.get(key);
+        if (index != null && index.valid() && (index.rowsPerBlock() == rowsPerBlock || index.compressed())) return index;
+        index = ReferenceContainerBlockIndex.open(s, this.factory.getRow(), rowsPerBlock);
+        if (index != null) this.blockIndexCache.insert(key, index);
+        return index;
+    }
+
+    private ReferenceContainer<ReferenceType> getContainers(final byte[] termHash) throws IOException, SpaceExceededException {
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
         final Iterator<byte[]> entries = this.array.getAll(termHash).iterator();
     	if (entries == null || !entries.hasNext()) return null;
     	final byte[] a = entries.next();
     	int k = 1;
-    	ReferenceContainer<ReferenceType> c = new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSet.importRowSet(a, this.factory.getRow()));
+    	ReferenceContainer<ReferenceType> c = new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSetCodec.importRowSet(a, this.factory.getRow()));
     	if (System.currentTimeMillis() > timeout) {
     	    ConcurrentLog.warn("ReferenceContainerArray", "timout in get() (1): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
     	    return c;
     	}
     	while (entries.hasNext()) {
-    		c = c.merge(new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSet.importRowSet(entries.next(), this.factory.getRow())));
+    		c = c.merge(new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSetCodec.importRowSet(entries.next(), this.factory.getRow())));
     		k++;
     		if (System.currentTimeMillis() > timeout) {
     		    ConcurrentLog.warn("ReferenceContainerArray", "timout in get() (2): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
@@ -326,18 +477,22 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     public int count(final byte[] termHash) throws IOException {
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
+        final Row rowdef = this.factory.getRow();
         final Iterator<Long> entries = this.array.lengthAll(termHash).iterator();
         if (entries == null || !entries.hasNext()) return 0;
         final Long a = entries.next();
+        if (RowSetCodec.isCompressed(a, rowdef)) return countCompressed(termHash, timeout);
         int k = 1;
-        int c = RowSet.importRowCount(a, this.factory.getRow());
+        int c = RowSet.importRowCount(a, rowdef);
         assert c >= 0;
         if (System.currentTimeMillis() > timeout) {
             ConcurrentLog.warn("ReferenceContainerArray", "timout in count() (1): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
             return c;
         }
         while (entries.hasNext()) {
-            c += RowSet.importRowCount(entries.next(), this.factory.getRow());
+            final Long l = entries.next();
+            if (RowSetCodec.isCompressed(l, rowdef)) return countCompressed(termHash, timeout);
+            c += RowSet.importRowCount(l, rowdef);
             assert c >= 0;
             k++;
             if (System.currentTimeMillis() > timeout) {
@@ -349,6 +504,35 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return c;
     }
 
+    /**
+     * count the references if at least one of the containers is compressed. The size of a compressed
+     * container cannot be computed from its length, therefore its header is read; the size of the other
+     * containers is still computed from their length.
+     */
+    private int countCompressed(final byte[] termHash, final long timeout) throws IOException {
+        final Row rowdef = this.factory.getRow();
+        final byte[] header = new byte[(int) RowCollection.exportOverheadSize];
+        int k = 0;
+        int c = 0;
+        for (final HeapReader.BlobInputStream s: this.array.getAllStreams(termHash)) {
+            if (RowSetCodec.isCompressed(s.length(), rowdef)) {
+                if (s.length() >= header.length) {
+                    s.readFully(0, header, 0, header.length);
+                    c += Math.max(0, RowSetCodec.size(header));
+                }
+            } else {
+                c += RowSet.importRowCount(s.length(), rowdef);
+            }
+            assert c >= 0;
+            k++;
+            if (System.currentTimeMillis() > timeout) {
+                ConcurrentLog.warn("ReferenceContainerArray", "timout in count() (3): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
+                return c;
+            }
+        }
+        return c;
+    }
+
     /**
      * delete a indexContainer from the heap cache. This can only be used for write-enabled heaps
      * @param wordHash
@@ -377,11 +561,17 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         @Override
         public byte[] rewrite(final byte[] b) throws SpaceExceededException {
             if (b == null) return null;
-            final ReferenceContainer<ReferenceType> c = this.rewriter.reduce(new ReferenceContainer<ReferenceType>(ReferenceContainerArray.this.factory, this.wordHash, RowSet.importRowSet(b, ReferenceContainerArray.this.factory.getRow())));
-            if (c == null) return null;
-            final byte bb[] = c.exportCollection();
-            assert bb.length <= b.length;
-            return bb;
+            try {
+                final ReferenceContainer<ReferenceType> c = this.rewriter.reduce(new ReferenceContainer<ReferenceType>(ReferenceContainerArray.this.factory, this.wordHash, RowSetCodec.importRowSet(b, ReferenceContainerArray.this.factory.getRow())));
+                if (c == null) return null;
+                // a compressed container keeps its blocks, otherwise it could become longer than the original
+                final byte bb[] = RowSetCodec.isCompressed(b) ? RowSetCodec.reencode(b, c, 4) : c.exportCollection();
+                assert bb.length <= b.length;
+                return bb;
+            } catch (final IOException e) {
+                ConcurrentLog.severe("ReferenceContainerArray", "cannot reduce corrupted container of " + ASCII.String(this.wordHash) + ": " + e.getMessage());
+                return b;
+            }
         }
     }
 
@@ -407,6 +597,14 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return true;
     }
 
+    public boolean shrinkManySmallFiles(final IODispatcher merger, final long targetFileSize, final int count) {
+        final File[] ff = this.array.unmountSmallest(count, targetFileSize);
+        if (ff == null) return false;
+        ConcurrentLog.info("RICELL-shrink0", "unmountSmallest(" + count + ", " + targetFileSize + ")");
+        merger.merge(ff, this.factory, this.array, newContainerBLOBFile());
+        return true;
+    }
+
     public boolean shrinkAnySmallFiles(final IODispatcher merger, final long targetFileSize) {
         final File[] ff = this.array.unmountSmallest(targetFileSize);
         if (ff == null) return false;
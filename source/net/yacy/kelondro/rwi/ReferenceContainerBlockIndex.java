@@ -0,0 +1,242 @@
+// ReferenceContainerBlockIndex.java
+// ---------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.blob.HeapReader;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowCollection;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.index.RowSetCodec;
+
+/**
+ * a skip index on a reference container in a BLOB file.
+ * Containers are exported in the order of the url hashes and all references have the same size,
+ * therefore the container can be divided into blocks of a fixed number of references whose positions
+ * in the BLOB are known without reading it. The index holds only the first url hash of each block.
+ * To find the references of a set of urls only the blocks which may contain the urls are read;
+ * this is much faster than loading the whole container if a container with a large number of
+ * references is joined with a small container.
+ * Containers which are compressed with RowSetCodec have their own blocks and a directory with the
+ * first url hash and the position of each block; this directory is used as index.
+ */
+public final class ReferenceContainerBlockIndex {
+
+    public static int blockSize = 256; // number of references in one block; 0 switches the block index off
+
+    // statistics for the performance pages
+    public static final AtomicLong selectCount = new AtomicLong(0); // number of selections with a block index
+    public static final AtomicLong blockCount = new AtomicLong(0);  // number of blocks which have been read for selections
+    public static final AtomicLong skipCount = new AtomicLong(0);   // number of references which have not been read because of the block index
+
+    private final HeapReader.BlobInputStream blob;
+    private final Row rowdef;
+    private final int size;         // the number of references in the container
+    private final int rowsPerBlock; // the number of references in one block; the maximum number for compressed containers
+    private final byte[] heads;     // the first url hash of each block
+    private final int[] offsets;    // the position of each block in a compressed container and the position of the directory; null for uncompressed containers
+
+    private ReferenceContainerBlockIndex(final HeapReader.BlobInputStream blob, final Row rowdef, final int size, final int rowsPerBlock, final byte[] heads, final int[] offsets) {
+        this.blob = blob;
+        this.rowdef = rowdef;
+        this.size = size;
+        this.rowsPerBlock = rowsPerBlock;
+        this.heads = heads;
+        this.offsets = offsets;
+    }
+
+    /**
+     * create a block index for a container by reading the first url hash of each block
+     * @param blob a stream on the exported container
+     * @param rowdef the row definition of the references
+     * @param rowsPerBlock the number of references in one block
+     * @return the block index or null if the container is not sorted completely
+     * @throws IOException if the export header is wrong or the BLOB file was changed
+     */
+    public static ReferenceContainerBlockIndex open(final HeapReader.BlobInputStream blob, final Row rowdef, final int rowsPerBlock) throws IOException {
+        assert rowsPerBlock > 0;
+        final int length = blob.length();
+        if (length < RowCollection.exportOverheadSize) return null;
+        final byte[] header = new byte[(int) RowCollection.exportOverheadSize];
+        blob.readFully(0, header, 0, header.length);
+        final int size = (int) NaturalOrder.decodeLong(header, 0, 4);
+        if (RowSetCodec.isCompressed(header)) return openCompressed(blob, rowdef, header);
+        final int orderbound = (int) NaturalOrder.decodeLong(header, 10, 4);
+        if (size < 0 || ((long) size) * rowdef.objectsize != length - RowCollection.exportOverheadSize) {
+            throw new IOException("wrong export header: size = " + size + ", length = " + length + ", objectsize = " + rowdef.objectsize);
+        }
+        if (orderbound < size) return null; // we cannot seek in an unsorted container
+        final int blocks = (size + rowsPerBlock - 1) / rowsPerBlock;
+        final int keylength = rowdef.primaryKeyLength;
+        final byte[] heads = new byte[blocks * keylength];
+        for (int i = 0; i < blocks; i++) {
+            blob.readFully(RowCollection.exportOverheadSize + ((long) i) * rowsPerBlock * rowdef.objectsize, heads, i * keylength, keylength);
+        }
+        return new ReferenceContainerBlockIndex(blob, rowdef, size, rowsPerBlock, heads, null);
+    }
+
+    /**
+     * create a block index for a compressed container from the directory at the end of the container
+     */
+    private static ReferenceContainerBlockIndex openCompressed(final HeapReader.BlobInputStream blob, final Row rowdef, final byte[] header) throws IOException {
+        final int size = RowSetCodec.size(header);
+        final int blocks = RowSetCodec.blocks(header);
+        final int entrySize = RowSetCodec.directoryEntrySize(rowdef);
+        final long directory = ((long) blob.length()) - ((long) blocks) * entrySize;
+        if (size < 0 || blocks <= 0 || blocks > size || directory < RowCollection.exportOverheadSize) {
+            throw new IOException("wrong header of compressed container: size = " + size + ", blocks = " + blocks + ", length = " + blob.length());
+        }
+        final byte[] d = new byte[blocks * entrySize];
+        blob.readFully(directory, d, 0, d.length);
+        final int keylength = rowdef.primaryKeyLength;
+        final byte[] heads = new byte[blocks * keylength];
+        final int[] offsets = new int[blocks + 1];
+        for (int i = 0; i < blocks; i++) {
+            System.arraycopy(d, i * entrySize, heads, i * keylength, keylength);
+            offsets[i] = (int) NaturalOrder.decodeLong(d, i * entrySize + keylength, 4);
+            if (offsets[i] < RowCollection.exportOverheadSize || offsets[i] >= directory || (i > 0 && offsets[i] <= offsets[i - 1])) {
+                throw new IOException("wrong directory of compressed container at block " + i + ": " + offsets[i]);
+            }
+        }
+        offsets[blocks] = (int) directory;
+        return new ReferenceContainerBlockIndex(blob, rowdef, size, (size + blocks - 1) / blocks, heads, offsets);
+    }
+
+    /**
+     * @return the number of references in the container
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of references in one block
+     */
+    public int rowsPerBlock() {
+        return this.rowsPerBlock;
+    }
+
+    /**
+     * @return true if the index is the directory of a compressed container
+     */
+    public boolean compressed() {
+        return this.offsets != null;
+    }
+
+    /**
+     * @return false if the BLOB file was modified or closed since the index was created
+     */
+    public boolean valid() {
+        return this.blob.valid();
+    }
+
+    /**
+     * @return the number of blocks of the container
+     */
+    public int blocks() {
+        return this.heads.length / this.rowdef.primaryKeyLength;
+    }
+
+    /**
+     * get the references to the given urls; only the blocks which may contain the urls are read
+     * @param urlselection the url hashes
+     * @return a sorted collection of the references which have been found
+     * @throws IOException if the BLOB file was changed since the index was created
+     * @throws SpaceExceededException
+     */
+    public RowSet select(final HandleSet urlselection) throws IOException, SpaceExceededException {
+        final RowSet rows = new RowSet(this.rowdef, Math.min(urlselection.size(), this.size));
+        final int objectsize = this.rowdef.objectsize;
+        byte[] block = new byte[this.rowsPerBlock * objectsize];
+        int current = -1, blockrows = 0, blocksRead = 0, rowsRead = 0;
+        for (final byte[] urlhash: urlselection) {
+            final int b = findBlock(urlhash);
+            if (b < 0) continue;
+            if (b != current) {
+                if (this.offsets == null) {
+                    blockrows = Math.min(this.rowsPerBlock, this.size - b * this.rowsPerBlock);
+                    this.blob.readFully(RowCollection.exportOverheadSize + ((long) b) * this.rowsPerBlock * objectsize, block, 0, blockrows * objectsize);
+                } else {
+                    // read and decode a block of a compressed container
+                    final byte[] data = new byte[this.offsets[b + 1] - this.offsets[b]];
+                    this.blob.readFully(this.offsets[b], data, 0, data.length);
+                    blockrows = (int) NaturalOrder.decodeLong(data, 0, 2);
+                    final int len = (int) NaturalOrder.decodeLong(data, 2, 4);
+                    if (len > data.length - 6) throw new IOException("wrong length of block " + b + " in compressed container: " + len);
+                    if (block.length < blockrows * objectsize) block = new byte[blockrows * objectsize];
+                    RowSetCodec.decodeBlock(this.rowdef, data, 6, len, blockrows, block, 0);
+                }
+                current = b;
+                blocksRead++;
+                rowsRead += blockrows;
+            }
+            final int p = findRow(block, blockrows, urlhash);
+            if (p >= 0) rows.addUnique(this.rowdef.newEntry(block, p * objectsize, true));
+        }
+        rows.sort();
+        selectCount.incrementAndGet();
+        blockCount.addAndGet(blocksRead);
+        skipCount.addAndGet(Math.max(0, this.size - rowsRead));
+        return rows;
+    }
+
+    /**
+     * find the block which may contain the url hash
+     * @return the number of the last block whose first url hash is not greater than the url hash or -1 if the url hash is before the first block
+     */
+    private int findBlock(final byte[] urlhash) {
+        final int keylength = this.rowdef.primaryKeyLength;
+        int l = 0, r = blocks() - 1, b = -1;
+        while (l <= r) {
+            final int m = (l + r) >>> 1;
+            if (this.rowdef.objectOrder.compare(this.heads, m * keylength, urlhash, 0, keylength) <= 0) {
+                b = m;
+                l = m + 1;
+            } else {
+                r = m - 1;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * binary search of a url hash in a block
+     * @return the number of the row in the block or -1 if the url hash is not in the block
+     */
+    private int findRow(final byte[] block, final int blockrows, final byte[] urlhash) {
+        final int objectsize = this.rowdef.objectsize;
+        int l = 0, r = blockrows - 1;
+        while (l <= r) {
+            final int m = (l + r) >>> 1;
+            final int c = this.rowdef.objectOrder.compare(block, m * objectsize, urlhash, 0, this.rowdef.primaryKeyLength);
+            if (c == 0) return m;
+            if (c < 0) l = m + 1; else r = m - 1;
+        }
+        return -1;
+    }
+}
@@ -47,6 +47,7 @@ import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.HeapWriter;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowSetCodec;
 import net.yacy.kelondro.util.FileUtils;
 
 /**
@@ -123,27 +124,46 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      * @param destructive - if true then the cache is cleaned during the dump causing to free memory
      */
     public void dump(final File heapFile, final int writeBuffer, final boolean destructive) {
+        dump(heapFile, writeBuffer, destructive, false);
+    }
+
+    /**
+     * dump the cache to a file
+     * @param heapFile
+     * @param writeBuffer
+     * @param destructive - if true then the cache is cleaned during the dump causing to free memory
+     * @param compress - if true then the containers are written with RowSetCodec
+     */
+    public void dump(final File heapFile, final int writeBuffer, final boolean destructive, final boolean compress) {
         assert this.cache != null;
         if (this.cache == null) return;
         log.info("creating rwi heap dump '" + heapFile.getName() + "', " + this.cache.size() + " rwi's");
+        // sort the map
+        dump(sortedClone(), heapFile, this.termSize, this.termOrder, writeBuffer, destructive, compress);
+    }
+
+    /**
+     * dump containers to a file
+     * @param cachecopy the containers, sorted by the term order
+     */
+    static <ReferenceType extends Reference> void dump(final List<ReferenceContainer<ReferenceType>> cachecopy,
+            final File heapFile, final int termSize, final ByteOrder termOrder,
+            final int writeBuffer, final boolean destructive, final boolean compress) {
         if (heapFile.exists()) FileUtils.deletedelete(heapFile);
         final File tmpFile = new File(heapFile.getParentFile(), heapFile.getName() + ".prt");
         HeapWriter dump;
         try {
-            dump = new HeapWriter(tmpFile, heapFile, this.termSize, this.termOrder, writeBuffer);
+            dump = new HeapWriter(tmpFile, heapFile, termSize, termOrder, writeBuffer);
         } catch (final IOException e1) {
             ConcurrentLog.logException(e1);
             return;
         }
         final long startTime = System.currentTimeMillis();
 
-        // sort the map
-        final List<ReferenceContainer<ReferenceType>> cachecopy = sortedClone();
-
         // write wCache
         long wordcount = 0, urlcount = 0;
         byte[] term = null, lwh;
-        assert this.termKeyOrdering() != null;
+        assert termOrder != null;
         for (final ReferenceContainer<ReferenceType> container: cachecopy) {
             // get entries
             lwh = term;
@@ -151,13 +171,13 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             if (term == null) continue;
 
             // check consistency: entries must be ordered
-            assert (lwh == null || this.termKeyOrdering().compare(term, lwh) > 0);
+            assert (lwh == null || termOrder.compare(term, lwh) > 0);
 
             // put entries on heap
-            if (container != null && term.length == this.termSize) {
+            if (container != null && term.length == termSize) {
                 //System.out.println("Dump: " + wordHash);
                 try {
-                    dump.add(term, container.exportCollection());
+                    dump.add(term, RowSetCodec.exportCollection(container, compress));
                 } catch (final IOException e) {
                     ConcurrentLog.logException(e);
                 } catch (final SpaceExceededException e) {
@@ -182,7 +202,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      * create a clone of the cache content that is sorted using the this.containerOrder
      * @return the sorted ReferenceContainer[]
      */
-    private List<ReferenceContainer<ReferenceType>> sortedClone() {
+    List<ReferenceContainer<ReferenceType>> sortedClone() {
         final List<ReferenceContainer<ReferenceType>> cachecopy = new ArrayList<ReferenceContainer<ReferenceType>>(this.cache.size());
         synchronized (this.cache) {
             for (final Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> entry: this.cache.entrySet()) {
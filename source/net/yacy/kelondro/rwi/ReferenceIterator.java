@@ -37,6 +37,7 @@ import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.HeapReader;
 import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.index.RowSetCodec;
 
 /**
  * iterator of BLOBHeap files: is used to import heap dumps into a write-enabled index heap
@@ -65,7 +66,7 @@ public class ReferenceIterator <ReferenceType extends Reference> extends LookAhe
             entry = this.blobs.next();
             if (entry == null) break;
             try {
-                row = RowSet.importRowSet(entry.getValue(), this.factory.getRow());
+                row = RowSetCodec.importRowSet(entry.getValue(), this.factory.getRow());
                 if (row == null) {
                     ConcurrentLog.severe("ReferenceIterator", "lost entry '" + UTF8.String(entry.getKey()) + "' because importRowSet returned null");
                     continue; // thats a fail but not as REALLY bad if the whole method would crash here
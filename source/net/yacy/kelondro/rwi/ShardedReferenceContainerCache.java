@@ -0,0 +1,441 @@
+// ShardedReferenceContainerCache.java
+// -----------------------------------
+// first published 17.10.2026 on http://yacy.net
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.sorting.Rating;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ByteArray;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.Row;
+
+/**
+ * a RAM cache for reference containers which is partitioned by the prefix of the term hash into shards.
+ * Each shard is a ReferenceContainerCache with its own write lock, so writers of different terms do not
+ * block each other; readers do not take any lock. A shard can be detached from the cache and dumped to a
+ * BLOB file while writers continue to write into a fresh shard, therefore the cache can be flushed
+ * shard by shard instead of freezing all writers for a dump of the whole cache.
+ * With one shard this behaves like a single ReferenceContainerCache.
+ *
+ * @param <ReferenceType>
+ */
+public final class ShardedReferenceContainerCache<ReferenceType extends Reference> extends AbstractIndex<ReferenceType> implements Index<ReferenceType>, IndexReader<ReferenceType>, Iterable<ReferenceContainer<ReferenceType>> {
+
+    private static final ConcurrentLog log = new ConcurrentLog("ShardedReferenceContainerCache");
+
+    // statistics for the performance pages
+    public static final LongAdder lockCount = new LongAdder();       // number of write accesses to a shard
+    public static final LongAdder contentionCount = new LongAdder(); // number of write accesses which had to wait for the lock of a shard
+    public static final LongAdder contentionTime = new LongAdder();  // time in nanoseconds which writers waited for the locks of the shards
+    public static final LongAdder detachCount = new LongAdder();     // number of shards which have been detached for a dump
+
+    private final int termSize;
+    private final ByteOrder termOrder;
+    private final List<Shard<ReferenceType>> shards;
+
+    private static final class Shard<ReferenceType extends Reference> {
+        private final ReentrantLock lock;
+        private volatile ReferenceContainerCache<ReferenceType> cache;
+        private volatile long created; // the time when the cache of the shard was created
+        private Shard(final ReferenceContainerCache<ReferenceType> cache) {
+            this.lock = new ReentrantLock();
+            this.cache = cache;
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @param factory the factory for payload reference objects
+     * @param termOrder the order on search terms for the cache
+     * @param termSize the fixed size of search terms
+     * @param shards the number of shards
+     */
+    public ShardedReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize, final int shards) {
+        super(factory);
+        assert termOrder != null;
+        this.termOrder = termOrder;
+        this.termSize = termSize;
+        this.shards = new ArrayList<Shard<ReferenceType>>(Math.max(1, shards));
+        for (int i = 0; i < Math.max(1, shards); i++) {
+            this.shards.add(new Shard<ReferenceType>(new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize)));
+        }
+    }
+
+    private Shard<ReferenceType> shard(final byte[] termHash) {
+        if (this.shards.size() == 1) return this.shards.get(0);
+        // the first characters of a term hash are evenly distributed
+        final int prefix = termHash.length > 1 ? (termHash[0] & 0xff) * 31 + (termHash[1] & 0xff) : termHash[0] & 0xff;
+        return this.shards.get(prefix % this.shards.size());
+    }
+
+    private static void lock(final Shard<?> shard) {
+        lockCount.increment();
+        if (shard.lock.tryLock()) return;
+        final long start = System.nanoTime();
+        shard.lock.lock();
+        contentionCount.increment();
+        contentionTime.add(System.nanoTime() - start);
+    }
+
+    public Row rowdef() {
+        return this.factory.getRow();
+    }
+
+    @Override
+    public int termKeyLength() {
+        return this.termSize;
+    }
+
+    @Override
+    public ByteOrder termKeyOrdering() {
+        return this.termOrder;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int shards() {
+        return this.shards.size();
+    }
+
+    /**
+     * @param i the number of a shard
+     * @return the number of terms in the shard
+     */
+    public int size(final int i) {
+        return this.shards.get(i).cache.size();
+    }
+
+    /**
+     * @param i the number of a shard
+     * @return the time when the shard was created or detached the last time
+     */
+    public long created(final int i) {
+        return this.shards.get(i).created;
+    }
+
+    /**
+     * replace a shard with an empty shard. Writers which wait for the shard write into the new shard.
+     * The detached shard must not be written any more; it can be dumped to a file.
+     * @param i the number of the shard
+     * @return the content of the shard
+     */
+    public ReferenceContainerCache<ReferenceType> detach(final int i) {
+        final Shard<ReferenceType> shard = this.shards.get(i);
+        lock(shard);
+        try {
+            final ReferenceContainerCache<ReferenceType> cache = shard.cache;
+            shard.cache = new ReferenceContainerCache<ReferenceType>(this.factory, this.termOrder, this.termSize);
+            shard.created = System.currentTimeMillis();
+            detachCount.increment();
+            return cache;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * dump the content of all shards to one file
+     * @param heapFile
+     * @param writeBuffer
+     * @param destructive - if true then the cache is cleaned during the dump causing to free memory
+     * @param compress - if true then the containers are written with RowSetCodec
+     */
+    public void dump(final File heapFile, final int writeBuffer, final boolean destructive, final boolean compress) {
+        log.info("creating rwi heap dump '" + heapFile.getName() + "', " + size() + " rwi's in " + this.shards.size() + " shards");
+        ReferenceContainerCache.dump(sortedClone(), heapFile, this.termSize, this.termOrder, writeBuffer, destructive, compress);
+    }
+
+    private List<ReferenceContainer<ReferenceType>> sortedClone() {
+        final List<ReferenceContainer<ReferenceType>> cachecopy = new ArrayList<ReferenceContainer<ReferenceType>>(size());
+        for (final Shard<ReferenceType> shard: this.shards) cachecopy.addAll(shard.cache.sortedClone());
+        // the shards are sorted already, this is a merge of the sorted runs
+        if (this.shards.size() > 1) Collections.sort(cachecopy, new ReferenceContainerCache.ContainerOrder<ReferenceType>(this.termOrder));
+        return cachecopy;
+    }
+
+    @Override
+    public void clear() {
+        for (final Shard<ReferenceType> shard: this.shards) {
+            lock(shard);
+            try {
+                shard.cache.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final Shard<ReferenceType> shard: this.shards) shard.cache.close();
+    }
+
+    public Iterator<ByteArray> keys() {
+        final List<ByteArray> keys = new ArrayList<ByteArray>(size());
+        for (final Shard<ReferenceType> shard: this.shards) {
+            final Iterator<ByteArray> i = shard.cache.keys();
+            while (i.hasNext()) keys.add(i.next());
+        }
+        return keys.iterator();
+    }
+
+    @Override
+    public int size() {
+        int s = 0;
+        for (final Shard<ReferenceType> shard: this.shards) s += shard.cache.size();
+        return s;
+    }
+
+    public long usedMemory() {
+        long b = 0L;
+        for (final Shard<ReferenceType> shard: this.shards) b += shard.cache.usedMemory();
+        return b;
+    }
+
+    public boolean isEmpty() {
+        for (final Shard<ReferenceType> shard: this.shards) if (!shard.cache.isEmpty()) return false;
+        return true;
+    }
+
+    public int maxReferences() {
+        int max = 0;
+        for (final Shard<ReferenceType> shard: this.shards) max = Math.max(max, shard.cache.maxReferences());
+        return max;
+    }
+
+    @Override
+    public boolean has(final byte[] termHash) {
+        return shard(termHash).cache.has(termHash);
+    }
+
+    @Override
+    public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) {
+        return shard(termHash).cache.get(termHash, urlselection);
+    }
+
+    @Override
+    public int count(final byte[] termHash) {
+        return shard(termHash).cache.count(termHash);
+    }
+
+    @Override
+    public ReferenceContainer<ReferenceType> remove(final byte[] termHash) {
+        final Shard<ReferenceType> shard = shard(termHash);
+        lock(shard);
+        try {
+            return shard.cache.remove(termHash);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(final byte[] termHash) {
+        final Shard<ReferenceType> shard = shard(termHash);
+        lock(shard);
+        try {
+            shard.cache.delete(termHash);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(final byte[] termHash, final byte[] urlHashBytes) {
+        final Shard<ReferenceType> shard = shard(termHash);
+        lock(shard);
+        try {
+            return shard.cache.remove(termHash, urlHashBytes);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeDelayed(final byte[] termHash, final byte[] urlHashBytes) {
+        remove(termHash, urlHashBytes);
+    }
+
+    @Override
+    public int remove(final byte[] termHash, final HandleSet urlHashes) {
+        final Shard<ReferenceType> shard = shard(termHash);
+        lock(shard);
+        try {
+            return shard.cache.remove(termHash, urlHashes);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeDelayed() {}
+
+    @Override
+    public void add(final ReferenceContainer<ReferenceType> container) throws SpaceExceededException {
+        if (container == null || container.isEmpty()) return;
+        final Shard<ReferenceType> shard = shard(container.getTermHash());
+        lock(shard);
+        try {
+            shard.cache.add(container);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void add(final byte[] termHash, final ReferenceType newEntry) throws SpaceExceededException {
+        final Shard<ReferenceType> shard = shard(termHash);
+        lock(shard);
+        try {
+            shard.cache.add(termHash, newEntry);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public int minMem() {
+        return 0;
+    }
+
+    @Override
+    public Iterator<ReferenceContainer<ReferenceType>> iterator() {
+        return referenceContainerIterator(null, false, false);
+    }
+
+    /**
+     * return an iterator object that creates top-level-clones of the indexContainers
+     * in the cache, so that manipulations of the iterated objects do not change
+     * objects in the cache.
+     */
+    @Override
+    public CloneableIterator<ReferenceContainer<ReferenceType>> referenceContainerIterator(final byte[] startWordHash, final boolean rot, final boolean excludePrivate) {
+        return new SnapshotIterator<ReferenceContainer<ReferenceType>>(startWordHash, rot, excludePrivate) {
+            @Override
+            protected ReferenceContainer<ReferenceType> produce(final ReferenceContainer<ReferenceType> c) throws SpaceExceededException {
+                return c.topLevelClone();
+            }
+            @Override
+            public CloneableIterator<ReferenceContainer<ReferenceType>> clone(final Object secondWordHash) {
+                return referenceContainerIterator((byte[]) secondWordHash, rot, excludePrivate);
+            }
+        };
+    }
+
+    @Override
+    public CloneableIterator<Rating<byte[]>> referenceCountIterator(final byte[] startWordHash, final boolean rot, final boolean excludePrivate) {
+        return new SnapshotIterator<Rating<byte[]>>(startWordHash, rot, excludePrivate) {
+            @Override
+            protected Rating<byte[]> produce(final ReferenceContainer<ReferenceType> c) {
+                return new Rating<byte[]>(c.getTermHash(), c.size());
+            }
+            @Override
+            public CloneableIterator<Rating<byte[]>> clone(final Object secondWordHash) {
+                return referenceCountIterator((byte[]) secondWordHash, rot, excludePrivate);
+            }
+        };
+    }
+
+    /**
+     * iterator on a sorted copy of the containers of all shards, with the same rules for the start term,
+     * the rotation and the private terms as the iterators of a ReferenceContainerCache
+     */
+    private abstract class SnapshotIterator<E> implements CloneableIterator<E>, Iterable<E> {
+
+        private final boolean rot, excludePrivate;
+        private final List<ReferenceContainer<ReferenceType>> cachecopy;
+        private int p;
+        private byte[] latestTermHash;
+
+        private SnapshotIterator(byte[] startWordHash, final boolean rot, final boolean excludePrivate) {
+            this.rot = rot;
+            this.excludePrivate = excludePrivate;
+            if (startWordHash != null && startWordHash.length == 0) startWordHash = null;
+            this.cachecopy = sortedClone();
+            this.p = 0;
+            if (startWordHash != null) {
+                byte[] b;
+                while ( this.p < this.cachecopy.size() &&
+                        ShardedReferenceContainerCache.this.termOrder.compare(b = this.cachecopy.get(this.p).getTermHash(), startWordHash) < 0 &&
+                        !(excludePrivate && Word.isPrivate(b))
+                      ) this.p++;
+            }
+            this.latestTermHash = null;
+        }
+
+        protected abstract E produce(ReferenceContainer<ReferenceType> c) throws SpaceExceededException;
+
+        @Override
+        public boolean hasNext() {
+            if (this.rot) return !this.cachecopy.isEmpty();
+            return this.p < this.cachecopy.size();
+        }
+
+        @Override
+        public E next() {
+            for (int round = 0; round < 2; round++) {
+                while (this.p < this.cachecopy.size()) {
+                    final ReferenceContainer<ReferenceType> c = this.cachecopy.get(this.p++);
+                    this.latestTermHash = c.getTermHash();
+                    if (this.excludePrivate && Word.isPrivate(this.latestTermHash)) continue;
+                    try {
+                        return produce(c);
+                    } catch (final SpaceExceededException e) {
+                        ConcurrentLog.logException(e);
+                        return null;
+                    }
+                }
+                // rotation iteration
+                if (!this.rot || this.cachecopy.isEmpty()) return null;
+                this.p = 0;
+            }
+            return null;
+        }
+
+        @Override
+        public void remove() {
+            if (this.latestTermHash != null) delete(this.latestTermHash);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
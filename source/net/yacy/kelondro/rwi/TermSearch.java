@@ -27,11 +27,19 @@
 
 package net.yacy.kelondro.rwi;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
 
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowHandleSet;
 
 
 public class TermSearch <ReferenceType extends Reference> {
@@ -46,27 +54,112 @@ public class TermSearch <ReferenceType extends Reference> {
             final HandleSet urlselection,
             ReferenceFactory<ReferenceType> termFactory,
             int maxDistance) throws SpaceExceededException {
+        this(base, queryHashes, excludeHashes, urlselection, termFactory, maxDistance, true);
+    }
+
+    /**
+     * @param completeInclusion if false, the containers of the included terms are loaded only for the urls
+     * which may be part of the join result. This is much faster for queries which combine frequent and rare terms,
+     * but then inclusion() does not return the complete containers, which are needed for index abstracts.
+     */
+    public TermSearch(
+            Index<ReferenceType> base,
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final HandleSet urlselection,
+            ReferenceFactory<ReferenceType> termFactory,
+            int maxDistance,
+            final boolean completeInclusion) throws SpaceExceededException {
 
         this.inclusionContainers =
             (queryHashes.isEmpty()) ?
                 new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
-                base.searchConjunction(queryHashes, urlselection);
+            (completeInclusion || queryHashes.size() < 2) ?
+                base.searchConjunction(queryHashes, urlselection) :
+                selectConjunction(base, queryHashes, urlselection, termFactory);
 
         if (!this.inclusionContainers.isEmpty() &&
             (this.inclusionContainers.size() < queryHashes.size()))
             this.inclusionContainers = new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder); // prevent that only a subset is returned
 
-        TreeMap<byte[], ReferenceContainer<ReferenceType>> exclusionContainers =
-            (this.inclusionContainers.isEmpty()) ?
-                new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
-                base.searchConjunction(excludeHashes, urlselection);
-
-        // join and exclude the result
-        this.joinResult = ReferenceContainer.joinExcludeContainers(
-                termFactory,
-                this.inclusionContainers.values(),
-                exclusionContainers.values(),
-                maxDistance);
+        // join the result
+        ReferenceContainer<ReferenceType> rc = ReferenceContainer.joinContainers(termFactory, this.inclusionContainers.values(), maxDistance);
+
+        // exclude the result; only the references to urls in the join result are loaded for the excluded terms
+        // which keeps the memory usage low even if an excluded term has a very large number of references
+        if (rc != null && !rc.isEmpty() && excludeHashes != null && !excludeHashes.isEmpty()) {
+            final HandleSet joinedURLs = new RowHandleSet(termFactory.getRow().primaryKeyLength, termFactory.getRow().objectOrder, rc.size());
+            final Iterator<ReferenceType> i = rc.entries();
+            while (i.hasNext()) joinedURLs.put(i.next().urlhash());
+            final List<ReferenceContainer<ReferenceType>> exclusionContainers = new ArrayList<ReferenceContainer<ReferenceType>>(excludeHashes.size());
+            for (final byte[] excludeHash: excludeHashes) {
+                try {
+                    final ReferenceContainer<ReferenceType> c = base.get(excludeHash, joinedURLs);
+                    if (c != null && !c.isEmpty()) exclusionContainers.add(c);
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+            rc = ReferenceContainer.excludeContainers(termFactory, rc, exclusionContainers);
+        }
+        this.joinResult = (rc == null) ? ReferenceContainer.emptyContainer(termFactory, null, 0) : rc;
+    }
+
+    /**
+     * collect the containers for a conjunction of terms. The term with the fewest references is loaded first,
+     * the references of every following term are loaded only for the urls which are contained in all
+     * containers loaded so far. With the block index of the BLOB files this reads only a small part of the
+     * containers of frequent terms. The join of the returned containers is the same as the join of the complete containers.
+     * @return map of wordhash:indexContainer, empty if one of the terms has no references to the selected urls
+     */
+    private TreeMap<byte[], ReferenceContainer<ReferenceType>> selectConjunction(
+            final Index<ReferenceType> base,
+            final HandleSet queryHashes,
+            final HandleSet urlselection,
+            final ReferenceFactory<ReferenceType> termFactory) {
+        final TreeMap<byte[], ReferenceContainer<ReferenceType>> containers = new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder);
+
+        // order the terms by the number of their references; this uses only the index of the BLOB files
+        // and the length of the containers, only compressed containers need a read of their header
+        final TreeMap<byte[], Integer> counts = new TreeMap<byte[], Integer>(Base64Order.enhancedCoder);
+        final List<byte[]> terms = new ArrayList<byte[]>(queryHashes.size());
+        for (final byte[] termHash: queryHashes) {
+            final int count = base.count(termHash);
+            if (count == 0) return containers;
+            counts.put(termHash, count);
+            terms.add(termHash);
+        }
+        Collections.sort(terms, new Comparator<byte[]>() {
+            @Override
+            public int compare(final byte[] t0, final byte[] t1) {
+                return counts.get(t0).compareTo(counts.get(t1));
+            }
+        });
+
+        HandleSet selection = urlselection;
+        for (final byte[] termHash: terms) {
+            final ReferenceContainer<ReferenceType> container;
+            try {
+                container = base.get(termHash, selection);
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+                return new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder);
+            }
+            if (container == null || container.isEmpty()) return new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder);
+            containers.put(termHash, container);
+
+            // the urls of this container are the selection for the next term
+            selection = new RowHandleSet(termFactory.getRow().primaryKeyLength, termFactory.getRow().objectOrder, container.size());
+            final Iterator<ReferenceType> i = container.entries();
+            try {
+                while (i.hasNext()) selection.put(i.next().urlhash());
+            } catch (final SpaceExceededException e) {
+                // go on with the previous selection; the join removes the urls which are not in all containers
+                ConcurrentLog.logException(e);
+                selection = urlselection;
+            }
+        }
+        return containers;
     }
 
     public ReferenceContainer<ReferenceType> joined() {
@@ -38,11 +38,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.AsyncGet;
 import net.yacy.kelondro.index.Index;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
@@ -221,6 +223,11 @@ public class SQLTable implements Index, Iterable<Row.Entry> {
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     @Override
     public Row.Entry replace(final Row.Entry row) throws IOException {
         try {
@@ -39,6 +39,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.order.CloneableIterator;
@@ -47,6 +58,8 @@ import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.index.AsyncGet;
+import net.yacy.kelondro.index.BloomFilter;
 import net.yacy.kelondro.index.Cache;
 import net.yacy.kelondro.index.Index;
 import net.yacy.kelondro.index.Row;
@@ -56,6 +69,7 @@ import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MergeIterator;
 import net.yacy.kelondro.util.StackIterator;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
 
 
 public class SplitTable implements Index, Iterable<Row.Entry> {
@@ -66,10 +80,35 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
 
     private static final int EcoFSBufferSize = 20;
 
+    /**
+     * if true, each partition has a bloom filter of its keys and only partitions which may
+     * contain a key are asked for it
+     */
+    public static boolean partitionFilter = true;
+
+    /**
+     * the number of partitions which is kept by a background compaction: if more partitions exist,
+     * the smallest old partitions are merged. 0 switches the compaction off.
+     */
+    public static int maxPartitions = 0;
+
+    /**
+     * if true, rows() scans all partitions concurrently. The scan tasks wait until the consumer
+     * takes the rows, so an iterator of a parallel scan must be read to the end or closed.
+     */
+    public static boolean parallelScan = false;
+
+    private static final double filterFpp = 0.01d;
+    private static final int mergeChunk = 1000; // the number of rows which are moved with one lock during a compaction
+    private static ForkJoinPool pool = null;
+
     // the thread pool for the keeperOf executor service
     //private ExecutorService executor;
 
-    private Map<String, Index> tables; // a map from a date string to a kelondroIndex object
+    private volatile Map<String, Index> tables; // a map from a date string to a kelondroIndex object; it is replaced, not changed, when partitions are added or removed
+    private volatile Map<String, BloomFilter> filters; // a map from a date string to the filter of the keys of the partition
+    private final LongAdder lookups = new LongAdder(), probes = new LongAdder();
+    private Thread compaction = null;
     private final Row rowdef;
     private final File path;
     private final String prefix;
@@ -150,7 +189,8 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
         this.current = null;
 
         // initialized tables map
-        this.tables = new HashMap<String, Index>();
+        final Map<String, Index> tables = new HashMap<String, Index>();
+        final Map<String, BloomFilter> filters = new ConcurrentHashMap<String, BloomFilter>();
         if (!(this.path.exists())) this.path.mkdirs();
         String[] tablefile = this.path.list();
 
@@ -231,18 +271,23 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
                 }
             }
             final Table a = table;
+            final String name = maxf;
             final Thread p = new Thread("SplitTable.warmUp") {
                 @Override
                 public void run() {
                     a.warmUp();
+                    final BloomFilter filter = newFilter(a);
+                    if (filter != null) filters.put(name, filter);
                 }
             };
             p.start();
             warmingUp.add(p);
-            this.tables.put(maxf, table);
+            tables.put(maxf, table);
         }
         // collect warming up threads
         for (final Thread p: warmingUp) try {p.join();} catch (final InterruptedException e) {}
+        this.filters = new HashMap<String, BloomFilter>(filters);
+        this.tables = tables;
         assert this.current == null || this.tables.get(this.current) != null : "this.current = " + this.current;
 
         // init the thread pool for the keeperOf executor service
@@ -326,24 +371,59 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
 
     @Override
     public Row.Entry get(final byte[] key, final boolean forcecopy) throws IOException {
-        final Index keeper = keeperOf(key);
+        Index keeper = keeperOf(key);
         if (keeper == null) return null;
         synchronized (this) { // avoid concurrent IO from different methods
-            return keeper.get(key, forcecopy);
+            keeper = recheck(keeper, key);
+            return keeper == null ? null : keeper.get(key, forcecopy);
         }
     }
 
+    /**
+     * get many rows: the keys are grouped by the table which holds them and each table
+     * is asked once with a batch get. The tables are read concurrently with getAsync().
+     */
     @Override
     public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
-        Row.Entry entry;
+        if (this.tables == null || keys.isEmpty()) return map;
+        final Map<Index, List<byte[]>> keepers = new HashMap<Index, List<byte[]>>();
         for (final byte[] key: keys) {
-            entry = get(key, forcecopy);
-            if (entry != null) map.put(key, entry);
+            final Index keeper = keeperOf(key);
+            if (keeper == null) continue;
+            List<byte[]> k = keepers.get(keeper);
+            if (k == null) {
+                k = new ArrayList<byte[]>();
+                keepers.put(keeper, k);
+            }
+            k.add(key);
+        }
+        if (keepers.size() == 1) {
+            final Map.Entry<Index, List<byte[]>> e = keepers.entrySet().iterator().next();
+            map.putAll(e.getKey().get(e.getValue(), forcecopy));
+            return map;
+        }
+        final List<CompletableFuture<Map<byte[], Row.Entry>>> futures = new ArrayList<CompletableFuture<Map<byte[], Row.Entry>>>(keepers.size());
+        for (final Map.Entry<Index, List<byte[]>> e: keepers.entrySet()) {
+            futures.add(e.getKey().getAsync(e.getValue(), forcecopy));
+        }
+        for (final CompletableFuture<Map<byte[], Row.Entry>> f: futures) {
+            try {
+                map.putAll(f.get());
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof InterruptedException) throw (InterruptedException) e.getCause();
+                throw new IOException(e.getCause());
+            }
         }
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     private Index newTable() {
         this.current = newFilename();
         final File f = new File(this.path, this.current);
@@ -357,11 +437,182 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
                 ConcurrentLog.logException(e1);
             }
         }
-        this.tables.put(this.current, table);
+        // the filter is published before the partition, so no key of the partition is ever missing in its filter
+        final BloomFilter filter = newFilter(table);
+        if (filter != null) {
+            final Map<String, BloomFilter> fm = new HashMap<String, BloomFilter>(this.filters);
+            fm.put(this.current, filter);
+            this.filters = fm;
+        }
+        final Map<String, Index> t = new HashMap<String, Index>(this.tables);
+        t.put(this.current, table);
+        this.tables = t;
         assert this.current == null || this.tables.get(this.current) != null : "this.current = " + this.current;
+        startCompaction();
         return table;
     }
 
+    /**
+     * create the bloom filter for the keys of a partition; it has room for twice the keys of the partition
+     * @param table
+     * @return the filter or null if filters are switched off or the keys cannot be read
+     */
+    private BloomFilter newFilter(final Index table) {
+        if (!partitionFilter || table == null) return null;
+        final BloomFilter filter = new BloomFilter(Math.max(10000, 2L * table.size()), filterFpp);
+        try {
+            final CloneableIterator<byte[]> i = table.keys(true, null);
+            while (i.hasNext()) filter.add(i.next());
+            i.close();
+        } catch (final IOException e) {
+            ConcurrentLog.warn("SplitTable", "cannot create filter for " + table.filename() + ": " + e.getMessage());
+            return null;
+        }
+        return filter;
+    }
+
+    /**
+     * add a new key to the filter of a partition; this must be done before the key is written to the partition.
+     * A filter which has become too full is created again.
+     * @param name the name of the partition
+     * @param key
+     */
+    private void learn(final String name, final byte[] key) {
+        final BloomFilter filter = this.filters.get(name);
+        if (filter == null) return;
+        filter.add(key);
+        if ((filter.count() & 1023) == 0 && filter.expectedFpp() > 10 * filterFpp) synchronized (this) {
+            final Index table = this.tables.get(name);
+            final BloomFilter larger = newFilter(table);
+            if (larger == null) return;
+            larger.add(key); // the key is not yet in the partition
+            final Map<String, BloomFilter> f = new HashMap<String, BloomFilter>(this.filters);
+            f.put(name, larger);
+            this.filters = f;
+        }
+    }
+
+    /**
+     * @return the number of key lookups which had to find the partition of a key
+     */
+    public long lookups() {
+        return this.lookups.sum();
+    }
+
+    /**
+     * @return the number of partitions which were asked for a key; without filters this is the number of partitions for each lookup
+     */
+    public long probes() {
+        return this.probes.sum();
+    }
+
+    /**
+     * @return the number of partitions
+     */
+    public int partitions() {
+        final Map<String, Index> t = this.tables;
+        return t == null ? 0 : t.size();
+    }
+
+    /**
+     * start a compaction thread if there are more partitions than maxPartitions
+     */
+    private synchronized void startCompaction() {
+        if (maxPartitions <= 0 || this.tables == null || this.tables.size() <= maxPartitions) return;
+        if (this.compaction != null && this.compaction.isAlive()) return;
+        this.compaction = new Thread("SplitTable.compact." + this.prefix) {
+            @Override
+            public void run() {
+                try {
+                    compact(maxPartitions);
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                } catch (final SpaceExceededException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+        };
+        this.compaction.setPriority(Thread.MIN_PRIORITY);
+        this.compaction.start();
+    }
+
+    /**
+     * merge the smallest partitions until there are not more than limit partitions.
+     * The current partition is never merged. Each merge moves the rows of the smallest
+     * partition into the second-smallest partition, then the merged partition is deleted.
+     * @param limit the maximum number of partitions
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public void compact(final int limit) throws IOException, SpaceExceededException {
+        while (true) {
+            String smallest = null, second = null;
+            synchronized (this) {
+                final Map<String, Index> t = this.tables;
+                if (t == null || t.size() <= Math.max(1, limit)) return;
+                for (final Map.Entry<String, Index> e: t.entrySet()) {
+                    if (e.getKey().equals(this.current)) continue;
+                    final int size = e.getValue().size();
+                    if (smallest == null || size < t.get(smallest).size()) {
+                        second = smallest;
+                        smallest = e.getKey();
+                    } else if (second == null || size < t.get(second).size()) {
+                        second = e.getKey();
+                    }
+                }
+            }
+            if (smallest == null || second == null) return;
+            if (!merge(smallest, second)) return;
+        }
+    }
+
+    /**
+     * move the rows of one partition into another partition. The rows are moved in chunks and the lock
+     * is released between two chunks, so that get, put and delete are not blocked for the whole merge.
+     * Each row is written to the target before it is deleted from the source, so it can always be found.
+     * @return false if the table was closed during the merge
+     */
+    private boolean merge(final String from, final String into) throws IOException, SpaceExceededException {
+        boolean first = true;
+        while (true) {
+            synchronized (this) {
+                final Map<String, Index> t = this.tables;
+                if (t == null) return false;
+                final Index source = t.get(from);
+                final Index target = t.get(into);
+                if (source == null || target == null) return false;
+                if (first) {
+                    ConcurrentLog.info("SplitTable", "merging partition " + from + " (" + source.size() + " rows) into " + into + " (" + target.size() + " rows)");
+                    first = false;
+                }
+                if (source.isEmpty()) {
+                    final Map<String, BloomFilter> f = new HashMap<String, BloomFilter>(this.filters);
+                    f.remove(from);
+                    this.filters = f;
+                    final Map<String, Index> n = new HashMap<String, Index>(t);
+                    n.remove(from);
+                    this.tables = n;
+                    source.close();
+                    FileUtils.deletedelete(new File(this.path, from));
+                    return true;
+                }
+                // the last rows of a table are deleted without moving other rows
+                for (final Row.Entry row: source.top(mergeChunk)) {
+                    final byte[] key = row.getPrimaryKeyBytes();
+                    learn(into, key);
+                    target.put(row);
+                    source.delete(key);
+                }
+            }
+            Thread.yield(); // give waiting readers and writers a chance between two chunks
+        }
+    }
+
+    protected static synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(WorkflowProcessor.availableCPU);
+        return pool;
+    }
+
     private Index checkTable(final Index table) {
         // check size and age of given table; in case it is too large or too old
         // create a new table
@@ -385,15 +636,19 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
     @Override
     public Row.Entry replace(final Row.Entry row) throws IOException, SpaceExceededException {
         assert row.objectsize() <= this.rowdef.objectsize;
-        Index keeper = keeperOf(row.getPrimaryKeyBytes());
+        final byte[] key = row.getPrimaryKeyBytes();
+        Index keeper = keeperOf(key);
         if (keeper != null) synchronized (this) { // avoid concurrent IO from different methods
-            return keeper.replace(row);
+            keeper = recheck(keeper, key);
+            if (keeper != null) return keeper.replace(row);
         }
         synchronized (this) {
             assert this.current == null || this.tables.get(this.current) != null : "this.current = " + this.current;
             keeper = (this.current == null) ? newTable() : checkTable(this.tables.get(this.current));
+            learn(this.current, key);
+            // the row is written with the lock, otherwise a compaction could merge the partition before the row is written
+            keeper.put(row);
         }
-        keeper.put(row);
         return null;
     }
 
@@ -411,13 +666,15 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
         if (this.tables == null) return true;
         Index keeper = keeperOf(key);
         if (keeper != null) synchronized (this) { // avoid concurrent IO from different methods
-            return keeper.put(row);
+            keeper = recheck(keeper, key);
+            if (keeper != null) return keeper.put(row);
         }
         synchronized (this) {
             keeper = keeperOf(key); // we must check that again because it could have changed in between
             if (keeper != null) return keeper.put(row);
             assert this.current == null || this.tables.get(this.current) != null : "this.current = " + this.current;
             keeper = (this.current == null) ? newTable() : checkTable(this.tables.get(this.current));
+            learn(this.current, key);
             final boolean b = keeper.put(row);
             assert b;
             return b;
@@ -426,30 +683,66 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
 
     private Index keeperOf(final byte[] key) {
         if (key == null) return null;
-        if (this.tables == null) return null;
-        for (final Index oi: this.tables.values()) {
-            if (oi.has(key)) return oi;
+        final Map<String, Index> t = this.tables;
+        if (t == null) return null;
+        final Map<String, BloomFilter> f = this.filters;
+        this.lookups.increment();
+        for (final Map.Entry<String, Index> e: t.entrySet()) {
+            final BloomFilter filter = f.get(e.getKey());
+            if (filter != null && !filter.mightContain(key)) continue;
+            this.probes.increment();
+            if (e.getValue().has(key)) return e.getValue();
         }
         return null;
     }
 
+    /**
+     * check that a partition which was found without a lock still exists and still holds the key,
+     * it may have been moved by a compaction; otherwise find the partition again
+     */
+    private Index recheck(final Index keeper, final byte[] key) {
+        return this.tables.containsValue(keeper) && keeper.has(key) ? keeper : keeperOf(key);
+    }
+
     @Override
     public void addUnique(final Row.Entry row) throws IOException, SpaceExceededException {
         assert row.objectsize() <= this.rowdef.objectsize;
-        Index keeper = (this.current == null) ? null : this.tables.get(this.current);
         synchronized (this) {
             assert this.current == null || this.tables.get(this.current) != null : "this.current = " + this.current;
-            if (keeper == null) keeper = newTable(); else keeper = checkTable(keeper);
+            final Index keeper = (this.current == null) ? newTable() : checkTable(this.tables.get(this.current));
+            learn(this.current, row.getPrimaryKeyBytes());
+            keeper.addUnique(row); // with the lock, like in replace()
         }
-        keeper.addUnique(row);
     }
 
     @Override
     public List<RowCollection> removeDoubles() throws IOException, SpaceExceededException {
-        final Iterator<Index> i = this.tables.values().iterator();
+        final List<Index> partitions = new ArrayList<Index>(this.tables.values());
         final List<RowCollection> report = new ArrayList<RowCollection>();
-        while (i.hasNext()) {
-            report.addAll(i.next().removeDoubles());
+        if (partitions.size() < 2) {
+            for (final Index partition: partitions) report.addAll(partition.removeDoubles());
+            return report;
+        }
+        // the partitions are independent files; they are cleaned concurrently
+        final List<Callable<List<RowCollection>>> tasks = new ArrayList<Callable<List<RowCollection>>>(partitions.size());
+        for (final Index partition: partitions) {
+            tasks.add(new Callable<List<RowCollection>>() {
+                @Override
+                public List<RowCollection> call() throws Exception {
+                    return partition.removeDoubles();
+                }
+            });
+        }
+        for (final Future<List<RowCollection>> f: pool().invokeAll(tasks)) {
+            try {
+                report.addAll(f.get());
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof SpaceExceededException) throw (SpaceExceededException) e.getCause();
+                throw new IOException(e.getCause());
+            }
         }
         return report;
     }
@@ -459,7 +752,8 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
         final Index table = keeperOf(key);
         if (table == null) return false;
         synchronized (this) { // avoid concurrent IO from different methods
-            return table.delete(key);
+            final Index keeper = recheck(table, key);
+            return keeper != null && keeper.delete(key);
         }
     }
 
@@ -468,7 +762,8 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
         final Index table = keeperOf(key);
         if (table == null) return null;
         synchronized (this) { // avoid concurrent IO from different methods
-            return table.remove(key);
+            final Index keeper = recheck(table, key);
+            return keeper == null ? null : keeper.remove(key);
         }
     }
 
@@ -572,9 +867,156 @@ public class SplitTable implements Index, Iterable<Row.Entry> {
         while (i.hasNext()) {
             c[d++] = i.next().rows();
         }
+        if (parallelScan && c.length > 1) return new ParallelRowIterator(c);
         return StackIterator.stack(c, null, true);
     }
 
+    /**
+     * an iterator over the rows of all partitions without any order. Each partition is read
+     * by a task of the fork-join pool which hands its rows over to the iterator in a bounded queue.
+     * The tasks wait until the rows are taken from the queue; an iterator which is not read to the end
+     * must be closed, this stops the tasks.
+     */
+    private static final class ParallelRowIterator implements CloneableIterator<Row.Entry> {
+
+        private static final Object END = new Object(); // the end of one partition
+
+        private final CloneableIterator<Row.Entry>[] partitions;
+        private final BlockingQueue<Object> queue;
+        private volatile boolean closed;
+        private int running;
+        private Row.Entry next;
+
+        private ParallelRowIterator(final CloneableIterator<Row.Entry>[] partitions) {
+            this.partitions = partitions;
+            this.queue = new ArrayBlockingQueue<Object>(1024);
+            this.closed = false;
+            this.running = partitions.length;
+            for (final CloneableIterator<Row.Entry> p: partitions) {
+                pool().execute(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected void compute() {
+                        scan(p);
+                    }
+                });
+            }
+            this.next = fetch();
+        }
+
+        private void scan(final CloneableIterator<Row.Entry> p) {
+            try {
+                while (!this.closed && p.hasNext()) {
+                    final Row.Entry row = p.next();
+                    if (row != null && !offer(row)) return;
+                }
+            } catch (final Throwable e) {
+                ConcurrentLog.logException(e);
+            } finally {
+                p.close();
+                offer(END);
+            }
+        }
+
+        /**
+         * put an object into the queue; this waits until there is space in the queue or the iterator is closed.
+         * An interrupt does not stop the waiting, otherwise the end of a partition could get lost.
+         * @return false if the iterator was closed
+         */
+        private boolean offer(final Object o) {
+            final Put put = new Put(o);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    ForkJoinPool.managedBlock(put);
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return put.done;
+        }
+
+        /**
+         * a blocking put; the fork-join pool may start another thread while it waits
+         */
+        private final class Put implements ForkJoinPool.ManagedBlocker {
+
+            private final Object o;
+            private boolean done;
+
+            private Put(final Object o) {
+                this.o = o;
+                this.done = false;
+            }
+
+            @Override
+            public boolean block() throws InterruptedException {
+                while (!this.done && !ParallelRowIterator.this.closed) {
+                    this.done = ParallelRowIterator.this.queue.offer(this.o, 100, TimeUnit.MILLISECONDS);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!this.done && !ParallelRowIterator.this.closed) this.done = ParallelRowIterator.this.queue.offer(this.o);
+                return this.done || ParallelRowIterator.this.closed;
+            }
+        }
+
+        private Row.Entry fetch() {
+            while (this.running > 0 && !this.closed) {
+                final Object o;
+                try {
+                    o = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    close();
+                    return null;
+                }
+                if (o == null) continue; // check if the iterator was closed
+                if (o == END) {
+                    this.running--;
+                    continue;
+                }
+                return (Row.Entry) o;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Row.Entry next() {
+            final Row.Entry r = this.next;
+            this.next = fetch();
+            return r;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public CloneableIterator<Row.Entry> clone(final Object modifier) {
+            final CloneableIterator<Row.Entry>[] c = (CloneableIterator<Row.Entry>[]) Array.newInstance(CloneableIterator.class, this.partitions.length);
+            for (int i = 0; i < c.length; i++) c[i] = this.partitions[i].clone(modifier);
+            return new ParallelRowIterator(c);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            this.queue.clear();
+        }
+    }
+
     @Override
     public synchronized void close() {
         if (this.tables == null) return;
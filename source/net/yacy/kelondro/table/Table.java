@@ -29,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.CloneableIterator;
@@ -43,6 +45,7 @@ import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.AsyncGet;
 import net.yacy.kelondro.index.Column;
 import net.yacy.kelondro.index.Index;
 import net.yacy.kelondro.index.Row;
@@ -52,6 +55,7 @@ import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.index.RowSet;
 import net.yacy.kelondro.io.BufferedRecords;
 import net.yacy.kelondro.io.Records;
+import net.yacy.kelondro.io.WriteAheadLog;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.kelondroException;
@@ -65,6 +69,7 @@ import net.yacy.kelondro.util.kelondroException;
  * - the access index can be either completely in RAM (kelondroRAMIndex) or it is file-based (kelondroTree)
  * - the content cache can be either a complete RAM-based shadow of the File, or empty.
  * The content cache can also be deleted during run-time, if the available RAM gets too low.
+ * Optionally all writes are also appended to a write-ahead log, which is replayed if the table was not closed properly.
  */
 
 public class Table implements Index, Iterable<Row.Entry> {
@@ -76,6 +81,12 @@ public class Table implements Index, Iterable<Row.Entry> {
     private final static TreeMap<String, Table> tableTracker = new TreeMap<String, Table>();
     private final static long maxarraylength = 134217727L; // (2^27-1) that may be the maximum size of array length in some JVMs
 
+    /** durability of the writes to tables which are opened; with NONE no write-ahead log is written */
+    public static WriteAheadLog.Durability walDurability = WriteAheadLog.Durability.NONE;
+
+    /** size of a write-ahead log which causes a checkpoint: the table file is forced to the disk and the log is truncated */
+    public static long walCheckpointSize = 16L * 1024L * 1024L;
+
     private final long minmemremaining; // if less than this memory is remaininig, the memory copy of a table is abandoned
     private final int buffersize;
     private final Row rowdef;
@@ -83,6 +94,7 @@ public class Table implements Index, Iterable<Row.Entry> {
     private       HandleMap index;
     private       BufferedRecords file;
     private       RowSet table;
+    private       WriteAheadLog wal;
 
     public Table(
     		final File tablefile,
@@ -258,6 +270,13 @@ public class Table implements Index, Iterable<Row.Entry> {
             errors.close();
             assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size() + ", file = " + filename();
 
+            // replay the writes which were not in a checkpoint when the table was closed the last time
+            final File walfile = new File(tablefile.getPath() + WriteAheadLog.suffix);
+            recover(walfile);
+            if (walDurability != WriteAheadLog.Durability.NONE) {
+                this.wal = new WriteAheadLog(walfile, rowdef.objectsize, rowdef.primaryKeyLength, walDurability);
+            }
+
             // warm up
             if (!freshFile && warmUp) {warmUp0();}
         } catch (final FileNotFoundException e) {
@@ -315,6 +334,78 @@ public class Table implements Index, Iterable<Row.Entry> {
         optimize();
     }
 
+    /**
+     * replay a write-ahead log which was left because the table was not closed;
+     * afterwards the table file is forced to the disk and the log is deleted
+     * @param walfile
+     * @throws IOException
+     */
+    private void recover(final File walfile) throws IOException {
+        if (!walfile.exists()) return;
+        // a row which was moved when the process stopped may be twice in the file
+        warmUp0();
+        final int records = WriteAheadLog.replay(walfile, this.rowdef.objectsize, this.rowdef.primaryKeyLength, new WriteAheadLog.Replay() {
+            @Override
+            public void put(final byte[] row) throws IOException {
+                if (!Table.this.rowdef.objectOrder.wellformed(row, 0, Table.this.rowdef.primaryKeyLength)) return;
+                try {
+                    put0(Table.this.rowdef.newEntry(row));
+                } catch (final SpaceExceededException e) {
+                    throw new IOException("RowSpaceExceededException: " + e.getMessage());
+                }
+            }
+            @Override
+            public void remove(final byte[] key) throws IOException {
+                remove0(key);
+            }
+            @Override
+            public void clear() throws IOException {
+                clear0();
+            }
+        });
+        if (records > 0) log.info(filename() + ": recovered " + records + " writes from the write-ahead log");
+        this.file.sync();
+        FileUtils.deletedelete(walfile);
+    }
+
+    /**
+     * make the writes in the write-ahead log durable as defined by its durability. This is called after
+     * each write when the lock of the table is released, so concurrent writes can be forced together.
+     * @throws IOException
+     */
+    private void commit() throws IOException {
+        final WriteAheadLog w = this.wal;
+        if (w == null) return;
+        w.commit();
+        if (w.size() > walCheckpointSize) synchronized (this) {
+            if (w.size() > walCheckpointSize) checkpoint();
+        }
+    }
+
+    /**
+     * force the table file to the disk and truncate the write-ahead log
+     * @throws IOException
+     */
+    private void checkpoint() throws IOException {
+        if (this.wal == null || this.file == null) return;
+        this.file.sync();
+        this.wal.truncate();
+    }
+
+    /**
+     * log the last row of the file before it is moved into a gap; the log is written before the
+     * file is shortened, so the row can be recovered if the move is interrupted
+     * @throws IOException
+     */
+    private void logMove() throws IOException {
+        if (this.wal == null) return;
+        final byte[] p = new byte[this.rowdef.objectsize];
+        this.file.get(this.file.size() - 1, p, 0);
+        if (!this.rowdef.objectOrder.wellformed(p, 0, this.rowdef.primaryKeyLength)) return;
+        this.wal.put(p);
+        this.wal.protect();
+    }
+
     @Override
     public void optimize() {
         this.index.optimize();
@@ -477,7 +568,12 @@ public class Table implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public synchronized void addUnique(final Entry row) throws IOException, SpaceExceededException {
+    public void addUnique(final Entry row) throws IOException, SpaceExceededException {
+        synchronized (this) {addUnique0(row);}
+        commit();
+    }
+
+    private void addUnique0(final Entry row) throws IOException, SpaceExceededException {
         assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
         assert this.table == null || this.table.size() == this.index.size() : "table.size() = " + this.table.size() + ", index.size() = " + this.index.size();
         final int i = (int) this.file.size();
@@ -500,21 +596,25 @@ public class Table implements Index, Iterable<Row.Entry> {
             if (abandonTable()) this.table = null;
         }
         this.file.add(rowbytes, 0);
+        if (this.wal != null) this.wal.put(rowbytes);
         assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
     }
 
-    public synchronized void addUnique(final List<Entry> rows) throws IOException, SpaceExceededException {
-        assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
-        for (final Entry entry: rows) {
-            try {
-                addUnique(entry);
-            } catch (final SpaceExceededException e) {
-                if (this.table == null) throw e;
-                this.table = null;
-                addUnique(entry);
+    public void addUnique(final List<Entry> rows) throws IOException, SpaceExceededException {
+        synchronized (this) {
+            assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
+            for (final Entry entry: rows) {
+                try {
+                    addUnique0(entry);
+                } catch (final SpaceExceededException e) {
+                    if (this.table == null) throw e;
+                    this.table = null;
+                    addUnique0(entry);
+                }
             }
+            assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
         }
-        assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
+        commit();
     }
 
     /**
@@ -525,7 +625,14 @@ public class Table implements Index, Iterable<Row.Entry> {
      * @throws
      */
     @Override
-    public synchronized List<RowCollection> removeDoubles() throws IOException, SpaceExceededException {
+    public List<RowCollection> removeDoubles() throws IOException, SpaceExceededException {
+        final List<RowCollection> report;
+        synchronized (this) {report = removeDoubles0();}
+        commit();
+        return report;
+    }
+
+    private List<RowCollection> removeDoubles0() throws IOException, SpaceExceededException {
         assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
         final List<RowCollection> report = new ArrayList<RowCollection>();
         RowSet rows;
@@ -561,6 +668,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 }
             }
             report.add(rows);
+            if (this.wal != null && !rows.isEmpty()) this.wal.remove(rows.get(0, false).getPrimaryKeyBytes());
         }
         // finally delete the affected rows, but start with largest id first, otherwise we overwrite wrong entries
         Long s;
@@ -579,6 +687,17 @@ public class Table implements Index, Iterable<Row.Entry> {
 
     @Override
     public void close() {
+        if (this.wal != null) {
+            boolean checkpoint = false;
+            try {
+                synchronized (this) {checkpoint();}
+                checkpoint = true;
+            } catch (final IOException e) {
+                log.severe("checkpoint failed for " + filename() + ", the write-ahead log is kept for a replay", e);
+            }
+            this.wal.close(checkpoint);
+            this.wal = null;
+        }
     	String tablefile = null;
         if (this.file != null) {
         	tablefile = this.file.filename().toString();
@@ -642,17 +761,83 @@ public class Table implements Index, Iterable<Row.Entry> {
         return this.rowdef.newEntry(b);
     }
 
+    /**
+     * get many rows with one lock and one batch read: the positions of all keys are looked up,
+     * rows with a copy in RAM are constructed at once and all other rows are read in the order
+     * of their position in the file, so neighbouring rows are read with a single vectored read.
+     */
     @Override
     public Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) throws IOException, InterruptedException {
         final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(row().objectOrder);
-        Row.Entry entry;
-        for (final byte[] key: keys) {
-            entry = get(key, forcecopy);
-            if (entry != null) map.put(key, entry);
+        if (keys.isEmpty()) return map;
+        synchronized (this) {
+            if (this.file == null || this.index == null) return map;
+            final byte[][] pending = new byte[keys.size()][];
+            final long[] order = new long[keys.size()]; // position in the file in the upper 32 bits, index in pending in the lower bits
+            int c = 0;
+            Row.Entry cacherow;
+            for (final byte[] key: keys) {
+                final int i = (int) this.index.get(key);
+                if (i == -1) continue;
+                if (this.table != null && (cacherow = this.table.get(i, false)) != null) {
+                    // construct the row using the copy in RAM
+                    final byte[] b = new byte[this.rowdef.objectsize];
+                    System.arraycopy(key, 0, b, 0, this.rowdef.primaryKeyLength);
+                    System.arraycopy(cacherow.bytes(), 0, b, this.rowdef.primaryKeyLength, this.rowdef.objectsize - this.rowdef.primaryKeyLength);
+                    map.put(key, this.rowdef.newEntry(b));
+                    continue;
+                }
+                pending[c] = key;
+                order[c] = (((long) i) << 32) | c;
+                c++;
+            }
+            if (c == 0) return map;
+            Arrays.sort(order, 0, c);
+            // double keys have the same position; they are read only once
+            final long[] positions = new long[c];
+            final byte[][] rows = new byte[c][];
+            int n = 0;
+            for (int k = 0; k < c; k++) {
+                final long p = order[k] >>> 32;
+                if (n > 0 && positions[n - 1] == p) continue;
+                positions[n] = p;
+                rows[n] = new byte[this.rowdef.objectsize];
+                order[n++] = order[k];
+            }
+            try {
+                if (n == c) {
+                    this.file.get(positions, rows);
+                } else {
+                    this.file.get(Arrays.copyOf(positions, n), Arrays.copyOf(rows, n));
+                }
+            } catch (final IndexOutOfBoundsException e) {
+                // there must be a problem with the table index; the single get repairs the index
+                log.severe("IndexOutOfBoundsException: " + e.getMessage(), e);
+                for (int k = 0; k < n; k++) {
+                    final Row.Entry entry = get0(pending[(int) order[k]]);
+                    if (entry != null) map.put(pending[(int) order[k]], entry);
+                }
+                return map;
+            }
+            for (int k = 0; k < n; k++) {
+                final byte[] key = pending[(int) order[k]];
+                final Row.Entry entry = this.rowdef.newEntry(rows[k]);
+                // like in get(), a row from the file is only returned if it has the requested key
+                if (this.rowdef.objectOrder.equal(key, entry.getPrimaryKeyBytes())) {
+                    map.put(key, entry);
+                } else {
+                    log.severe("wrong key at position " + positions[k] + " in " + filename() + ": key = " + ASCII.String(key) + ", e.k = " + ASCII.String(entry.getPrimaryKeyBytes()));
+                }
+            }
         }
         return map;
     }
 
+    @Override
+    public CompletableFuture<Map<byte[], Row.Entry>> getAsync(final Collection<byte[]> keys, final boolean forcecopy) {
+        return AsyncGet.submit(this, keys, forcecopy);
+    }
+
     @Override
     public boolean has(final byte[] key) {
         if (this.index == null) return false;
@@ -666,6 +851,12 @@ public class Table implements Index, Iterable<Row.Entry> {
 
     @Override
     public Entry replace(final Entry row) throws IOException, SpaceExceededException {
+        final Entry old = replace0(row);
+        commit();
+        return old;
+    }
+
+    private Entry replace0(final Entry row) throws IOException, SpaceExceededException {
         assert row != null;
         if (this.file == null || row == null) return null;
         final byte[] rowb = row.bytes();
@@ -678,11 +869,11 @@ public class Table implements Index, Iterable<Row.Entry> {
             final int i = (int) this.index.get(key);
             if (i == -1) {
                 try {
-                    addUnique(row);
+                    addUnique0(row);
                 } catch (final SpaceExceededException e) {
                     if (this.table == null) throw e;
                     this.table = null;
-                    addUnique(row);
+                    addUnique0(row);
                 }
                 return null;
             }
@@ -708,6 +899,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 if (abandonTable()) this.table = null;
                 this.file.put(i, rowb, 0);
             }
+            if (this.wal != null) this.wal.put(rowb);
             assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
             assert this.table == null || this.table.size() == this.index.size() : "table.size() = " + this.table.size() + ", index.size() = " + this.index.size();
             // return old value
@@ -724,6 +916,12 @@ public class Table implements Index, Iterable<Row.Entry> {
      */
     @Override
     public boolean put(final Entry row) throws IOException, SpaceExceededException {
+        final boolean added = put0(row);
+        commit();
+        return added;
+    }
+
+    private boolean put0(final Entry row) throws IOException, SpaceExceededException {
         assert row != null;
         if (this.file == null || row == null) return true;
         final byte[] rowb = row.bytes();
@@ -736,11 +934,11 @@ public class Table implements Index, Iterable<Row.Entry> {
             final int i = (int) this.index.get(key);
             if (i == -1) {
                 try {
-                    addUnique(row);
+                    addUnique0(row);
                 } catch (final SpaceExceededException e) {
                     if (this.table == null) throw e;
                     this.table = null;
-                    addUnique(row);
+                    addUnique0(row);
                 }
                 return true;
             }
@@ -757,6 +955,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                     this.table = null;
                 }
             }
+            if (this.wal != null) this.wal.put(rowb);
             assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
             assert this.table == null || this.table.size() == this.index.size() : "table.size() = " + this.table.size() + ", index.size() = " + this.index.size();
             return false;
@@ -778,6 +977,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 this.file.cleanLast();
             } else {
                 while (this.file.size() > 0) {
+                    logMove();
                     this.file.cleanLast(p, 0);
                     if (!(this.rowdef.objectOrder.wellformed(p, 0, this.rowdef.primaryKeyLength))) {
                         continue;
@@ -804,6 +1004,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 }
 
                 while (this.file.size() > 0) {
+                    logMove();
                     this.file.cleanLast(p, 0);
                     final Row.Entry lr = this.rowdef.newEntry(p);
                     if (lr == null) {
@@ -833,12 +1034,20 @@ public class Table implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public synchronized Entry remove(final byte[] key) throws IOException {
+    public Entry remove(final byte[] key) throws IOException {
+        final Entry removed;
+        synchronized (this) {removed = remove0(key);}
+        commit();
+        return removed;
+    }
+
+    private Entry remove0(final byte[] key) throws IOException {
         assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
         assert this.table == null || this.table.size() == this.index.size() : "table.size() = " + this.table.size() + ", index.size() = " + this.index.size();
         assert key.length == this.rowdef.primaryKeyLength;
         final int i = (int) this.index.get(key);
         if (i == -1) return null; // nothing to do
+        if (this.wal != null) this.wal.remove(key);
 
         // prepare result
         final byte[] b = new byte[this.rowdef.objectsize];
@@ -865,6 +1074,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 this.file.get(i, b, 0);
 
                 // fill the gap with value from last entry in file
+                logMove();
                 this.file.cleanLast(p, 0);
                 this.file.put(i, p, 0);
                 final byte[] k = new byte[this.rowdef.primaryKeyLength];
@@ -907,6 +1117,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 }
 
                 // move entry from last entry in file to gap position
+                logMove();
                 this.file.cleanLast(p, 0);
                 this.file.put(i, p, 0);
                 // set new index for moved entry in index
@@ -928,7 +1139,14 @@ public class Table implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public synchronized Entry removeOne() throws IOException {
+    public Entry removeOne() throws IOException {
+        final Entry removed;
+        synchronized (this) {removed = removeOne0();}
+        commit();
+        return removed;
+    }
+
+    private Entry removeOne0() throws IOException {
         //assert this.file.size() == this.index.size() : "file.size() = " + this.file.size() + ", index.size() = " + this.index.size();
         assert this.table == null || this.table.size() == this.index.size() : "table.size() = " + this.table.size() + ", index.size() = " + this.index.size();
         final byte[] le = new byte[this.rowdef.objectsize];
@@ -939,6 +1157,7 @@ public class Table implements Index, Iterable<Row.Entry> {
         final Row.Entry lr = this.rowdef.newEntry(le);
         assert lr != null;
         assert lr.getPrimaryKeyBytes() != null;
+        if (this.wal != null) this.wal.remove(lr.getPrimaryKeyBytes());
         final int is = this.index.size();
         assert this.index.has(lr.getPrimaryKeyBytes());
         final int i = (int) this.index.remove(lr.getPrimaryKeyBytes());
@@ -988,11 +1207,21 @@ public class Table implements Index, Iterable<Row.Entry> {
     }
 
     @Override
-    public synchronized void clear() throws IOException {
+    public void clear() throws IOException {
+        synchronized (this) {clear0();}
+        commit();
+    }
+
+    private void clear0() throws IOException {
+        if (this.wal != null) {
+            this.wal.clear();
+            this.wal.protect();
+        }
         this.file.clear();
         // initialize index and copy table
         this.table = (this.table == null) ? null : new RowSet(this.taildef);
         this.index.clear();
+        checkpoint();
     }
 
     @Override
@@ -1065,6 +1294,7 @@ public class Table implements Index, Iterable<Row.Entry> {
         public void remove() {
             if (this.key != null) {
                 try {
+                    if (Table.this.wal != null) Table.this.wal.remove(this.key);
                     removeInFile((int) this.idx);
                 } catch (final IOException e) {
                 } catch (final SpaceExceededException e) {
@@ -0,0 +1,305 @@
+// BDictionaryView.java
+// -----------------------
+// part of YaCy
+// first published 17.10.2026 on http://yacy.net
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.util;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+/**
+ * a read-only view on a bencoded dictionary with string values, as it is stored in a BEncodedHeap.
+ * Other than the BDecoder, the view does not create objects for the entries of the dictionary:
+ * the positions of the keys and values inside of the encoded bytes are computed once with the first
+ * access and values are decoded only if they are requested. Entries which do not have a string value
+ * are ignored; if a key appears twice, the last value is used like in the BDecoder.
+ */
+public final class BDictionaryView {
+
+    private final byte[] b;
+    private int[] offsets; // key offset, key length, value offset, value length for each entry
+    private int size;      // number of entries, -1 if b is not a dictionary
+
+    public BDictionaryView(final byte[] b) {
+        this.b = b;
+        this.offsets = null;
+        this.size = 0;
+    }
+
+    /**
+     * compute the positions of all entries; this is done only once
+     */
+    private void parse() {
+        if (this.offsets != null) return;
+        int[] o = new int[64];
+        int n = 0;
+        if (this.b == null || this.b.length == 0 || this.b[0] != 'd') {
+            this.offsets = o;
+            this.size = -1;
+            return;
+        }
+        int pos = 1;
+        while (pos < this.b.length && this.b[pos] != 'e') {
+            // the key must be a string
+            final int keylen = stringLength(pos);
+            if (keylen < 0) break;
+            final int keyoff = colon(pos) + 1;
+            pos = keyoff + keylen;
+            if (pos >= this.b.length) break;
+            final int vallen = stringLength(pos);
+            if (vallen >= 0) {
+                final int valoff = colon(pos) + 1;
+                if (valoff + vallen > this.b.length) break;
+                if (n + 4 > o.length) {
+                    final int[] p = new int[o.length * 2];
+                    System.arraycopy(o, 0, p, 0, o.length);
+                    o = p;
+                }
+                o[n++] = keyoff; o[n++] = keylen; o[n++] = valoff; o[n++] = vallen;
+                pos = valoff + vallen;
+            } else {
+                pos = skip(pos);
+                if (pos < 0) break;
+            }
+        }
+        this.offsets = o;
+        this.size = n / 4;
+    }
+
+    private int colon(int pos) {
+        while (pos < this.b.length && this.b[pos] != ':') pos++;
+        return pos;
+    }
+
+    /**
+     * @return the length of a string starting at pos, or -1 if there is no string at pos
+     */
+    private int stringLength(int pos) {
+        if (pos >= this.b.length || this.b[pos] < '0' || this.b[pos] > '9') return -1;
+        int len = 0;
+        while (pos < this.b.length && this.b[pos] >= '0' && this.b[pos] <= '9') len = len * 10 + (this.b[pos++] - '0');
+        if (pos >= this.b.length || this.b[pos] != ':' || pos + 1 + len > this.b.length) return -1;
+        return len;
+    }
+
+    /**
+     * @return the position after the object starting at pos, or -1 if the object is malformed
+     */
+    private int skip(int pos) {
+        if (pos >= this.b.length) return -1;
+        final byte c = this.b[pos];
+        if (c >= '0' && c <= '9') {
+            final int len = stringLength(pos);
+            return len < 0 ? -1 : colon(pos) + 1 + len;
+        }
+        if (c == 'i') {
+            while (pos < this.b.length && this.b[pos] != 'e') pos++;
+            return pos < this.b.length ? pos + 1 : -1;
+        }
+        if (c == 'l' || c == 'd') {
+            pos++;
+            while (pos < this.b.length && this.b[pos] != 'e') {
+                pos = skip(pos);
+                if (pos < 0) return -1;
+            }
+            return pos < this.b.length ? pos + 1 : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the bytes are a bencoded dictionary
+     */
+    public boolean isDictionary() {
+        parse();
+        return this.size >= 0;
+    }
+
+    /**
+     * @return the number of entries with string values
+     */
+    public int size() {
+        parse();
+        return Math.max(0, this.size);
+    }
+
+    /**
+     * @return the encoded dictionary; the values of the view are slices of this array
+     */
+    public byte[] array() {
+        return this.b;
+    }
+
+    /**
+     * find an entry; the key is compared with the encoded bytes without decoding them
+     * @param key
+     * @return the number of the entry or -1 if the key does not exist
+     */
+    public int indexOf(final String key) {
+        parse();
+        for (int i = this.size - 1; i >= 0; i--) {
+            if (keyEquals(i, key)) return i;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(final int i, final String key) {
+        final int off = this.offsets[4 * i], len = this.offsets[4 * i + 1];
+        if (len < key.length()) return false; // a key needs at least one byte for each char
+        int p = off;
+        for (int j = 0; j < key.length(); j++) {
+            final char c = key.charAt(j);
+            if (c >= 0x80) return UTF8.String(this.b, off, len).equals(key);
+            if (p >= off + len || this.b[p++] != c) return false;
+        }
+        return p == off + len;
+    }
+
+    public String key(final int i) {
+        parse();
+        return UTF8.String(this.b, this.offsets[4 * i], this.offsets[4 * i + 1]);
+    }
+
+    public int valueOffset(final int i) {
+        parse();
+        return this.offsets[4 * i + 2];
+    }
+
+    public int valueLength(final int i) {
+        parse();
+        return this.offsets[4 * i + 3];
+    }
+
+    public boolean containsKey(final String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * get a copy of a value
+     * @param key
+     * @return the value or null if the key does not exist
+     */
+    public byte[] get(final String key) {
+        final int i = indexOf(key);
+        if (i < 0) return null;
+        final byte[] v = new byte[this.offsets[4 * i + 3]];
+        System.arraycopy(this.b, this.offsets[4 * i + 2], v, 0, v.length);
+        return v;
+    }
+
+    /**
+     * get a value without copying it
+     * @param key
+     * @return a read-only buffer on the value inside of the encoded dictionary or null if the key does not exist
+     */
+    public ByteBuffer slice(final String key) {
+        final int i = indexOf(key);
+        if (i < 0) return null;
+        return ByteBuffer.wrap(this.b, this.offsets[4 * i + 2], this.offsets[4 * i + 3]).slice().asReadOnlyBuffer();
+    }
+
+    public String get(final String key, final String dflt) {
+        final int i = indexOf(key);
+        if (i < 0) return dflt;
+        return UTF8.String(this.b, this.offsets[4 * i + 2], this.offsets[4 * i + 3]);
+    }
+
+    /**
+     * get a decimal value without decoding it to a string
+     * @param key
+     * @param dflt the value which is returned if the key does not exist or the value is not a number
+     * @return the value
+     */
+    public long get(final String key, final long dflt) {
+        final int i = indexOf(key);
+        if (i < 0) return dflt;
+        int p = this.offsets[4 * i + 2];
+        final int end = p + this.offsets[4 * i + 3];
+        while (p < end && this.b[p] == ' ') p++;
+        final boolean negative = p < end && this.b[p] == '-';
+        if (negative || (p < end && this.b[p] == '+')) p++;
+        if (p >= end) return dflt;
+        long v = 0;
+        for (; p < end; p++) {
+            final int d = this.b[p] - '0';
+            if (d < 0 || d > 9 || v > (Long.MAX_VALUE - d) / 10) return dflt;
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * compare a value without copying it
+     * @param key
+     * @param value
+     * @return true if the key exists and has the given value
+     */
+    public boolean equals(final String key, final byte[] value) {
+        final int i = indexOf(key);
+        if (i < 0 || value == null || value.length != this.offsets[4 * i + 3]) return false;
+        final int off = this.offsets[4 * i + 2];
+        for (int j = 0; j < value.length; j++) if (this.b[off + j] != value[j]) return false;
+        return true;
+    }
+
+    /**
+     * decode the dictionary
+     * @return a map with all entries or null if the bytes are not a dictionary
+     */
+    public Map<String, byte[]> toMap() {
+        parse();
+        if (this.size < 0) return null;
+        final Map<String, byte[]> m = new HashMap<String, byte[]>(this.size * 4 / 3 + 1);
+        for (int i = 0; i < this.size; i++) {
+            final byte[] v = new byte[this.offsets[4 * i + 3]];
+            System.arraycopy(this.b, this.offsets[4 * i + 2], v, 0, v.length);
+            m.put(key(i), v);
+        }
+        return m;
+    }
+
+    /**
+     * decode some entries of the dictionary
+     * @param keys the keys of the entries
+     * @return a map with the entries of the given keys which exist or null if the bytes are not a dictionary
+     */
+    public Map<String, byte[]> toMap(final String... keys) {
+        parse();
+        if (this.size < 0) return null;
+        final Map<String, byte[]> m = new HashMap<String, byte[]>(keys.length * 4 / 3 + 1);
+        for (final String key: keys) {
+            final byte[] v = get(key);
+            if (v != null) m.put(key, v);
+        }
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        final Map<String, byte[]> m = toMap();
+        if (m == null) return "null";
+        final StringBuilder s = new StringBuilder(this.b.length + 2);
+        s.append('{');
+        for (final Map.Entry<String, byte[]> e: m.entrySet()) s.append(e.getKey()).append(':').append(UTF8.String(e.getValue())).append(',');
+        if (s.length() > 1) s.setLength(s.length() - 1);
+        return s.append('}').toString();
+    }
+}
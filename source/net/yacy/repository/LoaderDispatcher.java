@@ -36,9 +36,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -250,6 +254,18 @@ public final class LoaderDispatcher {
         } else {
             throw new IOException("Unsupported protocol '" + protocol + "' in url " + url);
         }
+        return storeToCache(response, url, crawlProfile);
+    }
+
+    /**
+     * check a response which was loaded from the internet and store it to the cache if the profile and the response allow that
+     * @param response the loaded response; may be null
+     * @param url the requested url
+     * @param crawlProfile the profile of the request; may be null
+     * @return the response
+     * @throws IOException if the response is null or has no content
+     */
+    private Response storeToCache(final Response response, final DigestURL url, final CrawlProfile crawlProfile) throws IOException {
         if (response == null) {
             throw new IOException("no response (NULL) for url " + url);
         }
@@ -281,6 +297,90 @@ public final class LoaderDispatcher {
         return response;
     }
 
+    /**
+     * load a resource like load() does, but load http(s) resources with the non-blocking client of the HTTPLoader.
+     * There is no forced sleep for the access time of the host: the caller must take the request from a balancer
+     * with popReady() which hands out only hosts with an expired delta time. The cache lookup, other protocols
+     * and the storage of the result into the cache are done in the executor.
+     * @param request the request essentials
+     * @param cacheStrategy strategy according to NOCACHE, IFFRESH, IFEXIST, CACHEONLY
+     * @param blacklistType
+     * @param agent
+     * @param executor the executor for blocking parts of the load
+     * @return a future which completes with the loaded entity or exceptionally with an IOException
+     */
+    public CompletableFuture<Response> loadAsync(final Request request, final CacheStrategy cacheStrategy, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor) {
+        final CompletableFuture<Response> future = new CompletableFuture<Response>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final DigestURL url = request.url();
+                        final String protocol = url.getProtocol();
+                        final int maxFileSize = protocolMaxFileSize(url);
+                        if (!protocol.equals("http") && !protocol.equals("https")) {
+                            future.complete(load(request, cacheStrategy, maxFileSize, blacklistType, agent));
+                            return;
+                        }
+                        final String host = url.getHost();
+                        final CrawlProfile crawlProfile = request.profileHandle() == null ? null : LoaderDispatcher.this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+
+                        // check if url is in blacklist
+                        if (blacklistType != null && host != null && Switchboard.urlBlacklist.isListed(blacklistType, host.toLowerCase(Locale.ROOT), url.getFile())) {
+                            LoaderDispatcher.this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), crawlProfile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+                            throw new IOException("DISPATCHER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+                        }
+
+                        // check if we have the page in the cache
+                        final Response cached = loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
+                        if (cached != null) {
+                            future.complete(cached);
+                            return;
+                        }
+                        if (cacheStrategy == CacheStrategy.CACHEONLY) {
+                            throw new IOException("cache only strategy");
+                        }
+
+                        // remember the access time; the balancer has already checked it
+                        if (host != null) {
+                            if (accessTime.size() > accessTimeMaxsize) accessTime.clear(); // prevent a memory leak here
+                            accessTime.put(host, System.currentTimeMillis());
+                        }
+
+                        // the loader completes its future in the executor, so the cache is also written there
+                        LoaderDispatcher.this.httpLoader.loadAsync(request, crawlProfile, maxFileSize, blacklistType, agent, executor).whenComplete(new BiConsumer<Response, Throwable>() {
+                            @Override
+                            public void accept(final Response response, final Throwable e) {
+                                if (e != null) {
+                                    future.completeExceptionally(e);
+                                    return;
+                                }
+                                try {
+                                    future.complete(storeToCache(response, url, crawlProfile));
+                                } catch (final Throwable ee) {
+                                    future.completeExceptionally(ee);
+                                }
+                            }
+                        });
+                    } catch (final Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("loader is closed: " + e.getMessage()));
+        }
+        return future;
+    }
+
+    /**
+     * stop the non-blocking client which is used by loadAsync()
+     */
+    public void closeAsync() {
+        HTTPLoader.closeAsync();
+    }
+
     /**
      * Try loading requested resource from cache according to cache strategy
      * @param request request to resource
@@ -131,6 +131,7 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.TimeoutRequest;
 import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.cora.protocol.http.ProxySettings;
+import net.yacy.cora.storage.TinyLFUCache;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.JSONArray;
@@ -140,6 +141,8 @@ import net.yacy.cora.util.Memory;
 import net.yacy.crawler.CrawlStacker;
 import net.yacy.crawler.CrawlSwitchboard;
 import net.yacy.crawler.HarvestProcess;
+import net.yacy.crawler.HostBalancer;
+import net.yacy.crawler.URLSeenFilter;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.CrawlProfile.CrawlAttribute;
@@ -187,12 +190,21 @@ import net.yacy.gui.Tray;
 import net.yacy.http.YaCyHttpServer;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BEncodedHeap;
+import net.yacy.kelondro.blob.HeapReader;
 import net.yacy.kelondro.blob.Tables;
 import net.yacy.kelondro.blob.Tables.SortDirection;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.MergeRowSorter;
+import net.yacy.kelondro.index.RadixRowSorter;
+import net.yacy.kelondro.index.RowCollection;
+import net.yacy.kelondro.index.RowSetCodec;
+import net.yacy.kelondro.io.WriteAheadLog;
 import net.yacy.kelondro.logging.GuiHandler;
+import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceContainerBlockIndex;
+import net.yacy.kelondro.table.Table;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.OS;
@@ -343,6 +355,15 @@ public final class Switchboard extends serverSwitch {
         // set timeoutrequests
         boolean timeoutrequests = getConfigBool("timeoutrequests", true);
         TimeoutRequest.enable = timeoutrequests;
+
+        // the caches which were created before the configuration was read are created again with the configured implementation
+        TinyLFUCache.enabled = "tinylfu".equals(getConfig("cache.engine", "arc"));
+        if (TinyLFUCache.enabled) {
+            Digest.initCache();
+            Word.initCache();
+            Domains.initCaches();
+            TextSnippet.snippetsCache.initCache();
+        }
         
         // UPnP port mapping
         if ( getConfigBool(SwitchboardConstants.UPNP_ENABLED, false) ) {
@@ -449,6 +470,11 @@ public final class Switchboard extends serverSwitch {
 					}
 				}
 
+                if (Switchboard.this.getConfigBool("index.termDictionary", false)) {
+                    Thread.currentThread().setName("LibraryProvider.initTermDictionary");
+                    LibraryProvider.initTermDictionary();
+                }
+
                 Thread.currentThread().setName("ProbabilisticClassification.initialize");
                 ProbabilisticClassifier.initialize(Switchboard.this.classificationPath);
             }
@@ -579,6 +605,27 @@ public final class Switchboard extends serverSwitch {
 
         // initialize index
         ReferenceContainer.maxReferences = getConfigInt("index.maxReferences", 0);
+        HeapReader.useMappedReader = getConfigBool("index.blob.mmap", false);
+        HeapReader.concurrentReaders = getConfigBool("index.blob.concurrentReaders", true);
+        HeapReader.offHeapIndex = getConfigBool("index.blob.offHeapIndex", false);
+        HeapReader.hashIndex = getConfigBool("index.blob.hashIndex", false);
+        HeapReader.bloomFilter = getConfigBool("index.blob.bloomFilter", true);
+        ArrayStack.openThreads = Math.max(1, getConfigInt("index.blob.openThreads", 1));
+        Segment.mergeThreads = Math.max(1, getConfigInt("index.merge.threads", 1));
+        IndexCell.mergeFiles = Math.max(2, getConfigInt("index.merge.files", 2));
+        IndexCell.ramShards = Math.max(1, Math.min(64, getConfigInt("index.rwi.ramShards", 1)));
+        ArrayStack.mergeStreamSize = getConfigLong("index.merge.streamSize", 16 * 1024 * 1024);
+        ReferenceContainerBlockIndex.blockSize = Math.max(0, getConfigInt("index.rwi.blockSize", 256));
+        Segment.compressTermIndex = getConfigBool("index.rwi.compress", false);
+        Segment.compressCitationIndex = getConfigBool("index.citation.compress", false);
+        RowSetCodec.blockSize = Math.max(1, getConfigInt("index.rwi.compress.blockSize", 128));
+        final String sortEngine = getConfig("index.sort.engine", "quick");
+        final int sortParallelLimit = getConfigInt("index.sort.parallelLimit", 100000);
+        RowCollection.sorter = "radix".equals(sortEngine) ? new RadixRowSorter(sortParallelLimit) : "merge".equals(sortEngine) ? new MergeRowSorter(sortParallelLimit) : null;
+        final String walDurability = getConfig("index.table.wal", "none");
+        Table.walDurability = "sync".equals(walDurability) ? WriteAheadLog.Durability.SYNC : "async".equals(walDurability) ? WriteAheadLog.Durability.ASYNC : WriteAheadLog.Durability.NONE;
+        Table.walCheckpointSize = Math.max(64 * 1024, getConfigLong("index.table.wal.checkpointSize", 16 * 1024 * 1024));
+        WriteAheadLog.commitDelay = Math.max(1, getConfigLong("index.table.wal.commitDelay", 10));
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
@@ -923,6 +970,7 @@ public final class Switchboard extends serverSwitch {
                 new File(appPath, "defaults/oaiListFriendsSource.xml"),
                 getDataPath());
         OAIListFriendsLoader.init(this.loader, oaiFriends, ClientIdentification.yacyInternetCrawlerAgent);
+        HostBalancer.hashDepthCache(getConfigBool(SwitchboardConstants.CRAWLER_DEPTHCACHE_HASH, false));
         this.crawlQueues = new CrawlQueues(this, this.queuesRoot);
 
         // on startup, resume all crawls
@@ -1002,7 +1050,8 @@ public final class Switchboard extends serverSwitch {
                 this.peers,
                 isIntranetMode(),
                 isGlobalMode(),
-                this.domainList); // Intranet and Global mode may be both true!
+                this.domainList, // Intranet and Global mode may be both true!
+                newURLSeenFilter());
 
         // possibly switch off localIP check
         Domains.setNoLocalCheck(isAllIPMode());
@@ -1597,7 +1646,8 @@ public final class Switchboard extends serverSwitch {
                     this.peers,
                     "local.any".indexOf(getConfig(SwitchboardConstants.NETWORK_DOMAIN, "global")) >= 0,
                     "global.any".indexOf(getConfig(SwitchboardConstants.NETWORK_DOMAIN, "global")) >= 0,
-                    this.domainList);
+                    this.domainList,
+                    newURLSeenFilter());
 
         }
         Domains.setNoLocalCheck(isAllIPMode()); // possibly switch off localIP check
@@ -1821,6 +1871,16 @@ public final class Switchboard extends serverSwitch {
         return "any".indexOf(getConfig(SwitchboardConstants.NETWORK_DOMAIN, "global")) >= 0;
     }
 
+    /**
+     * open the url-seen filter of the crawl stacker in the queues path
+     * @return the filter or null if the filter is switched off
+     */
+    private URLSeenFilter newURLSeenFilter() {
+        if (!getConfigBool(SwitchboardConstants.CRAWLER_URLSEEN_FILTER, true)) return null;
+        final long maxURLs = getConfigLong(SwitchboardConstants.CRAWLER_URLSEEN_FILTER_MAXURLS, 4000000L);
+        return new URLSeenFilter(new File(this.queuesRoot, "URLSeenFilter"), Math.min(1000000L, maxURLs / 4), maxURLs, 0.00001d);
+    }
+
     /**
      * In nocheck mode the isLocal property is not checked to omit DNS lookup. Can only be done in allip mode
      *
@@ -2021,6 +2081,9 @@ public final class Switchboard extends serverSwitch {
         this.indexingCondensementProcessor.shutdown();
         this.indexingAnalysisProcessor.shutdown();
         this.indexingStorageProcessor.shutdown();
+        if (Word.getDictionary() != null) {
+            LibraryProvider.initTermDictionary(); // keep the words learned during this run
+        }
         if ( this.dhtDispatcher != null ) {
             this.dhtDispatcher.close();
         }
@@ -3165,8 +3228,9 @@ public final class Switchboard extends serverSwitch {
     				}
     			}
                 
-                // insert those hyperlinks to the crawler
+                // insert those hyperlinks to the crawler; the links of the document are stacked as one batch
                 MultiProtocolURL nextUrl;
+                final List<Request> batch = new ArrayList<Request>(hl.size());
                 for ( final Map.Entry<AnchorURL, String> nextEntry : hl.entrySet() ) {
                     // check for interruption
                     checkInterruption();
@@ -3193,7 +3257,7 @@ public final class Switchboard extends serverSwitch {
                     // enqueue the hyperlink into the pre-notice-url db
                     int nextdepth = nextEntry.getValue() != null && nextEntry.getValue().equals(Document.CANONICAL_MARKER) ? response.depth() : response.depth() + 1; // canonical documents are on the same depth
                     try {
-                        this.crawlStacker.enqueueEntry(new Request(
+                        batch.add(new Request(
                             response.initiator(),
                             new DigestURL(u),
                             response.url().hash(),
@@ -3206,6 +3270,7 @@ public final class Switchboard extends serverSwitch {
                         ConcurrentLog.logException(e);
                     }
                 }
+                this.crawlStacker.enqueueBatch(batch);
                 final long stackEndTime = System.currentTimeMillis();
                 if ( this.log.isInfo() ) {
                     this.log.info("CRAWL: ADDED "
@@ -348,6 +348,13 @@ public final class SwitchboardConstants {
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
+    public static final String CRAWLER_ASYNC                    = "crawler.async"; // load http(s) resources with a non-blocking client instead of a thread for each load
+    public static final String CRAWLER_ASYNC_MAX_LOADING        = "crawler.async.maxLoading"; // maximum number of running loads in the asynchronous mode
+    public static final String CRAWLER_ASYNC_MAX_LOADING_PER_HOST = "crawler.async.maxLoadingPerHost"; // maximum number of running loads for a single host in the asynchronous mode
+    public static final String CRAWLER_FRONTIER                 = "crawler.frontier"; // storage of the crawl queues: "hostqueues" for a directory for each host or "file" for a single file
+    public static final String CRAWLER_URLSEEN_FILTER           = "crawler.urlSeenFilter"; // reject urls which were stacked before in the same crawl with a bloom filter
+    public static final String CRAWLER_URLSEEN_FILTER_MAXURLS   = "crawler.urlSeenFilter.maxURLs"; // the number of urls after which the url-seen filter forgets the oldest urls
+    public static final String CRAWLER_DEPTHCACHE_HASH          = "crawler.depthCache.hash"; // hold the depth of the queued urls in a hash table instead of a sorted RowHandleMap
     
     public static final String CRAWLER_USER_AGENT_NAME          = "crawler.userAgent.name";
     public static final String CRAWLER_USER_AGENT_STRING        = "crawler.userAgent.string";
@@ -112,6 +112,9 @@ public class Segment {
     public static final String termIndexName = "text.index";
     public static final String citationIndexName = "citation.index";
     public static final String firstseenIndexName = "firstseen.index";
+    public static int mergeThreads = 1; // number of concurrent dump and merge jobs of the RWI indexes
+    public static boolean compressTermIndex = false; // write the containers of the term index compressed
+    public static boolean compressCitationIndex = false; // write the containers of the citation index compressed
 
     // the reference factory
     public static final ReferenceFactory<WordReference> wordReferenceFactory = new WordReferenceFactory();
@@ -153,7 +156,7 @@ public class Segment {
         if (this.termIndex != null) return;
         
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2, 2, writeBufferSize);
+            this.merger = new IODispatcher(2, Math.max(2, mergeThreads), writeBufferSize, mergeThreads);
             this.merger.start();
         }
         this.termIndex = new IndexCell<WordReference>(
@@ -167,6 +170,7 @@ public class Segment {
                         maxFileSize,
                         writeBufferSize,
                         merger);
+        this.termIndex.setCompression(compressTermIndex);
     }
 
     public void disconnectRWI() {
@@ -183,7 +187,7 @@ public class Segment {
         if (this.urlCitationIndex != null) return;
 
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2,2,writeBufferSize);
+            this.merger = new IODispatcher(2, Math.max(2, mergeThreads), writeBufferSize, mergeThreads);
             this.merger.start();
         }
         this.urlCitationIndex = new IndexCell<CitationReference>(
@@ -197,6 +201,7 @@ public class Segment {
                         maxFileSize,
                         writeBufferSize,
                         merger);
+        this.urlCitationIndex.setCompression(compressCitationIndex);
     }
 
     public void disconnectCitation() {
@@ -349,6 +354,29 @@ public class Segment {
         return this.termIndex.getSegmentCount();
     }
 
+    /**
+     * @return the average number of RWI BLOB files which are asked for a term
+     */
+    public double RWIProbesPerLookup() {
+        if (this.termIndex == null) return 0.0d;
+        return this.termIndex.probesPerLookup();
+    }
+
+    /**
+     * @return the false positive rate of the bloom filters of the RWI BLOB files
+     */
+    public double RWIFilterFalsePositiveRate() {
+        if (this.termIndex == null) return 0.0d;
+        return this.termIndex.falsePositiveRate();
+    }
+
+    /**
+     * @return the dispatcher of dump and merge jobs of the RWI indexes or null if no RWI index is connected
+     */
+    public IODispatcher merger() {
+        return this.merger;
+    }
+
     public int RWIBufferCount() {
         if (this.termIndex == null) return 0;
         return this.termIndex.getBufferSize();
@@ -729,7 +757,8 @@ public class Segment {
                             docType,
                             outlinksSame, outlinksOther);
     
-            // iterate over all words of content text
+            // iterate over all words of content text; the hashes of all words are computed in one batch
+            final Map<String, byte[]> wordhashes = condenser.hashes();
             Word wprop = null;
             byte[] wordhash;
             String word;
@@ -738,7 +767,8 @@ public class Segment {
                 wprop = wentry.getValue();
                 assert (wprop.flags != null);
                 ientry.setWord(wprop);
-                wordhash = Word.word2hash(word);
+                wordhash = wordhashes.get(word);
+                if (wordhash == null) wordhash = Word.word2hash(word);
                 if (this.termIndex != null && storeToRWI) try {
                     this.termIndex.add(wordhash, ientry);
                 } catch (final Exception e) {
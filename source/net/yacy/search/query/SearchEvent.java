@@ -453,7 +453,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.rwiProcess = null;
         if (query.getSegment().connectedRWI() && !Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_LOCAL_DHT_OFF, false)) {
             // we start the local search only if this peer is doing a remote search or when it is doing a local search and the peer is old
-            rwiProcess = new RWIProcess(this.localsolrsearch);
+            rwiProcess = new RWIProcess(this.localsolrsearch, generateAbstracts);
             rwiProcess.start();
         }
 
@@ -588,10 +588,12 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     private class RWIProcess extends Thread {
     
         final Thread waitForThread;
+        final boolean completeInclusion; // index abstracts need the complete containers of the included terms
         
-        public RWIProcess(final Thread waitForThread) {
+        public RWIProcess(final Thread waitForThread, final boolean completeInclusion) {
             super("SearchEvent.RWIProcess(" + (waitForThread != null ? waitForThread.getName() : "") + ")");
             this.waitForThread = waitForThread;
+            this.completeInclusion = completeInclusion;
         }
         
         /**
@@ -618,7 +620,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
                             null,
                             Segment.wordReferenceFactory,
-                            SearchEvent.this.query.maxDistance);
+                            SearchEvent.this.query.maxDistance,
+                            this.completeInclusion);
                 SearchEvent.this.localSearchInclusion = search.inclusion();
                 ReferenceContainer<WordReference> index = search.joined();
                 if ( !index.isEmpty() ) {
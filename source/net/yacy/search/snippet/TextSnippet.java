@@ -39,8 +39,8 @@ import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.storage.TinyLFUCache;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ByteBuffer;
 import net.yacy.crawler.retrieval.Request;
@@ -89,9 +89,15 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
             Pattern.compile("[^\\p{L}\\p{N}]");
 
     public static class Cache {
-        private final ARC<String, String> cache;
+        private ARC<String, String> cache;
         public Cache() {
-            this.cache = new ConcurrentARC<String, String>(MAX_CACHE, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
+            initCache();
+        }
+        /**
+         * create the cache; this is done again if the cache implementation is changed
+         */
+        public void initCache() {
+            this.cache = TinyLFUCache.newCache(MAX_CACHE, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()), MAX_CACHE * 1024L);
         }
         public void put(final String wordhashes, final String urlhash, final String snippet) {
             // generate key
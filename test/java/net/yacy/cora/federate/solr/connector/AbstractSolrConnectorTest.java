@@ -0,0 +1,111 @@
+package net.yacy.cora.federate.solr.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Test;
+
+public class AbstractSolrConnectorTest {
+
+    /**
+     * a connector which records the queries and returns a document for each id which is a number
+     */
+    private static class QueryRecorder extends AbstractSolrConnector {
+
+        private final List<String> queries = new ArrayList<String>();
+        private final List<Integer> rows = new ArrayList<Integer>();
+
+        @Override
+        public SolrDocumentList getDocumentListByParams(final ModifiableSolrParams params) throws IOException {
+            final String q = params.get(CommonParams.Q);
+            this.queries.add(q);
+            this.rows.add(params.getInt(CommonParams.ROWS));
+            final SolrDocumentList sdl = new SolrDocumentList();
+            final String ids = q.substring(q.indexOf('(') + 1, q.lastIndexOf(')'));
+            for (final String quoted: ids.split(" OR ")) {
+                final String id = quoted.substring(1, quoted.length() - 1);
+                if (!id.matches("[0-9]+")) continue;
+                final SolrDocument doc = new SolrDocument();
+                doc.setField(CollectionSchema.id.getSolrFieldName(), id);
+                doc.setField(CollectionSchema.sku.getSolrFieldName(), "http://" + id + ".example/");
+                doc.setField(CollectionSchema.load_date_dt.getSolrFieldName(), new Date(Long.parseLong(id)));
+                sdl.add(doc);
+            }
+            sdl.setNumFound(sdl.size());
+            return sdl;
+        }
+
+        @Override public QueryResponse getResponseByParams(final ModifiableSolrParams query) throws IOException {return null;}
+        @Override public void clearCaches() {}
+        @Override public int bufferSize() {return 0;}
+        @Override public long getSize() {return 0;}
+        @Override public void commit(final boolean softCommit) {}
+        @Override public void optimize(final int maxSegments) {}
+        @Override public int getSegmentCount() {return 0;}
+        @Override public boolean isClosed() {return false;}
+        @Override public void close() {}
+        @Override public void clear() throws IOException {}
+        @Override public void deleteById(final String id) throws IOException {}
+        @Override public void deleteByIds(final Collection<String> ids) throws IOException {}
+        @Override public void deleteByQuery(final String querystring) throws IOException {}
+        @Override public void add(final SolrInputDocument solrdoc) throws IOException {}
+        @Override public void add(final Collection<SolrInputDocument> solrdoc) throws IOException {}
+    }
+
+    @Test
+    public void testLoadTimeURLsQuery() throws IOException {
+        final QueryRecorder connector = new QueryRecorder();
+        final List<String> ids = new ArrayList<String>();
+        ids.add("1000");
+        ids.add("unknown");
+        ids.add("2000");
+        final Map<String, SolrConnector.LoadTimeURL> result = connector.getLoadTimeURLs(ids);
+        assertEquals(1, connector.queries.size());
+        assertEquals("{!cache=false}" + CollectionSchema.id.getSolrFieldName() + ":(\"1000\" OR \"unknown\" OR \"2000\")", connector.queries.get(0));
+        assertEquals(3, connector.rows.get(0).intValue());
+        assertEquals(2, result.size());
+        assertEquals(1000L, result.get("1000").date);
+        assertEquals("http://2000.example/", result.get("2000").url);
+        assertNull(result.get("unknown"));
+    }
+
+    @Test
+    public void testLoadTimeURLsChunks() throws IOException {
+        final QueryRecorder connector = new QueryRecorder();
+        final List<String> ids = new ArrayList<String>();
+        for (int i = 1; i <= 2500; i++) ids.add(Integer.toString(i));
+        final Map<String, SolrConnector.LoadTimeURL> result = connector.getLoadTimeURLs(ids);
+        // one query for each 1000 ids, which is below the default maxBooleanClauses of Solr
+        assertEquals(3, connector.queries.size());
+        assertEquals(1000, connector.rows.get(0).intValue());
+        assertEquals(1000, connector.rows.get(1).intValue());
+        assertEquals(500, connector.rows.get(2).intValue());
+        assertTrue(connector.queries.get(1).contains("(\"1001\" OR "));
+        assertTrue(connector.queries.get(2).endsWith(" OR \"2500\")"));
+        assertEquals(2500, result.size());
+        for (int i = 1; i <= 2500; i++) assertEquals(i, result.get(Integer.toString(i)).date);
+    }
+
+    @Test
+    public void testNoLoadTimeURLs() throws IOException {
+        final QueryRecorder connector = new QueryRecorder();
+        assertTrue(connector.getLoadTimeURLs(new ArrayList<String>()).isEmpty());
+        assertEquals(0, connector.queries.size());
+    }
+}
@@ -2,8 +2,10 @@ package net.yacy.cora.federate.solr.connector;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
 import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphSchema;
@@ -173,6 +175,30 @@ public class EmbeddedSolrConnectorTest {
         assertEquals(id, foundid);
     }
 
+    /**
+     * Test of the batch lookup of load dates
+     */
+    @Test
+    public void testGetLoadTimeURLs() throws IOException {
+        final String id0 = "lt0_" + Long.toString(System.currentTimeMillis());
+        final String id1 = "lt1_" + Long.toString(System.currentTimeMillis());
+        final Date date = new Date(1500000000000L);
+        for (final String id: new String[]{id0, id1}) {
+            SolrInputDocument doc = new SolrInputDocument();
+            doc.addField(CollectionSchema.id.name(), id);
+            doc.addField(CollectionSchema.sku.name(), "http://yacy.net/" + id);
+            doc.addField(CollectionSchema.load_date_dt.name(), date);
+            solr.add(doc);
+        }
+        solr.commit(true);
+
+        Map<String, SolrConnector.LoadTimeURL> result = solr.getLoadTimeURLs(Arrays.asList(id0, "unknown_id", id1));
+        assertEquals(2, result.size());
+        assertEquals(date.getTime(), result.get(id0).date);
+        assertEquals("http://yacy.net/" + id1, result.get(id1).url);
+        assertTrue(solr.getLoadTimeURLs(new HashSet<String>()).isEmpty());
+    }
+
     /**
      * Test of close and reopen embedded Solr
      * test for issue http://mantis.tokeek.de/view.php?id=686
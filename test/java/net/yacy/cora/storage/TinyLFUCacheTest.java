@@ -0,0 +1,68 @@
+package net.yacy.cora.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TinyLFUCacheTest {
+
+    @Test
+    public void testMapSemantics() {
+        final TinyLFUCache<String, String> cache = new TinyLFUCache<String, String>(1024 * 1024);
+        assertNull(cache.put("a", "1"));
+        assertEquals("1", cache.put("a", "2"));
+        assertEquals("2", cache.putIfAbsent("a", "3"));
+        cache.insertIfAbsent("b", "2");
+        assertEquals("2", cache.get("a"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.getKeys("2").size());
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.entrySet().size());
+        assertEquals("2", cache.remove("b"));
+        assertFalse(cache.containsKey("b"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testWeightBound() {
+        final long max = 100000;
+        final TinyLFUCache<String, byte[]> cache = new TinyLFUCache<String, byte[]>(max);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("k" + i, new byte[i % 500]);
+            assertTrue(cache.weight() <= max);
+        }
+        long w = 0;
+        for (final Map.Entry<String, byte[]> e: cache.entrySet()) w += TinyLFUCache.defaultWeigher.weigh(e.getKey(), e.getValue());
+        assertEquals(w, cache.weight());
+        assertTrue(cache.evictions() > 0);
+        // an entry which is larger than the cache is not stored
+        cache.put("large", new byte[(int) max]);
+        assertFalse(cache.containsKey("large"));
+    }
+
+    @Test
+    public void testScanResistance() {
+        final TinyLFUCache<String, String> cache = new TinyLFUCache<String, String>(100 * TinyLFUCache.defaultWeigher.weigh("k000", "v000"));
+        // a working set which is used frequently
+        for (int r = 0; r < 10; r++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get("k" + (100 + i)) == null) cache.put("k" + (100 + i), "v" + i);
+            }
+        }
+        // a scan of keys which are used only once must not replace the working set
+        for (int i = 1000; i < 20000; i++) cache.put("k" + i, "v" + i);
+        int found = 0;
+        for (int i = 0; i < 50; i++) if (cache.containsKey("k" + (100 + i))) found++;
+        assertTrue("found " + found, found >= 45);
+        assertTrue(cache.rejections() > 0);
+    }
+}
@@ -0,0 +1,189 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
+import net.yacy.cora.federate.yacy.CacheStrategy;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.retrieval.Request;
+
+public class CrawlStackerTest {
+
+    private static final CrawlProfile CRAWL_PROFILE = new CrawlProfile(
+            "CrawlStackerTest", CrawlProfile.MATCH_ALL_STRING, // crawlerUrlMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerUrlMustNotMatch
+            CrawlProfile.MATCH_ALL_STRING, // crawlerIpMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerIpMustNotMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerCountryMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // crawlerNoDepthLimitMatch
+            CrawlProfile.MATCH_ALL_STRING, // indexUrlMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // indexUrlMustNotMatch
+            CrawlProfile.MATCH_ALL_STRING, // indexContentMustMatch
+            CrawlProfile.MATCH_NEVER_STRING, // indexContentMustNotMatch
+            0, false, CrawlProfile.getRecrawlDate(CrawlSwitchboard.CRAWL_PROFILE_SNIPPET_GLOBAL_TEXT_RECRAWL_CYCLE),
+            -1, true, true, true, false, // crawlingQ, followFrames, obeyHtmlRobotsNoindex, obeyHtmlRobotsNofollow,
+            true, true, true, false, -1, false, true, CrawlProfile.MATCH_NEVER_STRING, CacheStrategy.IFEXIST,
+            "robot_CrawlStackerTest",
+            ClientIdentification.yacyIntranetCrawlerAgentName, null, null, 0);
+
+    /**
+     * checks which accept every url and record the lookups and the pushed urls
+     */
+    private static class RecordingChecks implements CrawlStacker.BatchChecks {
+
+        private final Set<String> seen = new HashSet<String>();
+        private final List<List<String>> lookups = new ArrayList<List<String>>();
+        private final List<String> singleChecks = new ArrayList<String>();
+        private final List<String> pushed = new ArrayList<String>();
+        private final List<String> rejected = new ArrayList<String>();
+        private boolean lookupFails = false;
+
+        @Override
+        public CrawlProfile profile(final String handle) {
+            return CRAWL_PROFILE.handle().equals(handle) ? CRAWL_PROFILE : null;
+        }
+
+        @Override
+        public byte[] seenKey(final CrawlProfile profile, final byte[] urlhash) {
+            return urlhash;
+        }
+
+        @Override
+        public boolean seen(final byte[] seenKey) {
+            return this.seen.contains(ASCII.String(seenKey));
+        }
+
+        @Override
+        public String checkQueues(final Request entry, final CrawlProfile profile) {
+            return null;
+        }
+
+        @Override
+        public Map<String, LoadTimeURL> loadTimes(final List<String> ids) throws IOException {
+            this.lookups.add(new ArrayList<String>(ids));
+            if (this.lookupFails) throw new IOException("lookup failed");
+            return new HashMap<String, LoadTimeURL>();
+        }
+
+        @Override
+        public String checkIndex(final DigestURL url, final CrawlProfile profile, final LoadTimeURL oldEntry) {
+            return null;
+        }
+
+        @Override
+        public String checkIndex(final DigestURL url, final CrawlProfile profile) {
+            this.singleChecks.add(url.toNormalform(true));
+            return null;
+        }
+
+        @Override
+        public String push(final Request entry, final CrawlProfile profile, final byte[] seenKey) {
+            this.seen.add(ASCII.String(seenKey));
+            this.pushed.add(entry.url().toNormalform(true));
+            return null;
+        }
+
+        @Override
+        public void reject(final Request entry, final CrawlProfile profile, final String reason) {
+            this.rejected.add(entry.url().toNormalform(true));
+        }
+    }
+
+    private static Request request(final String url, final String profileHandle) throws MalformedURLException {
+        return new Request(null, new DigestURL(url), null, null, new Date(), profileHandle, 1, 0);
+    }
+
+    private static List<Request> requests(final String... urls) throws MalformedURLException {
+        final List<Request> entries = new ArrayList<Request>();
+        for (final String url: urls) entries.add(request(url, CRAWL_PROFILE.handle()));
+        return entries;
+    }
+
+    @Test
+    public void testDoubles() throws MalformedURLException {
+        final RecordingChecks checks = new RecordingChecks();
+        checks.seen.add(ASCII.String(new DigestURL("http://c.example/seen").hash()));
+        final List<Request> entries = requests("http://a.example/1", "http://a.example/1", "http://c.example/seen", "http://a.example/2");
+        CrawlStacker.stackBatch(entries, checks);
+
+        // the double in the batch and the url which was stacked before are neither looked up nor pushed nor rejected
+        assertEquals(1, checks.lookups.size());
+        assertEquals(2, checks.lookups.get(0).size());
+        assertEquals(2, checks.pushed.size());
+        assertTrue(checks.pushed.contains("http://a.example/1"));
+        assertTrue(checks.pushed.contains("http://a.example/2"));
+        assertEquals(0, checks.singleChecks.size());
+        assertEquals(0, checks.rejected.size());
+
+        // a second batch with the same links is rejected by the url-seen filter
+        CrawlStacker.stackBatch(entries, checks);
+        assertEquals(1, checks.lookups.size());
+        assertEquals(2, checks.pushed.size());
+    }
+
+    @Test
+    public void testLostProfile() throws MalformedURLException {
+        final RecordingChecks checks = new RecordingChecks();
+        final List<Request> entries = requests("http://a.example/1");
+        entries.add(request("http://a.example/2", "unknown"));
+        CrawlStacker.stackBatch(entries, checks);
+        assertEquals(1, checks.pushed.size());
+        assertEquals(1, checks.rejected.size());
+        assertEquals("http://a.example/2", checks.rejected.get(0));
+    }
+
+    @Test
+    public void testFailedLookup() throws MalformedURLException {
+        final RecordingChecks checks = new RecordingChecks();
+        checks.lookupFails = true;
+        CrawlStacker.stackBatch(requests("http://a.example/1", "http://b.example/1", "http://a.example/1"), checks);
+        // the urls are checked with their own lookups when the lookup of the batch fails
+        assertEquals(1, checks.lookups.size());
+        assertEquals(2, checks.singleChecks.size());
+        assertEquals(2, checks.pushed.size());
+        assertEquals(0, checks.rejected.size());
+    }
+
+    @Test
+    public void testHostOrder() throws MalformedURLException {
+        final RecordingChecks checks = new RecordingChecks();
+        final List<Request> entries = new ArrayList<Request>();
+        final String[] hosts = new String[]{"a.example", "b.example", "c.example"};
+        for (int i = 0; i < 4; i++) {
+            for (final String host: hosts) entries.add(request("http://" + host + "/" + i, CRAWL_PROFILE.handle()));
+        }
+        CrawlStacker.stackBatch(entries, checks);
+        assertEquals(entries.size(), checks.pushed.size());
+
+        // the urls of a host are pushed one after another and in the order of the batch
+        final Map<String, Integer> next = new HashMap<String, Integer>();
+        String last = null;
+        int changes = 0;
+        for (final String url: checks.pushed) {
+            final String host = new DigestURL(url).getHost();
+            if (!host.equals(last)) changes++;
+            last = host;
+            final Integer n = next.get(host);
+            final int expected = n == null ? 0 : n.intValue();
+            assertEquals("http://" + host + "/" + expected, url);
+            next.put(host, expected + 1);
+        }
+        assertEquals(hosts.length, changes);
+    }
+}
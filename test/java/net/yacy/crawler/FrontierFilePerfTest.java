@@ -0,0 +1,117 @@
+// FrontierFilePerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler;
+
+import java.io.File;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Index;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.table.Table;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Compare the crawl queue storage of the HostQueue, a directory for each host with a table file for each
+ * crawl depth, with a single FrontierFile: the time to fill the queues, the number of files and the time
+ * to open all queues again as it is done at start-up. The rows have the size of the rows of a crawl request.
+ */
+public class FrontierFilePerfTest {
+
+    // a row with the length of Request.rowdef
+    private static final Row rowdef = new Row("String urlhash-12, byte[] payload-2392", Base64Order.enhancedCoder);
+
+    private static byte[] row(final int host, final int url) {
+        final byte[] row = new byte[rowdef.objectsize];
+        final byte[] key = ASCII.getBytes(String.format("%06d%06d", url, host));
+        System.arraycopy(key, 0, row, 0, key.length);
+        return row;
+    }
+
+    private static int countFiles(final File dir) {
+        int c = 0;
+        final File[] l = dir.listFiles();
+        if (l != null) for (final File f: l) c += f.isDirectory() ? 1 + countFiles(f) : 1;
+        return c;
+    }
+
+    private static void measure(final int hosts, final int urlsPerHost, final int depths) throws Exception {
+        final File dir = new File("test/DATA/INDEX/QUEUES/FrontierFilePerfTest");
+        FileUtils.deletedelete(dir);
+        dir.mkdirs();
+
+        // one directory for each host and a table for each depth
+        final File hostsDir = new File(dir, "hosts");
+        long t = System.currentTimeMillis();
+        for (int h = 0; h < hosts; h++) {
+            final File hostDir = new File(hostsDir, "host" + h + "-#" + String.format("%06d", h) + ".80");
+            hostDir.mkdirs();
+            for (int d = 0; d < depths; d++) {
+                final Index table = new Table(new File(hostDir, String.format("%04d.stack", d)), rowdef, 1000, 0, false, false, true);
+                for (int u = d; u < urlsPerHost; u += depths) table.put(rowdef.newEntry(row(h, u)));
+                table.close();
+            }
+        }
+        final long tablesFill = System.currentTimeMillis() - t;
+        t = System.currentTimeMillis();
+        int tablesSize = 0;
+        for (final File hostDir: hostsDir.listFiles()) {
+            for (final String s: hostDir.list()) {
+                final Index table = new Table(new File(hostDir, s), rowdef, 1000, 0, false, false, true);
+                tablesSize += table.size();
+                table.close();
+            }
+        }
+        final long tablesOpen = System.currentTimeMillis() - t;
+        final int tablesFiles = countFiles(hostsDir);
+
+        // a single frontier file
+        final File frontierFile = new File(dir, "test.frontier");
+        t = System.currentTimeMillis();
+        FrontierFile frontier = new FrontierFile(frontierFile, rowdef.objectsize, 12, Base64Order.enhancedCoder);
+        for (int h = 0; h < hosts; h++) {
+            final String hosthash = String.format("%06d", h);
+            for (int u = 0; u < urlsPerHost; u++) frontier.put(hosthash, u % depths, row(h, u));
+        }
+        frontier.close();
+        final long frontierFill = System.currentTimeMillis() - t;
+        t = System.currentTimeMillis();
+        frontier = new FrontierFile(frontierFile, rowdef.objectsize, 12, Base64Order.enhancedCoder);
+        final int frontierSize = frontier.size();
+        final long frontierOpen = System.currentTimeMillis() - t;
+        t = System.currentTimeMillis();
+        int popped = 0;
+        for (final String h: frontier.partitions()) while (frontier.removeFirst(h) != null) popped++;
+        final long frontierPop = System.currentTimeMillis() - t;
+        frontier.close();
+
+        System.out.println(String.format("%6d hosts x %3d urls, %d depths: tables %6d files, fill %6d ms, open %6d ms (%d urls)   frontier 1 file, fill %6d ms, open %5d ms (%d urls), pop all %5d ms (%d urls)",
+                hosts, urlsPerHost, depths, tablesFiles, tablesFill, tablesOpen, tablesSize, frontierFill, frontierOpen, frontierSize, frontierPop, popped));
+        FileUtils.deletedelete(dir);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        measure(1000, 10, 2);
+        measure(10000, 5, 2);
+        measure(20000, 2, 1);
+        ConcurrentLog.shutdown();
+    }
+
+}
@@ -0,0 +1,147 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.FileUtils;
+
+public class FrontierFileTest {
+
+    private static final int ROWSIZE = 40;
+    private static final int KEYLENGTH = 12;
+    private static final File TESTDIR = new File("test/DATA/INDEX/QUEUES/FrontierFileTest");
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        FileUtils.deletedelete(TESTDIR);
+        TESTDIR.mkdirs();
+        this.file = new File(TESTDIR, "test.frontier");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deletedelete(TESTDIR);
+    }
+
+    /**
+     * a row with a key of the form of an url hash: six characters of the url and the host hash
+     */
+    private static byte[] row(final String host, final int i) {
+        final byte[] row = new byte[ROWSIZE];
+        final byte[] key = ASCII.getBytes(String.format("%06d", i) + host);
+        System.arraycopy(key, 0, row, 0, KEYLENGTH);
+        for (int j = KEYLENGTH; j < ROWSIZE; j++) row[j] = (byte) (i + j);
+        return row;
+    }
+
+    private static byte[] key(final String host, final int i) {
+        return ASCII.getBytes(String.format("%06d", i) + host);
+    }
+
+    @Test
+    public void testDepthOrder() throws IOException, SpaceExceededException {
+        final FrontierFile frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        assertTrue(frontier.put("hostAA", 2, row("hostAA", 1)));
+        assertTrue(frontier.put("hostAA", 1, row("hostAA", 2)));
+        assertTrue(frontier.put("hostAA", 1, row("hostAA", 3)));
+        assertTrue(frontier.put("hostBB", 0, row("hostBB", 4)));
+        assertFalse(frontier.put("hostAA", 0, row("hostAA", 3))); // double key
+        assertEquals(4, frontier.size());
+        assertEquals(3, frontier.size("hostAA"));
+
+        // the lowest depth first, within a depth the order of insertion
+        assertArrayEquals(row("hostAA", 2), frontier.first("hostAA"));
+        assertArrayEquals(row("hostAA", 2), frontier.removeFirst("hostAA"));
+        assertArrayEquals(row("hostAA", 3), frontier.removeFirst("hostAA"));
+        assertArrayEquals(row("hostAA", 1), frontier.removeFirst("hostAA"));
+        assertNull(frontier.removeFirst("hostAA"));
+        assertEquals(1, frontier.partitions().size());
+        assertArrayEquals(row("hostBB", 4), frontier.get(key("hostBB", 4)));
+        frontier.close();
+    }
+
+    @Test
+    public void testRemoveAndReopen() throws IOException, SpaceExceededException {
+        FrontierFile frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        for (int i = 0; i < 100; i++) frontier.put(i % 2 == 0 ? "hostAA" : "hostBB", i % 3, row(i % 2 == 0 ? "hostAA" : "hostBB", i));
+        assertArrayEquals(row("hostAA", 10), frontier.remove(key("hostAA", 10)));
+        assertNull(frontier.remove(key("hostAA", 10)));
+        assertFalse(frontier.has(key("hostAA", 10)));
+        assertEquals(50, frontier.removePartition("hostBB"));
+        assertEquals(49, frontier.size());
+        frontier.removeFirst("hostAA"); // row 0, depth 0
+        frontier.close();
+
+        frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        assertEquals(48, frontier.size());
+        assertEquals(0, frontier.size("hostBB"));
+        assertFalse(frontier.has(key("hostAA", 0)));
+        assertFalse(frontier.has(key("hostAA", 10)));
+        // the order is the same as before the restart: depth 0 rows 6, 12, 18, ...
+        assertArrayEquals(row("hostAA", 6), frontier.removeFirst("hostAA"));
+        final Set<String> keys = new HashSet<String>();
+        final Iterator<byte[]> i = frontier.rows();
+        while (i.hasNext()) keys.add(ASCII.String(i.next(), 0, KEYLENGTH));
+        assertEquals(47, keys.size());
+        frontier.close();
+    }
+
+    @Test
+    public void testCompact() throws IOException, SpaceExceededException {
+        final FrontierFile frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        for (int i = 0; i < 1000; i++) frontier.put("hostAA", i % 5, row("hostAA", i));
+        for (int i = 0; i < 900; i++) frontier.removeFirst("hostAA");
+        final long before = frontier.length();
+        frontier.compact();
+        assertTrue(frontier.length() < before);
+        assertEquals(100, frontier.size());
+        // the remaining rows are those of the highest depth, in the order of insertion
+        assertArrayEquals(row("hostAA", 504), frontier.removeFirst("hostAA"));
+        frontier.close();
+        assertTrue(this.file.exists());
+    }
+
+    @Test
+    public void testBrokenTail() throws IOException, SpaceExceededException {
+        FrontierFile frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        frontier.put("hostAA", 0, row("hostAA", 1));
+        frontier.put("hostAA", 0, row("hostAA", 2));
+        frontier.close();
+
+        // cut the last record as if the process was killed while writing
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        raf.setLength(raf.length() - 5);
+        raf.close();
+
+        frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        assertEquals(1, frontier.size());
+        assertTrue(frontier.put("hostAA", 0, row("hostAA", 3)));
+        frontier.close();
+        frontier = new FrontierFile(this.file, ROWSIZE, KEYLENGTH, Base64Order.enhancedCoder);
+        assertEquals(2, frontier.size());
+        frontier.clear();
+        assertTrue(frontier.isEmpty());
+        frontier.close();
+        assertFalse(this.file.exists());
+    }
+
+}
@@ -0,0 +1,136 @@
+// HostReadyQueuePerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measure the host selection of the crawl balancer with synthetic host distributions: a scan over all hosts
+ * which computes the remaining waiting time of each host (as it was done in HostBalancer.pop before the hosts
+ * were scheduled) against the HostReadyQueue. The crawl is simulated with a virtual clock which advances one
+ * millisecond with each pop; each host has an access delay and a number of queued urls.
+ * The distributions are
+ * - uniform: all hosts have the same number of urls and the minimum access delay
+ * - zipf: the number of urls follows a zipf distribution, few hosts have a long crawl-delay from robots.txt
+ */
+public class HostReadyQueuePerfTest {
+
+    private static final class Crawl {
+        final String[] hosthash;
+        final int[] size;
+        final int[] delay;
+        final long[] lastacc;
+        Crawl(final int hosts, final boolean zipf, final long seed) {
+            final Random r = new Random(seed);
+            this.hosthash = new String[hosts];
+            this.size = new int[hosts];
+            this.delay = new int[hosts];
+            this.lastacc = new long[hosts];
+            for (int i = 0; i < hosts; i++) {
+                this.hosthash[i] = String.format("h%05x", i);
+                this.size[i] = zipf ? Math.max(1, (int) (10000.0d / (i + 1))) : 20;
+                this.delay[i] = zipf && r.nextInt(100) == 0 ? 10000 : 500;
+                this.lastacc[i] = Long.MIN_VALUE / 2;
+            }
+        }
+    }
+
+    /**
+     * select the host with the smallest remaining waiting time by a scan over all hosts
+     * @return the number of urls which were taken
+     */
+    private static int runScan(final Crawl c, final int pops) {
+        int taken = 0;
+        for (long now = 0; now < pops; now++) {
+            int best = -1;
+            long bestRemaining = Long.MAX_VALUE;
+            for (int i = 0; i < c.size.length; i++) {
+                if (c.size[i] == 0) continue;
+                final long remaining = c.lastacc[i] + c.delay[i] - now;
+                if (remaining < bestRemaining) {
+                    bestRemaining = remaining;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+            if (bestRemaining > 0) continue; // the old balancer would sleep here
+            c.size[best]--;
+            c.lastacc[best] = now;
+            taken++;
+        }
+        return taken;
+    }
+
+    /**
+     * select the host with the earliest ready time from the HostReadyQueue
+     * @return the number of urls which were taken
+     */
+    private static int runQueue(final Crawl c, final int pops) {
+        final HostReadyQueue queue = new HostReadyQueue();
+        final Map<String, Integer> index = new HashMap<String, Integer>();
+        for (int i = 0; i < c.size.length; i++) {
+            queue.put(c.hosthash[i], Long.MIN_VALUE / 2);
+            index.put(c.hosthash[i], i);
+        }
+        int taken = 0;
+        for (long now = 0; now < pops; now++) {
+            if (queue.isEmpty()) break;
+            if (queue.peekTime() > now) continue; // no host is ready; pop returns null
+            final String h = queue.peek();
+            final int i = index.get(h).intValue();
+            c.size[i]--;
+            c.lastacc[i] = now;
+            taken++;
+            if (c.size[i] == 0) queue.remove(h); else queue.put(h, now + c.delay[i]);
+        }
+        return taken;
+    }
+
+    private static void measure(final int hosts, final boolean zipf, final int pops) {
+        final String name = String.format("%6d hosts, %-7s", hosts, zipf ? "zipf" : "uniform");
+        // the scan is too slow for a full run with many hosts; it is measured with fewer pops
+        final int scanPops = (int) Math.min(pops, 200000000L / hosts);
+        Crawl c = new Crawl(hosts, zipf, 0);
+        long t = System.nanoTime();
+        final int scanTaken = runScan(c, scanPops);
+        final long scanTime = System.nanoTime() - t;
+        c = new Crawl(hosts, zipf, 0);
+        t = System.nanoTime();
+        final int queueTaken = runQueue(c, pops);
+        final long queueTime = System.nanoTime() - t;
+        System.out.println(String.format("%s scan: %10.0f ns/pop (%d urls in %d ms)   queue: %6.0f ns/pop (%d urls in %d ms)",
+                name,
+                (double) scanTime / scanPops, scanTaken, scanPops,
+                (double) queueTime / pops, queueTaken, pops));
+    }
+
+    public static void main(final String[] args) {
+        final int pops = 1000000;
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up of the jit
+            if (round == 1) System.out.println("---");
+            for (final int hosts: new int[]{1000, 10000, 100000}) {
+                measure(hosts, false, pops);
+                measure(hosts, true, pops);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class HostReadyQueueTest {
+
+    @Test
+    public void testOrder() {
+        final HostReadyQueue queue = new HostReadyQueue();
+        assertNull(queue.peek());
+        assertEquals(Long.MAX_VALUE, queue.peekTime());
+        queue.put("host_c", 300);
+        queue.put("host_a", 100);
+        queue.put("host_b", 200);
+        assertEquals("host_a", queue.peek());
+        assertEquals(100, queue.peekTime());
+
+        // re-schedule the first host behind the others
+        queue.put("host_a", 400);
+        assertEquals("host_b", queue.peek());
+        assertEquals(400, queue.readyTime("host_a"));
+        assertEquals(3, queue.size());
+
+        // an existing host is not changed with putIfAbsent
+        assertFalse(queue.putIfAbsent("host_c", 50));
+        assertEquals(300, queue.readyTime("host_c"));
+
+        assertTrue(queue.remove("host_b"));
+        assertFalse(queue.remove("host_b"));
+        assertEquals(-1, queue.readyTime("host_b"));
+        assertEquals("host_c", queue.peek());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.contains("host_a"));
+    }
+
+    /**
+     * the queue must always return the host with the earliest time after random puts and removes
+     */
+    @Test
+    public void testRandomOperations() {
+        final HostReadyQueue queue = new HostReadyQueue();
+        final TreeMap<String, Long> expected = new TreeMap<String, Long>();
+        final Random r = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            final String h = "h" + r.nextInt(500);
+            if (r.nextInt(4) == 0) {
+                assertEquals(expected.remove(h) != null, queue.remove(h));
+            } else {
+                final long t = r.nextInt(100000);
+                queue.put(h, t);
+                expected.put(h, t);
+            }
+            assertEquals(expected.size(), queue.size());
+            if (expected.isEmpty()) continue;
+            long min = Long.MAX_VALUE;
+            for (final Long t: expected.values()) min = Math.min(min, t.longValue());
+            assertEquals(min, queue.peekTime());
+            assertEquals(min, expected.get(queue.peek()).longValue());
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.kelondro.util.FileUtils;
+
+public class URLSeenFilterTest {
+
+    private static final File TESTDIR = new File("test/DATA/INDEX/QUEUES/URLSeenFilterTest");
+
+    @Before
+    public void setUp() {
+        FileUtils.deletedelete(TESTDIR);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deletedelete(TESTDIR);
+    }
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("%012d", i));
+    }
+
+    @Test
+    public void testAddAndStats() {
+        final URLSeenFilter filter = new URLSeenFilter(TESTDIR, 1024, 100000, 0.0001d);
+        for (int i = 0; i < 1000; i++) filter.add(key(i));
+        for (int i = 0; i < 1000; i++) assertTrue(filter.mightContain(key(i)));
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) if (filter.mightContain(key(i))) falsePositives++;
+        assertTrue(falsePositives < 10);
+        assertEquals(1000, filter.size());
+        assertEquals(11000, filter.lookups());
+        assertEquals(1000 + falsePositives, filter.hits());
+        assertEquals((1000.0d + falsePositives) / 11000.0d, filter.hitRate(), 1e-9);
+        filter.close();
+    }
+
+    @Test
+    public void testRolloverAndReopen() {
+        URLSeenFilter filter = new URLSeenFilter(TESTDIR, 1024, 100000, 0.0001d);
+        for (int i = 0; i < 5000; i++) filter.add(key(i));
+        assertTrue(filter.slices() > 1);
+        final int slices = filter.slices();
+        filter.close();
+
+        filter = new URLSeenFilter(TESTDIR, 1024, 100000, 0.0001d);
+        assertEquals(slices, filter.slices());
+        assertEquals(5000, filter.size());
+        for (int i = 0; i < 5000; i++) assertTrue(filter.mightContain(key(i)));
+        assertFalse(filter.mightContain(key(5000)));
+        filter.close();
+    }
+
+    @Test
+    public void testDropOldest() {
+        final URLSeenFilter filter = new URLSeenFilter(TESTDIR, 1024, 4096, 0.0001d);
+        for (int i = 0; i < 20000; i++) filter.add(key(i));
+        assertTrue(filter.size() <= 4096 + 1024);
+        // the newest keys are known, most of the oldest keys are forgotten
+        for (int i = 19000; i < 20000; i++) assertTrue(filter.mightContain(key(i)));
+        int known = 0;
+        for (int i = 0; i < 1000; i++) if (filter.mightContain(key(i))) known++;
+        assertTrue(known < 10);
+        filter.close();
+    }
+
+}
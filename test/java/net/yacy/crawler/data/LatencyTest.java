@@ -0,0 +1,38 @@
+package net.yacy.crawler.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.MalformedURLException;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+
+public class LatencyTest {
+
+    /**
+     * the number of running loads is counted for each host, not for each url
+     */
+    @Test
+    public void testLoadingCount() throws MalformedURLException {
+        final DigestURL a1 = new DigestURL("http://latencytest-a.example/1");
+        final DigestURL a2 = new DigestURL("http://latencytest-a.example/2");
+        final DigestURL b1 = new DigestURL("http://latencytest-b.example/1");
+        assertEquals(0, Latency.loading(a1.hosthash()));
+        Latency.loadStarted(a1);
+        Latency.loadStarted(a2);
+        Latency.loadStarted(b1);
+        assertEquals(2, Latency.loading(a1.hosthash()));
+        assertEquals(1, Latency.loading(b1.hosthash()));
+        Latency.loadFinished(a1);
+        assertEquals(1, Latency.loading(a2.hosthash()));
+        Latency.loadFinished(a2);
+        Latency.loadFinished(b1);
+        assertEquals(0, Latency.loading(a1.hosthash()));
+        assertEquals(0, Latency.loading(b1.hosthash()));
+
+        // a finish without a start must not make the count negative
+        Latency.loadFinished(b1);
+        assertEquals(0, Latency.loading(b1.hosthash()));
+    }
+}
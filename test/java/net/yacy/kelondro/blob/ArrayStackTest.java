@@ -0,0 +1,219 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.RowSetCodec;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceIterator;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class ArrayStackTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static WordReferenceVars reference(final String url) {
+        // the hash of the url is only used as an identifier of the reference
+        return new WordReferenceVars(Word.word2hash(url), url.length(), 2, 0, 1, 1, 1, 1, new LinkedList<Integer>(), 1, 1, 0, "en",
+                't', 0, 0, new Bitfield(4), 0.0d);
+    }
+
+    /**
+     * a merge of several files in one pass must contain all references of all files
+     */
+    @Test
+    public void testMergeManyFiles() throws Exception {
+        mergeFiles(4, false);
+    }
+
+    /**
+     * the same as testMergeManyFiles but the containers are merged as stream
+     */
+    @Test
+    public void testStreamMerge() throws Exception {
+        final long s = ArrayStack.mergeStreamSize;
+        ArrayStack.mergeStreamSize = 0;
+        try {
+            mergeFiles(2, false);
+            mergeFiles(4, false);
+        } finally {
+            ArrayStack.mergeStreamSize = s;
+        }
+    }
+
+    /**
+     * a merge with compression converts the containers into the compressed encoding
+     */
+    @Test
+    public void testCompressedMerge() throws Exception {
+        mergeFiles(3, true);
+        final long s = ArrayStack.mergeStreamSize;
+        ArrayStack.mergeStreamSize = 0;
+        try {
+            mergeFiles(3, true);
+        } finally {
+            ArrayStack.mergeStreamSize = s;
+        }
+    }
+
+    private static void mergeFiles(final int count, final boolean compress) throws Exception {
+        final File dir = File.createTempFile("ArrayStackTest", "");
+        dir.delete();
+        dir.mkdirs();
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        try {
+            final ArrayStack stack = new ArrayStack(dir, "test", Word.commonHashOrder, Word.commonHashLength, 1024, true, false);
+            final long now = System.currentTimeMillis();
+            final File[] files = new File[count];
+            final TreeMap<byte[], Set<String>> expected = new TreeMap<byte[], Set<String>>(Word.commonHashOrder);
+            for (int j = 0; j < files.length; j++) {
+                // the terms of each file, sorted by the term order
+                final TreeMap<byte[], ReferenceContainer<WordReference>> containers = new TreeMap<byte[], ReferenceContainer<WordReference>>(Word.commonHashOrder);
+                for (int t = 0; t < 20; t++) {
+                    if (t % (j + 1) != 0) continue;
+                    final byte[] term = Word.word2hash("term" + t);
+                    final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, term);
+                    final WordReferenceVars own = reference("http://test" + j + ".org/" + t + ".html");
+                    final WordReferenceVars shared = reference("http://shared.org/" + t + ".html");
+                    c.add(own);
+                    c.add(shared);
+                    containers.put(term, c);
+                    Set<String> urls = expected.get(term);
+                    if (urls == null) {urls = new HashSet<String>(); expected.put(term, urls);}
+                    urls.add(ASCII.String(own.urlhash()));
+                    urls.add(ASCII.String(shared.urlhash()));
+                }
+                files[j] = stack.newBLOB(new Date(now - 1000L * (files.length - j)));
+                final HeapWriter writer = new HeapWriter(new File(dir, files[j].getName() + ".prt"), files[j], Word.commonHashLength, Word.commonHashOrder, 1024);
+                for (final ReferenceContainer<WordReference> c: containers.values()) writer.add(c.getTermHash(), c.exportCollection());
+                writer.close(true);
+            }
+            stack.setCompression(compress);
+            final File merged = stack.mergeMount(files, factory, stack.newBLOB(new Date(now)), 1024);
+            for (final File f: files) assertFalse(f.exists());
+            assertEquals(1, stack.entries());
+
+            final Iterator<byte[]> terms = expected.keySet().iterator();
+            final ReferenceIterator<WordReference> i = new ReferenceIterator<WordReference>(merged, factory);
+            while (i.hasNext()) {
+                final ReferenceContainer<WordReference> c = i.next();
+                final byte[] term = terms.next();
+                assertArrayEquals(term, c.getTermHash());
+                final Set<String> urls = new HashSet<String>();
+                final Iterator<WordReference> r = c.entries();
+                while (r.hasNext()) urls.add(ASCII.String(r.next().urlhash()));
+                assertEquals(expected.get(term), urls);
+            }
+            i.close();
+            assertFalse(terms.hasNext());
+            final HeapRecordReader records = new HeapRecordReader(merged, Word.commonHashLength);
+            while (records.next()) assertEquals(compress, RowSetCodec.isCompressed(records.value()));
+            records.close();
+            stack.close(false);
+        } finally {
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+    /**
+     * BLOB files which are opened concurrently must be stacked in the order of their creation date
+     */
+    @Test
+    public void testConcurrentOpen() throws IOException, SpaceExceededException {
+        final File dir = File.createTempFile("ArrayStackTest", "");
+        dir.delete();
+        dir.mkdirs();
+        final int t = ArrayStack.openThreads;
+        try {
+            ArrayStack stack = new ArrayStack(dir, "test", NaturalOrder.naturalOrder, 12, 1024, false, false);
+            final long now = System.currentTimeMillis();
+            for (int b = 0; b < 6; b++) {
+                final Heap heap = new Heap(stack.newBLOB(new Date(now - 1000L * b)), 12, NaturalOrder.naturalOrder, 1024);
+                for (int i = 0; i < 50; i++) heap.insert(key(i), ASCII.getBytes("blob" + b + "-" + i));
+                heap.close(true);
+            }
+            stack.close(false);
+
+            ArrayStack.openThreads = 4;
+            stack = new ArrayStack(dir, "test", NaturalOrder.naturalOrder, 12, 1024, false, false);
+            assertEquals(6, stack.entries());
+            assertEquals(300, stack.size());
+            // the blobs are iterated from the oldest to the newest
+            int b = 5;
+            for (final byte[] v: stack.getAll(key(7))) {
+                assertArrayEquals(ASCII.getBytes("blob" + b-- + "-7"), v);
+            }
+            assertEquals(-1, b);
+            stack.close(false);
+        } finally {
+            ArrayStack.openThreads = t;
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+    /**
+     * the bloom filters of the BLOB files must let a lookup skip the files which do not contain a key
+     */
+    @Test
+    public void testBloomFilters() throws IOException, SpaceExceededException {
+        final File dir = File.createTempFile("ArrayStackTest", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            ArrayStack stack = new ArrayStack(dir, "test", NaturalOrder.naturalOrder, 12, 1024, false, false);
+            final long now = System.currentTimeMillis();
+            for (int b = 0; b < 8; b++) {
+                final Heap heap = new Heap(stack.newBLOB(new Date(now - 1000L * b)), 12, NaturalOrder.naturalOrder, 1024);
+                for (int i = 0; i < 200; i++) heap.insert(key(b * 1000 + i), ASCII.getBytes("blob" + b + "-" + i));
+                heap.close(true);
+            }
+            stack.close(false);
+
+            for (int round = 0; round < 2; round++) {
+                // the second round reads the filters which were written in the first round
+                stack = new ArrayStack(dir, "test", NaturalOrder.naturalOrder, 12, 1024, false, false);
+                int filters = 0;
+                for (final String f: dir.list()) if (f.endsWith(".blm")) filters++;
+                assertEquals(7, filters); // the newest BLOB is written and has no filter
+                for (int b = 0; b < 8; b++) {
+                    for (int i = 0; i < 200; i++) {
+                        assertTrue(stack.containsKey(key(b * 1000 + i)));
+                        assertArrayEquals(ASCII.getBytes("blob" + b + "-" + i), stack.get(key(b * 1000 + i)));
+                    }
+                    assertFalse(stack.containsKey(key(b * 1000 + 500)));
+                    assertNull(stack.get(key(b * 1000 + 500)));
+                }
+                // without filters a lookup would ask up to 8 files
+                assertTrue("probes per lookup: " + stack.probesPerLookup(), stack.probesPerLookup() < 2.5d);
+                assertTrue("false positive rate: " + stack.falsePositiveRate(), stack.falsePositiveRate() < 0.05d);
+                stack.close(true);
+            }
+        } finally {
+            FileUtils.deletedelete(dir);
+        }
+    }
+}
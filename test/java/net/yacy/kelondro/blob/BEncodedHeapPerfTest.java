@@ -0,0 +1,142 @@
+// BEncodedHeapPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.BDecoder;
+import net.yacy.kelondro.util.BDictionaryView;
+import net.yacy.kelondro.util.BEncoder;
+
+/**
+ * Measure time and allocated bytes of the access to rows of a BEncodedHeap which look like the rows of the
+ * api table: the decoding of a full row with the BDecoder (as it was done before the BDictionaryView was
+ * used), with the view, the projection of two columns, the access of a single number and a scan with a
+ * predicate on one column.
+ */
+public class BEncodedHeapPerfTest {
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static Map<String, byte[]> row(final int i) {
+        final Map<String, byte[]> m = new HashMap<String, byte[]>();
+        m.put("type", UTF8.getBytes("crawler"));
+        m.put("comment", UTF8.getBytes("crawl start for http://www.example" + i + ".org/"));
+        m.put("date_recording", UTF8.getBytes("20261017000000000"));
+        m.put("date_last_exec", UTF8.getBytes(String.format("2026101700%07d", i)));
+        m.put("date_next_exec", UTF8.getBytes(String.format("2026101800%07d", i)));
+        m.put("url", UTF8.getBytes("/Crawler_p.html?crawlingDepth=3&crawlingURL=http://www.example" + i + ".org/&range=domain&mustmatch=.*&mustnotmatch=&indexText=on&indexMedia=on"));
+        m.put("apicall_count", UTF8.getBytes(Integer.toString(i % 100)));
+        m.put("apicall_schedule_time", UTF8.getBytes(Integer.toString(i % 7)));
+        m.put("apicall_schedule_unit", UTF8.getBytes("days"));
+        m.put("apicall_event_kind", UTF8.getBytes("off"));
+        m.put("apicall_event_action", UTF8.getBytes("startup"));
+        return m;
+    }
+
+    /**
+     * the decoding of BEncodedHeap before the view was introduced
+     */
+    private static Map<String, byte[]> decode(final byte[] b) {
+        final Map<String, BDecoder.BObject> map = new BDecoder(b).parse().getMap();
+        final Map<String, byte[]> m = new HashMap<String, byte[]>();
+        for (final Map.Entry<String, BDecoder.BObject> entry: map.entrySet()) {
+            if (entry.getValue().getType() != BDecoder.BType.string) continue;
+            m.put(entry.getKey(), entry.getValue().getString());
+        }
+        return m;
+    }
+
+    private interface Access {
+        long run(int i) throws Exception;
+    }
+
+    private static void measure(final String name, final int count, final Access access) throws Exception {
+        measure(name, count, 1, access);
+    }
+
+    /**
+     * @param count the number of calls of the access
+     * @param rows the number of rows which are read with each call
+     */
+    private static void measure(final String name, final int count, final int rows, final Access access) throws Exception {
+        for (int i = 0; i < Math.min(count, 10000); i++) access.run(i); // warm-up
+        final long tid = Thread.currentThread().getId();
+        final long a0 = threads.getThreadAllocatedBytes(tid);
+        final long t0 = System.nanoTime();
+        long check = 0;
+        for (int i = 0; i < count; i++) check += access.run(i);
+        final long t = System.nanoTime() - t0;
+        final long a = threads.getThreadAllocatedBytes(tid) - a0;
+        System.out.println(String.format("%-34s %8.0f ns/row, %6d bytes/row allocated (%d)", name, (double) t / count / rows, a / count / rows, check));
+    }
+
+    /**
+     * @param args [rows], the default is 100000
+     */
+    public static void main(final String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final byte[][] encoded = new byte[1000][];
+        for (int i = 0; i < encoded.length; i++) encoded[i] = BEncoder.encode(BEncoder.transcode(row(i)));
+        final File f = File.createTempFile("BEncodedHeapPerfTest", ".bheap");
+        f.delete();
+        final BEncodedHeap heap = new BEncodedHeap(f, 12);
+        try {
+            for (int i = 0; i < count; i++) heap.insert(key(i), row(i));
+
+            measure("decode full row, BDecoder", count, i -> decode(encoded[i % encoded.length]).size());
+            measure("decode full row, view", count, i -> new BDictionaryView(encoded[i % encoded.length]).toMap().size());
+            measure("decode 2 columns, view", count, i -> new BDictionaryView(encoded[i % encoded.length]).toMap("date_next_exec", "apicall_schedule_time").size());
+            measure("one number column, BDecoder", count, i -> Long.parseLong(UTF8.String(decode(encoded[i % encoded.length]).get("apicall_count"))));
+            measure("one number column, view", count, i -> new BDictionaryView(encoded[i % encoded.length]).get("apicall_count", 0L));
+            measure("heap.get(pk)", count, i -> heap.get(key(i)).size());
+            measure("heap.get(pk, 2 columns)", count, i -> heap.get(key(i), "date_next_exec", "apicall_schedule_time").size());
+            final byte[] days = UTF8.getBytes("weeks");
+            measure("scan with predicate, iterator()", 3, count, i -> {
+                long n = 0;
+                for (final Iterator<Map.Entry<byte[], Map<String, byte[]>>> it = heap.iterator(); it.hasNext();) {
+                    if (java.util.Arrays.equals(it.next().getValue().get("apicall_schedule_unit"), days)) n++;
+                }
+                return n;
+            });
+            measure("scan with predicate, views()", 3, count, i -> {
+                long n = 0;
+                for (final Iterator<Map.Entry<byte[], BDictionaryView>> it = heap.views(); it.hasNext();) {
+                    if (it.next().getValue().equals("apicall_schedule_unit", days)) n++;
+                }
+                return n;
+            });
+        } finally {
+            heap.close();
+            f.delete();
+            ConcurrentLog.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class HeapColumnIndexTest {
+
+    private static final String table = "test";
+
+    private static Tables.Data data(final int i) {
+        final Tables.Data data = new Tables.Data();
+        data.put("url", "http://localhost/api?call=" + (i % 10));
+        data.put("count", i % 7 - 3);
+        data.put("date", String.format("2026%013d", i));
+        return data;
+    }
+
+    private static List<String> column(final Iterator<Tables.Row> rows, final String column) {
+        final List<String> values = new ArrayList<String>();
+        while (rows.hasNext()) values.add(rows.next().get(column, ""));
+        return values;
+    }
+
+    private static void createIndexes(final Tables tables) throws IOException {
+        tables.createColumnIndex(table, "url", HeapColumnIndex.Type.HASH);
+        tables.createColumnIndex(table, "count", HeapColumnIndex.Type.NUMBER);
+        tables.createColumnIndex(table, "date", HeapColumnIndex.Type.STRING);
+    }
+
+    /**
+     * the rows which are selected with an index are the same as the rows which are selected with a scan
+     */
+    private static void assertSelections(final Tables tables, final int rows) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            final byte[] url = UTF8.getBytes("http://localhost/api?call=" + i);
+            final List<String> indexed = column(tables.iterator(table, "url", url), "date");
+            final List<String> scanned = column(tables.new HeapRowIterator(table, "url", url), "date");
+            assertEquals(scanned.size(), indexed.size());
+            assertTrue(indexed.containsAll(scanned));
+        }
+        // range scan on numbers
+        final List<String> counts = column(tables.iterator(table, "count", UTF8.getBytes("-1"), UTF8.getBytes("1"), true), "count");
+        int expected = 0;
+        for (int i = 0; i < rows; i++) if (Math.abs(i % 7 - 3) <= 1) expected++;
+        assertEquals(expected, counts.size());
+        for (int i = 1; i < counts.size(); i++) assertTrue(Long.parseLong(counts.get(i - 1)) <= Long.parseLong(counts.get(i)));
+        assertEquals("-1", counts.get(0));
+        assertEquals("1", counts.get(counts.size() - 1));
+    }
+
+    @Test
+    public void testIndexMaintenanceAndDump() throws Exception {
+        final File location = Files.createTempDirectory("HeapColumnIndexTest").toFile();
+        try {
+            Tables tables = new Tables(location, 12);
+            createIndexes(tables);
+            final List<byte[]> pks = new ArrayList<byte[]>();
+            for (int i = 0; i < 300; i++) pks.add(tables.insert(table, data(i)));
+            assertSelections(tables, 300);
+
+            // updates and deletions change the index
+            for (int i = 0; i < 100; i++) tables.delete(table, pks.get(i));
+            final Tables.Row row = tables.select(table, pks.get(100));
+            row.put("count", 1000);
+            tables.update(table, row);
+            assertEquals(1, column(tables.iterator(table, "count", UTF8.getBytes("1000")), "count").size());
+            assertEquals(0, column(tables.iterator(table, "date", UTF8.getBytes(String.format("2026%013d", 5))), "date").size());
+
+            // top-k retrieval in both directions
+            final List<String> first = column(tables.orderBy(table, "date", Tables.SortDirection.ASC, 5).iterator(), "date");
+            assertEquals(5, first.size());
+            assertEquals(String.format("2026%013d", 100), first.get(0));
+            final List<String> last = column(tables.orderBy(table, "date", Tables.SortDirection.DESC, 3).iterator(), "date");
+            assertEquals(String.format("2026%013d", 299), last.get(0));
+            assertEquals(String.format("2026%013d", 297), last.get(2));
+
+            // the index is written when the table is closed and read when it is opened
+            tables.close();
+            boolean dumped = false;
+            for (final String f: location.list()) dumped |= f.endsWith(HeapColumnIndex.suffix);
+            assertTrue(dumped);
+            tables = new Tables(location, 12);
+            createIndexes(tables);
+            for (final String f: location.list()) assertFalse(f.endsWith(HeapColumnIndex.suffix));
+            assertEquals(200, tables.getColumnIndex(table, "date").size());
+            assertEquals(1, column(tables.iterator(table, "count", UTF8.getBytes("1000")), "count").size());
+            tables.close();
+        } finally {
+            FileUtils.deletedelete(location);
+        }
+    }
+
+    /**
+     * rows which are written while an index is generated are in the index
+     */
+    @Test
+    public void testWriteDuringIndexGeneration() throws Exception {
+        final File location = Files.createTempDirectory("HeapColumnIndexTest").toFile();
+        final BEncodedHeap heap = new BEncodedHeap(new File(location, "test.heap"), 12);
+        try {
+            for (int i = 0; i < 2000; i++) heap.insert(UTF8.getBytes(String.format("k%011d", i)), "date", UTF8.getBytes(String.format("2026%013d", i)));
+            final Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 2000; i < 4000; i++) heap.insert(UTF8.getBytes(String.format("k%011d", i)), "date", UTF8.getBytes(String.format("2026%013d", i)));
+                    } catch (final IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            writer.start();
+            final HeapColumnIndex index = heap.createColumnIndex("date", HeapColumnIndex.Type.STRING);
+            writer.join();
+            assertEquals(4000, index.size());
+        } finally {
+            heap.close();
+            FileUtils.deletedelete(location);
+        }
+    }
+}
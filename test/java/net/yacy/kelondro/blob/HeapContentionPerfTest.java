@@ -0,0 +1,155 @@
+// HeapContentionPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * Measure the throughput of concurrent get() calls on a HeapModifier while another
+ * thread runs slow reduce() operations, comparing the read/write lock mode with
+ * the exclusive lock mode (HeapReader.concurrentReaders = false).
+ */
+public class HeapContentionPerfTest {
+
+    private static final int KEYLENGTH = 12;
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * a reducer which removes 16 bytes at the end of the blob and simulates an expensive rewrite
+     */
+    private static class SlowReducer implements BLOB.Reducer {
+        private final long cpuNanos;
+        public SlowReducer(final long cpuNanos) {
+            this.cpuNanos = cpuNanos;
+        }
+        @Override
+        public byte[] rewrite(final byte[] b) {
+            final long start = System.nanoTime();
+            while (System.nanoTime() - start < this.cpuNanos) {
+                // busy; like decoding and filtering a large reference container
+            }
+            if (b.length < 32) return b;
+            final byte[] r = new byte[b.length - 16];
+            System.arraycopy(b, 0, r, 0, r.length);
+            return r;
+        }
+    }
+
+    private static File createHeap(final int records, final int blobsize) throws IOException {
+        final File f = File.createTempFile("HeapContentionPerfTest", ".blob");
+        f.delete();
+        final Heap heap = new Heap(f, KEYLENGTH, NaturalOrder.naturalOrder, 1024 * 1024);
+        final byte[] b = new byte[blobsize];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) ('a' + i % 26);
+        for (int i = 0; i < records; i++) heap.insert(key(i), b);
+        heap.close(false);
+        return f;
+    }
+
+    private static long run(final File f, final boolean concurrent, final int readers, final int records, final long millis) throws Exception {
+        HeapReader.concurrentReaders = concurrent;
+        final HeapModifier heap = new HeapModifier(f, KEYLENGTH, NaturalOrder.naturalOrder);
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicLong gets = new AtomicLong(0);
+        final AtomicLong reductions = new AtomicLong(0);
+
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                final Random r = new Random(1);
+                final SlowReducer reducer = new SlowReducer(2000000); // 2 ms per reduce
+                while (!stop.get()) {
+                    try {
+                        heap.reduce(key(r.nextInt(records)), reducer);
+                        reductions.incrementAndGet();
+                    } catch (final IOException | SpaceExceededException e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }
+        };
+        final Thread[] t = new Thread[readers];
+        for (int i = 0; i < readers; i++) {
+            final int seed = i;
+            t[i] = new Thread() {
+                @Override
+                public void run() {
+                    final Random r = new Random(seed);
+                    while (!stop.get()) {
+                        try {
+                            heap.get(key(r.nextInt(records)));
+                            gets.incrementAndGet();
+                        } catch (final IOException | SpaceExceededException e) {
+                            e.printStackTrace();
+                            return;
+                        }
+                    }
+                }
+            };
+        }
+        writer.start();
+        for (final Thread th: t) th.start();
+        Thread.sleep(millis);
+        stop.set(true);
+        writer.join();
+        for (final Thread th: t) th.join();
+        heap.close(false);
+        System.out.println((concurrent ? "read/write lock" : "exclusive lock ") + ": " + readers + " readers, " +
+                (gets.get() * 1000 / millis) + " gets/s, " + (reductions.get() * 1000 / millis) + " reductions/s");
+        return gets.get();
+    }
+
+    /**
+     * @param args [records] [blobsize] [milliseconds per run]
+     */
+    public static void main(final String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int blobsize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        final long millis = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+        try {
+            final File f = createHeap(records, blobsize);
+            System.out.println("created heap with " + records + " records of " + blobsize + " bytes: " + f);
+            // warm-up
+            run(f, true, 2, records, 1000);
+            run(f, false, 2, records, 1000);
+            for (int readers = 1; readers <= Runtime.getRuntime().availableProcessors() * 2; readers *= 2) {
+                run(f, false, readers, records, millis);
+                run(f, true, readers, records, millis);
+            }
+            f.delete();
+        } catch (final Exception e) {
+            e.printStackTrace();
+        } finally {
+            ConcurrentLog.shutdown();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+
+import org.junit.Test;
+
+public class HeapTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static byte[] value(final int i, final int length) {
+        final byte[] b = new byte[length];
+        for (int j = 0; j < length; j++) b[j] = (byte) ('a' + (i + j) % 26);
+        return b;
+    }
+
+    private static File createHeap(final int records) throws IOException {
+        final File f = File.createTempFile("HeapTest", ".blob");
+        f.delete();
+        f.deleteOnExit();
+        final Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+        for (int i = 0; i < records; i++) heap.insert(key(i), value(i, 100));
+        heap.close(false);
+        return f;
+    }
+
+    /**
+     * the reducer cuts the blob to a given length
+     */
+    private static class CutReducer implements BLOB.Reducer {
+        @Override
+        public byte[] rewrite(final byte[] b) {
+            final byte[] r = new byte[50];
+            System.arraycopy(b, 0, r, 0, r.length);
+            return r;
+        }
+    }
+
+    private static void testReduceWhileReading(final boolean concurrentReaders) throws Exception {
+        final int records = 500;
+        final File f = createHeap(records);
+        final boolean c = HeapReader.concurrentReaders;
+        HeapReader.concurrentReaders = concurrentReaders;
+        try {
+            final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder);
+            final List<Throwable> errors = new ArrayList<Throwable>();
+            final Thread[] readers = new Thread[4];
+            for (int t = 0; t < readers.length; t++) {
+                readers[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int loop = 0; loop < 3; loop++) {
+                                for (int i = 0; i < records; i++) {
+                                    final byte[] b = heap.get(key(i));
+                                    // each blob must be either the original or the reduced blob
+                                    if (b.length == 100) {
+                                        assertArrayEquals(value(i, 100), b);
+                                    } else {
+                                        assertEquals(50, b.length);
+                                        assertArrayEquals(value(i, 50), b);
+                                    }
+                                }
+                            }
+                        } catch (final Throwable e) {
+                            synchronized (errors) {errors.add(e);}
+                        }
+                    }
+                };
+                readers[t].start();
+            }
+            final CutReducer reducer = new CutReducer();
+            for (int i = 0; i < records; i++) {
+                assertEquals(50, heap.reduce(key(i), reducer));
+            }
+            for (final Thread t: readers) t.join();
+            assertEquals(errors.toString(), 0, errors.size());
+            for (int i = 0; i < records; i++) assertEquals(50, heap.length(key(i)));
+            heap.delete(key(7));
+            assertNull(heap.get(key(7)));
+            assertFalse(heap.containsKey(key(7)));
+            heap.close(false);
+        } finally {
+            HeapReader.concurrentReaders = c;
+        }
+    }
+
+    @Test
+    public void testReduceWhileReadingConcurrent() throws Exception {
+        testReduceWhileReading(true);
+    }
+
+    @Test
+    public void testReduceWhileReadingExclusive() throws Exception {
+        testReduceWhileReading(false);
+    }
+
+    /**
+     * an interrupted reader must not make the heap unreadable for the other readers
+     */
+    @Test
+    public void testInterruptedRead() throws Exception {
+        final File f = createHeap(100);
+        final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder);
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                Thread.currentThread().interrupt();
+                try {
+                    heap.get(key(3));
+                } catch (final Exception e) {
+                    // the read of the interrupted thread may fail
+                }
+            }
+        };
+        reader.start();
+        reader.join();
+        for (int i = 0; i < 100; i++) assertArrayEquals(value(i, 100), heap.get(key(i)));
+        // the file which was closed by the interrupt is writable again
+        heap.delete(key(5));
+        assertNull(heap.get(key(5)));
+        assertArrayEquals(value(6, 100), heap.get(key(6)));
+        heap.close(false);
+    }
+
+    /**
+     * open a heap with an off-heap index, once from a mapped index dump and once from the heap file
+     */
+    @Test
+    public void testOffHeapIndex() throws IOException, SpaceExceededException {
+        final File f = File.createTempFile("HeapTest", ".blob");
+        f.delete();
+        f.deleteOnExit();
+        Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+        for (int i = 0; i < 200; i++) heap.insert(key(i), value(i, 30));
+        heap.close(true); // writes the idx and gap dump
+        final boolean o = HeapReader.offHeapIndex;
+        HeapReader.offHeapIndex = true;
+        try {
+            HeapModifier modifier = new HeapModifier(f, 12, NaturalOrder.naturalOrder);
+            assertEquals(200, modifier.size());
+            for (int i = 0; i < 200; i++) assertArrayEquals(value(i, 30), modifier.get(key(i)));
+            modifier.delete(key(3));
+            assertNull(modifier.get(key(3)));
+            assertEquals(199, modifier.size());
+            modifier.close(false);
+
+            heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+            assertEquals(199, heap.size());
+            heap.insert(key(3), value(3, 40));
+            heap.insert(key(1000), value(1000, 40));
+            assertArrayEquals(value(3, 40), heap.get(key(3)));
+            assertArrayEquals(value(1000, 40), heap.get(key(1000)));
+            assertArrayEquals(value(4, 30), heap.get(key(4)));
+            assertEquals(201, heap.size());
+            heap.close(false);
+        } finally {
+            HeapReader.offHeapIndex = o;
+        }
+    }
+
+    /**
+     * with an off-heap index the gap dump is read when the gaps are used first
+     */
+    @Test
+    public void testLazyGaps() throws IOException, SpaceExceededException {
+        final File f = File.createTempFile("HeapTest", ".blob");
+        f.delete();
+        f.deleteOnExit();
+        Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+        for (int i = 0; i < 100; i++) heap.insert(key(i), value(i, 30));
+        heap.close(true);
+        HeapModifier modifier = new HeapModifier(f, 12, NaturalOrder.naturalOrder);
+        modifier.delete(key(5));
+        modifier.delete(key(50));
+        modifier.close(true); // writes new dumps with two gaps
+        final long length = f.length();
+        final boolean o = HeapReader.offHeapIndex;
+        HeapReader.offHeapIndex = true;
+        try {
+            modifier = new HeapModifier(f, 12, NaturalOrder.naturalOrder);
+            assertNull(modifier.free);
+            assertArrayEquals(value(6, 30), modifier.get(key(6)));
+            modifier.close(true); // re-uses the existing dumps without reading the gaps
+            assertEquals(length, f.length());
+
+            heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+            assertNull(heap.free);
+            heap.insert(key(5), value(5, 30)); // fills a gap
+            heap.close(true);
+            assertEquals(length, f.length());
+
+            heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+            assertEquals(99, heap.size());
+            assertArrayEquals(value(5, 30), heap.get(key(5)));
+            assertNull(heap.get(key(50)));
+            heap.close(false);
+        } finally {
+            HeapReader.offHeapIndex = o;
+        }
+    }
+
+    /**
+     * a blob read as stream must be equal to the blob, a modification of the heap must be detected
+     */
+    @Test
+    public void testStream() throws IOException, SpaceExceededException {
+        final File f = File.createTempFile("HeapTest", ".blob");
+        f.delete();
+        f.deleteOnExit();
+        final Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 4096);
+        for (int i = 0; i < 10; i++) heap.insert(key(i), value(i, 100000));
+        assertNull(heap.getStream(key(11)));
+        HeapReader.BlobInputStream s = heap.getStream(key(3));
+        assertEquals(100000, s.length());
+        final ByteArrayOutputStream b = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int n;
+        while ((n = s.read(buffer)) > 0) b.write(buffer, 0, n);
+        assertArrayEquals(value(3, 100000), b.toByteArray());
+
+        s = heap.getStream(key(4));
+        assertEquals(value(4, 1)[0], (byte) s.read());
+        heap.delete(key(5));
+        try {
+            while (s.read(buffer) > 0) {}
+            fail("modification not detected");
+        } catch (final IOException e) {
+            // expected
+        }
+        heap.close(false);
+    }
+
+    @Test
+    public void testInsertGetDelete() throws IOException, SpaceExceededException {
+        final File f = File.createTempFile("HeapTest", ".blob");
+        f.delete();
+        f.deleteOnExit();
+        final Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 256);
+        for (int i = 0; i < 100; i++) heap.insert(key(i), value(i, 20 + i));
+        for (int i = 0; i < 100; i += 2) heap.delete(key(i));
+        assertEquals(50, heap.size());
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                assertNull(heap.get(key(i)));
+            } else {
+                assertArrayEquals(value(i, 20 + i), heap.get(key(i)));
+                assertEquals(20 + i, heap.length(key(i)));
+            }
+        }
+        heap.close(true);
+    }
+}
@@ -0,0 +1,71 @@
+package net.yacy.kelondro.data.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.yacy.cora.order.Digest;
+
+import org.junit.Test;
+
+public class TermDictionaryTest {
+
+    private static byte[] md5hash(final String wordlc) {
+        return Word.commonHashOrder.encodeSubstring(Digest.encodeMD5Raw(wordlc), Word.commonHashLength);
+    }
+
+    @Test
+    public void testWriteAndLookup() throws IOException {
+        final File f = File.createTempFile("TermDictionaryTest", ".dict");
+        try {
+            final List<String> terms = new ArrayList<String>();
+            for (int i = 0; i < 5000; i++) terms.add("Term" + i);
+            terms.add("über");
+            terms.add("term1"); // double entry after lower case conversion
+            assertEquals(5001, TermDictionary.write(f, terms.iterator()));
+            final TermDictionary dict = new TermDictionary(f);
+            assertEquals(5001, dict.size());
+            for (int i = 0; i < 5000; i++) assertArrayEquals(md5hash("term" + i), dict.get("term" + i));
+            assertArrayEquals(md5hash("über"), dict.get("über"));
+            assertNull(dict.get("missing"));
+            assertNull(dict.get("Term1")); // lookups must be lower case
+            assertEquals(5001, dict.hits());
+            assertEquals(2, dict.misses());
+            final Set<String> read = new HashSet<String>();
+            final Iterator<String> i = dict.terms();
+            while (i.hasNext()) read.add(i.next());
+            assertEquals(5001, read.size());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testBatchHashesEqualSingleHashes() throws IOException {
+        final File f = File.createTempFile("TermDictionaryTest", ".dict");
+        try {
+            TermDictionary.write(f, Arrays.asList("alpha", "beta").iterator());
+            Word.setDictionary(new TermDictionary(f));
+            final List<String> words = Arrays.asList("Alpha", "beta", "gamma", "Delta");
+            final Map<String, byte[]> hashes = Word.words2hashes(words);
+            assertEquals(4, hashes.size());
+            for (final String w: words) {
+                assertArrayEquals(md5hash(w.toLowerCase()), hashes.get(w));
+                assertArrayEquals(md5hash(w.toLowerCase()), Word.word2hash(w));
+            }
+        } finally {
+            Word.setDictionary(null);
+            f.delete();
+        }
+    }
+}
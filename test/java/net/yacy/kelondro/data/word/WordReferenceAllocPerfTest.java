@@ -0,0 +1,152 @@
+// WordReferenceAllocPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.data.word;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+
+/**
+ * Measure the heap allocation of the search path per query: the join of the containers of two
+ * words and the transformation of the result into WordReferenceVars. The copying variant is the
+ * former implementation, where each row was cloned when it was read from a container and each
+ * joined reference got an own row before it was added to the result; the current implementation
+ * reads the rows through views and places the joined rows in a RowArena.
+ * The allocation is counted with the per-thread allocation counter of the JVM, therefore the
+ * transformation is measured with a result of at most 100 references, which is done in the calling thread.
+ */
+public class WordReferenceAllocPerfTest {
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static ReferenceContainer<WordReference> container(final String word, final int count, final int step) throws Exception {
+        final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(factory, Word.word2hash(word));
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < count * step; i += step) {
+            final WordReferenceRow row = new WordReferenceRow(ASCII.getBytes(String.format("%012d", i)), 30, 2, 0, 1, 1, now, now, ASCII.getBytes("en"), 't', 0, 0);
+            final Word w = new Word(i % 50 + 1, 1, 1);
+            w.flags = new Bitfield(4);
+            row.setWord(w);
+            rc.add(row);
+        }
+        rc.sort();
+        return rc;
+    }
+
+    /**
+     * the join as it was done before rows were read through views; the join method is chosen as in ReferenceContainer.joinConstructive
+     */
+    private static ReferenceContainer<WordReference> joinCopying(final ReferenceContainer<WordReference> i1, final ReferenceContainer<WordReference> i2) throws Exception {
+        final int high = Math.max(i1.size(), i2.size()), low = Math.min(i1.size(), i2.size());
+        if (10 * (high + low - 1) > 12 * (32 - Integer.numberOfLeadingZeros(high)) * low) {
+            return i1.size() < i2.size() ? joinCopyingByTest(i1, i2) : joinCopyingByTest(i2, i1);
+        }
+        final ReferenceContainer<WordReference> conj = new ReferenceContainer<WordReference>(factory, null, 0);
+        final Iterator<WordReference> e1 = i1.entries();
+        final Iterator<WordReference> e2 = i2.entries();
+        if (!e1.hasNext() || !e2.hasNext()) return conj;
+        WordReference ie1 = e1.next(), ie2 = e2.next();
+        while (true) {
+            final int c = factory.getRow().getOrdering().compare(ie1.urlhash(), ie2.urlhash());
+            if (c < 0) {
+                if (e1.hasNext()) ie1 = e1.next(); else break;
+            } else if (c > 0) {
+                if (e2.hasNext()) ie2 = e2.next(); else break;
+            } else {
+                ie1 = factory.produceFast(ie1, true);
+                ie1.join(ie2);
+                conj.add(ie1);
+                if (e1.hasNext()) ie1 = e1.next(); else break;
+                if (e2.hasNext()) ie2 = e2.next(); else break;
+            }
+        }
+        return conj;
+    }
+
+    private static ReferenceContainer<WordReference> joinCopyingByTest(final ReferenceContainer<WordReference> small, final ReferenceContainer<WordReference> large) throws Exception {
+        final ReferenceContainer<WordReference> conj = new ReferenceContainer<WordReference>(factory, null, 0);
+        final Iterator<WordReference> se = small.entries();
+        while (se.hasNext()) {
+            WordReference ie1 = se.next();
+            final WordReference ie2 = large.getReference(ie1.urlhash());
+            if (ie2 != null) {
+                ie1 = factory.produceFast(ie2, true);
+                ie1.join(ie2);
+                conj.add(ie1);
+            }
+        }
+        return conj;
+    }
+
+    /**
+     * the transformation as it was done before rows were read through views
+     */
+    private static BlockingQueue<WordReferenceVars> transformCopying(final ReferenceContainer<WordReference> container) {
+        final LinkedBlockingQueue<WordReferenceVars> vars = new LinkedBlockingQueue<WordReferenceVars>();
+        for (final Row.Entry entry: container) vars.add(new WordReferenceVars(new WordReferenceRow(entry), true));
+        vars.add(WordReferenceVars.poison);
+        return vars;
+    }
+
+    private static long query(final ReferenceContainer<WordReference> c1, final ReferenceContainer<WordReference> c2, final boolean copying) throws Exception {
+        final ReferenceContainer<WordReference> conj = copying ? joinCopying(c1, c2) : ReferenceContainer.joinConstructive(factory, c1, c2, Integer.MAX_VALUE);
+        final BlockingQueue<WordReferenceVars> vars = copying ? transformCopying(conj) : WordReferenceVars.transform(conj, Long.MAX_VALUE, true);
+        long n = 0;
+        while (vars.take() != WordReferenceVars.poison) n++;
+        return n;
+    }
+
+    private static void measure(final int size1, final int size2, final int queries) throws Exception {
+        // the step size is chosen so that the join has 100 results
+        final ReferenceContainer<WordReference> c1 = container("one", size1, 1);
+        final ReferenceContainer<WordReference> c2 = container("two", size2, size1 / 100);
+        for (final boolean copying: new boolean[]{true, false}) {
+            for (int i = 0; i < queries; i++) query(c1, c2, copying); // warm up
+            final long tid = Thread.currentThread().getId();
+            final long a0 = threads.getThreadAllocatedBytes(tid);
+            final long t0 = System.nanoTime();
+            long results = 0;
+            for (int i = 0; i < queries; i++) results += query(c1, c2, copying);
+            final long t = System.nanoTime() - t0;
+            final long a = threads.getThreadAllocatedBytes(tid) - a0;
+            System.out.println(String.format("containers %6d x %6d, %s: %8d bytes/query, %7.1f us/query, %d results/query",
+                    size1, size2, copying ? "copying" : "views  ", a / queries, t / 1000.0d / queries, results / queries));
+        }
+    }
+
+    public static void main(final String[] args) {
+        try {
+            measure(1000, 1000, 2000);
+            measure(10000, 10000, 200);
+            measure(1000, 100000, 200);
+        } catch (final Exception e) {
+            e.printStackTrace();
+        } finally {
+            ConcurrentLog.shutdown();
+        }
+    }
+}
@@ -20,9 +20,13 @@
 package net.yacy.kelondro.data.word;
 
 import java.net.MalformedURLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -94,4 +98,37 @@ public class WordReferenceVarsTest {
 
     }
 
+    /**
+     * Test of transform: the sequential and the concurrent transformation must
+     * produce one WordReferenceVars with the values of each row of the container.
+     */
+    @Test
+    public void testTransform() throws Exception {
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        for (final int size: new int[]{50, 1000}) {
+            final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(factory, Word.word2hash("test"));
+            final Set<String> urls = new HashSet<String>();
+            for (int i = 0; i < size; i++) {
+                final DigestURL url = new DigestURL("http://test.org/page" + i + ".html");
+                final WordReferenceRow ientry = new WordReferenceRow(url.hash(), 20, 3, 2, 1, 1,
+                        System.currentTimeMillis(), System.currentTimeMillis(), UTF8.getBytes("en"), Response.DT_TEXT, 0, 0);
+                final Word word = new Word(i % 100 + 1, 1, 100);
+                word.flags = new Bitfield(4);
+                ientry.setWord(word);
+                container.add(ientry);
+                urls.add(new String(url.hash(), "UTF-8"));
+            }
+            final BlockingQueue<WordReferenceVars> vars = WordReferenceVars.transform(container, Long.MAX_VALUE, true);
+            WordReferenceVars v;
+            int n = 0;
+            while ((v = vars.take()) != WordReferenceVars.poison) {
+                assertTrue("unknown or double url", urls.remove(new String(v.urlhash(), "UTF-8")));
+                assertEquals(20, v.urllength());
+                assertEquals("en", new String(v.getLanguage(), "UTF-8"));
+                n++;
+            }
+            assertEquals(size, n);
+        }
+    }
+
 }
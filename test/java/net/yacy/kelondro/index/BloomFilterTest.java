@@ -0,0 +1,47 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        final BloomFilter filter = new BloomFilter(10000, 0.01d);
+        for (int i = 0; i < 10000; i++) filter.add(key(i));
+        assertEquals(10000, filter.count());
+        for (int i = 0; i < 10000; i++) assertTrue(filter.mightContain(key(i)));
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) if (filter.mightContain(key(i))) falsePositives++;
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000); // the filter is designed for 1%
+        assertTrue(filter.expectedFpp() < 0.02d);
+    }
+
+    @Test
+    public void testDumpAndLoad() throws IOException {
+        final File f = File.createTempFile("BloomFilterTest", ".bf");
+        try {
+            final BloomFilter filter = new BloomFilter(1000, 0.01d);
+            for (int i = 0; i < 1000; i++) filter.add(key(i));
+            filter.dump(f);
+            final BloomFilter loaded = BloomFilter.load(f);
+            assertEquals(filter.count(), loaded.count());
+            assertEquals(filter.bitSize(), loaded.bitSize());
+            assertEquals(filter.hashCount(), loaded.hashCount());
+            for (int i = 0; i < 2000; i++) assertEquals(filter.mightContain(key(i)), loaded.mightContain(key(i)));
+        } finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// HandleMapPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.data.word.Word;
+
+/**
+ * Compare get, put and inc of a RowHandleMap and a HashHandleMap with random url hashes, as they are
+ * used in HostBalancer.depthCache and in the indexes of BLOB files, and the memory of both maps.
+ * The maps are filled with putUnique like an index which is read from a dump; inserts of new keys
+ * into a RowHandleMap which is already sorted are so slow that only a small number is measured.
+ * Run with enough heap for the number of entries, i.e. -Xmx3g for 10 million entries.
+ */
+public class HandleMapPerfTest {
+
+    private static byte[] key(final long i) {
+        return Word.word2hash(Long.toString(i));
+    }
+
+    private static void run(final String name, final HandleMap map, final byte[][] keys, final int lookups) throws Exception {
+        final int count = keys.length;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) map.putUnique(keys[i], i);
+        final long fill = System.nanoTime() - start;
+
+        // the first lookup after the inserts of a RowHandleMap sorts the collections
+        final Random r = new Random(1);
+        start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < lookups; i++) if (map.get(keys[r.nextInt(count)]) >= 0) found++;
+        final long get = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) map.put(keys[r.nextInt(count)], i);
+        final long put = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) map.inc(keys[r.nextInt(count)]);
+        final long inc = System.nanoTime() - start;
+
+        // lookups of missing keys interleaved with inserts of new keys
+        final int inserts = Math.max(1, lookups / 1000);
+        start = System.nanoTime();
+        for (int i = 0; i < inserts; i++) {
+            map.get(key(-i - 1));
+            map.put(key(count + i), i);
+        }
+        final long mixed = System.nanoTime() - start;
+
+        System.out.println(String.format("%-13s %9d entries: fill %6.0f ns, get %6.0f ns, put %6.0f ns, inc %6.0f ns, get+put new key %9.0f ns, %5.1f bytes/entry, found %d",
+                name, count, ((double) fill) / count, ((double) get) / lookups, ((double) put) / lookups, ((double) inc) / lookups, ((double) mixed) / inserts,
+                ((double) map.mem()) / map.size(), found));
+        map.close();
+    }
+
+    /**
+     * @param args [entries] [lookups]
+     */
+    public static void main(final String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        try {
+            for (final int size: new int[]{count / 100, count}) {
+                final byte[][] keys = new byte[size][];
+                for (int i = 0; i < size; i++) keys[i] = key(i);
+                for (int round = 0; round < 2; round++) { // the first round is a warm-up
+                    run("RowHandleMap", new RowHandleMap(Word.commonHashLength, Base64Order.enhancedCoder, 4, size, "HandleMapPerfTest"), keys, lookups);
+                    run("HashHandleMap", new HashHandleMap(Word.commonHashLength, Base64Order.enhancedCoder, 4, size, "HandleMapPerfTest"), keys, lookups);
+                }
+            }
+        } catch (final Exception e) {
+            e.printStackTrace();
+        } finally {
+            ConcurrentLog.shutdown();
+        }
+    }
+}
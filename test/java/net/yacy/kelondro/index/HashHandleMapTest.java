@@ -0,0 +1,125 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+
+import org.junit.Test;
+
+public class HashHandleMapTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * apply the same random modifications to a RowHandleMap and a HashHandleMap, including
+     * removals which shift entries in the probe sequences and a growing table, and compare the result
+     */
+    @Test
+    public void testCompareWithRowHandleMap() throws Exception {
+        final RowHandleMap expected = new RowHandleMap(12, NaturalOrder.naturalOrder, 4, 100, "HashHandleMapTest");
+        final HashHandleMap map = new HashHandleMap(12, NaturalOrder.naturalOrder, 4, 10, "HashHandleMapTest");
+        final Random r = new Random(0);
+        for (int n = 0; n < 20000; n++) {
+            final byte[] k = key(r.nextInt(3000));
+            switch (r.nextInt(5)) {
+                case 0: case 1: assertEquals(expected.put(k, n), map.put(k, n)); break;
+                case 2: assertEquals(expected.remove(k), map.remove(k)); break;
+                case 3: assertEquals(expected.inc(k), map.inc(k)); break;
+                default: assertEquals(expected.get(k), map.get(k));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertArrayEquals(expected.keys(true, null).next(), map.smallestKey());
+        assertArrayEquals(expected.keys(false, null).next(), map.largestKey());
+        // a RowHandleMap starts a descending iteration always at the largest key
+        for (final byte[] first: new byte[][]{null, key(1500)}) {
+            final boolean up = first != null;
+            final Iterator<byte[]> e = expected.keys(up, first);
+            final Iterator<byte[]> h = map.keys(up, first);
+            while (e.hasNext()) {
+                assertTrue(h.hasNext());
+                assertArrayEquals(e.next(), h.next());
+            }
+            assertFalse(h.hasNext());
+        }
+        for (int i = 0; i < 3000; i++) assertEquals(expected.get(key(i)), map.get(key(i)));
+    }
+
+    @Test
+    public void testIteratorIsSnapshot() throws Exception {
+        final HashHandleMap map = new HashHandleMap(12, NaturalOrder.naturalOrder, 2, 0, "HashHandleMapTest");
+        for (int i = 0; i < 100; i++) map.put(key(i), i);
+        final Iterator<Map.Entry<byte[], Long>> i = map.iterator();
+        int c = 0;
+        while (i.hasNext()) {
+            final Map.Entry<byte[], Long> e = i.next();
+            assertArrayEquals(key(c), e.getKey());
+            assertEquals(c, e.getValue().longValue());
+            map.put(key(1000 + c), c); // changes do not affect the iteration
+            if (c % 2 == 0) i.remove();
+            c++;
+        }
+        assertEquals(100, c);
+        assertEquals(150, map.size());
+        assertEquals(-1, map.get(key(0)));
+        assertEquals(1, map.get(key(1)));
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        final HashHandleMap map = new HashHandleMap(12, NaturalOrder.naturalOrder, 8, 0, "HashHandleMapTest");
+        map.putUnique(key(1), 10);
+        map.putUnique(key(2), 20);
+        map.putUnique(key(1), 11);
+        map.putUnique(key(1), 12);
+        final ArrayList<long[]> d = map.removeDoubles();
+        assertEquals(1, d.size());
+        assertEquals(3, d.get(0).length);
+        assertEquals(10 + 11 + 12, d.get(0)[0] + d.get(0)[1] + d.get(0)[2]);
+        assertEquals(1, map.size());
+        assertEquals(20, map.get(key(2)));
+        assertTrue(map.removeDoubles().isEmpty());
+    }
+
+    /**
+     * a dump has the same format as the dump of a RowHandleMap and can be read by both
+     */
+    @Test
+    public void testDump() throws Exception {
+        final File f = File.createTempFile("HashHandleMapTest", ".idx");
+        try {
+            final HashHandleMap map = new HashHandleMap(12, NaturalOrder.naturalOrder, 8, 0, "HashHandleMapTest");
+            for (int i = 999; i >= 0; i--) map.put(key(3 * i), 7L * i);
+            assertEquals(1000, map.dump(f));
+            assertEquals(1000 * 20, f.length());
+            final RowHandleMap row = new RowHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+            final HashHandleMap hash = new HashHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+            assertEquals(1000, row.size());
+            assertEquals(1000, hash.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(7L * i, row.get(key(3 * i)));
+                assertEquals(7L * i, hash.get(key(3 * i)));
+            }
+            assertEquals(-1, hash.get(key(1)));
+            hash.clear();
+            assertTrue(hash.isEmpty());
+            assertNull(hash.smallestKey());
+            assertFalse(hash.keys(true, null).hasNext());
+        } finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.cora.util.SpaceExceededException;
+
+import org.junit.Test;
+
+public class OffHeapHandleMapTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static RowHandleMap createMap(final int size) throws SpaceExceededException {
+        final RowHandleMap map = new RowHandleMap(12, NaturalOrder.naturalOrder, 8, size, "OffHeapHandleMapTest");
+        for (int i = 0; i < size; i++) map.put(key(2 * i), 1000L * i); // only even keys
+        return map;
+    }
+
+    /**
+     * apply the same random modifications to both maps and compare the result
+     */
+    private static void compare(final RowHandleMap expected, final HandleMap offheap, final int keyspace) throws SpaceExceededException {
+        final Random r = new Random(0);
+        for (int n = 0; n < 2000; n++) {
+            final byte[] k = key(r.nextInt(keyspace));
+            switch (r.nextInt(4)) {
+                case 0: assertEquals(expected.put(k, n), offheap.put(k, n)); break;
+                case 1: assertEquals(expected.remove(k), offheap.remove(k)); break;
+                case 2: assertEquals(expected.add(k, 3), offheap.add(k, 3)); break;
+                default: assertEquals(expected.get(k), offheap.get(k));
+            }
+        }
+        assertEquals(expected.size(), offheap.size());
+        assertArrayEquals(expected.keys(true, null).next(), offheap.smallestKey());
+        assertArrayEquals(expected.keys(false, null).next(), offheap.largestKey());
+        final Iterator<byte[]> e = expected.keys(true, null);
+        final Iterator<byte[]> o = offheap.keys(true, null);
+        while (e.hasNext()) {
+            assertTrue(o.hasNext());
+            final byte[] k = e.next();
+            assertArrayEquals(k, o.next());
+            assertEquals(expected.get(k), offheap.get(k));
+        }
+        assertFalse(o.hasNext());
+        final Iterator<byte[]> d = offheap.keys(false, null);
+        byte[] last = null;
+        int c = 0;
+        while (d.hasNext()) {
+            final byte[] k = d.next();
+            if (last != null) assertTrue(NaturalOrder.naturalOrder.compare(k, last) < 0);
+            last = k;
+            c++;
+        }
+        assertEquals(expected.size(), c);
+    }
+
+    @Test
+    public void testDirectBuffer() throws SpaceExceededException {
+        final RowHandleMap map = createMap(500);
+        final OffHeapHandleMap offheap = new OffHeapHandleMap(map, 8);
+        assertEquals(map.size(), offheap.size());
+        assertEquals(1000L * 7, offheap.get(key(14)));
+        assertEquals(-1, offheap.get(key(15)));
+        compare(map, offheap, 1100);
+        offheap.close();
+    }
+
+    @Test
+    public void testMappedDump() throws SpaceExceededException, IOException {
+        final RowHandleMap map = createMap(500);
+        final File f = File.createTempFile("OffHeapHandleMapTest", ".idx");
+        f.deleteOnExit();
+        map.dump(f);
+        final OffHeapHandleMap offheap = new OffHeapHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+        compare(map, offheap, 1100);
+
+        // a dump of the changed map must be readable as RowHandleMap
+        final File g = File.createTempFile("OffHeapHandleMapTest", ".idx");
+        g.deleteOnExit();
+        assertEquals(offheap.size(), offheap.dump(g));
+        offheap.close();
+        final RowHandleMap reloaded = new RowHandleMap(12, NaturalOrder.naturalOrder, 8, g);
+        assertEquals(map.size(), reloaded.size());
+        for (final Map.Entry<byte[], Long> entry: map) assertEquals(entry.getValue().longValue(), reloaded.get(entry.getKey()));
+
+        // the mapping is private, the original dump is not changed
+        final RowHandleMap original = new RowHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+        assertEquals(500, original.size());
+        assertEquals(1000L * 7, original.get(key(14)));
+    }
+
+    /**
+     * a small dump which is not sorted in the middle must be rejected, not only a dump with unsorted first and last keys;
+     * for a small dump all neighbouring records are part of the sample
+     */
+    @Test(expected = IOException.class)
+    public void testUnsortedDump() throws IOException {
+        final File f = File.createTempFile("OffHeapHandleMapTest", ".idx");
+        f.deleteOnExit();
+        final java.io.FileOutputStream os = new java.io.FileOutputStream(f);
+        for (final int i: new int[]{1, 5, 3, 9}) {
+            os.write(key(i));
+            os.write(new byte[8]);
+        }
+        os.close();
+        new OffHeapHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+    }
+
+    /**
+     * a dump which cannot be written can be mapped and changed
+     */
+    @Test
+    public void testReadOnlyDump() throws SpaceExceededException, IOException {
+        final RowHandleMap map = createMap(100);
+        final File f = File.createTempFile("OffHeapHandleMapTest", ".idx");
+        f.deleteOnExit();
+        map.dump(f);
+        assertTrue(f.setReadOnly());
+        final OffHeapHandleMap offheap = new OffHeapHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+        assertEquals(1000L * 7, offheap.get(key(14)));
+        offheap.put(key(14), 5);
+        assertEquals(5, offheap.remove(key(14)));
+        assertEquals(-1, offheap.get(key(14)));
+        assertEquals(99, offheap.size());
+        offheap.close();
+        assertEquals(-1, offheap.get(key(16)));
+        f.setWritable(true);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongDumpLength() throws IOException {
+        final File f = File.createTempFile("OffHeapHandleMapTest", ".idx");
+        f.deleteOnExit();
+        final java.io.FileOutputStream os = new java.io.FileOutputStream(f);
+        os.write(new byte[30]);
+        os.close();
+        new OffHeapHandleMap(12, NaturalOrder.naturalOrder, 8, f);
+    }
+}
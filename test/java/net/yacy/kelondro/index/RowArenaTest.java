@@ -0,0 +1,100 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+import org.junit.Test;
+
+public class RowArenaTest {
+
+    private static final Row row = new Row("byte[] key-12, Cardinal count-4 {b256}", Base64Order.enhancedCoder);
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    @Test
+    public void testViews() throws SpaceExceededException {
+        final RowSet set = new RowSet(row, 0);
+        for (int i = 0; i < 100; i++) {
+            final Row.Entry e = row.newEntry();
+            e.setCol(0, key(i));
+            e.setCol(1, i);
+            set.addUnique(e);
+        }
+        final Row.View view = row.newView();
+        assertSame(view, set.get(42, view));
+        assertArrayEquals(key(42), view.getPrimaryKeyBytes());
+        final Row.Entry copy = view.copy();
+        set.get(7, view);
+        assertEquals(7, view.getColLong(1));
+        assertEquals(42, copy.getColLong(1)); // the copy does not follow the view
+        final Iterator<Row.Entry> i = set.views();
+        int n = 0;
+        Row.Entry first = null;
+        while (i.hasNext()) {
+            final Row.Entry e = i.next();
+            if (first == null) first = e;
+            assertSame(first, e);
+            assertEquals(n++, e.getColLong(1));
+        }
+        assertEquals(100, n);
+    }
+
+    @Test
+    public void testArena() throws SpaceExceededException {
+        final RowArena arena = new RowArena(row);
+        final int count = 2 * RowArena.blockSize / row.objectsize; // spans more than one block
+        final RowSet set = new RowSet(row, 0);
+        for (int i = 0; i < count; i++) {
+            final Row.Entry e = arena.newEntry();
+            e.setCol(0, key(i));
+            e.setCol(1, i);
+            set.addUnique(e);
+        }
+        assertEquals(count, arena.rows());
+        final Row.Entry template = row.newEntry();
+        template.setCol(0, key(count));
+        template.setCol(1, count);
+        final Row.Entry c = arena.copy(template);
+        assertNotSame(template, c);
+        assertArrayEquals(template.bytes(), c.bytes());
+        final long allocated = RowArena.allocatedBlocks();
+        arena.release();
+        assertEquals(0, arena.rows());
+
+        // the rows were copied into the set and survive the release of the arena
+        arena.newEntry().setCol(0, key(-1));
+        for (int i = 0; i < count; i++) assertEquals(i, set.get(key(i), false).getColLong(1));
+
+        // the second use of the arena takes the blocks from the pool
+        arena.release();
+        for (int i = 0; i < count; i++) arena.newEntry();
+        assertEquals(allocated, RowArena.allocatedBlocks());
+        arena.release();
+    }
+
+    @Test
+    public void testAddLongerEntry() throws SpaceExceededException {
+        // an entry of a row with more columns is cut to the row of the set
+        final Row longer = new Row("byte[] key-12, Cardinal count-4 {b256}, Cardinal more-8 {b256}", Base64Order.enhancedCoder);
+        final RowSet set = new RowSet(row, 0, new byte[10 * row.objectsize], 0); // no room behind the last row
+        for (int i = 0; i < 10; i++) {
+            final Row.Entry e = longer.newEntry();
+            e.setCol(0, key(i));
+            e.setCol(1, i);
+            e.setCol(2, -1);
+            set.addUnique(e);
+            assertEquals(i, set.get(i, false).getColLong(1));
+        }
+        for (int i = 0; i < 10; i++) assertArrayEquals(key(i), set.get(i, false).getPrimaryKeyBytes());
+    }
+}
@@ -0,0 +1,73 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+
+import org.junit.Test;
+
+public class RowMergeIteratorTest {
+
+    private static final Row row = new Row("byte[] key-4, byte[] value-4", NaturalOrder.naturalOrder);
+
+    private static RowSet rows(final String value, final int... keys) throws SpaceExceededException {
+        final RowSet set = new RowSet(row, keys.length);
+        for (final int k: keys) set.put(row.newEntry(ASCII.getBytes(String.format("%04d", k) + value)));
+        return set;
+    }
+
+    private static RowSetStream stream(final RowSet set) throws Exception {
+        final byte[] b = set.exportCollection();
+        return new RowSetStream(new ByteArrayInputStream(b), row, b.length);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final List<Iterator<Row.Entry>> inputs = new ArrayList<Iterator<Row.Entry>>();
+        inputs.add(stream(rows("aaaa", 5, 1, 9, 3)));
+        inputs.add(stream(rows("bbbb", 2, 3, 10, 9)));
+        inputs.add(rows("cccc", 1, 4, 11).rows());
+        final RowMergeIterator i = new RowMergeIterator(row, inputs);
+        assertEquals(8, i.size()); // only the sizes of the streams
+        final String[] expected = {"0001aaaa", "0002bbbb", "0003aaaa", "0004cccc", "0005aaaa", "0009aaaa", "0010bbbb", "0011cccc"};
+        for (final String e: expected) assertEquals(e, ASCII.String(i.next().bytes()));
+        assertFalse(i.hasNext());
+        assertNull(i.error());
+        i.close();
+    }
+
+    @Test
+    public void testToRowSet() throws Exception {
+        final List<RowSetStream> inputs = new ArrayList<RowSetStream>();
+        inputs.add(stream(rows("aaaa", 1, 2, 3)));
+        inputs.add(stream(rows("bbbb", 3, 4)));
+        final RowMergeIterator i = new RowMergeIterator(row, inputs);
+        final RowSet set = i.toRowSet(i.size());
+        assertEquals(4, set.size());
+        assertArrayEquals(ASCII.getBytes("0003aaaa"), set.get(ASCII.getBytes("0003"), true).bytes());
+        // the result is the same as a merge of the collections
+        assertEquals(rows("aaaa", 1, 2, 3).merge(rows("bbbb", 3, 4)).size(), set.size());
+    }
+
+    @Test
+    public void testTruncatedStream() throws Exception {
+        final byte[] b = rows("aaaa", 1, 2, 3).exportCollection();
+        final RowSetStream s = new RowSetStream(new ByteArrayInputStream(b, 0, b.length - 3), row, b.length);
+        final List<RowSetStream> inputs = new ArrayList<RowSetStream>();
+        inputs.add(s);
+        final RowMergeIterator i = new RowMergeIterator(row, inputs);
+        assertEquals(2, i.toRowSet(3).size());
+        assertNotNull(i.error());
+    }
+}
@@ -0,0 +1,107 @@
+// RowSetCodecPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedList;
+import java.util.Random;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.util.Bitfield;
+
+/**
+ * Measure the size ratio of compressed reference containers (RowSetCodec) against the uncompressed
+ * export and the speed of decoding them, as a whole and as a stream, for different block sizes.
+ */
+public class RowSetCodecPerfTest {
+
+    private static RowSet references(final int count, final Random r) throws Exception {
+        final RowSet set = new RowSet(WordReferenceRow.urlEntryRow, count);
+        final long now = System.currentTimeMillis();
+        for (int k = 0; k < count; k++) {
+            final String url = "http://host" + r.nextInt(count / 10 + 1) + ".org/" + r.nextInt() + ".html";
+            final int words = 50 + r.nextInt(2000);
+            final LinkedList<Integer> positions = new LinkedList<Integer>();
+            positions.add(1 + r.nextInt(words));
+            final WordReferenceVars v = new WordReferenceVars(Word.word2hash(url), url.length(), words, 0, 1 + r.nextInt(8),
+                    1 + r.nextInt(words / 10 + 1), 1 + r.nextInt(words), 1 + r.nextInt(20), positions, 1 + r.nextInt(50), r.nextInt(10), r.nextInt(200), "en",
+                    't', r.nextInt(10), r.nextInt(10), new Bitfield(4), now - r.nextInt(365) * 86400000L);
+            set.put(v.toKelondroEntry());
+        }
+        set.sort();
+        return set;
+    }
+
+    private static void run(final RowSet set, final int blockSize, final int rounds) throws Exception {
+        RowSetCodec.blockSize = blockSize;
+        final Row rowdef = set.rowdef;
+        final byte[] plain = set.exportCollection();
+        long start = System.nanoTime();
+        byte[] compressed = null;
+        for (int i = 0; i < rounds; i++) compressed = RowSetCodec.exportCollection(set, true);
+        final long encode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) RowSet.importRowSet(plain, rowdef);
+        final long importPlain = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) RowSetCodec.importRowSet(compressed, rowdef);
+        final long importCompressed = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            final RowSetStream s = new RowSetStream(new ByteArrayInputStream(compressed), rowdef, compressed.length);
+            while (s.hasNext()) s.next();
+            s.close();
+        }
+        final long stream = System.nanoTime() - start;
+
+        final double mb = ((double) plain.length) * rounds / 1024.0 / 1024.0;
+        System.out.println(String.format("%7d references, block size %4d: %9d -> %8d bytes, ratio %.3f, %5.2f bytes/reference; " +
+                "encode %7.1f MB/s, import plain %7.1f MB/s, import compressed %7.1f MB/s, stream compressed %7.1f MB/s",
+                set.size(), blockSize, plain.length, compressed.length, ((double) compressed.length) / plain.length, ((double) compressed.length) / Math.max(1, set.size()),
+                mb / (encode / 1e9), mb / (importPlain / 1e9), mb / (importCompressed / 1e9), mb / (stream / 1e9)));
+    }
+
+    /**
+     * @param args [references] [rounds]
+     */
+    public static void main(final String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int blockSize = RowSetCodec.blockSize;
+        try {
+            final Random r = new Random(1);
+            for (final int size: new int[]{100, 10000, count}) {
+                final RowSet set = references(size, r);
+                run(set, 128, Math.max(1, rounds / 4)); // warm-up
+                for (final int b: new int[]{32, 128, 512}) run(set, b, Math.max(rounds, 1000000 / size / 10));
+            }
+        } catch (final Exception e) {
+            e.printStackTrace();
+        } finally {
+            RowSetCodec.blockSize = blockSize;
+            ConcurrentLog.shutdown();
+        }
+    }
+}
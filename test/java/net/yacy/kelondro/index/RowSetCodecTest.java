@@ -0,0 +1,107 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.util.Bitfield;
+
+import org.junit.Test;
+
+public class RowSetCodecTest {
+
+    private static RowSet references(final int count) throws SpaceExceededException {
+        final RowSet set = new RowSet(WordReferenceRow.urlEntryRow, count);
+        for (int k = 0; k < count; k++) {
+            final String url = "http://test" + (k % 7) + ".org/" + k + ".html";
+            // the hash of the url is only used as an identifier of the reference
+            final WordReferenceVars r = new WordReferenceVars(Word.word2hash(url), url.length(), 2 + k % 5, 0, 1 + k % 30, 1, 1, 1,
+                    new LinkedList<Integer>(), 1, 1, 0, "en", 't', 0, 0, new Bitfield(4), 0.0d);
+            set.put(r.toKelondroEntry());
+        }
+        set.sort();
+        return set;
+    }
+
+    private static void assertEqualRows(final RowSet expected, final RowSet actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i, false).bytes(), actual.get(i, false).bytes());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (final int count: new int[]{0, 1, 127, 128, 129, 1000}) {
+            final RowSet set = references(count);
+            final byte[] b = RowSetCodec.exportCollection(set, true);
+            assertTrue(RowSetCodec.isCompressed(b));
+            assertFalse(RowSetCodec.isCompressed(set.exportCollection()));
+            assertTrue(RowSetCodec.isCompressed(b.length, WordReferenceRow.urlEntryRow));
+            assertFalse(RowSetCodec.isCompressed(set.exportCollection().length, WordReferenceRow.urlEntryRow));
+            assertEquals(count, RowSetCodec.size(b));
+            if (count >= 128) assertTrue(b.length < set.exportCollection().length / 2);
+            assertEqualRows(set, RowSetCodec.importRowSet(b, WordReferenceRow.urlEntryRow));
+            // uncompressed collections are imported in the same way
+            assertEqualRows(set, RowSetCodec.importRowSet(set.exportCollection(), WordReferenceRow.urlEntryRow));
+        }
+    }
+
+    @Test
+    public void testNonBase64Keys() throws Exception {
+        final Row row = new Row("byte[] key-4, Cardinal count-4 {b256}, byte[] value-8", NaturalOrder.naturalOrder);
+        final RowSet set = new RowSet(row, 300);
+        for (int k = 0; k < 300; k++) {
+            final byte[] key = ASCII.getBytes(String.format("%04d", k * 7));
+            key[0] = (byte) (k % 3 == 0 ? 0xff : key[0]);
+            set.put(row.newEntry(new byte[][]{key, NaturalOrder.encodeLong(k * k, 4), ASCII.getBytes("value" + (k % 100 < 10 ? "00" : "") + k % 100)}));
+        }
+        set.sort();
+        assertEqualRows(set, RowSetCodec.importRowSet(RowSetCodec.exportCollection(set, true), row));
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        final RowSet set = references(500);
+        final byte[] b = RowSetCodec.exportCollection(set, true);
+        final RowSetStream s = new RowSetStream(new ByteArrayInputStream(b), WordReferenceRow.urlEntryRow, b.length);
+        assertEquals(500, s.size());
+        int i = 0;
+        while (s.hasNext()) assertArrayEquals(set.get(i++, false).bytes(), s.next().bytes());
+        assertEquals(500, i);
+        assertNull(s.error());
+        s.close();
+    }
+
+    @Test
+    public void testReencode() throws Exception {
+        final RowSet set = references(1000);
+        final byte[] b = RowSetCodec.exportCollection(set, true);
+        for (final int step: new int[]{2, 3, 100, 1000}) {
+            final RowSet subset = new RowSet(WordReferenceRow.urlEntryRow, set.size());
+            for (int i = 0; i < set.size(); i++) if (i % step != 1) subset.addUnique(set.get(i, false));
+            final byte[] r = RowSetCodec.reencode(b, subset, 4);
+            assertTrue(r.length <= b.length);
+            assertTrue(r.length == b.length || b.length - r.length >= 4);
+            assertEqualRows(subset, RowSetCodec.importRowSet(r, WordReferenceRow.urlEntryRow));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupted() throws Exception {
+        final byte[] b = RowSetCodec.exportCollection(references(300), true);
+        final byte[] t = new byte[b.length / 2];
+        System.arraycopy(b, 0, t, 0, t.length);
+        RowSetCodec.importRowSet(t, WordReferenceRow.urlEntryRow);
+    }
+}
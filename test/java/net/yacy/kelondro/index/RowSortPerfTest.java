@@ -0,0 +1,99 @@
+// RowSortPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * Compare the sort engines of RowCollection on rows with random url hashes as keys: the quicksort of
+ * cora.sorting.Array, the radix sort with one and with all threads and the merge sort, which is used for
+ * other orders, with one and with all threads. Every engine sorts a copy of the same rows; additionally
+ * a collection with a sorted part and an unsorted tail of 10% is sorted.
+ * Run with enough heap for two copies of the rows, i.e. -Xmx8g for 50 million rows.
+ */
+public class RowSortPerfTest {
+
+    private static final Row rowdef = new Row("byte[] key-12, Cardinal posintext-2 {b256}, byte[] payload-18", Base64Order.enhancedCoder);
+
+    private static byte[] rows(final int count) {
+        final Random r = new Random(count);
+        final byte[] alphabet = Base64Order.alpha_enhanced;
+        final byte[] b = new byte[count * rowdef.objectsize];
+        for (int i = 0; i < count; i++) {
+            final int p = i * rowdef.objectsize;
+            for (int j = 0; j < rowdef.primaryKeyLength; j++) b[p + j] = alphabet[r.nextInt(64)];
+            for (int j = rowdef.primaryKeyLength; j < rowdef.objectsize; j++) b[p + j] = (byte) r.nextInt(16);
+        }
+        return b;
+    }
+
+    private static void run(final String name, final RowSorter sorter, final byte[] template, final byte[] work, final int count, final int sortBound) {
+        System.arraycopy(template, 0, work, 0, template.length);
+        final RowCollection collection = new RowCollection(rowdef, work, count, 0, System.currentTimeMillis());
+        if (sortBound > 0) {
+            RowCollection.sorter = new RadixRowSorter(Integer.MAX_VALUE);
+            collection.sortBound = 0;
+            new RadixRowSorter(Integer.MAX_VALUE).sort(rowdef, work, 0, sortBound);
+            collection.sortBound = sortBound;
+        }
+        RowCollection.sorter = sorter;
+        final long start = System.nanoTime();
+        collection.sort();
+        final long time = System.nanoTime() - start;
+        if (!collection.isSorted()) throw new AssertionError(name + " did not sort");
+        System.out.println(String.format("%-22s %9d rows%s: %8.0f ms, %6.1f million rows/s",
+                name, count, sortBound > 0 ? " (sorted part " + sortBound + ")" : "", time / 1e6, count / (time / 1e3)));
+    }
+
+    /**
+     * @param args [rows ...], the default is 1000000 10000000
+     */
+    public static void main(final String[] args) {
+        final RowSorter sorter = RowCollection.sorter;
+        try {
+            final int[] sizes = new int[args.length == 0 ? 2 : args.length];
+            if (args.length == 0) {
+                sizes[0] = 1000000;
+                sizes[1] = 10000000;
+            } else {
+                for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+            }
+            final int parallelLimit = 100000;
+            run("warm-up", new RadixRowSorter(parallelLimit), rows(100000), new byte[100000 * rowdef.objectsize], 100000, 0);
+            run("warm-up", new MergeRowSorter(parallelLimit), rows(100000), new byte[100000 * rowdef.objectsize], 100000, 0);
+            for (final int count: sizes) {
+                final byte[] template = rows(count);
+                final byte[] work = new byte[template.length];
+                run("quicksort (Array)", null, template, work, count, 0);
+                run("radix, 1 thread", new RadixRowSorter(Integer.MAX_VALUE), template, work, count, 0);
+                run("radix, parallel", new RadixRowSorter(parallelLimit), template, work, count, 0);
+                run("merge, 1 thread", new MergeRowSorter(Integer.MAX_VALUE), template, work, count, 0);
+                run("merge, parallel", new MergeRowSorter(parallelLimit), template, work, count, 0);
+                run("quicksort (Array)", null, template, work, count, count / 10 * 9);
+                run("radix tail + merge", new RadixRowSorter(parallelLimit), template, work, count, count / 10 * 9);
+            }
+        } finally {
+            RowCollection.sorter = sorter;
+            ConcurrentLog.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+
+import org.junit.Test;
+
+public class RowSorterTest {
+
+    /**
+     * fill a chunkcache with random rows; keys are drawn from a small alphabet to get many equal prefixes and doubles
+     */
+    private static byte[] rows(final Row rowdef, final int count, final byte[] alphabet, final Random r) {
+        final byte[] b = new byte[count * rowdef.objectsize];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < rowdef.primaryKeyLength; j++) b[i * rowdef.objectsize + j] = alphabet[r.nextInt(j < 3 ? 4 : alphabet.length)];
+            for (int j = rowdef.primaryKeyLength; j < rowdef.objectsize; j++) b[i * rowdef.objectsize + j] = (byte) r.nextInt();
+        }
+        return b;
+    }
+
+    private static long checksum(final Row rowdef, final byte[] b, final int count) {
+        long c = 0;
+        for (int i = 0; i < count; i++) {
+            long h = 0;
+            for (int j = 0; j < rowdef.objectsize; j++) h = 31 * h + b[i * rowdef.objectsize + j];
+            c += h;
+        }
+        return c;
+    }
+
+    private static void assertSorted(final RowSorter sorter, final Row rowdef, final byte[] alphabet, final int count) {
+        final byte[] b = rows(rowdef, count, alphabet, new Random(count));
+        final long checksum = checksum(rowdef, b, count);
+        sorter.sort(rowdef, b, 0, count);
+        for (int i = 1; i < count; i++) {
+            assertTrue("row " + i, rowdef.objectOrder.compare(b, (i - 1) * rowdef.objectsize, b, i * rowdef.objectsize, rowdef.primaryKeyLength) <= 0);
+        }
+        assertEquals(checksum, checksum(rowdef, b, count)); // rows are moved completely
+    }
+
+    private static Row row(final ByteOrder order) {
+        return new Row("byte[] key-12, Cardinal count-4 {b256}, byte[] value-5", order);
+    }
+
+    @Test
+    public void testSorters() {
+        final byte[] base64 = Base64Order.alpha_enhanced;
+        final byte[] bytes = new byte[256];
+        for (int i = 0; i < 256; i++) bytes[i] = (byte) i;
+        final ByteOrder down = new Base64Order(false, false);
+        final ByteOrder naturalDown = new NaturalOrder(false);
+        for (final RowSorter sorter: new RowSorter[]{new RadixRowSorter(1000), new RadixRowSorter(Integer.MAX_VALUE), new MergeRowSorter(1000)}) {
+            for (final int count: new int[]{0, 1, 2, 23, 24, 25, 500, 20000}) {
+                assertSorted(sorter, row(Base64Order.enhancedCoder), base64, count);
+                assertSorted(sorter, row(down), base64, count);
+                assertSorted(sorter, row(NaturalOrder.naturalOrder), bytes, count);
+                assertSorted(sorter, row(naturalDown), bytes, count);
+            }
+        }
+    }
+
+    @Test
+    public void testDigits() {
+        final int[] d = RadixRowSorter.digits(Base64Order.enhancedCoder);
+        assertEquals(0, d['A']);
+        assertEquals(63, d['_']);
+        assertEquals(-1, d['+']);
+        assertEquals(-1, d[200]);
+        assertEquals(63, RadixRowSorter.digits(new Base64Order(false, true))['A']);
+        assertEquals(255, RadixRowSorter.digits(NaturalOrder.naturalOrder)[255]);
+        assertEquals(null, RadixRowSorter.digits(new Base64Order(true, false) {{rotate(new byte[]{'A'});}}));
+    }
+
+    /**
+     * a collection with a sorted part and an unsorted tail is sorted by a sort of the tail and a merge
+     */
+    @Test
+    public void testRowSetSortedTail() throws Exception {
+        final Row rowdef = row(Base64Order.enhancedCoder);
+        final RowSorter sorter = RowCollection.sorter;
+        try {
+            for (final RowSorter s: new RowSorter[]{new RadixRowSorter(1000), null}) {
+                RowCollection.sorter = s;
+                final Random r = new Random(0);
+                final RowSet set = new RowSet(rowdef, 0);
+                final byte[] rows = rows(rowdef, 3000, Base64Order.alpha_enhanced, r);
+                for (int i = 0; i < 2000; i++) set.put(rowdef.newEntry(rows, i * rowdef.objectsize, true));
+                set.sort();
+                assertEquals(set.size(), set.sorted());
+                for (int i = 2000; i < 3000; i++) set.addUnique(rowdef.newEntry(rows, i * rowdef.objectsize, true));
+                assertTrue(set.sorted() < set.size());
+                set.sort();
+                assertTrue(set.isSorted());
+                for (int i = 0; i < 3000; i++) assertTrue(set.has(rowdef.newEntry(rows, i * rowdef.objectsize, true).getPrimaryKeyBytes()));
+            }
+        } finally {
+            RowCollection.sorter = sorter;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.yacy.kelondro.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+
+    private static File testFile(final int size) throws IOException {
+        final File f = File.createTempFile("MappedFileReaderTest", ".blob");
+        f.deleteOnExit();
+        final byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) b[i] = (byte) i;
+        final FileOutputStream os = new FileOutputStream(f);
+        try {
+            os.write(b);
+        } finally {
+            os.close();
+        }
+        return f;
+    }
+
+    /**
+     * reads which cross the borders of the mapped segments must return the same bytes as the file
+     */
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        final File f = testFile(1000);
+        final MappedFileReader r = new MappedFileReader(f, 6); // segments of 64 bytes
+        try {
+            assertEquals(1000, r.length());
+            final byte[] b = new byte[200];
+            r.readFully(50, b, 0, b.length);
+            for (int i = 0; i < b.length; i++) assertEquals((byte) (50 + i), b[i]);
+
+            // an integer across a segment border
+            assertEquals(((62 & 0xff) << 24) | ((63 & 0xff) << 16) | ((64 & 0xff) << 8) | (65 & 0xff), r.readInt(62));
+            assertEquals(((4 & 0xff) << 24) | ((5 & 0xff) << 16) | ((6 & 0xff) << 8) | (7 & 0xff), r.readInt(4));
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * the sequential Reader interface must behave like the one of the CachedFileReader
+     */
+    @Test
+    public void testSequentialRead() throws IOException {
+        final File f = testFile(300);
+        final MappedFileReader m = new MappedFileReader(f, 7);
+        final CachedFileReader c = new CachedFileReader(f);
+        try {
+            m.seek(120);
+            c.seek(120);
+            assertEquals(c.readInt(), m.readInt());
+            assertEquals(c.readShort(), m.readShort());
+            assertEquals(c.available(), m.available());
+            assertArrayEquals(c.readFully(), m.readFully());
+        } finally {
+            m.close();
+            c.close();
+        }
+    }
+
+    /**
+     * a closed reader releases the mapping, so the file can be truncated and deleted at once
+     */
+    @Test
+    public void testCloseReleasesMapping() throws IOException {
+        final File f = testFile(1000);
+        final MappedFileReader r = new MappedFileReader(f, 6);
+        r.readInt(10);
+        r.close();
+        final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.setLength(100);
+        } finally {
+            raf.close();
+        }
+        assertTrue(f.delete());
+        try {
+            r.readInt(10);
+            fail("read from a closed reader");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBeyondEnd() throws IOException {
+        final File f = testFile(100);
+        final MappedFileReader r = new MappedFileReader(f);
+        try {
+            r.readFully(90, new byte[20], 0, 20);
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.LinkedList;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexCellTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+    private static final File TESTDIR = new File("test/DATA/INDEX/IndexCellTest");
+
+    private IODispatcher merger;
+    private IndexCell<WordReference> cell;
+
+    private static WordReferenceVars reference(final String url) {
+        return new WordReferenceVars(Word.word2hash(url), url.length(), 2, 0, 1, 1, 1, 1, new LinkedList<Integer>(), 1, 1, 0, "en",
+                't', 0, 0, new Bitfield(4), 0.0d);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deletedelete(TESTDIR);
+        TESTDIR.mkdirs();
+        this.merger = new IODispatcher(1, 1, 1024 * 1024);
+        this.merger.start();
+        this.cell = new IndexCell<WordReference>(TESTDIR, "test", factory, Base64Order.enhancedCoder, Word.commonHashLength, 10000, 1024 * 1024, 1024 * 1024 * 16, 1024 * 1024, this.merger);
+    }
+
+    @After
+    public void tearDown() {
+        this.cell.close();
+        this.merger.terminate();
+        FileUtils.deletedelete(TESTDIR);
+    }
+
+    /**
+     * a url which is removed with delay is not returned by a selection, also if the term has no references in the BLOB files
+     */
+    @Test
+    public void testSelectionWithoutDelayedRemovals() throws Exception {
+        final byte[] term = Word.word2hash("term");
+        final byte[] url1 = Word.word2hash("http://test.org/1");
+        final byte[] url2 = Word.word2hash("http://test.org/2");
+        this.cell.add(term, reference("http://test.org/1"));
+        this.cell.add(term, reference("http://test.org/2"));
+        this.cell.add(term, reference("http://test.org/3"));
+        this.cell.removeDelayed(term, url2);
+
+        final HandleSet selection = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 2);
+        selection.put(url1);
+        selection.put(url2);
+        final ReferenceContainer<WordReference> c = this.cell.get(term, selection);
+        assertNotNull(c);
+        assertEquals(1, c.size());
+        assertNotNull(c.getReference(url1));
+        assertNull(c.getReference(url2));
+
+        // the delayed removal removes the url from the cell
+        this.cell.removeDelayed();
+        assertEquals(2, this.cell.get(term, null).size());
+    }
+}
@@ -0,0 +1,221 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.kelondro.blob.HeapWriter;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.index.RowMergeIterator;
+import net.yacy.kelondro.index.RowSetCodec;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class ReferenceContainerArrayTest {
+
+    private static LinkedList<ReferenceContainer<WordReference>> list(final ReferenceContainer<WordReference> first, final ReferenceContainer<WordReference> second) {
+        final LinkedList<ReferenceContainer<WordReference>> list = new LinkedList<ReferenceContainer<WordReference>>();
+        list.add(first);
+        list.add(second);
+        return list;
+    }
+
+    private static WordReferenceVars reference(final String url, final int hitcount) {
+        // the hash of the url is only used as an identifier of the reference
+        return new WordReferenceVars(Word.word2hash(url), url.length(), 2, 0, hitcount, 1, 1, 1, new LinkedList<Integer>(), 1, 1, 0, "en",
+                't', 0, 0, new Bitfield(4), 0.0d);
+    }
+
+    /**
+     * the containers of a term in several BLOB files are merged as stream; the reference of the oldest file wins
+     */
+    @Test
+    public void testGetMergedStream() throws Exception {
+        final File dir = File.createTempFile("ReferenceContainerArrayTest", "");
+        dir.delete();
+        dir.mkdirs();
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        final byte[] term = Word.word2hash("term");
+        try {
+            final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(dir, "test", factory, Base64Order.enhancedCoder, Word.commonHashLength);
+            for (int j = 1; j <= 3; j++) {
+                final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, term);
+                c.add(reference("http://shared.org/", j));
+                for (int k = 0; k < 100; k++) c.add(reference("http://test" + j + ".org/" + k + ".html", j));
+                final File f = array.newContainerBLOBFile();
+                final HeapWriter writer = new HeapWriter(new File(dir, f.getName() + ".prt"), f, Word.commonHashLength, Base64Order.enhancedCoder, 1024);
+                writer.add(term, c.exportCollection());
+                writer.close(true);
+                array.mountBLOBFile(f);
+                Thread.sleep(5); // the files are ordered by the time in their names
+            }
+            final ReferenceContainer<WordReference> c = array.get(term);
+            assertEquals(301, c.size());
+            assertEquals(1, c.getReference(Word.word2hash("http://shared.org/")).hitcount());
+            assertEquals(303, array.count(term)); // the count does not remove doubles
+
+            final RowMergeIterator rows = array.rows(term);
+            byte[] last = null;
+            int n = 0;
+            while (rows.hasNext()) {
+                final Row.Entry row = rows.next();
+                if (last != null) assertTrue(Base64Order.enhancedCoder.compare(last, row.getPrimaryKeyBytes()) < 0);
+                last = row.getPrimaryKeyBytes();
+                n++;
+            }
+            rows.close();
+            assertEquals(301, n);
+            assertNull(rows.error());
+
+            assertNull(array.get(Word.word2hash("unknown")));
+            assertFalse(array.has(Word.word2hash("unknown")));
+            array.close();
+        } finally {
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+    /**
+     * a selection of references from a large container reads only some blocks of the container
+     */
+    @Test
+    public void testSelectWithBlockIndex() throws Exception {
+        final File dir = File.createTempFile("ReferenceContainerArrayTest", "");
+        dir.delete();
+        dir.mkdirs();
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        final byte[] term = Word.word2hash("term");
+        final int blockSize = ReferenceContainerBlockIndex.blockSize;
+        ReferenceContainerBlockIndex.blockSize = 8;
+        try {
+            final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(dir, "test", factory, Base64Order.enhancedCoder, Word.commonHashLength);
+            final ReferenceContainer<WordReference> large = new ReferenceContainer<WordReference>(factory, term);
+            for (int k = 0; k < 1000; k++) large.add(reference("http://large.org/" + k + ".html", 1));
+            final ReferenceContainer<WordReference> small = new ReferenceContainer<WordReference>(factory, term);
+            for (int k = 0; k < 10; k++) small.add(reference("http://small.org/" + k + ".html", 2));
+            small.add(reference("http://large.org/0.html", 2));
+            for (final ReferenceContainer<WordReference> c: list(large, small)) {
+                final File f = array.newContainerBLOBFile();
+                final HeapWriter writer = new HeapWriter(new File(dir, f.getName() + ".prt"), f, Word.commonHashLength, Base64Order.enhancedCoder, 1024);
+                writer.add(term, c.exportCollection());
+                writer.close(true);
+                array.mountBLOBFile(f);
+                Thread.sleep(5); // the files are ordered by the time in their names
+            }
+
+            final HandleSet selection = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 0);
+            for (int k = 0; k < 1000; k += 100) selection.put(Word.word2hash("http://large.org/" + k + ".html"));
+            for (int k = 0; k < 10; k += 2) selection.put(Word.word2hash("http://small.org/" + k + ".html"));
+            selection.put(Word.word2hash("http://unknown.org/"));
+
+            final long selections = ReferenceContainerBlockIndex.selectCount.get();
+            final long blocks = ReferenceContainerBlockIndex.blockCount.get();
+            final RowMergeIterator rows = array.rows(term, selection);
+            int n = 0, large0 = 0;
+            while (rows.hasNext()) {
+                final Row.Entry row = rows.next();
+                if (!selection.has(row.getPrimaryKeyBytes())) continue; // the small container is read as a stream
+                n++;
+                if (Base64Order.enhancedCoder.equal(row.getPrimaryKeyBytes(), Word.word2hash("http://large.org/0.html"))) {
+                    large0++;
+                    assertEquals(1, factory.produceSlow(row).hitcount()); // the older file wins
+                }
+            }
+            rows.close();
+            assertNull(rows.error());
+            assertEquals(15, n);
+            assertEquals(1, large0);
+            assertEquals(selections + 1, ReferenceContainerBlockIndex.selectCount.get());
+            assertTrue(ReferenceContainerBlockIndex.blockCount.get() - blocks <= selection.size()); // at most one block for each url, the container has 125 blocks
+            array.close();
+        } finally {
+            ReferenceContainerBlockIndex.blockSize = blockSize;
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+    /**
+     * compressed and uncompressed containers can be mixed; compressed containers are selected with their directory
+     * and keep their encoding when they are reduced
+     */
+    @Test
+    public void testCompressedContainers() throws Exception {
+        final File dir = File.createTempFile("ReferenceContainerArrayTest", "");
+        dir.delete();
+        dir.mkdirs();
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        final byte[] term = Word.word2hash("term");
+        final int blockSize = ReferenceContainerBlockIndex.blockSize;
+        ReferenceContainerBlockIndex.blockSize = 8;
+        try {
+            final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(dir, "test", factory, Base64Order.enhancedCoder, Word.commonHashLength);
+            final ReferenceContainer<WordReference> large = new ReferenceContainer<WordReference>(factory, term);
+            for (int k = 0; k < 1000; k++) large.add(reference("http://large.org/" + k + ".html", 1 + k % 3));
+            final ReferenceContainer<WordReference> small = new ReferenceContainer<WordReference>(factory, term);
+            for (int k = 0; k < 10; k++) small.add(reference("http://small.org/" + k + ".html", 5));
+            small.add(reference("http://large.org/0.html", 5));
+            boolean compress = true;
+            for (final ReferenceContainer<WordReference> c: list(large, small)) {
+                final File f = array.newContainerBLOBFile();
+                final HeapWriter writer = new HeapWriter(new File(dir, f.getName() + ".prt"), f, Word.commonHashLength, Base64Order.enhancedCoder, 1024);
+                writer.add(term, RowSetCodec.exportCollection(c, compress));
+                writer.close(true);
+                array.mountBLOBFile(f);
+                compress = false;
+                Thread.sleep(5); // the files are ordered by the time in their names
+            }
+            assertEquals(1011, array.count(term));
+            final ReferenceContainer<WordReference> c = array.get(term);
+            assertEquals(1010, c.size());
+            assertEquals(1, c.getReference(Word.word2hash("http://large.org/0.html")).hitcount());
+            assertEquals(3, c.getReference(Word.word2hash("http://large.org/500.html")).hitcount());
+
+            final HandleSet selection = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 0);
+            for (int k = 0; k < 1000; k += 100) selection.put(Word.word2hash("http://large.org/" + k + ".html"));
+            selection.put(Word.word2hash("http://small.org/3.html"));
+            final long selections = ReferenceContainerBlockIndex.selectCount.get();
+            final RowMergeIterator rows = array.rows(term, selection);
+            int n = 0;
+            while (rows.hasNext()) {
+                final Row.Entry row = rows.next();
+                if (selection.has(row.getPrimaryKeyBytes())) n++;
+            }
+            rows.close();
+            assertNull(rows.error());
+            assertEquals(11, n);
+            assertEquals(selections + 1, ReferenceContainerBlockIndex.selectCount.get());
+
+            // remove all references with hitcount 2 from all containers
+            array.reduce(term, new ReferenceContainerArray.ContainerReducer<WordReference>() {
+                @Override
+                public ReferenceContainer<WordReference> reduce(final ReferenceContainer<WordReference> container) {
+                    final Iterator<WordReference> i = container.entries();
+                    while (i.hasNext()) if (i.next().hitcount() == 2) i.remove();
+                    return container;
+                }
+            });
+            final ReferenceContainer<WordReference> r = array.get(term);
+            assertEquals(1010 - 333, r.size());
+            assertNull(r.getReference(Word.word2hash("http://large.org/1.html")));
+            assertEquals(3, r.getReference(Word.word2hash("http://large.org/2.html")).hitcount());
+            array.close();
+        } finally {
+            ReferenceContainerBlockIndex.blockSize = blockSize;
+            FileUtils.deletedelete(dir);
+        }
+    }
+}
@@ -23,17 +23,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.junit.Test;
 
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.util.Bitfield;
 
@@ -99,4 +105,45 @@ public class ReferenceContainerTest {
         assertEquals("distance()", wentry.distance(), wc.distance());
     }
 
+    private static ReferenceContainer<WordReference> container(final ReferenceFactory<WordReference> factory, final String word, final int first, final int count, final int step) throws Exception {
+        final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(factory, Word.word2hash(word));
+        for (int i = first; i < first + count * step; i += step) {
+            final DigestURL url = new DigestURL("http://test.org/page" + i + ".html");
+            final WordReferenceRow row = new WordReferenceRow(url.hash(), 30, 2, 0, 1, 1, System.currentTimeMillis(), System.currentTimeMillis(), UTF8.getBytes("en"), Response.DT_TEXT, 0, 0);
+            final Word w = new Word(i % 50 + 1, 1, 1);
+            w.flags = new Bitfield(4);
+            row.setWord(w);
+            rc.add(row);
+        }
+        rc.sort();
+        return rc;
+    }
+
+    /**
+     * Test of joinConstructive: the join by test and the join by enumeration read the
+     * containers through views and place the joined rows in an arena; the result must
+     * contain exactly the common urls with their own copy of the rows.
+     */
+    @Test
+    public void testJoinConstructive() throws Exception {
+        final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+        final int[][] sizes = new int[][]{{10, 1000}, {200, 200}}; // by test, by enumeration
+        for (final int[] size: sizes) {
+            final ReferenceContainer<WordReference> c1 = container(factory, "one", 0, size[0], 2);
+            final ReferenceContainer<WordReference> c2 = container(factory, "two", 0, size[1], 3);
+            final Set<String> expected = new HashSet<String>();
+            for (int i = 0; i < size[0] * 2; i += 2) if (i % 3 == 0 && i < size[1] * 3) expected.add(ASCII.String(new DigestURL("http://test.org/page" + i + ".html").hash()));
+            final ReferenceContainer<WordReference> conj = ReferenceContainer.joinConstructive(factory, c1, c2, Integer.MAX_VALUE);
+            assertEquals(expected.size(), conj.size());
+            final Iterator<WordReference> i = conj.entries();
+            while (i.hasNext()) {
+                final WordReference r = i.next();
+                assertTrue(expected.remove(ASCII.String(r.urlhash())));
+                assertEquals(30, r.urllength());
+                assertEquals("en", ASCII.String(r.getLanguage()));
+            }
+            assertTrue(expected.isEmpty());
+        }
+    }
+
 }
@@ -0,0 +1,123 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class ShardedReferenceContainerCacheTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static WordReferenceVars reference(final String url) {
+        // the hash of the url is only used as an identifier of the reference
+        return new WordReferenceVars(Word.word2hash(url), url.length(), 2, 0, 1, 1, 1, 1, new LinkedList<Integer>(), 1, 1, 0, "en",
+                't', 0, 0, new Bitfield(4), 0.0d);
+    }
+
+    /**
+     * concurrent writers into all shards; the iterator returns the terms of all shards in term order
+     */
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final ShardedReferenceContainerCache<WordReference> cache = new ShardedReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength, 8);
+        final Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            final int writer = w;
+            writers[w] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int t = 0; t < 200; t++) cache.add(Word.word2hash("term" + t), reference("http://test" + writer + ".org/" + t));
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            writers[w].start();
+        }
+        for (final Thread w: writers) w.join();
+        assertEquals(200, cache.size());
+        for (int t = 0; t < 200; t++) assertEquals(writers.length, cache.count(Word.word2hash("term" + t)));
+        int sizes = 0;
+        for (int i = 0; i < cache.shards(); i++) {
+            assertTrue(cache.size(i) > 0);
+            sizes += cache.size(i);
+        }
+        assertEquals(200, sizes);
+
+        final Iterator<ReferenceContainer<WordReference>> i = cache.referenceContainerIterator(null, false, false);
+        byte[] last = null;
+        int n = 0;
+        while (i.hasNext()) {
+            final ReferenceContainer<WordReference> c = i.next();
+            if (last != null) assertTrue(Base64Order.enhancedCoder.compare(last, c.getTermHash()) < 0);
+            last = c.getTermHash();
+            n++;
+        }
+        assertEquals(200, n);
+
+        // rotation starts again at the first term
+        final Iterator<ReferenceContainer<WordReference>> r = cache.referenceContainerIterator(last, true, false);
+        assertEquals(0, Base64Order.enhancedCoder.compare(last, r.next().getTermHash()));
+        assertTrue(r.hasNext());
+        assertTrue(Base64Order.enhancedCoder.compare(last, r.next().getTermHash()) > 0);
+    }
+
+    /**
+     * a detached shard can be dumped while the other shards and the new shard are written
+     */
+    @Test
+    public void testDetachAndDump() throws Exception {
+        final File dir = File.createTempFile("ShardedReferenceContainerCacheTest", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            final ShardedReferenceContainerCache<WordReference> cache = new ShardedReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength, 4);
+            for (int t = 0; t < 100; t++) cache.add(Word.word2hash("term" + t), reference("http://test.org/" + t));
+            final int size0 = cache.size(0);
+            final long detached = ShardedReferenceContainerCache.detachCount.sum();
+            final ReferenceContainerCache<WordReference> shard = cache.detach(0);
+            assertEquals(size0, shard.size());
+            assertEquals(0, cache.size(0));
+            assertEquals(100 - size0, cache.size());
+            assertEquals(detached + 1, ShardedReferenceContainerCache.detachCount.sum());
+            for (final ReferenceContainer<WordReference> c: shard) {
+                assertFalse(cache.has(c.getTermHash()));
+                cache.add(c.getTermHash(), reference("http://other.org/"));
+            }
+            assertEquals(1, shard.get(shard.iterator().next().getTermHash(), null).size());
+
+            final File f = new File(dir, "dump.blob");
+            cache.dump(f, 1024, false, false);
+            final ReferenceIterator<WordReference> i = new ReferenceIterator<WordReference>(f, factory);
+            int n = 0;
+            while (i.hasNext()) {
+                i.next();
+                n++;
+            }
+            i.close();
+            assertEquals(100, n);
+
+            cache.delete(Word.word2hash("term1"));
+            assertNull(cache.get(Word.word2hash("term1"), null));
+            assertEquals(99, cache.size());
+        } finally {
+            FileUtils.deletedelete(dir);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// SplitTablePerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.table;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Random;
+
+import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Measure the latency of SplitTable.get() depending on the number of partitions,
+ * with and without the bloom filters of the partitions. Half of the lookups ask for
+ * keys which are not in the table, these are the lookups which ask all partitions
+ * if there is no filter.
+ */
+public class SplitTablePerfTest {
+
+    private static final Row row = new Row("byte[] key-12, long num-8 {b256}", NaturalOrder.naturalOrder);
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * write the partition files as they would have been written by a SplitTable over some months
+     */
+    private static void createPartitions(final File location, final int partitions, final int rowsPerPartition) throws Exception {
+        final long now = System.currentTimeMillis();
+        for (int p = 0; p < partitions; p++) {
+            final String name = "test." + GenericFormatter.SHORT_MILSEC_FORMATTER.format(new Date(now - (partitions - p) * 3600000L)) + ".table";
+            final Table table = new Table(new File(location, name), row, 1024, 0, false, false, true);
+            for (int i = 0; i < rowsPerPartition; i++) {
+                final Row.Entry entry = row.newEntry();
+                entry.setCol(0, key(p * rowsPerPartition + i));
+                entry.setCol(1, i);
+                table.put(entry);
+            }
+            table.close();
+        }
+    }
+
+    private static void measure(final int partitions, final int rowsPerPartition, final int lookups) throws Exception {
+        final File location = Files.createTempDirectory("SplitTablePerfTest").toFile();
+        try {
+            createPartitions(location, partitions, rowsPerPartition);
+            for (final boolean filter: new boolean[]{false, true}) {
+                SplitTable.partitionFilter = filter;
+                final SplitTable table = new SplitTable(location, "test", row, false, false);
+                final Random r = new Random(0);
+                final int total = partitions * rowsPerPartition;
+                int found = 0;
+                final long t0 = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    // every second key is not in the table
+                    if (table.get(key(r.nextInt(2 * total)), false) != null) found++;
+                }
+                final long t = System.nanoTime() - t0;
+                System.out.println(String.format("%3d partitions, filter %-5s: %7.2f us/get, %5.2f probes/get, %d found",
+                        partitions, filter, t / 1000.0d / lookups, (double) table.probes() / table.lookups(), found));
+                table.close();
+            }
+        } finally {
+            FileUtils.deletedelete(location);
+        }
+    }
+
+    /**
+     * @param args [rows per partition] [lookups], the default is 10000 and 100000
+     */
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        try {
+            for (final int partitions: new int[]{1, 4, 16, 64}) measure(partitions, rows, lookups);
+        } finally {
+            SplitTable.partitionFilter = true;
+            ConcurrentLog.shutdown();
+        }
+    }
+}
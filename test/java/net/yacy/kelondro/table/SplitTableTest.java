@@ -0,0 +1,153 @@
+package net.yacy.kelondro.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SplitTableTest {
+
+    private static final Row row = new Row("byte[] key-12, long num-8 {b256}", NaturalOrder.naturalOrder);
+    private static final int partitions = 4, rowsPerPartition = 500;
+
+    private File location;
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    @Before
+    public void createPartitions() throws Exception {
+        this.location = Files.createTempDirectory("SplitTableTest").toFile();
+        final long now = System.currentTimeMillis();
+        for (int p = 0; p < partitions; p++) {
+            final String name = "test." + GenericFormatter.SHORT_MILSEC_FORMATTER.format(new Date(now - (partitions - p) * 3600000L)) + ".table";
+            final Table table = new Table(new File(this.location, name), row, 1024, 0, false, false, true);
+            for (int i = 0; i < rowsPerPartition; i++) {
+                final Row.Entry entry = row.newEntry();
+                entry.setCol(0, key(p * rowsPerPartition + i));
+                entry.setCol(1, p);
+                table.put(entry);
+            }
+            table.close();
+        }
+    }
+
+    @After
+    public void deletePartitions() {
+        FileUtils.deletedelete(this.location);
+    }
+
+    @Test
+    public void testFilteredGet() throws Exception {
+        final SplitTable table = new SplitTable(this.location, "test", row, false, false);
+        try {
+            assertEquals(partitions, table.partitions());
+            for (int i = 0; i < partitions * rowsPerPartition; i++) {
+                final Row.Entry entry = table.get(key(i), false);
+                assertNotNull(entry);
+                assertEquals(i / rowsPerPartition, entry.getColLong(1));
+            }
+            final long probes = table.probes();
+            for (int i = 0; i < 1000; i++) assertNull(table.get(key(100000 + i), false));
+            // without filters each missing key would probe all partitions
+            assertTrue("probes: " + (table.probes() - probes), table.probes() - probes < 1000 * partitions / 4);
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    public void testParallelRowsAndCompaction() throws Exception {
+        final SplitTable table = new SplitTable(this.location, "test", row, false, false);
+        SplitTable.parallelScan = true;
+        try {
+            Set<String> keys = rowKeys(table);
+            assertEquals(partitions * rowsPerPartition, keys.size());
+            table.compact(2);
+            assertEquals(2, table.partitions());
+            assertEquals(partitions * rowsPerPartition, table.size());
+            for (int i = 0; i < partitions * rowsPerPartition; i++) assertNotNull(table.get(key(i), false));
+            keys = rowKeys(table);
+            assertEquals(partitions * rowsPerPartition, keys.size());
+        } finally {
+            SplitTable.parallelScan = false;
+            table.close();
+        }
+        assertEquals(2, this.location.list().length);
+    }
+
+    @Test
+    public void testClosedRows() throws Exception {
+        final SplitTable table = new SplitTable(this.location, "test", row, false, false);
+        SplitTable.parallelScan = true;
+        try {
+            // the scans of the closed iterators wait for the queue; close() must stop them
+            for (int k = 0; k < 20; k++) {
+                final CloneableIterator<Row.Entry> i = table.rows();
+                for (int j = 0; j < 10; j++) assertNotNull(i.next());
+                i.close();
+            }
+            assertEquals(partitions * rowsPerPartition, rowKeys(table).size());
+        } finally {
+            SplitTable.parallelScan = false;
+            table.close();
+        }
+    }
+
+    @Test
+    public void testCompactionWithWriter() throws Exception {
+        final SplitTable table = new SplitTable(this.location, "test", row, false, false);
+        try {
+            // rows are changed while the compaction moves them; no change may be lost and no row may be doubled
+            final Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = partitions * rowsPerPartition - 1; i >= 0; i--) {
+                            final Row.Entry entry = row.newEntry();
+                            entry.setCol(0, key(i));
+                            entry.setCol(1, 1000);
+                            table.put(entry);
+                        }
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            writer.start();
+            table.compact(2);
+            writer.join();
+            assertEquals(2, table.partitions());
+            assertEquals(partitions * rowsPerPartition, table.size());
+            for (int i = 0; i < partitions * rowsPerPartition; i++) assertEquals(1000, table.get(key(i), false).getColLong(1));
+        } finally {
+            table.close();
+        }
+    }
+
+    private static Set<String> rowKeys(final SplitTable table) throws Exception {
+        final Set<String> keys = new HashSet<String>();
+        final CloneableIterator<Row.Entry> i = table.rows();
+        while (i.hasNext()) keys.add(ASCII.String(i.next().getPrimaryKeyBytes()));
+        i.close();
+        return keys;
+    }
+}
@@ -0,0 +1,165 @@
+package net.yacy.kelondro.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.io.WriteAheadLog;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TableTest {
+
+    private static final Row row = new Row("byte[] key-12, long num-8 {b256}", NaturalOrder.naturalOrder);
+
+    @After
+    public void resetDurability() {
+        Table.walDurability = WriteAheadLog.Durability.NONE;
+    }
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static Row.Entry entry(final int i, final long value) {
+        final Row.Entry entry = row.newEntry();
+        entry.setCol(0, key(i));
+        entry.setCol(1, value);
+        return entry;
+    }
+
+    /**
+     * write to a table with puts, replacements and removals which move rows, and open the table again
+     * without closing it; all writes must be recovered from the write-ahead log
+     */
+    private static void crashAndRecover(final WriteAheadLog.Durability durability) throws Exception {
+        final File location = Files.createTempDirectory("TableTest").toFile();
+        try {
+            Table.walDurability = durability;
+            final File f = new File(location, "test.table");
+            final Map<Integer, Long> expected = new TreeMap<Integer, Long>();
+            final Table table = new Table(f, row, 100, 0, true, false, true);
+            for (int i = 0; i < 500; i++) {
+                table.put(entry(i, i));
+                expected.put(i, (long) i);
+            }
+            for (int i = 0; i < 500; i += 3) {
+                table.replace(entry(i, -i));
+                expected.put(i, (long) -i);
+            }
+            for (int i = 0; i < 500; i += 7) {
+                table.remove(key(i));
+                expected.remove(i);
+            }
+            final Row.Entry last = table.removeOne();
+            expected.remove(Integer.parseInt(ASCII.String(last.getPrimaryKeyBytes()).substring(1)));
+            if (durability == WriteAheadLog.Durability.ASYNC) Thread.sleep(10 * WriteAheadLog.commitDelay + 100);
+
+            // a torn record at the end of the log is ignored
+            final File walfile = new File(f.getPath() + WriteAheadLog.suffix);
+            assertTrue(walfile.length() > 0);
+            final FileOutputStream os = new FileOutputStream(walfile, true);
+            os.write(new byte[]{1, 'k', '0', '0'});
+            os.close();
+
+            // the table is not closed; its write buffers are lost
+            Table.walDurability = WriteAheadLog.Durability.NONE;
+            final Table recovered = new Table(f, row, 100, 0, true, false, true);
+            assertFalse(walfile.exists());
+            assertEquals(expected.size(), recovered.size());
+            for (int i = 0; i < 500; i++) {
+                final Row.Entry e = recovered.get(key(i), false);
+                if (expected.containsKey(i)) {
+                    assertEquals(expected.get(i).longValue(), e.getColLong(1));
+                } else {
+                    assertNull(e);
+                }
+            }
+            recovered.close();
+        } finally {
+            FileUtils.deletedelete(location);
+        }
+    }
+
+    @Test
+    public void testRecoverySync() throws Exception {
+        crashAndRecover(WriteAheadLog.Durability.SYNC);
+    }
+
+    @Test
+    public void testRecoveryAsync() throws Exception {
+        crashAndRecover(WriteAheadLog.Durability.ASYNC);
+    }
+
+    @Test
+    public void testCloseDeletesLog() throws Exception {
+        final File location = Files.createTempDirectory("TableTest").toFile();
+        try {
+            Table.walDurability = WriteAheadLog.Durability.SYNC;
+            final File f = new File(location, "test.table");
+            Table table = new Table(f, row, 100, 0, false, false, true);
+            for (int i = 0; i < 100; i++) table.put(entry(i, i));
+            table.clear();
+            for (int i = 0; i < 10; i++) table.put(entry(i, i));
+            table.close();
+            assertFalse(new File(f.getPath() + WriteAheadLog.suffix).exists());
+            table = new Table(f, row, 100, 0, false, false, true);
+            assertEquals(10, table.size());
+            assertEquals(9, table.get(key(9), false).getColLong(1));
+            table.close();
+        } finally {
+            FileUtils.deletedelete(location);
+        }
+    }
+
+    @Test
+    public void testBatchGet() throws Exception {
+        final File location = Files.createTempDirectory("TableTest").toFile();
+        try {
+            final File f = new File(location, "test.table");
+            // without a RAM copy of the rows all rows are read from the file; with a write buffer some rows are in the buffer
+            for (final boolean useTailCache: new boolean[]{false, true}) {
+                final Table table = new Table(f, row, 100, 0, useTailCache, false, true);
+                for (int i = 0; i < 2000; i += 2) table.put(entry(i, i));
+                for (int i = 0; i < 2000; i += 10) table.replace(entry(i, -i)); // written to the buffer of BufferedRecords
+                final List<byte[]> keys = new ArrayList<byte[]>();
+                for (int i = 1999; i >= 0; i -= 3) keys.add(key(i)); // unsorted, with gaps and with missing keys
+                keys.add(key(4));
+                keys.add(key(4));
+                final Map<byte[], Row.Entry> rows = table.get(keys, false);
+                final Map<byte[], Row.Entry> async = table.getAsync(keys, false).get();
+                int expected = 0;
+                for (int i = 1999; i >= 0; i -= 3) {
+                    final Row.Entry e = rows.get(key(i));
+                    if (i % 2 == 1) {
+                        assertNull(e);
+                        continue;
+                    }
+                    expected++;
+                    assertEquals(i % 10 == 0 ? -i : i, e.getColLong(1));
+                    assertEquals(e.getColLong(1), async.get(key(i)).getColLong(1));
+                }
+                assertEquals(expected, rows.size()); // key 4 is one of the keys above
+                assertEquals(4, rows.get(key(4)).getColLong(1));
+                table.clear();
+                table.close();
+            }
+        } finally {
+            FileUtils.deletedelete(location);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+// TableWalPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.table;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.io.WriteAheadLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Measure the write throughput of a Table with rows like the first-seen index for each durability of the
+ * write-ahead log, with one writer and with several concurrent writers which share the forces of the log.
+ * Each writer puts new rows, replaces some and removes some, so rows are moved in the file.
+ */
+public class TableWalPerfTest {
+
+    private static final Row row = new Row("byte[] key-12, long num-8 {b256}", NaturalOrder.naturalOrder);
+
+    private static void measure(final File location, final WriteAheadLog.Durability durability, final int threads, final int writes) throws Exception {
+        Table.walDurability = durability;
+        final File f = new File(location, durability.name() + "-" + threads + ".table");
+        final Table table = new Table(f, row, 1024, 0, false, false, true);
+        final AtomicInteger counter = new AtomicInteger();
+        final Thread[] writers = new Thread[threads];
+        final long t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            writers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int i;
+                        while ((i = counter.getAndIncrement()) < writes) {
+                            final Row.Entry entry = row.newEntry();
+                            entry.setCol(0, ASCII.getBytes(String.format("k%011d", i % (writes / 2))));
+                            entry.setCol(1, i);
+                            table.put(entry);
+                            if (i % 10 == 0) table.remove(ASCII.getBytes(String.format("k%011d", i / 3)));
+                        }
+                    } catch (final Exception e) {
+                        ConcurrentLog.logException(e);
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        for (final Thread w: writers) w.join();
+        final long t = System.nanoTime() - t0;
+        table.close();
+        System.out.println(String.format("%-6s %2d threads: %9.0f writes/s", durability.name(), threads, writes * 1e9 / t));
+    }
+
+    /**
+     * @param args [writes], the default is 20000
+     */
+    public static void main(final String[] args) throws Exception {
+        final int writes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final File location = Files.createTempDirectory("TableWalPerfTest").toFile();
+        try {
+            for (final WriteAheadLog.Durability durability: WriteAheadLog.Durability.values()) {
+                measure(location, durability, 1, writes);
+                measure(location, durability, 16, writes);
+            }
+        } finally {
+            FileUtils.deletedelete(location);
+            ConcurrentLog.shutdown();
+        }
+    }
+}
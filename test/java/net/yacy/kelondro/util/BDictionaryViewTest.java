@@ -0,0 +1,67 @@
+package net.yacy.kelondro.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.BDecoder.BObject;
+
+import org.junit.Test;
+
+public class BDictionaryViewTest {
+
+    private static byte[] encode(final Map<String, byte[]> map) {
+        return BEncoder.encode(BEncoder.transcode(map));
+    }
+
+    @Test
+    public void testSameAsDecoder() {
+        final Map<String, byte[]> map = new LinkedHashMap<String, byte[]>();
+        map.put("url", UTF8.getBytes("http://localhost:8090/Crawler_p.html?crawlingDepth=3"));
+        map.put("count", UTF8.getBytes("-42"));
+        map.put("empty", new byte[0]);
+        map.put("täg", UTF8.getBytes("äöü"));
+        map.put("binary", new byte[]{0, 'e', ':', 'd', -1});
+        final byte[] b = encode(map);
+        final Map<String, BObject> decoded = new BDecoder(b).parse().getMap();
+        final BDictionaryView view = new BDictionaryView(b);
+        assertTrue(view.isDictionary());
+        assertEquals(decoded.size(), view.size());
+        for (final Map.Entry<String, BObject> e: decoded.entrySet()) {
+            assertArrayEquals(e.getValue().getString(), view.get(e.getKey()));
+            assertTrue(view.equals(e.getKey(), e.getValue().getString()));
+        }
+        assertEquals(map.keySet(), view.toMap().keySet());
+        assertEquals(2, view.toMap("url", "count", "missing").size());
+        assertNull(view.get("missing"));
+        assertNull(view.get("coun"));
+        assertFalse(view.equals("count", UTF8.getBytes("-4")));
+        assertEquals(-42, view.get("count", 0L));
+        assertEquals(7, view.get("url", 7L));
+        assertEquals("äöü", view.get("täg", (String) null));
+        final ByteBuffer slice = view.slice("binary");
+        assertEquals(5, slice.remaining());
+        assertEquals('e', slice.get(1));
+    }
+
+    @Test
+    public void testOtherTypes() {
+        // values which are not strings are skipped, the last value of a key is used
+        final BDictionaryView view = new BDictionaryView(UTF8.getBytes("d1:ai12e1:bl1:x1:ye1:cd1:k1:ve1:a2:v14:last1:ze"));
+        assertEquals(2, view.size());
+        assertEquals("v1", view.get("a", ""));
+        assertEquals("z", view.get("last", ""));
+        assertFalse(view.containsKey("b"));
+        assertFalse(new BDictionaryView(UTF8.getBytes("l1:ae")).isDictionary());
+        assertNull(new BDictionaryView(null).toMap());
+        // a truncated dictionary keeps the entries before the damage
+        assertEquals(1, new BDictionaryView(UTF8.getBytes("d1:a1:b1:c5:xy")).size());
+    }
+}